@@ -2,6 +2,8 @@ plugins {
     alias(libs.plugins.android.application)
 }
 
+val catalogSnapshotTool: Configuration by configurations.creating
+
 android {
     namespace = "com.matlakhov.catalogapp"
     compileSdk = 35
@@ -14,9 +16,23 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Секции системной трассировки в релизной сборке включаются свойством -PcatalogTracing=true
+        buildConfigField("boolean", "TRACING_ENABLED",
+            providers.gradleProperty("catalogTracing").orElse("false").get())
+        // Минимальный уровень журнала: отладочные сообщения удаляются из релизной сборки при компиляции
+        buildConfigField("int", "LOG_LEVEL", "android.util.Log.INFO")
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
     buildTypes {
+        debug {
+            buildConfigField("boolean", "TRACING_ENABLED", "true")
+            buildConfigField("int", "LOG_LEVEL", "android.util.Log.DEBUG")
+        }
         release {
             isMinifyEnabled = false
             proguardFiles(
@@ -29,6 +45,26 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    androidResources {
+        // Снимок каталога отображается в память прямо из APK, поэтому не сжимается
+        noCompress += "snapshot"
+    }
+    sourceSets {
+        getByName("main") {
+            assets.srcDir(layout.buildDirectory.dir("generated/catalogSnapshot/assets"))
+        }
+    }
+    testOptions {
+        // Локальные тесты используют android.util.Log из моделей и сетевого слоя
+        unitTests.isReturnDefaultValues = true
+        // Тест бюджета привязки адаптеров запускается в Robolectric и разворачивает разметку строк
+        unitTests.isIncludeAndroidResources = true
+        // ./gradlew testDebugUnitTest --tests '*AdapterBindBudgetTest' -PrecordBindBudget
+        // записывает измеренный бюджет привязки в adapter_bind_budget.properties
+        unitTests.all {
+            it.systemProperty("adapterBindBudget.record", project.hasProperty("recordBindBudget"))
+        }
+    }
 }
 
 dependencies {
@@ -38,6 +74,7 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation("org.robolectric:robolectric:4.12.2")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
@@ -59,5 +96,38 @@ dependencies {
 
         // SwipeRefreshLayout для обновления страницы
         implementation("androidx.swiperefreshlayout:swiperefreshlayout:1.1.0")
+
+        // WorkManager для фоновой синхронизации каталога
+        implementation("androidx.work:work-runtime:2.9.1")
+
+        // Секции системной трассировки
+        implementation("androidx.tracing:tracing:1.2.0")
+
+        // Бинарный формат встроенного снимка каталога
+        implementation(project(":catalog-snapshot"))
+        catalogSnapshotTool(project(":catalog-snapshot"))
     }
+}
+
+// Сборка встроенного снимка каталога: JSON из файла (по умолчанию catalog/catalog.json)
+// или по URL из свойства catalogSnapshotSource компилируется в assets/catalog.snapshot
+val compileCatalogSnapshot by tasks.registering(JavaExec::class) {
+    val source = providers.gradleProperty("catalogSnapshotSource")
+        .orElse(layout.projectDirectory.file("catalog/catalog.json").asFile.path)
+    val output = layout.buildDirectory.file("generated/catalogSnapshot/assets/catalog.snapshot")
+    description = "Компилирует каталог в бинарный снимок для assets"
+    classpath = catalogSnapshotTool
+    mainClass.set("com.matlakhov.catalogapp.snapshot.SnapshotCompiler")
+    inputs.property("source", source)
+    if (!source.get().startsWith("http")) {
+        inputs.file(source)
+    }
+    outputs.file(output)
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(source.get(), output.get().asFile.path)
+    })
+}
+
+tasks.named("preBuild") {
+    dependsOn(compileCatalogSnapshot)
 }
\ No newline at end of file
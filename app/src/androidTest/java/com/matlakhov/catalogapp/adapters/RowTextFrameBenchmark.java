@@ -0,0 +1,145 @@
+package com.matlakhov.catalogapp.adapters;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Измеряет время кадра при прокрутке {@link CategoryAdapter} на сгенерированном каталоге с длинными
+ * названиями и описаниями без предварительного расчёта раскладки текста и с ним ({@link RowText}).
+ * Каждый кадр — прокрутка на {@link #SCROLL_PX} пикселей с привязкой и раскладкой новых строк
+ * в главном потоке; между кадрами выдерживается пауза {@link #FRAME_MS}.
+ * Результаты выводятся в лог с тегом {@code RowTextFrameBench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowTextFrameBenchmark {
+
+    private static final String TAG = "RowTextFrameBench";
+
+    private static final int ROWS = 3_000;
+
+    private static final int FRAMES = 400;
+
+    private static final int SCROLL_PX = 120;
+
+    private static final long FRAME_MS = 16;
+
+    private static final int WIDTH = 1080;
+
+    private static final int HEIGHT = 1920;
+
+    private static final String[] WORDS = {"стоматологический", "наконечник", "турбинный", "высокоскоростной",
+            "композитный", "светоотверждаемый", "пломбировочный", "материал", "эндодонтический", "инструмент",
+            "ультразвуковой", "скалер", "профессиональный", "стеклоиономерный", "цемент", "универсальный"};
+
+    @After
+    public void tearDown() {
+        RowText.setEnabled(true);
+    }
+
+    @Test
+    public void fling_frameTimeBeforeAndAfter() {
+        List<Category> items = buildCatalog();
+
+        // Прогрев: загрузка классов, первая инфляция макетов и кэши шрифтов
+        fling(items, false);
+        long[] before = fling(items, false);
+        long[] after = fling(items, true);
+
+        assertEquals(FRAMES, before.length);
+        assertEquals(FRAMES, after.length);
+        Log.i(TAG, "Строк: " + ROWS + ", кадров: " + FRAMES);
+        Log.i(TAG, "Без предрасчёта текста: " + summary(before));
+        Log.i(TAG, "С предрасчётом текста:  " + summary(after));
+    }
+
+    private long[] fling(List<Category> items, boolean precompute) {
+        RowText.setEnabled(precompute);
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_CatalogApp);
+        RecyclerView[] recyclerView = new RecyclerView[1];
+        instrumentation.runOnMainSync(() -> {
+            RecyclerView view = new RecyclerView(context);
+            view.setLayoutManager(new LinearLayoutManager(context));
+            view.setAdapter(new CategoryAdapter(context, items, (category, image) -> {
+            }));
+            view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            view.layout(0, 0, WIDTH, HEIGHT);
+            recyclerView[0] = view;
+        });
+
+        long[] frames = new long[FRAMES];
+        for (int f = 0; f < FRAMES; f++) {
+            int frame = f;
+            instrumentation.runOnMainSync(() -> {
+                long start = System.nanoTime();
+                recyclerView[0].scrollBy(0, SCROLL_PX);
+                frames[frame] = System.nanoTime() - start;
+            });
+            SystemClock.sleep(FRAME_MS);
+        }
+        return frames;
+    }
+
+    private static String summary(long[] frames) {
+        long[] sorted = frames.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        int slow = 0;
+        for (long frame : sorted) {
+            total += frame;
+            if (frame > FRAME_MS * 1_000_000) {
+                slow++;
+            }
+        }
+        return String.format(Locale.US, "среднее %.2f мс, p90 %.2f мс, p99 %.2f мс, максимум %.2f мс, дольше %d мс: %d",
+                total / (double) sorted.length / 1e6, sorted[sorted.length * 90 / 100] / 1e6,
+                sorted[sorted.length * 99 / 100] / 1e6, sorted[sorted.length - 1] / 1e6, FRAME_MS, slow);
+    }
+
+    private static List<Category> buildCatalog() {
+        List<Category> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Category category = new Category();
+            category.setId(100_000 + i);
+            category.setName(phrase(i, 8) + " " + i);
+            category.setDescription(phrase(i * 7, 40));
+            items.add(category);
+        }
+        return items;
+    }
+
+    private static String phrase(int seed, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[(seed + w * 5) % WORDS.length]);
+        }
+        return builder.toString();
+    }
+}
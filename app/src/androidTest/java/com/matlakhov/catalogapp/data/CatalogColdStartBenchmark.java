@@ -0,0 +1,192 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.Gson;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Сравнивает время холодного старта до данных первой строки каталога для трёх способов восстановления:
+ * разбор JSON ответа, восстановление из {@link Parcel} (сохранённое состояние активности)
+ * и бинарный снимок, отображённый в память.
+ * <p>
+ * Каждый замер включает чтение данных, заполнение {@link CatalogRepository} и обращение к полям
+ * первой строки и её вложенных элементов, как при привязке строки адаптером.
+ * Результаты (медиана по нескольким запускам) выводятся в лог с тегом {@code CatalogColdStart}.
+ * </p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogColdStartBenchmark {
+
+    private static final String TAG = "CatalogColdStart";
+
+    /** Количество корневых категорий в синтетическом каталоге. */
+    private static final int ROOTS = 20;
+
+    /** Количество подкатегорий в каждой корневой категории. */
+    private static final int SUBCATEGORIES = 50;
+
+    /** Количество товаров в каждой подкатегории (всего 100 000 товаров). */
+    private static final int PRODUCTS = 100;
+
+    private static final int RUNS = 5;
+
+    private CatalogResponse response;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        response = buildCatalog();
+        snapshotFile = new File(context.getCacheDir(), "benchmark.snapshot");
+        CatalogSnapshotLoader.writeToFile(snapshotFile, response);
+    }
+
+    @After
+    public void tearDown() {
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void coldStartToFirstRow() {
+        String json = new Gson().toJson(response);
+        byte[] parcelBytes = marshall(response);
+
+        long jsonMs = median(() -> {
+            CatalogResponse parsed = new Gson().fromJson(json, CatalogResponse.class);
+            CatalogRepository repository = new CatalogRepository();
+            repository.replace(parsed);
+            return firstRow(repository);
+        });
+        long parcelMs = median(() -> {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.unmarshall(parcelBytes, 0, parcelBytes.length);
+                parcel.setDataPosition(0);
+                Bundle state = parcel.readBundle(Category.class.getClassLoader());
+                CatalogRepository repository = new CatalogRepository();
+                repository.restore(state.getParcelableArrayList("catalog_list"),
+                        state.getParcelableArrayList("recommended_products"), 0);
+                return firstRow(repository);
+            } finally {
+                parcel.recycle();
+            }
+        });
+        long snapshotMs = median(() -> {
+            CatalogStore.StoredCatalog stored = CatalogSnapshotLoader.loadFromFile(snapshotFile);
+            CatalogRepository repository = new CatalogRepository();
+            repository.restore(stored.catalog, stored.recommended, stored.version);
+            return firstRow(repository);
+        });
+
+        Log.i(TAG, "Товаров: " + ROOTS * SUBCATEGORIES * PRODUCTS + ", JSON: " + jsonMs + " мс, Parcel: "
+                + parcelMs + " мс, снимок: " + snapshotMs + " мс (размер снимка " + snapshotFile.length()
+                + " байт, JSON " + json.length() + " символов, Parcel " + parcelBytes.length + " байт)");
+    }
+
+    /**
+     * Обращается к данным, которые нужны для привязки первой строки списка категорий.
+     *
+     * @return название первой категории
+     */
+    private static String firstRow(CatalogRepository repository) {
+        Category first = repository.getCatalog().get(0);
+        String name = first.getName() + first.getDescription() + first.getItems().size();
+        assertEquals("Категория 0", first.getName());
+        return name;
+    }
+
+    private static byte[] marshall(CatalogResponse response) {
+        Bundle state = new Bundle();
+        state.putParcelableArrayList("catalog_list", new ArrayList<>(response.getCatalog()));
+        List<Category> recommended = new ArrayList<>();
+        for (Product product : response.getProducts()) {
+            recommended.add(CatalogRepository.toCategory(product));
+        }
+        state.putParcelableArrayList("recommended_products", new ArrayList<>(recommended));
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(state);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static long median(Measured measured) {
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            measured.run();
+            times[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    private static CatalogResponse buildCatalog() {
+        List<Category> roots = new ArrayList<>();
+        int id = 1;
+        for (int r = 0; r < ROOTS; r++) {
+            Category root = category(id++, "Категория " + r, null);
+            for (int s = 0; s < SUBCATEGORIES; s++) {
+                Category subcategory = category(id++, "Подкатегория " + r + "." + s, null);
+                for (int p = 0; p < PRODUCTS; p++) {
+                    subcategory.addItem(Integer.MAX_VALUE, category(id++, "Товар " + id, 100.0 + p));
+                }
+                root.addItem(Integer.MAX_VALUE, subcategory);
+            }
+            roots.add(root);
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Product product = new Product();
+            product.setId(id++);
+            product.setName("Рекомендуемый товар " + i);
+            product.setPrice(1000.0 + i);
+            products.add(product);
+        }
+        CatalogResponse response = new CatalogResponse();
+        response.setCatalog(roots);
+        response.setProducts(products);
+        response.setVersion(1);
+        return response;
+    }
+
+    private static Category category(int id, String name, Double price) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setDescription("Описание: " + name);
+        category.setPrice(price);
+        return category;
+    }
+
+    /**
+     * Замеряемое действие.
+     */
+    private interface Measured {
+        Object run();
+    }
+}
@@ -0,0 +1,146 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.search.CatalogSearcher;
+import com.matlakhov.catalogapp.search.FtsCatalogSearcher;
+import com.matlakhov.catalogapp.search.SearchIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Сравнивает полнотекстовый индекс SQLite ({@link CatalogStore}) и индекс в памяти ({@link SearchIndex})
+ * на сгенерированных каталогах: время построения индекса, время инкрементального обновления
+ * и задержку запросов. Результаты выводятся в лог с тегом {@code CatalogSearchBench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogSearchBenchmark {
+
+    private static final String TAG = "CatalogSearchBench";
+
+    private static final String DATABASE_NAME = "search_benchmark.db";
+
+    private static final String[] WORDS = {"зеркало", "зонд", "бор", "композит", "цемент", "наконечник", "скалер",
+            "пинцет", "экскаватор", "гладилка", "шпатель", "матрица", "клин", "штифт", "файл", "пульпэкстрактор"};
+
+    private static final String[] QUERIES = {"з", "зерк", "бор ком", "наконечник скал", "модель 5", "пульп шпат",
+            "клин 4", "несуществующее"};
+
+    private Context context;
+    private CatalogStore store;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        snapshotFile = new File(context.getCacheDir(), "search_benchmark.snapshot");
+        store = new CatalogStore(context, DATABASE_NAME, snapshotFile);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DATABASE_NAME);
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void buildAndQuery_10k() {
+        run(10);
+    }
+
+    @Test
+    public void buildAndQuery_100k() {
+        run(100);
+    }
+
+    private void run(int roots) {
+        CatalogResponse response = buildCatalog(roots, 0);
+        int products = roots * 1000;
+
+        long start = SystemClock.elapsedRealtime();
+        SearchIndex memoryIndex = SearchIndex.build(response.getCatalog(), Collections.emptyList());
+        long memoryBuildMs = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        store.save(response, null, null);
+        long ftsBuildMs = SystemClock.elapsedRealtime() - start;
+
+        // Повторное сохранение с изменёнными названиями 1% товаров
+        start = SystemClock.elapsedRealtime();
+        store.save(buildCatalog(roots, 100), null, null);
+        long ftsUpdateMs = SystemClock.elapsedRealtime() - start;
+
+        CatalogSearcher fts = new FtsCatalogSearcher(store);
+        assertEquals(memoryIndex.search("модель 17", 0, 5).size(), fts.search("модель 17", 0, 5).size());
+
+        Log.i(TAG, "Товаров: " + products
+                + "; построение: память " + memoryBuildMs + " мс, FTS " + ftsBuildMs + " мс"
+                + "; обновление 1% FTS: " + ftsUpdateMs + " мс"
+                + "; медиана запроса: память " + medianQueryUs(memoryIndex) + " мкс, FTS "
+                + medianQueryUs(fts) + " мкс");
+    }
+
+    private static long medianQueryUs(CatalogSearcher searcher) {
+        for (String query : QUERIES) {
+            searcher.search(query, 0, 50);
+        }
+        long[] times = new long[QUERIES.length * 5];
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            searcher.search(QUERIES[i % QUERIES.length], 0, 50);
+            times[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    /**
+     * Строит каталог из {@code roots} категорий по 1000 товаров.
+     *
+     * @param roots         количество корневых категорий
+     * @param renameEveryNth переименовать каждый n-й товар (0 — не переименовывать)
+     */
+    private static CatalogResponse buildCatalog(int roots, int renameEveryNth) {
+        List<Category> catalog = new ArrayList<>();
+        int id = 1;
+        for (int r = 0; r < roots; r++) {
+            Category root = new Category();
+            root.setId(id++);
+            root.setName("Категория " + r);
+            for (int p = 0; p < 1000; p++) {
+                Category product = new Category();
+                product.setId(id++);
+                String name = WORDS[p % WORDS.length] + " " + WORDS[(p / WORDS.length + r) % WORDS.length]
+                        + " модель " + (r * 1000 + p);
+                product.setName(renameEveryNth > 0 && p % renameEveryNth == 0 ? name + " обновлённый" : name);
+                product.setDescription("Артикул А" + product.getId());
+                product.setPrice(100.0 + p);
+                root.addItem(Integer.MAX_VALUE, product);
+            }
+            catalog.add(root);
+        }
+        CatalogResponse response = new CatalogResponse();
+        response.setCatalog(catalog);
+        response.setProducts(new ArrayList<>());
+        return response;
+    }
+}
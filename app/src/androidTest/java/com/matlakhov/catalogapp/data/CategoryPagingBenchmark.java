@@ -0,0 +1,91 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Проверяет постраничное чтение большой категории из {@link CatalogStore} и измеряет время
+ * чтения первой и последней страницы. Результаты выводятся в лог с тегом {@code CategoryPagingBench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CategoryPagingBenchmark {
+
+    private static final String TAG = "CategoryPagingBench";
+
+    private static final String DATABASE_NAME = "paging_benchmark.db";
+
+    private static final int PRODUCTS = 50_000;
+
+    private Context context;
+    private CatalogStore store;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        snapshotFile = new File(context.getCacheDir(), "paging_benchmark.snapshot");
+        store = new CatalogStore(context, DATABASE_NAME, snapshotFile);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DATABASE_NAME);
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void loadChildren_readsPagesByPosition() {
+        Category root = new Category();
+        root.setId(1);
+        root.setName("Большая категория");
+        for (int p = 0; p < PRODUCTS; p++) {
+            Category product = new Category();
+            product.setId(100 + p);
+            product.setName("Товар " + p);
+            product.setPrice(100.0 + p);
+            root.addItem(Integer.MAX_VALUE, product);
+        }
+        CatalogResponse response = new CatalogResponse();
+        response.setCatalog(Collections.singletonList(root));
+        response.setProducts(new ArrayList<>());
+        store.save(response, null, null);
+
+        long start = SystemClock.elapsedRealtime();
+        CategoryPage first = store.loadChildren(1, 0, PagedCategoryList.PAGE_SIZE);
+        long firstMs = SystemClock.elapsedRealtime() - start;
+
+        int lastOffset = PRODUCTS - PRODUCTS % PagedCategoryList.PAGE_SIZE - PagedCategoryList.PAGE_SIZE;
+        start = SystemClock.elapsedRealtime();
+        CategoryPage last = store.loadChildren(1, lastOffset, PagedCategoryList.PAGE_SIZE);
+        long lastMs = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(PRODUCTS, first.getTotal());
+        assertEquals(PagedCategoryList.PAGE_SIZE, first.getItems().size());
+        assertEquals(100, first.getItems().get(0).getId());
+        assertEquals(100 + lastOffset, last.getItems().get(0).getId());
+        assertEquals(0, store.loadChildren(42, 0, PagedCategoryList.PAGE_SIZE).getTotal());
+
+        Log.i(TAG, "Элементов: " + PRODUCTS + "; первая страница " + firstMs + " мс, последняя "
+                + lastMs + " мс");
+    }
+}
@@ -0,0 +1,93 @@
+package com.matlakhov.catalogapp.models;
+
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.matlakhov.catalogapp.util.AppLog;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Измеряет распаковку большого дерева {@link Category} из {@link Parcel} с включённым и выключенным
+ * журналом. Результаты выводятся в лог с тегом {@code CategoryParcelBench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CategoryParcelBenchmark {
+
+    private static final String TAG = "CategoryParcelBench";
+
+    private static final int CATEGORIES = 100;
+
+    private static final int PRODUCTS_PER_CATEGORY = 100;
+
+    private static final int RUNS = 10;
+
+    @After
+    public void tearDown() {
+        AppLog.setEnabled(true);
+    }
+
+    @Test
+    public void restoreLargeTree_withAndWithoutLogging() {
+        Category root = new Category();
+        root.setId(1);
+        root.setName("Каталог");
+        int id = 2;
+        for (int c = 0; c < CATEGORIES; c++) {
+            Category category = new Category();
+            category.setId(id++);
+            category.setName("Категория " + c);
+            category.setDescription("Описание категории " + c);
+            for (int p = 0; p < PRODUCTS_PER_CATEGORY; p++) {
+                Category product = new Category();
+                product.setId(id++);
+                product.setName("Товар " + p);
+                product.setDescription("Описание товара " + p);
+                product.setPrice(100.0 + p);
+                category.addItem(Integer.MAX_VALUE, product);
+            }
+            root.addItem(Integer.MAX_VALUE, category);
+        }
+        Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(root, 0);
+        byte[] bytes = parcel.marshall();
+        parcel.recycle();
+
+        // Прогрев
+        restore(bytes);
+        AppLog.setEnabled(true);
+        long loggingMs = measure(bytes);
+        AppLog.setEnabled(false);
+        long silentMs = measure(bytes);
+
+        Log.i(TAG, "Узлов: " + (id - 1) + ", повторов: " + RUNS + "; с журналом " + loggingMs
+                + " мс, без журнала " + silentMs + " мс");
+    }
+
+    private long measure(byte[] bytes) {
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < RUNS; i++) {
+            Category restored = restore(bytes);
+            assertEquals(CATEGORIES, restored.getItems().size());
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private static Category restore(byte[] bytes) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(Category.class.getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.matlakhov.catalogapp;
+
+import android.app.Application;
+
+import com.matlakhov.catalogapp.data.MemoryPressureHandler;
+import com.matlakhov.catalogapp.sync.CatalogSyncScheduler;
+
+/**
+ * Класс приложения.
+ * <p>
+ * При запуске процесса планирует фоновую синхронизацию каталога и подписывается на сигналы
+ * нехватки памяти ({@link MemoryPressureHandler}).
+ * </p>
+ */
+public class CatalogApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        CatalogSyncScheduler.schedule(this);
+        registerComponentCallbacks(new MemoryPressureHandler(this));
+    }
+}
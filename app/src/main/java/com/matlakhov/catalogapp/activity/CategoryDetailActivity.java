@@ -2,13 +2,18 @@ package com.matlakhov.catalogapp.activity;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
+import android.widget.EditText;
+import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -17,10 +22,27 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.matlakhov.catalogapp.R;
 import com.matlakhov.catalogapp.adapters.CategoryAdapter;
+import com.matlakhov.catalogapp.data.CatalogRepository;
+import com.matlakhov.catalogapp.data.CatalogStore;
+import com.matlakhov.catalogapp.data.CategoryPageLoader;
+import com.matlakhov.catalogapp.data.LivePriceUpdates;
+import com.matlakhov.catalogapp.data.NavigationPrefetcher;
+import com.matlakhov.catalogapp.data.NodeDetailsLoader;
+import com.matlakhov.catalogapp.data.PagedCategoryList;
+import com.matlakhov.catalogapp.data.PriceIndex;
+import com.matlakhov.catalogapp.metrics.FrameMetricsTracker;
+import com.matlakhov.catalogapp.metrics.StartupMetrics;
 import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.network.ApiClient;
+import com.matlakhov.catalogapp.network.ApiService;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Активность для отображения деталей категории, включая подкатегории или товары.
@@ -30,11 +52,24 @@ import java.util.List;
  * Если категория представляет собой товар (т.е. имеет цену и описание, но нет подкатегорий),
  * пользователь перенаправляется в {@link ProductDetailActivity}.
  * </p>
+ * <p>
+ * Меню позволяет показать все товары поддерева категории, отсортированные по цене и отфильтрованные
+ * по диапазону цен. Выборка берётся из {@link PriceIndex} без сортировки на каждый запрос; индекс строится
+ * в фоне после публикации каталога, и до его готовности экран показывает индикатор загрузки.
+ * </p>
+ * <p>
+ * Категории, содержащие больше {@link PagedCategoryList#PAGING_THRESHOLD} элементов, а также категории,
+ * элементы которых не переданы и отсутствуют в {@link CatalogRepository}, показываются постранично.
+ * Если элементы категории есть в {@link CatalogRepository}, страницы берутся из текущей версии каталога
+ * и получают изменения цен и описаний; из локального хранилища или с сервера ({@link CategoryPageLoader})
+ * загружаются только элементы, которых в памяти нет, и в памяти держится ограниченное число страниц.
+ * </p>
  *
  * @see CategoryAdapter
  * @see ProductDetailActivity
  */
-public class CategoryDetailActivity extends AppCompatActivity implements CategoryAdapter.OnCategoryClickListener {
+public class CategoryDetailActivity extends AppCompatActivity implements CategoryAdapter.OnCategoryClickListener,
+        CatalogRepository.OnPricesChangedListener, NodeDetailsLoader.OnDetailsLoadedListener {
 
     /**
      * Тег для целей логирования.
@@ -51,6 +86,21 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
      */
     private static final double INVALID_PRICE = -1.0;
 
+    /**
+     * Исходный порядок элементов категории.
+     */
+    private static final int SORT_NONE = 0;
+
+    /**
+     * Товары поддерева по возрастанию цены.
+     */
+    private static final int SORT_PRICE_ASC = 1;
+
+    /**
+     * Товары поддерева по убыванию цены.
+     */
+    private static final int SORT_PRICE_DESC = 2;
+
     /**
      * ID категории.
      */
@@ -91,9 +141,41 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
      */
     private CategoryAdapter categoryAdapter;
 
+    /**
+     * Постраничный список элементов, или null, если элементы показываются целиком.
+     */
+    private PagedCategoryList pagedItems;
+
+    /**
+     * Текущий режим сортировки: {@link #SORT_NONE}, {@link #SORT_PRICE_ASC} или {@link #SORT_PRICE_DESC}.
+     */
+    private int priceSort = SORT_NONE;
+
+    /**
+     * Нижняя граница фильтра по цене.
+     */
+    private double minPrice = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Верхняя граница фильтра по цене.
+     */
+    private double maxPrice = Double.POSITIVE_INFINITY;
+
+    /**
+     * Показывает ли список выборку товаров из индекса цен (сортировку или фильтр).
+     */
+    private boolean showingPriceView;
+
+    /**
+     * Корневая категория, поддерево которой закреплено на время жизни экрана, или -1.
+     */
+    private int pinnedRootId = -1;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.track(this);
+        FrameMetricsTracker frameMetrics = FrameMetricsTracker.track(this);
         setContentView(R.layout.activity_category_detail);
 
         Intent intent = getIntent();
@@ -103,8 +185,16 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
         categoryDescription = intent.getStringExtra("CATEGORY_DESCRIPTION");
         items = intent.getParcelableArrayListExtra("CATEGORY_ITEMS");
 
+        // Если категория есть в общем хранилище, показываем живые данные, чтобы получать обновления цен
+        Category liveCategory = CatalogRepository.getInstance().findById(categoryId);
+        if (liveCategory != null) {
+            items = liveCategory.getItems();
+            // Экран держит элементы категории: их поддерево не освобождается при нехватке памяти
+            pinnedRootId = CatalogRepository.getInstance().pinSubtree(categoryId);
+        }
+
         if (categoryName == null || categoryId == INVALID_ID) {
-            Log.e(TAG, "Недействительные данные категории: name=" + categoryName + ", id=" + categoryId);
+            AppLog.e(TAG, "Недействительные данные категории: name=" + categoryName + ", id=" + categoryId);
             Toast.makeText(this, "Ошибка: данные категории не переданы", Toast.LENGTH_SHORT).show();
             finish();
             return;
@@ -119,6 +209,7 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
         recyclerView = findViewById(R.id.recycler_detail);
         progressBar = findViewById(R.id.progress_loading_detail);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        frameMetrics.trackList(recyclerView);
 
         if (items == null || items.isEmpty()) {
             if (categoryPrice != INVALID_PRICE && categoryDescription != null) {
@@ -131,18 +222,371 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
                 startActivity(productIntent);
                 finish();
                 return;
-            } else {
-                Log.e(TAG, "Недействительные данные товара: price=" + categoryPrice + ", description=" + categoryDescription);
-                Toast.makeText(this, "Ошибка: данные товара не переданы", Toast.LENGTH_SHORT).show();
-                finish();
-                return;
             }
+            // Элементы не переданы и отсутствуют в памяти: загружаем их постранично
+            startPagedMode();
+            return;
+        } else if (items.size() > PagedCategoryList.PAGING_THRESHOLD) {
+            startPagedMode();
+            return;
         } else {
             categoryAdapter = new CategoryAdapter(this, items, this);
             recyclerView.setAdapter(categoryAdapter);
+            showAggregates();
+        }
+
+        progressBar.setVisibility(View.GONE);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        CatalogRepository.getInstance().addOnPricesChangedListener(this);
+        NodeDetailsLoader.getInstance().addOnDetailsLoadedListener(this);
+        LivePriceUpdates.getInstance().acquire();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        LivePriceUpdates.getInstance().release();
+        NodeDetailsLoader.getInstance().removeOnDetailsLoadedListener(this);
+        CatalogRepository.getInstance().removeOnPricesChangedListener(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        CatalogRepository.getInstance().unpinSubtree(pinnedRootId);
+    }
+
+    /**
+     * Перепривязывает строки категорий, получившие описание.
+     *
+     * @param ids идентификаторы узлов, получивших описание и изображение
+     */
+    @Override
+    public void onDetailsLoaded(Set<Integer> ids) {
+        if (categoryAdapter == null) {
+            return;
+        }
+        if (showingPriceView) {
+            refreshPriceView();
+        } else if (pagedItems == null) {
+            showLiveItems();
+        } else if (pagedItems.isInMemory()) {
+            showLivePages();
+        }
+        categoryAdapter.notifyDetailsChanged(ids);
+    }
+
+    /**
+     * Перепривязывает цены изменённых товаров в списке.
+     *
+     * @param ids идентификаторы товаров, цена или наличие которых изменились
+     */
+    @Override
+    public void onPricesChanged(Set<Integer> ids) {
+        if (categoryAdapter == null) {
+            return;
+        }
+        if (showingPriceView) {
+            // Изменение цены может переместить товар в выборке — запрашиваем её заново
+            refreshPriceView();
+        } else if (pagedItems != null) {
+            notifyPagedPricesChanged(ids);
+        } else {
+            showLiveItems();
+            categoryAdapter.notifyPricesChanged(ids);
+        }
+        showAggregates();
+    }
+
+    /**
+     * Передаёт адаптеру агрегаты категорий текущего каталога, дожидаясь их вычисления после изменения цен.
+     */
+    private void showAggregates() {
+        CatalogRepository repository = CatalogRepository.getInstance();
+        repository.refreshAggregates(() -> {
+            if (!isDestroyed() && categoryAdapter != null) {
+                categoryAdapter.setAggregates(repository.getAggregates());
+            }
+        });
+    }
+
+    /**
+     * Переключает список на элементы текущей версии категории из {@link CatalogRepository}.
+     * <p>
+     * Изменения цен и описаний публикуются новой версией каталога с копиями изменённых узлов,
+     * поэтому прежний список элементов категории их не содержит.
+     * </p>
+     */
+    private void showLiveItems() {
+        Category live = CatalogRepository.getInstance().findById(categoryId);
+        if (live != null) {
+            items = live.getItems();
+            categoryAdapter.setItems(items);
+        }
+    }
+
+    /**
+     * Переключает постраничный список над элементами в памяти на текущую версию категории.
+     */
+    private void showLivePages() {
+        Category live = CatalogRepository.getInstance().findById(categoryId);
+        if (live == null) {
+            return;
+        }
+        int size = pagedItems.size();
+        pagedItems.setSource(live.getItems());
+        if (pagedItems.size() != size && !showingPriceView) {
+            // Дельта изменила состав категории
+            categoryAdapter.setItems(pagedItems);
+            categoryAdapter.notifyDataSetChanged();
         }
+    }
 
+    /**
+     * Переносит новые цены в загруженные страницы, не запуская загрузку остальных.
+     *
+     * @param ids идентификаторы товаров, цена или наличие которых изменились
+     */
+    private void notifyPagedPricesChanged(Set<Integer> ids) {
+        if (pagedItems.isInMemory()) {
+            showLivePages();
+            categoryAdapter.notifyPricesChanged(ids);
+            return;
+        }
+        CatalogRepository repository = CatalogRepository.getInstance();
+        for (Integer id : ids) {
+            int position = pagedItems.indexOfLoaded(id);
+            Category live = position >= 0 ? repository.findById(id) : null;
+            if (live != null) {
+                Category item = pagedItems.peek(position);
+                item.setPrice(live.getPrice());
+                item.setAvailable(live.getAvailable());
+                categoryAdapter.notifyItemChanged(position, CategoryAdapter.PAYLOAD_PRICE);
+            }
+        }
+    }
+
+    /**
+     * Переключает экран в постраничный режим. Если элементы категории есть в {@link CatalogRepository},
+     * страницы строятся над ними. Иначе первая страница загружается в фоновом потоке, а если она уже
+     * загружена {@link NavigationPrefetcher}, список показывается сразу.
+     */
+    private void startPagedMode() {
+        Category live = CatalogRepository.getInstance().findById(categoryId);
+        if (live != null && !live.getItems().isEmpty()) {
+            showPagedList(new PagedCategoryList(categoryId, live.getItems()));
+            progressBar.setVisibility(View.GONE);
+            return;
+        }
+        CategoryPageLoader loader = new CategoryPageLoader(CatalogStore.getInstance(this),
+                ApiClient.getClient().create(ApiService.class));
+        CategoryPage prefetched = NavigationPrefetcher.getInstance().takeFirstPage(categoryId);
+        if (prefetched != null) {
+            onFirstPageLoaded(loader, prefetched);
+            return;
+        }
+        progressBar.setVisibility(View.VISIBLE);
+        AppExecutors.io().execute(() -> {
+            CategoryPage firstPage = null;
+            try {
+                firstPage = loader.load(categoryId, 0, PagedCategoryList.PAGE_SIZE);
+            } catch (IOException | RuntimeException e) {
+                AppLog.e(TAG, "Не удалось загрузить элементы категории " + categoryId + ": " + e.getMessage());
+            }
+            CategoryPage result = firstPage;
+            AppExecutors.main().execute(() -> onFirstPageLoaded(loader, result));
+        });
+    }
+
+    /**
+     * Показывает постраничный список после загрузки первой страницы.
+     *
+     * @param loader    загрузчик страниц
+     * @param firstPage первая страница, или null, если её не удалось загрузить
+     */
+    private void onFirstPageLoaded(CategoryPageLoader loader, CategoryPage firstPage) {
+        if (isDestroyed()) {
+            return;
+        }
         progressBar.setVisibility(View.GONE);
+        if (firstPage == null || firstPage.getTotal() == 0) {
+            AppLog.e(TAG, "Категория " + categoryId + " пуста или недоступна");
+            Toast.makeText(this, "Ошибка: данные категории не загружены", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        showPagedList(new PagedCategoryList(loader, firstPage, (start, count) -> {
+            // Пока показана выборка по цене, адаптер не связан со страницами
+            if (priceSort == SORT_NONE) {
+                categoryAdapter.notifyPageLoaded(start, count);
+            }
+        }));
+    }
+
+    /**
+     * Показывает постраничный список элементов категории.
+     *
+     * @param paged постраничный список
+     */
+    private void showPagedList(PagedCategoryList paged) {
+        pagedItems = paged;
+        items = pagedItems;
+        categoryAdapter = new CategoryAdapter(this, items, this);
+        recyclerView.setAdapter(categoryAdapter);
+        showAggregates();
+        AppLog.d(TAG, () -> "Постраничный режим: категория " + categoryId + ", элементов " + paged.size()
+                + (paged.isInMemory() ? " в памяти" : ""));
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_category_detail, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int itemId = item.getItemId();
+        if (itemId == R.id.action_sort_price_asc) {
+            priceSort = SORT_PRICE_ASC;
+            showPriceView();
+            return true;
+        } else if (itemId == R.id.action_sort_price_desc) {
+            priceSort = SORT_PRICE_DESC;
+            showPriceView();
+            return true;
+        } else if (itemId == R.id.action_price_filter) {
+            showPriceFilterDialog();
+            return true;
+        } else if (itemId == R.id.action_price_reset) {
+            priceSort = SORT_NONE;
+            minPrice = Double.NEGATIVE_INFINITY;
+            maxPrice = Double.POSITIVE_INFINITY;
+            showingPriceView = false;
+            if (pagedItems == null) {
+                Category live = CatalogRepository.getInstance().findById(categoryId);
+                if (live != null) {
+                    items = live.getItems();
+                }
+            } else if (pagedItems.isInMemory()) {
+                showLivePages();
+            }
+            categoryAdapter = new CategoryAdapter(this, items, this);
+            recyclerView.setAdapter(categoryAdapter);
+            showAggregates();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Показывает товары поддерева категории в текущем диапазоне цен и порядке сортировки.
+     */
+    private void showPriceView() {
+        CatalogRepository repository = CatalogRepository.getInstance();
+        PriceIndex index = repository.getPriceIndex();
+        if (index == null) {
+            // Индекс строится в фоне после публикации каталога: показываем загрузку до его готовности
+            progressBar.setVisibility(View.VISIBLE);
+            repository.refreshPriceIndex(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                progressBar.setVisibility(View.GONE);
+                if (priceSort != SORT_NONE) {
+                    showPriceView();
+                }
+            });
+            return;
+        }
+        List<Category> products = index.query(categoryId, minPrice, maxPrice, priceSort == SORT_PRICE_DESC);
+        if (products == null) {
+            AppLog.w(TAG, "Категория " + categoryId + " отсутствует в индексе цен");
+            Toast.makeText(this, "Сортировка недоступна для этой категории", Toast.LENGTH_SHORT).show();
+            priceSort = SORT_NONE;
+            return;
+        }
+        if (products.isEmpty()) {
+            Toast.makeText(this, "Нет товаров в выбранном диапазоне цен", Toast.LENGTH_SHORT).show();
+        }
+        categoryAdapter = new CategoryAdapter(this, products, this);
+        recyclerView.setAdapter(categoryAdapter);
+        showingPriceView = true;
+    }
+
+    /**
+     * Перечитывает выборку товаров из индекса цен в текущем адаптере, например после изменения цен.
+     */
+    private void refreshPriceView() {
+        CatalogRepository repository = CatalogRepository.getInstance();
+        PriceIndex index = repository.getPriceIndex();
+        if (index == null) {
+            // Выборка остаётся прежней, пока индекс новой версии строится в фоне
+            repository.refreshPriceIndex(() -> {
+                if (!isDestroyed() && showingPriceView) {
+                    refreshPriceView();
+                }
+            });
+            return;
+        }
+        List<Category> products = index.query(categoryId, minPrice, maxPrice, priceSort == SORT_PRICE_DESC);
+        if (products != null) {
+            categoryAdapter.setItems(products);
+            categoryAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Показывает диалог ввода диапазона цен. Пустое поле означает отсутствие границы.
+     */
+    private void showPriceFilterDialog() {
+        View view = LayoutInflater.from(this).inflate(R.layout.dialog_price_filter, null);
+        EditText minInput = view.findViewById(R.id.price_min);
+        EditText maxInput = view.findViewById(R.id.price_max);
+        if (minPrice != Double.NEGATIVE_INFINITY) {
+            minInput.setText(String.valueOf(minPrice));
+        }
+        if (maxPrice != Double.POSITIVE_INFINITY) {
+            maxInput.setText(String.valueOf(maxPrice));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Цена, ₽")
+                .setView(view)
+                .setPositiveButton("Применить", (dialog, which) -> {
+                    minPrice = parsePrice(minInput, Double.NEGATIVE_INFINITY);
+                    maxPrice = parsePrice(maxInput, Double.POSITIVE_INFINITY);
+                    if (priceSort == SORT_NONE) {
+                        priceSort = SORT_PRICE_ASC;
+                    }
+                    showPriceView();
+                })
+                .setNegativeButton("Отмена", null)
+                .show();
+    }
+
+    /**
+     * Разбирает цену из поля ввода.
+     *
+     * @param input        поле ввода
+     * @param defaultValue значение для пустого или некорректного ввода
+     * @return введённая цена или значение по умолчанию
+     */
+    private static double parsePrice(EditText input, double defaultValue) {
+        String text = input.getText().toString().trim().replace(',', '.');
+        if (text.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            AppLog.w(TAG, "Некорректная цена: " + text);
+            return defaultValue;
+        }
     }
 
     /**
@@ -163,7 +607,7 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
     private boolean configureToolbar() {
         MaterialToolbar toolbar = findViewById(R.id.toolbar_detail);
         if (toolbar == null) {
-            Log.e(TAG, "Тулбар не найден");
+            AppLog.e(TAG, "Тулбар не найден");
             Toast.makeText(this, "Ошибка: тулбар не найден", Toast.LENGTH_SHORT).show();
             finish();
             return false;
@@ -185,27 +629,26 @@ public class CategoryDetailActivity extends AppCompatActivity implements Categor
      * </p>
      *
      * @param category выбранная категория или товар
+     * @param image    изображение строки для общего перехода на экран товара
      */
     @Override
-    public void onCategoryClick(Category category) {
+    public void onCategoryClick(Category category, ImageView image) {
         if (category == null) {
-            Log.w(TAG, "onCategoryClick: Категория равна null");
+            AppLog.w(TAG, "onCategoryClick: Категория равна null");
             return;
         }
 
         if (category.isProduct()) {
-            Intent intent = new Intent(this, ProductDetailActivity.class);
-            intent.putExtra("PRODUCT_ID", category.getId());
-            intent.putExtra("PRODUCT_NAME", category.getName());
-            intent.putExtra("PRODUCT_DESCRIPTION", category.getDescription());
-            intent.putExtra("PRODUCT_PRICE", category.getPrice());
-            startActivity(intent);
+            ProductDetailActivity.start(this, category, image);
         } else {
             Intent intent = new Intent(this, CategoryDetailActivity.class);
             intent.putExtra("CATEGORY_NAME", category.getName());
             intent.putExtra("CATEGORY_ID", category.getId());
             intent.putExtra("CATEGORY_DESCRIPTION", category.getDescription());
-            intent.putParcelableArrayListExtra("CATEGORY_ITEMS", new ArrayList<>(category.getItems()));
+            // Большие категории не передаются через Intent: экран загрузит их постранично
+            if (category.getItems().size() <= PagedCategoryList.PAGING_THRESHOLD) {
+                intent.putParcelableArrayListExtra("CATEGORY_ITEMS", new ArrayList<>(category.getItems()));
+            }
             startActivity(intent);
         }
     }
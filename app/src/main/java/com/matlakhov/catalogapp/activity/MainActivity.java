@@ -1,17 +1,25 @@
 package com.matlakhov.catalogapp.activity;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.util.Log;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
+import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -20,14 +28,30 @@ import com.google.android.material.appbar.MaterialToolbar;
 import com.matlakhov.catalogapp.R;
 import com.matlakhov.catalogapp.adapters.CategoryAdapter;
 import com.matlakhov.catalogapp.adapters.ProductAdapter;
+import com.matlakhov.catalogapp.data.CatalogChangeSet;
+import com.matlakhov.catalogapp.data.CatalogRepository;
+import com.matlakhov.catalogapp.data.CatalogSnapshot;
+import com.matlakhov.catalogapp.data.CatalogSnapshotLoader;
+import com.matlakhov.catalogapp.data.CatalogStore;
+import com.matlakhov.catalogapp.data.LivePriceUpdates;
+import com.matlakhov.catalogapp.data.NodeDetailsLoader;
+import com.matlakhov.catalogapp.data.PagedCategoryList;
+import com.matlakhov.catalogapp.metrics.FrameMetricsTracker;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.StartupMetrics;
+import com.matlakhov.catalogapp.metrics.TraceSections;
+import com.matlakhov.catalogapp.models.CatalogDelta;
 import com.matlakhov.catalogapp.models.CatalogResponse;
 import com.matlakhov.catalogapp.models.Category;
-import com.matlakhov.catalogapp.models.Product;
 import com.matlakhov.catalogapp.network.ApiClient;
 import com.matlakhov.catalogapp.network.ApiService;
+import com.matlakhov.catalogapp.search.CatalogSearch;
+import com.matlakhov.catalogapp.sync.FreshnessTracker;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Set;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -46,17 +70,32 @@ import retrofit2.Response;
  * @see CategoryDetailActivity
  * @see ProductDetailActivity
  */
-public class MainActivity extends AppCompatActivity implements CategoryAdapter.OnCategoryClickListener {
+public class MainActivity extends AppCompatActivity implements CategoryAdapter.OnCategoryClickListener,
+        NodeDetailsLoader.OnDetailsLoadedListener,
+        CatalogRepository.OnPricesChangedListener, CatalogRepository.OnSubtreesReleasedListener {
 
     /**
      * Тег для целей логирования.
      */
     private static final String TAG = "MainActivity";
 
+    /** Выборочный журнал товаров ответа: записываются первые товары, остальные только считаются. */
+    private static final AppLog.Sampler PRODUCT_LOG = AppLog.sampler(TAG, 1, 10);
+
+    /**
+     * Имя файла настроек, в котором запоминается, что сервер не поддерживает облегчённый каталог.
+     */
+    private static final String SYNC_PREFS_NAME = "catalog_sync";
+
+    /**
+     * Срок, после которого облегчённый каталог запрашивается у сервера снова (сервер мог быть обновлён).
+     */
+    private static final long SKELETON_RETRY_MS = 24 * 60 * 60 * 1000L;
+
     /**
-     * Значение по умолчанию для недействительной цены.
+     * Признак того, что сервер не поддерживает дельта-обновления (запоминается до конца работы процесса).
      */
-    private static final double INVALID_PRICE = -1.0;
+    private static boolean deltaUnsupported;
 
     /**
      * RecyclerView для отображения списка категорий.
@@ -79,14 +118,19 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
     private ProductAdapter productAdapter;
 
     /**
-     * Список всех категорий каталога.
+     * Хранилище каталога, общее для всех экранов.
+     */
+    private CatalogRepository catalogRepository;
+
+    /**
+     * Локальное хранилище каталога для запуска с сохранёнными данными.
      */
-    private List<Category> catalogList = new ArrayList<>();
+    private CatalogStore catalogStore;
 
     /**
-     * Список рекомендуемых товаров.
+     * Признак того, что свежесть данных при запуске уже записана (или это не новый запуск).
      */
-    private List<Category> recommendedProducts = new ArrayList<>();
+    private boolean launchFreshnessRecorded;
 
     /**
      * ProgressBar для индикации состояния загрузки.
@@ -103,25 +147,16 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
      */
     private ApiService apiService;
 
-    /**
-     * Ключ для сохранения ID активити в savedInstanceState.
-     */
-    private static final String KEY_CATALOG_LIST = "catalog_list";
-
-    /**
-     * Ключ для сохранения списка рекомендуемых товаров в savedInstanceState.
-     */
-    private static final String KEY_RECOMMENDED_PRODUCTS = "recommended_products";
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.track(this);
+        FrameMetricsTracker frameMetrics = FrameMetricsTracker.track(this);
         setContentView(R.layout.activity_main);
 
-        if (savedInstanceState != null) {
-            catalogList = savedInstanceState.getParcelableArrayList(KEY_CATALOG_LIST);
-            recommendedProducts = savedInstanceState.getParcelableArrayList(KEY_RECOMMENDED_PRODUCTS);
-        }
+        catalogRepository = CatalogRepository.getInstance();
+        catalogStore = CatalogStore.getInstance(this);
+        launchFreshnessRecorded = savedInstanceState != null;
 
         configureStatusBar();
 
@@ -133,28 +168,111 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
         recyclerViewRecommended = findViewById(R.id.recycler_recommended);
         progressBar = findViewById(R.id.progress_loading);
         swipeRefresh = findViewById(R.id.swipe_refresh);
+        frameMetrics.trackList(recyclerViewCategories);
+        frameMetrics.trackList(recyclerViewRecommended);
 
         recyclerViewCategories.setLayoutManager(new LinearLayoutManager(this));
-        categoryAdapter = new CategoryAdapter(this, catalogList, this);
+        CatalogSnapshot snapshot = catalogRepository.getSnapshot();
+        categoryAdapter = new CategoryAdapter(this, snapshot.getCatalog(), this);
         recyclerViewCategories.setAdapter(categoryAdapter);
+        refreshAggregates();
 
         LinearLayoutManager recommendedLayoutManager = new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false);
         recyclerViewRecommended.setLayoutManager(recommendedLayoutManager);
         recyclerViewRecommended.setNestedScrollingEnabled(false); // Отключаем вложенную прокрутку
-        productAdapter = new ProductAdapter(this, recommendedProducts);
+        productAdapter = new ProductAdapter(this, snapshot.getRecommended());
         recyclerViewRecommended.setAdapter(productAdapter);
 
         swipeRefresh.setOnRefreshListener(this::loadCatalogData);
+        // Слушаем и в фоне: при нехватке памяти система освобождает её, пока экран остановлен
+        catalogRepository.addOnSubtreesReleasedListener(this);
 
         apiService = ApiClient.getClient().create(ApiService.class);
-        loadCatalogData();
+        if (catalogRepository.isEmpty()) {
+            loadFromStore();
+        } else {
+            recordLaunchFreshness(FreshnessTracker.SOURCE_MEMORY, catalogRepository.getSyncedAt());
+            loadCatalogData();
+        }
     }
 
     @Override
-    protected void onSaveInstanceState(Bundle outState) {
-        super.onSaveInstanceState(outState);
-        outState.putParcelableArrayList(KEY_CATALOG_LIST, new ArrayList<>(catalogList));
-        outState.putParcelableArrayList(KEY_RECOMMENDED_PRODUCTS, new ArrayList<>(recommendedProducts));
+    protected void onStart() {
+        super.onStart();
+        catalogRepository.addOnPricesChangedListener(this);
+        NodeDetailsLoader.getInstance().addOnDetailsLoadedListener(this);
+        LivePriceUpdates.getInstance().acquire();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        LivePriceUpdates.getInstance().release();
+        NodeDetailsLoader.getInstance().removeOnDetailsLoadedListener(this);
+        catalogRepository.removeOnPricesChangedListener(this);
+    }
+
+    /**
+     * Показывает версию каталога с новыми ценами и перепривязывает цены изменённых товаров в обоих списках.
+     *
+     * @param ids идентификаторы товаров, цена или наличие которых изменились
+     */
+    @Override
+    public void onPricesChanged(Set<Integer> ids) {
+        showSnapshot();
+        categoryAdapter.notifyPricesChanged(ids);
+        productAdapter.notifyPricesChanged(ids);
+        refreshAggregates();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (catalogRepository != null) {
+            catalogRepository.removeOnSubtreesReleasedListener(this);
+        }
+    }
+
+    /**
+     * Передаёт адаптерам версию каталога с освобождёнными поддеревьями, чтобы прежние корневые
+     * категории и их декодированные узлы больше не удерживались списком.
+     * <p>
+     * Содержимое строк не изменилось, поэтому адаптеры не уведомляются.
+     * </p>
+     */
+    @Override
+    public void onSubtreesReleased() {
+        showSnapshot();
+    }
+
+    /**
+     * Показывает версию каталога с полученными описаниями и перепривязывает соответствующие строки категорий.
+     *
+     * @param ids идентификаторы узлов, получивших описание и изображение
+     */
+    @Override
+    public void onDetailsLoaded(Set<Integer> ids) {
+        showSnapshot();
+        categoryAdapter.notifyDetailsChanged(ids);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_metrics).setVisible(MetricsActivity.isAvailable(this));
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_search) {
+            startActivity(new Intent(this, SearchActivity.class));
+            return true;
+        } else if (item.getItemId() == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
     }
 
     /**
@@ -175,7 +293,7 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
     private boolean configureToolbar() {
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         if (toolbar == null) {
-            Log.e(TAG, "Тулбар не найден");
+            AppLog.e(TAG, "Тулбар не найден");
             Toast.makeText(this, "Ошибка: тулбар не найден", Toast.LENGTH_SHORT).show();
             finish();
             return false;
@@ -188,65 +306,312 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
         return true;
     }
 
+    /**
+     * Показывает каталог из локального хранилища (если он там есть), а затем обновляет его через API.
+     * <p>
+     * Сначала читается бинарный снимок каталога, узлы которого декодируются лениво при отрисовке строк;
+     * база данных читается, только если снимка нет. При первом запуске, когда хранилище ещё пусто,
+     * показывается встроенный в приложение снимок каталога. Этот же путь восстанавливает каталог
+     * после завершения процесса, поэтому сам каталог в состояние активности не сохраняется.
+     * </p>
+     */
+    private void loadFromStore() {
+        progressBar.setVisibility(View.VISIBLE);
+        Context appContext = getApplicationContext();
+        AppExecutors.io().execute(() -> {
+            CatalogStore.StoredCatalog stored = catalogStore.loadSnapshot();
+            if (stored == null) {
+                stored = catalogStore.load();
+            }
+            String source = FreshnessTracker.SOURCE_STORE;
+            if (stored == null) {
+                stored = CatalogSnapshotLoader.loadFromAssets(appContext);
+                source = FreshnessTracker.SOURCE_SNAPSHOT;
+            }
+            CatalogStore.StoredCatalog result = stored;
+            String resultSource = source;
+            AppExecutors.main().execute(() -> onStoreLoaded(result, resultSource));
+        });
+    }
+
+    /**
+     * Применяет каталог, прочитанный из локального хранилища или встроенного снимка,
+     * и запускает обновление через API.
+     *
+     * @param stored сохранённый каталог, или null, если локальных данных нет
+     * @param source источник каталога ({@link FreshnessTracker#SOURCE_STORE} или {@link FreshnessTracker#SOURCE_SNAPSHOT})
+     */
+    private void onStoreLoaded(CatalogStore.StoredCatalog stored, String source) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (stored != null && catalogRepository.isEmpty()) {
+            catalogRepository.restore(stored.catalog, stored.recommended, stored.version);
+            catalogRepository.setSyncedAt(stored.syncedAt);
+            if (FreshnessTracker.SOURCE_STORE.equals(source)) {
+                catalogRepository.markPersisted(catalogRepository.getGeneration());
+            }
+            showSnapshot();
+            categoryAdapter.notifyDataSetChanged();
+            productAdapter.notifyDataSetChanged();
+            CatalogSearch.getInstance().rebuild(this, catalogRepository);
+            refreshAggregates();
+            recordLaunchFreshness(source, stored.syncedAt);
+            AppLog.d(TAG, () -> "Каталог загружен локально: источник=" + source + ", версия=" + stored.version);
+        }
+        loadCatalogData();
+    }
+
+    /**
+     * Пересчитывает агрегаты категорий после загрузки каталога или изменения цен и обновляет плашки строк.
+     */
+    private void refreshAggregates() {
+        catalogRepository.refreshAggregates(() -> {
+            if (!isDestroyed()) {
+                categoryAdapter.setAggregates(catalogRepository.getAggregates());
+            }
+        });
+    }
+
+    /**
+     * Записывает свежесть данных, впервые показанных после запуска приложения.
+     *
+     * @param source   источник данных
+     * @param syncedAt время синхронизации данных (мс)
+     */
+    private void recordLaunchFreshness(String source, long syncedAt) {
+        if (!launchFreshnessRecorded) {
+            launchFreshnessRecorded = true;
+            FreshnessTracker.recordLaunch(this, source, syncedAt);
+            logFirstRowTime(source);
+        }
+    }
+
+    /**
+     * Записывает в лог время от запуска процесса до отрисовки первой строки каталога.
+     *
+     * @param source источник показанных данных
+     */
+    private void logFirstRowTime(String source) {
+        recyclerViewCategories.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (recyclerViewCategories.getChildCount() == 0) {
+                    return true;
+                }
+                recyclerViewCategories.getViewTreeObserver().removeOnPreDrawListener(this);
+                long elapsedMs = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+                MetricsRegistry.getInstance().histogram("startup.first_row." + source).recordMillis(elapsedMs);
+                AppLog.i(TAG, () -> "Первая строка каталога: источник=" + source + ", " + elapsedMs + " мс от запуска процесса");
+                return true;
+            }
+        });
+    }
+
     /**
      * Загружает данные каталога и рекомендуемых товаров через API.
      * <p>
-     * При успешном ответе обновляет списки категорий и рекомендуемых товаров,
-     * а при ошибке отображает соответствующее сообщение пользователю.
+     * Если у клиента уже есть версия каталога, запрашиваются только изменения относительно неё
+     * ({@link #loadCatalogDelta()}), иначе каталог загружается полностью ({@link #loadFullCatalog()}).
+     * Если сервер уже ответил, что дельта-обновления не поддерживает, каталог сразу загружается полностью.
      * </p>
      */
     private void loadCatalogData() {
         progressBar.setVisibility(View.VISIBLE);
         swipeRefresh.setRefreshing(false);
 
-        apiService.getCatalog().enqueue(new Callback<CatalogResponse>() {
+        if (catalogRepository.getVersion() > 0 && !deltaUnsupported) {
+            loadCatalogDelta();
+        } else {
+            loadFullCatalog();
+        }
+    }
+
+    /**
+     * Загружает каталог полностью и заменяет им текущие данные.
+     * <p>
+     * Сначала запрашивается облегчённый каталог без описаний и изображений: они загружаются позже
+     * только для видимых строк категорий и открытого товара ({@link NodeDetailsLoader}).
+     * Если сервер облегчённый каталог не поддерживает, это запоминается в настройках
+     * ({@link #isSkeletonUnsupported()}) и следующие сутки сразу запрашивается полный.
+     * При сетевой ошибке или ошибке разбора облегчённого каталога полный запрашивается повторно.
+     * Облегчённый каталог сохраняется в хранилище без потери уже сохранённых описаний и изображений.
+     * При успешном ответе обновляет списки категорий и рекомендуемых товаров,
+     * а при ошибке отображает соответствующее сообщение пользователю.
+     * </p>
+     */
+    private void loadFullCatalog() {
+        loadFullCatalog(!isSkeletonUnsupported());
+    }
+
+    /**
+     * Загружает каталог полностью.
+     *
+     * @param skeleton true — запросить облегчённый каталог, false — полный
+     */
+    private void loadFullCatalog(boolean skeleton) {
+        Call<CatalogResponse> request = skeleton ? apiService.getCatalogSkeleton() : apiService.getCatalog();
+        request.enqueue(new Callback<CatalogResponse>() {
             @Override
             public void onResponse(@NonNull Call<CatalogResponse> call, @NonNull Response<CatalogResponse> response) {
-                progressBar.setVisibility(View.GONE);
-                swipeRefresh.setRefreshing(false);
-                if (response.isSuccessful() && response.body() != null) {
-                    catalogList.clear();
-                    recommendedProducts.clear();
-
-                    catalogList.addAll(response.body().getCatalog());
-
-                    List<Product> products = response.body().getProducts();
-                    if (products != null) {
-                        for (Product product : products) {
-                            Category productCategory = new Category();
-                            productCategory.setId(product.getId());
-                            productCategory.setName(product.getName());
-                            productCategory.setImageUrl(product.getImageUrl());
-                            productCategory.setDescription(product.getDescription());
-                            productCategory.setPrice(product.getPrice());
-                            recommendedProducts.add(productCategory);
+                TraceSections.begin("MainActivity.onCatalogResponse");
+                try {
+                    if (skeleton && !response.isSuccessful()) {
+                        AppLog.w(TAG, "Облегчённый каталог недоступен (код " + response.code() + "), загружаем полный");
+                        markSkeletonUnsupported();
+                        loadFullCatalog(false);
+                        return;
+                    }
+                    progressBar.setVisibility(View.GONE);
+                    swipeRefresh.setRefreshing(false);
+                    if (response.isSuccessful() && response.body() != null) {
+                        CatalogResponse body = response.body();
+                        catalogRepository.replace(body);
+                        CatalogSearch.getInstance().rebuild(MainActivity.this, catalogRepository);
+                        refreshAggregates();
+                        recordLaunchFreshness(FreshnessTracker.SOURCE_NETWORK, catalogRepository.getSyncedAt());
+
+                        String etag = response.headers().get("ETag");
+                        String lastModified = response.headers().get("Last-Modified");
+                        int generation = catalogRepository.getGeneration();
+                        AppExecutors.io().execute(() -> {
+                            catalogStore.save(body, etag, lastModified, skeleton);
+                            AppExecutors.main().execute(() -> catalogRepository.markPersisted(generation));
+                        });
+
+                        CatalogSnapshot snapshot = showSnapshot();
+                        AppLog.d(TAG, () -> "Размер каталога: " + snapshot.getCatalog().size()
+                                + (skeleton ? " (облегчённый)" : ""));
+                        MetricsRegistry.getInstance().gauge("catalog.root_categories").set(snapshot.getCatalog().size());
+                        AppLog.d(TAG, () -> "Размер списка рекомендуемых товаров: " + snapshot.getRecommended().size());
+                        if (AppLog.DEBUG) {
+                            for (Category product : snapshot.getRecommended()) {
+                                if (PRODUCT_LOG.sample()) {
+                                    PRODUCT_LOG.d("Товар: id=" + product.getId() + ", name=" + product.getName());
+                                }
+                            }
                         }
+
+                        categoryAdapter.notifyDataSetChanged();
+                        productAdapter.notifyDataSetChanged();
+                    } else {
+                        AppLog.e(TAG, "Ошибка ответа: " + response.code());
+                        Toast.makeText(MainActivity.this, "Ошибка загрузки данных", Toast.LENGTH_SHORT).show();
                     }
+                } finally {
+                    TraceSections.end();
+                }
+            }
 
-                    Log.d(TAG, "Размер каталога: " + catalogList.size());
-                    Log.d(TAG, "Размер списка рекомендуемых товаров: " + recommendedProducts.size());
-                    for (Category product : recommendedProducts) {
-                        Log.d(TAG, "Товар: id=" + product.getId() + ", name=" + product.getName());
+            @Override
+            public void onFailure(@NonNull Call<CatalogResponse> call, @NonNull Throwable t) {
+                if (skeleton) {
+                    AppLog.w(TAG, "Облегчённый каталог не загружен (" + t.getMessage() + "), загружаем полный");
+                    loadFullCatalog(false);
+                    return;
+                }
+                progressBar.setVisibility(View.GONE);
+                swipeRefresh.setRefreshing(false);
+                AppLog.e(TAG, "Сетевая ошибка: " + t.getMessage());
+                Toast.makeText(MainActivity.this, "Ошибка сети: " + t.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Проверяет, ответил ли текущий сервер за последние сутки, что облегчённый каталог не поддерживает.
+     * <p>
+     * Признак хранится в {@link SharedPreferences} отдельно для каждого адреса сервера и переживает
+     * перезапуск процесса.
+     * </p>
+     *
+     * @return true, если облегчённый каталог запрашивать не нужно
+     */
+    private boolean isSkeletonUnsupported() {
+        long markedAt = getSharedPreferences(SYNC_PREFS_NAME, MODE_PRIVATE)
+                .getLong(skeletonUnsupportedKey(), 0);
+        return markedAt > 0 && System.currentTimeMillis() - markedAt < SKELETON_RETRY_MS;
+    }
+
+    /**
+     * Запоминает, что текущий сервер не поддерживает облегчённый каталог.
+     */
+    private void markSkeletonUnsupported() {
+        getSharedPreferences(SYNC_PREFS_NAME, MODE_PRIVATE).edit()
+                .putLong(skeletonUnsupportedKey(), System.currentTimeMillis())
+                .apply();
+    }
+
+    private static String skeletonUnsupportedKey() {
+        return "skeleton_unsupported_" + ApiClient.getBaseUrl();
+    }
+
+    /**
+     * Запрашивает изменения каталога относительно текущей версии и применяет их на месте.
+     * <p>
+     * Адаптеры уведомляются только о затронутых позициях. Если сервер не поддерживает дельта-обновления
+     * или дельту нельзя применить к текущему дереву, каталог загружается полностью.
+     * </p>
+     */
+    private void loadCatalogDelta() {
+        apiService.getCatalogDelta(catalogRepository.getVersion()).enqueue(new Callback<CatalogDelta>() {
+            @Override
+            public void onResponse(@NonNull Call<CatalogDelta> call, @NonNull Response<CatalogDelta> response) {
+                TraceSections.begin("MainActivity.onCatalogDeltaResponse");
+                try {
+                    CatalogChangeSet changes = response.isSuccessful() && response.body() != null
+                            ? catalogRepository.applyDelta(response.body())
+                            : null;
+                    if (changes == null) {
+                        AppLog.w(TAG, "Дельта недоступна (код " + response.code() + "), загружаем каталог полностью");
+                        // Ошибка ответа означает, что эндпоинта нет (например, на Google Drive), а не
+                        // что дельту нельзя применить к текущему дереву: больше её не запрашиваем
+                        deltaUnsupported = !response.isSuccessful();
+                        loadFullCatalog();
+                        return;
                     }
 
-                    categoryAdapter.notifyDataSetChanged();
-                    productAdapter.notifyDataSetChanged();
-                } else {
-                    Log.e(TAG, "Ошибка ответа: " + response.code());
-                    Toast.makeText(MainActivity.this, "Ошибка загрузки данных", Toast.LENGTH_SHORT).show();
+                    progressBar.setVisibility(View.GONE);
+                    swipeRefresh.setRefreshing(false);
+                    showSnapshot();
+                    changes.dispatchCatalogUpdatesTo(new AdapterListUpdateCallback(categoryAdapter));
+                    changes.dispatchRecommendedUpdatesTo(new AdapterListUpdateCallback(productAdapter));
+                    if (!changes.isEmpty()) {
+                        CatalogSearch.getInstance().rebuild(MainActivity.this, catalogRepository);
+                        refreshAggregates();
+                    }
+                } finally {
+                    TraceSections.end();
                 }
             }
 
             @Override
-            public void onFailure(@NonNull Call<CatalogResponse> call, @NonNull Throwable t) {
+            public void onFailure(@NonNull Call<CatalogDelta> call, @NonNull Throwable t) {
                 progressBar.setVisibility(View.GONE);
                 swipeRefresh.setRefreshing(false);
-                Log.e(TAG, "Сетевая ошибка: " + t.getMessage());
+                AppLog.e(TAG, "Сетевая ошибка: " + t.getMessage());
                 Toast.makeText(MainActivity.this, "Ошибка сети: " + t.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
     }
 
+    /**
+     * Передаёт адаптерам списки текущей версии каталога.
+     * <p>
+     * Адаптеры держат неизменяемые списки снимка, поэтому публикация новой версии в другом потоке
+     * не меняет данные под уже идущей привязкой; новая версия появляется на экране только здесь,
+     * непосредственно перед уведомлением адаптеров об изменениях.
+     * </p>
+     *
+     * @return показанный снимок каталога
+     */
+    private CatalogSnapshot showSnapshot() {
+        CatalogSnapshot snapshot = catalogRepository.getSnapshot();
+        categoryAdapter.setItems(snapshot.getCatalog());
+        productAdapter.setItems(snapshot.getRecommended());
+        return snapshot;
+    }
+
     /**
      * Обрабатывает клики по категории или товару в RecyclerView.
      * <p>
@@ -255,27 +620,26 @@ public class MainActivity extends AppCompatActivity implements CategoryAdapter.O
      * </p>
      *
      * @param category выбранная категория или товар
+     * @param image    изображение строки для общего перехода на экран товара
      */
     @Override
-    public void onCategoryClick(Category category) {
+    public void onCategoryClick(Category category, ImageView image) {
         if (category == null) {
-            Log.w(TAG, "onCategoryClick: Категория равна null");
+            AppLog.w(TAG, "onCategoryClick: Категория равна null");
             return;
         }
 
         if (category.isProduct()) {
-            Intent intent = new Intent(this, ProductDetailActivity.class);
-            intent.putExtra("PRODUCT_ID", category.getId());
-            intent.putExtra("PRODUCT_NAME", category.getName());
-            intent.putExtra("PRODUCT_DESCRIPTION", category.getDescription());
-            intent.putExtra("PRODUCT_PRICE", category.getPrice() != null ? category.getPrice() : INVALID_PRICE);
-            startActivity(intent);
+            ProductDetailActivity.start(this, category, image);
         } else {
             Intent intent = new Intent(this, CategoryDetailActivity.class);
             intent.putExtra("CATEGORY_NAME", category.getName());
             intent.putExtra("CATEGORY_ID", category.getId());
             intent.putExtra("CATEGORY_DESCRIPTION", category.getDescription());
-            intent.putParcelableArrayListExtra("CATEGORY_ITEMS", new ArrayList<>(category.getItems()));
+            // Большие категории не передаются через Intent: экран загрузит их постранично
+            if (category.getItems().size() <= PagedCategoryList.PAGING_THRESHOLD) {
+                intent.putParcelableArrayListExtra("CATEGORY_ITEMS", new ArrayList<>(category.getItems()));
+            }
             startActivity(intent);
         }
     }
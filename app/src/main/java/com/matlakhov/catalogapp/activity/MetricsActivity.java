@@ -0,0 +1,137 @@
+package com.matlakhov.catalogapp.activity;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.material.appbar.MaterialToolbar;
+import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Отладочный экран метрик производительности.
+ * <p>
+ * Показывает текстовый отчёт {@link MetricsRegistry} и позволяет сохранить его в JSON
+ * в каталог {@code files/metrics} приложения, чтобы сравнивать отчёты разных сборок.
+ * Экран доступен из меню главного экрана только в отладочной сборке ({@link #isAvailable(Context)}).
+ * </p>
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "MetricsActivity";
+
+    /** Каталог отчётов внутри {@code files}. */
+    private static final String REPORTS_DIR = "metrics";
+
+    /** TextView с отчётом. */
+    private TextView reportTextView;
+
+    /**
+     * Проверяет, доступен ли экран метрик в текущей сборке.
+     *
+     * @param context контекст приложения
+     * @return true для отладочной сборки
+     */
+    public static boolean isAvailable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        MaterialToolbar toolbar = findViewById(R.id.toolbar_metrics);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("Метрики");
+        toolbar.setBackgroundColor(ContextCompat.getColor(this, R.color.purple_main));
+
+        reportTextView = findViewById(R.id.metrics_report);
+        MetricsRegistry.getInstance().setBuildVersion(buildVersion());
+        showReport();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int itemId = item.getItemId();
+        if (itemId == R.id.action_metrics_refresh) {
+            showReport();
+            return true;
+        } else if (itemId == R.id.action_metrics_export) {
+            exportReport();
+            return true;
+        } else if (itemId == R.id.action_metrics_reset) {
+            MetricsRegistry.getInstance().reset();
+            showReport();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Показывает текущий отчёт метрик.
+     */
+    private void showReport() {
+        reportTextView.setText(MetricsRegistry.getInstance().toText());
+    }
+
+    /**
+     * Сохраняет отчёт в JSON в фоновом потоке и показывает путь к файлу.
+     */
+    private void exportReport() {
+        File directory = new File(getFilesDir(), REPORTS_DIR);
+        AppExecutors.io().execute(() -> {
+            String message;
+            try {
+                message = "Отчёт сохранён: " + MetricsRegistry.getInstance().writeReport(directory);
+            } catch (IOException e) {
+                AppLog.e(TAG, "Не удалось сохранить отчёт: " + e.getMessage());
+                message = "Ошибка: отчёт не сохранён";
+            }
+            String result = message;
+            AppExecutors.main().execute(() -> Toast.makeText(this, result, Toast.LENGTH_LONG).show());
+        });
+    }
+
+    /**
+     * Возвращает версию сборки для отчёта.
+     *
+     * @return имя и код версии, например {@code "1.0 (1)"}
+     */
+    private String buildVersion() {
+        try {
+            PackageInfo info = getPackageManager().getPackageInfo(getPackageName(), 0);
+            return info.versionName + " (" + info.versionCode + ")";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        finish();
+        return true;
+    }
+}
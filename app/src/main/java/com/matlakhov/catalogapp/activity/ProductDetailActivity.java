@@ -1,27 +1,55 @@
 package com.matlakhov.catalogapp.activity;
 
+import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.ActivityOptionsCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.view.ViewCompat;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.adapters.ImageResources;
+import com.matlakhov.catalogapp.data.CatalogRepository;
+import com.matlakhov.catalogapp.data.NodeDetailsLoader;
+import com.matlakhov.catalogapp.metrics.FrameMetricsTracker;
+import com.matlakhov.catalogapp.metrics.ImageLoadMetrics;
+import com.matlakhov.catalogapp.metrics.StartupMetrics;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Активность для отображения деталей товара.
  * <p>
- * Эта активность получает данные товара (ID, название, описание, цену) через Intent,
- * отображает их в пользовательском интерфейсе и загружает изображение товара с помощью Glide.
+ * Эта активность получает ID товара через Intent и берёт название, описание и цену из общего
+ * каталога ({@link CatalogRepository}), поэтому данные видны уже в первом кадре; значения из Intent
+ * используются, если товара нет в памяти. Изображение загружается с помощью Glide: сначала
+ * показывается миниатюра из списка, уже лежащая в кэше, затем полноразмерное изображение.
+ * Экран открывается через {@link #start(Context, Category, ImageView)} с общим переходом изображения.
+ * Если товар пришёл в облегчённом каталоге без описания, описание запрашивается через
+ * {@link NodeDetailsLoader} и показывается после получения.
  * </p>
  */
-public class ProductDetailActivity extends AppCompatActivity {
+public class ProductDetailActivity extends AppCompatActivity implements NodeDetailsLoader.OnDetailsLoadedListener {
 
     /** Тег для целей логирования. */
     private static final String TAG = "ProductDetailActivity";
@@ -38,6 +66,10 @@ public class ProductDetailActivity extends AppCompatActivity {
     private static final String KEY_PRODUCT_DESCRIPTION = "product_description";
     private static final String KEY_PRODUCT_PRICE = "product_price";
 
+    /** Ключи Intent с размером миниатюры в строке списка. */
+    private static final String EXTRA_THUMBNAIL_WIDTH = "PRODUCT_THUMBNAIL_WIDTH";
+    private static final String EXTRA_THUMBNAIL_HEIGHT = "PRODUCT_THUMBNAIL_HEIGHT";
+
     /** ImageView для отображения изображения товара. */
     private ImageView imageView;
 
@@ -62,9 +94,56 @@ public class ProductDetailActivity extends AppCompatActivity {
     /** Цена товара. */
     private double productPrice;
 
+    /** Узел товара, описание которого запрошено, или null. */
+    private Category pendingDetails;
+
+    /** Размер миниатюры в строке списка, или 0, если экран открыт не из списка. */
+    private int thumbnailWidth;
+    private int thumbnailHeight;
+
+    /**
+     * Открывает экран товара.
+     * <p>
+     * Если передано изображение строки списка, экран открывается с общим переходом этого изображения,
+     * а его размер передаётся в Intent, чтобы экран нашёл уже декодированную миниатюру в кэше Glide.
+     * </p>
+     *
+     * @param context   контекст, из которого открывается экран
+     * @param product   товар
+     * @param thumbnail изображение товара в строке списка, или null
+     */
+    public static void start(Context context, Category product, @Nullable ImageView thumbnail) {
+        Intent intent = new Intent(context, ProductDetailActivity.class);
+        intent.putExtra("PRODUCT_ID", product.getId());
+        intent.putExtra("PRODUCT_NAME", product.getName());
+        intent.putExtra("PRODUCT_DESCRIPTION", product.getDescription());
+        intent.putExtra("PRODUCT_PRICE", product.getPrice() != null ? product.getPrice() : INVALID_PRICE);
+        if (thumbnail == null || thumbnail.getWidth() == 0 || !(context instanceof Activity)) {
+            context.startActivity(intent);
+            return;
+        }
+        intent.putExtra(EXTRA_THUMBNAIL_WIDTH, thumbnail.getWidth());
+        intent.putExtra(EXTRA_THUMBNAIL_HEIGHT, thumbnail.getHeight());
+        ActivityOptionsCompat options = ActivityOptionsCompat.makeSceneTransitionAnimation((Activity) context,
+                thumbnail, transitionName(product.getId()));
+        ActivityCompat.startActivity((Activity) context, intent, options.toBundle());
+    }
+
+    /**
+     * Возвращает имя общего перехода для изображения товара.
+     *
+     * @param productId ID товара
+     * @return имя перехода, одинаковое в строке списка и на экране товара
+     */
+    public static String transitionName(int productId) {
+        return "product_image_" + productId;
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.track(this);
+        FrameMetricsTracker.track(this);
         setContentView(R.layout.activity_product_detail);
 
         // Восстановление состояния, если оно существует
@@ -80,11 +159,21 @@ public class ProductDetailActivity extends AppCompatActivity {
             productName = intent.getStringExtra("PRODUCT_NAME");
             productDescription = intent.getStringExtra("PRODUCT_DESCRIPTION");
             productPrice = intent.getDoubleExtra("PRODUCT_PRICE", INVALID_PRICE);
+
+            // Данные из общего каталога актуальнее переданных в Intent
+            Category live = CatalogRepository.getInstance().findById(productId);
+            if (live != null && live.getName() != null) {
+                productName = live.getName();
+                productDescription = live.getDescription();
+                productPrice = live.getPrice() != null ? live.getPrice() : INVALID_PRICE;
+            }
         }
+        thumbnailWidth = getIntent().getIntExtra(EXTRA_THUMBNAIL_WIDTH, 0);
+        thumbnailHeight = getIntent().getIntExtra(EXTRA_THUMBNAIL_HEIGHT, 0);
 
         // Проверка обязательных данных товара
         if (productId == INVALID_ID || productName == null) {
-            Log.e(TAG, "Недействительные данные товара: id=" + productId + ", name=" + productName);
+            AppLog.e(TAG, "Недействительные данные товара: id=" + productId + ", name=" + productName);
             Toast.makeText(this, "Ошибка: данные товара не переданы", Toast.LENGTH_SHORT).show();
             finish();
             return;
@@ -106,7 +195,7 @@ public class ProductDetailActivity extends AppCompatActivity {
 
         // Проверка на null для компонентов интерфейса
         if (imageView == null || nameTextView == null || priceTextView == null || descriptionTextView == null) {
-            Log.e(TAG, "Один или несколько компонентов не найдены: " +
+            AppLog.e(TAG, "Один или несколько компонентов не найдены: " +
                     "imageView=" + imageView + ", nameTextView=" + nameTextView +
                     ", priceTextView=" + priceTextView + ", descriptionTextView=" + descriptionTextView);
             Toast.makeText(this, "Ошибка: элементы интерфейса не найдены", Toast.LENGTH_SHORT).show();
@@ -115,14 +204,60 @@ public class ProductDetailActivity extends AppCompatActivity {
         }
 
         // Логирование данных для отладки
-        Log.d(TAG, "Товар: id=" + productId + ", name=" + productName +
+        AppLog.d(TAG, () -> "Товар: id=" + productId + ", name=" + productName +
                 ", price=" + productPrice + ", description=" + productDescription);
 
+        // Переход ждёт, пока в ImageView не появится миниатюра или полноразмерное изображение
+        ViewCompat.setTransitionName(imageView, transitionName(productId));
+        if (thumbnailWidth > 0) {
+            supportPostponeEnterTransition();
+        }
+
         // Отображение данных
         displayProductDetails();
 
         // Загрузка изображения
         loadProductImage();
+
+        // Описание товара из облегчённого каталога запрашивается отдельно
+        if (productDescription == null) {
+            Category node = CatalogRepository.getInstance().findById(productId);
+            if (node == null) {
+                node = new Category();
+                node.setId(productId);
+            }
+            if (node.needsDetails()) {
+                pendingDetails = node;
+                NodeDetailsLoader.getInstance().addOnDetailsLoadedListener(this);
+                NodeDetailsLoader.getInstance().load(Collections.singletonList(node));
+            } else {
+                productDescription = node.getDescription();
+                displayProductDetails();
+            }
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        NodeDetailsLoader.getInstance().removeOnDetailsLoadedListener(this);
+    }
+
+    /**
+     * Показывает описание товара после его получения.
+     *
+     * @param ids идентификаторы узлов, получивших описание и изображение
+     */
+    @Override
+    public void onDetailsLoaded(Set<Integer> ids) {
+        if (pendingDetails != null && ids.contains(productId)) {
+            // Узел каталога заменён новой версией с описанием, временный узел получил его на месте
+            Category live = CatalogRepository.getInstance().findById(productId);
+            productDescription = (live != null ? live : pendingDetails).getDescription();
+            pendingDetails = null;
+            NodeDetailsLoader.getInstance().removeOnDetailsLoadedListener(this);
+            displayProductDetails();
+        }
     }
 
     @Override
@@ -152,7 +287,7 @@ public class ProductDetailActivity extends AppCompatActivity {
     private boolean configureToolbar() {
         MaterialToolbar toolbar = findViewById(R.id.toolbar_detail);
         if (toolbar == null) {
-            Log.e(TAG, "Тулбар не найден");
+            AppLog.e(TAG, "Тулбар не найден");
             Toast.makeText(this, "Ошибка: тулбар не найден", Toast.LENGTH_SHORT).show();
             finish();
             return false;
@@ -183,50 +318,48 @@ public class ProductDetailActivity extends AppCompatActivity {
     /**
      * Загружает изображение товара с помощью Glide.
      * <p>
-     * Выбирает ресурс изображения на основе ID товара и загружает его в ImageView,
-     * используя Glide с placeholder и error изображениями.
+     * Если экран открыт из списка, сначала из кэша памяти Glide берётся уже декодированная миниатюра
+     * строки (запрос с теми же размером и преобразованием, что и в списке), а полноразмерное изображение
+     * подменяет её после декодирования. Отложенный общий переход запускается, как только
+     * в ImageView появилось первое изображение.
      * </p>
      */
     private void loadProductImage() {
-        int imageResource;
-        switch (productId) {
-            case 1001:
-                imageResource = R.drawable.mirror;
-                break;
-            case 1002:
-                imageResource = R.drawable.probe;
-                break;
-            case 1003:
-                imageResource = R.drawable.round_bur;
-                break;
-            case 2001:
-                imageResource = R.drawable.composite;
-                break;
-            case 2002:
-                imageResource = R.drawable.glass_ionomer;
-                break;
-            case 3001:
-                imageResource = R.drawable.dental_unit;
-                break;
-            case 3002:
-                imageResource = R.drawable.visiograph;
-                break;
-            case 4001:
-                imageResource = R.drawable.handpiece;
-                break;
-            case 4002:
-                imageResource = R.drawable.scaler;
-                break;
-            default:
-                imageResource = R.drawable.error_image;
-                break;
-        }
-
-        Glide.with(this)
+        int imageResource = ImageResources.forId(productId);
+        RequestListener<Drawable> startTransition = new RequestListener<Drawable>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<Drawable> target,
+                                        boolean isFirstResource) {
+                supportStartPostponedEnterTransition();
+                return false;
+            }
+
+            @Override
+            public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model, Target<Drawable> target,
+                                           @NonNull DataSource dataSource, boolean isFirstResource) {
+                supportStartPostponedEnterTransition();
+                return false;
+            }
+        };
+
+        RequestBuilder<Drawable> request = Glide.with(this)
                 .load(imageResource)
-                .placeholder(R.drawable.placeholder_image)
                 .error(R.drawable.error_image)
-                .into(imageView);
+                .dontAnimate()
+                .listener(startTransition)
+                .addListener(ImageLoadMetrics.start("product"));
+        if (thumbnailWidth > 0 && thumbnailHeight > 0) {
+            request = request.thumbnail(Glide.with(this)
+                    .load(imageResource)
+                    .override(thumbnailWidth, thumbnailHeight)
+                    .optionalCenterCrop()
+                    .onlyRetrieveFromCache(true)
+                    .dontAnimate()
+                    .listener(startTransition));
+        } else {
+            request = request.placeholder(R.drawable.placeholder_image);
+        }
+        request.into(imageView);
     }
 
     /**
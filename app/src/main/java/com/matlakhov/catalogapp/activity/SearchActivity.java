@@ -0,0 +1,317 @@
+package com.matlakhov.catalogapp.activity;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.ImageView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.appbar.MaterialToolbar;
+import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.adapters.CategoryAdapter;
+import com.matlakhov.catalogapp.data.CatalogRepository;
+import com.matlakhov.catalogapp.data.PagedCategoryList;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.StartupMetrics;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.search.CatalogSearch;
+import com.matlakhov.catalogapp.search.CatalogSearcher;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Активность поиска по каталогу.
+ * <p>
+ * Запрос выполняется через {@link CatalogSearch} после паузы в наборе текста
+ * ({@link #DEBOUNCE_MS}) в фоновом потоке. Каждый запрос получает номер поколения:
+ * результаты запроса, после которого уже был введён новый текст, отбрасываются.
+ * Результаты загружаются страницами по {@link #PAGE_SIZE} при прокрутке к концу списка.
+ * </p>
+ *
+ * @see CatalogSearcher
+ */
+public class SearchActivity extends AppCompatActivity implements CategoryAdapter.OnCategoryClickListener {
+
+    /**
+     * Тег для целей логирования.
+     */
+    private static final String TAG = "SearchActivity";
+
+    /**
+     * Пауза после последнего изменения текста перед выполнением запроса (мс).
+     */
+    private static final long DEBOUNCE_MS = 150;
+
+    /**
+     * Количество результатов на странице.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Количество оставшихся строк до конца списка, при котором загружается следующая страница.
+     */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /**
+     * Результаты последнего актуального запроса.
+     */
+    private final List<Category> results = new ArrayList<>();
+
+    /**
+     * Обработчик главного потока для отложенного запуска запросов.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Отложенный запрос с текущим текстом поля ввода.
+     */
+    private final Runnable pendingQuery = this::runQuery;
+
+    /**
+     * Номер поколения последнего запроса; результаты с другим номером устарели.
+     */
+    private int queryGeneration;
+
+    /**
+     * Текст текущего запроса.
+     */
+    private String currentQuery = "";
+
+    /**
+     * Признак того, что страница результатов загружается.
+     */
+    private boolean loadingPage;
+
+    /**
+     * Признак того, что у текущего запроса есть следующие страницы.
+     */
+    private boolean hasMorePages;
+
+    /**
+     * Поле ввода запроса.
+     */
+    private EditText searchInput;
+
+    /**
+     * Сообщение об отсутствии результатов.
+     */
+    private TextView emptyView;
+
+    /**
+     * Адаптер для отображения результатов.
+     */
+    private CategoryAdapter resultsAdapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        StartupMetrics.track(this);
+        setContentView(R.layout.activity_search);
+
+        configureStatusBar();
+
+        if (!configureToolbar()) {
+            return;
+        }
+
+        searchInput = findViewById(R.id.search_input);
+        emptyView = findViewById(R.id.search_empty);
+        RecyclerView recyclerView = findViewById(R.id.recycler_search);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        resultsAdapter = new CategoryAdapter(this, results, this);
+        recyclerView.setAdapter(resultsAdapter);
+        CatalogRepository repository = CatalogRepository.getInstance();
+        repository.refreshAggregates(() -> {
+            if (!isDestroyed()) {
+                resultsAdapter.setAggregates(repository.getAggregates());
+            }
+        });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (hasMorePages && !loadingPage
+                        && layoutManager.findLastVisibleItemPosition() >= results.size() - PREFETCH_DISTANCE) {
+                    loadPage(currentQuery, results.size(), queryGeneration);
+                }
+            }
+        });
+
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                // Новый текст делает устаревшими и ожидающий, и уже выполняющийся запрос
+                queryGeneration++;
+                loadingPage = false;
+                handler.removeCallbacks(pendingQuery);
+                handler.postDelayed(pendingQuery, DEBOUNCE_MS);
+            }
+        });
+        searchInput.requestFocus();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(pendingQuery);
+        queryGeneration++;
+    }
+
+    /**
+     * Выполняет запрос с текущим текстом поля ввода.
+     */
+    private void runQuery() {
+        currentQuery = searchInput.getText().toString();
+        results.clear();
+        resultsAdapter.setItems(Collections.emptyList());
+        resultsAdapter.notifyDataSetChanged();
+        hasMorePages = false;
+        loadPage(currentQuery, 0, queryGeneration);
+    }
+
+    /**
+     * Загружает страницу результатов запроса в фоновом потоке.
+     *
+     * @param query      запрос
+     * @param offset     количество уже показанных результатов
+     * @param generation номер поколения запроса
+     */
+    private void loadPage(String query, int offset, int generation) {
+        loadingPage = true;
+        CatalogSearcher searcher = CatalogSearch.getInstance().getSearcher();
+        AppExecutors.search().execute(() -> {
+            long start = System.nanoTime();
+            List<Category> found = searcher.search(query, offset, PAGE_SIZE);
+            long elapsedUs = (System.nanoTime() - start) / 1_000;
+            MetricsRegistry.getInstance().histogram("search.query").recordMicros(elapsedUs);
+            AppExecutors.main().execute(() -> {
+                if (generation != queryGeneration || isDestroyed()) {
+                    return;
+                }
+                AppLog.d(TAG, () -> "Запрос \"" + query + "\" (с " + offset + "): найдено " + found.size()
+                        + " за " + elapsedUs + " мкс");
+                showPage(query, found);
+            });
+        });
+    }
+
+    /**
+     * Добавляет страницу результатов актуального запроса.
+     * <p>
+     * Найденные узлы заменяются узлами из {@link CatalogRepository}, если они там есть,
+     * чтобы переходы открывали живые данные каталога.
+     * </p>
+     *
+     * @param query запрос
+     * @param found найденные категории и товары
+     */
+    private void showPage(String query, List<Category> found) {
+        loadingPage = false;
+        hasMorePages = found.size() == PAGE_SIZE;
+        CatalogRepository repository = CatalogRepository.getInstance();
+        int start = results.size();
+        for (Category item : found) {
+            Category live = repository.findById(item.getId());
+            results.add(live != null ? live : item);
+        }
+        // Адаптер готовит строки в фоне, поэтому получает копию, которая больше не меняется
+        resultsAdapter.setItems(new ArrayList<>(results));
+        resultsAdapter.notifyItemRangeInserted(start, found.size());
+        emptyView.setVisibility(results.isEmpty() && !query.trim().isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Настраивает внешний вид статус-бара, устанавливая его цвет и флаги.
+     */
+    private void configureStatusBar() {
+        Window window = getWindow();
+        window.addFlags(WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS);
+        window.clearFlags(WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS);
+        window.setStatusBarColor(ContextCompat.getColor(this, R.color.purple_dark));
+    }
+
+    /**
+     * Настраивает тулбар с заголовком, кнопкой возврата и стилями.
+     *
+     * @return true, если тулбар успешно настроен, false в противном случае
+     */
+    private boolean configureToolbar() {
+        MaterialToolbar toolbar = findViewById(R.id.toolbar_search);
+        if (toolbar == null) {
+            AppLog.e(TAG, "Тулбар не найден");
+            Toast.makeText(this, "Ошибка: тулбар не найден", Toast.LENGTH_SHORT).show();
+            finish();
+            return false;
+        }
+
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("Поиск");
+        toolbar.setTitleTextColor(ContextCompat.getColor(this, android.R.color.white));
+        toolbar.setBackgroundColor(ContextCompat.getColor(this, R.color.purple_main));
+        return true;
+    }
+
+    /**
+     * Обрабатывает клики по найденной категории или товару.
+     * <p>
+     * Товар открывается в {@link ProductDetailActivity}, категория — в {@link CategoryDetailActivity}.
+     * </p>
+     *
+     * @param category выбранная категория или товар
+     * @param image    изображение строки для общего перехода на экран товара
+     */
+    @Override
+    public void onCategoryClick(Category category, ImageView image) {
+        if (category == null) {
+            AppLog.w(TAG, "onCategoryClick: Категория равна null");
+            return;
+        }
+
+        if (category.isProduct()) {
+            ProductDetailActivity.start(this, category, image);
+        } else {
+            Intent intent = new Intent(this, CategoryDetailActivity.class);
+            intent.putExtra("CATEGORY_NAME", category.getName());
+            intent.putExtra("CATEGORY_ID", category.getId());
+            intent.putExtra("CATEGORY_DESCRIPTION", category.getDescription());
+            // Большие категории не передаются через Intent: экран загрузит их постранично
+            if (category.getItems().size() <= PagedCategoryList.PAGING_THRESHOLD) {
+                intent.putParcelableArrayListExtra("CATEGORY_ITEMS", new ArrayList<>(category.getItems()));
+            }
+            startActivity(intent);
+        }
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        finish();
+        return true;
+    }
+}
@@ -1,21 +1,32 @@
 package com.matlakhov.catalogapp.adapters;
 
 import android.content.Context;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.activity.ProductDetailActivity;
+import com.matlakhov.catalogapp.data.CategoryAggregates;
+import com.matlakhov.catalogapp.data.NavigationPrefetcher;
+import com.matlakhov.catalogapp.data.NodeDetailsLoader;
+import com.matlakhov.catalogapp.data.PagedCategoryList;
+import com.matlakhov.catalogapp.metrics.ImageLoadMetrics;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.TraceSections;
 import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.AppLog;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * Адаптер для RecyclerView, отображающий список категорий или товаров.
@@ -24,6 +35,28 @@ import java.util.Map;
  * Для каждого типа используется соответствующий layout ({@code item_category} или {@code item_product}).
  * Адаптер также обрабатывает клики по элементам через интерфейс {@link OnCategoryClickListener}.
  * </p>
+ * <p>
+ * Строки категорий показывают количество товаров и диапазон цен из заранее вычисленных
+ * {@link CategoryAggregates}, поэтому привязка строки не обходит поддерево категории.
+ * </p>
+ * <p>
+ * Список может содержать null на месте ещё не загруженных элементов (см. {@link PagedCategoryList}):
+ * для них показывается строка-заглушка.
+ * </p>
+ * <p>
+ * Для строк категорий облегчённого каталога без описания описание запрашивается при привязке
+ * через {@link NodeDetailsLoader}; запросы строк, привязанных за один кадр, объединяются в один.
+ * Строки товаров описание не показывают, поэтому для них ничего не запрашивается.
+ * </p>
+ * <p>
+ * Строки категорий сообщают {@link NavigationPrefetcher} о появлении на экране и уходе с него,
+ * чтобы экран категории, на которой задержался взгляд, был подготовлен до нажатия.
+ * </p>
+ * <p>
+ * Тексты строк (название и обрезанное описание) и их раскладка готовятся в фоне при установке списка
+ * ({@link RowModels}), поэтому привязка применяет уже готовый текст. Для экрана, который ещё не открыт,
+ * модели строк готовятся заранее через {@link #prepareRows(List)}.
+ * </p>
  */
 public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.CategoryViewHolder> {
 
@@ -32,10 +65,20 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
      */
     private static final int MAX_DESCRIPTION_LENGTH = 50;
 
+    /**
+     * Payload для {@link #notifyItemChanged(int, Object)}: изменились только цена или наличие товара.
+     */
+    public static final Object PAYLOAD_PRICE = "PAYLOAD_PRICE";
+
+    /**
+     * Payload для {@link #notifyItemRangeChanged(int, int, Object)}: изменились только агрегаты категорий.
+     */
+    public static final Object PAYLOAD_AGGREGATES = "PAYLOAD_AGGREGATES";
+
     /**
      * Список категорий или товаров для отображения.
      */
-    private final List<Category> categories;
+    private List<Category> categories;
 
     /**
      * Контекст приложения для доступа к ресурсам.
@@ -47,6 +90,37 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
      */
     private final OnCategoryClickListener listener;
 
+    /**
+     * Агрегаты категорий для плашек с количеством товаров и диапазоном цен.
+     */
+    private CategoryAggregates aggregates = CategoryAggregates.EMPTY;
+
+    /**
+     * Параметры раскладки текста строк, или null до создания первой строки соответствующего типа.
+     */
+    private PrecomputedTextCompat.Params categoryNameParams;
+    private PrecomputedTextCompat.Params categoryDescriptionParams;
+    private PrecomputedTextCompat.Params productNameParams;
+
+    /**
+     * Параметры раскладки строк, известные по последнему созданному адаптеру; с ними заранее готовятся
+     * строки ещё не открытых экранов ({@link #prepareRows(List)}).
+     */
+    private static volatile PrecomputedTextCompat.Params sharedCategoryNameParams;
+    private static volatile PrecomputedTextCompat.Params sharedCategoryDescriptionParams;
+    private static volatile PrecomputedTextCompat.Params sharedProductNameParams;
+
+    /**
+     * Проверены ли параметры раскладки первой созданной строки соответствующего типа.
+     */
+    private boolean categoryParamsChecked;
+    private boolean productParamsChecked;
+
+    /**
+     * Модели строк текущего списка.
+     */
+    private final RowModels rowModels = new RowModels(this::createRow);
+
     /**
      * Интерфейс для обработки кликов по элементам списка.
      */
@@ -55,8 +129,9 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
          * Вызывается при клике по категории или товару.
          *
          * @param category выбранная категория или товар
+         * @param image    изображение строки для общего перехода на экран товара
          */
-        void onCategoryClick(Category category);
+        void onCategoryClick(Category category, ImageView image);
     }
 
     /**
@@ -70,25 +145,157 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
         this.context = context;
         this.categories = categories != null ? categories : new ArrayList<>();
         this.listener = listener;
+        // Строки, подготовленные заранее, используют параметры прежних адаптеров
+        categoryNameParams = sharedCategoryNameParams;
+        categoryDescriptionParams = sharedCategoryDescriptionParams;
+        productNameParams = sharedProductNameParams;
+        rowModels.setItems(this.categories);
     }
 
     @Override
     public int getItemViewType(int position) {
-        return categories.get(position).isProduct() ? R.layout.item_product : R.layout.item_category;
+        Category category = categories.get(position);
+        return category != null && category.isProduct() ? R.layout.item_product : R.layout.item_category;
     }
 
     @NonNull
     @Override
     public CategoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(context).inflate(viewType, parent, false);
-        return new CategoryViewHolder(view, viewType);
+        TraceSections.begin("CategoryAdapter.onCreateViewHolder");
+        try {
+            View view = LayoutInflater.from(context).inflate(viewType, parent, false);
+            CategoryViewHolder holder = new CategoryViewHolder(view, viewType);
+            if (holder.nameTextView != null) {
+                // Параметры раскладки одинаковы для всех строк типа: если они отличаются от известных
+                // (например, после смены размера шрифта), модели строк готовятся заново
+                if (viewType == R.layout.item_product && !productParamsChecked) {
+                    productParamsChecked = true;
+                    PrecomputedTextCompat.Params name = RowText.paramsOf(holder.nameTextView);
+                    if (!name.equals(productNameParams)) {
+                        productNameParams = name;
+                        sharedProductNameParams = name;
+                        rowModels.invalidate();
+                    }
+                } else if (viewType == R.layout.item_category && !categoryParamsChecked) {
+                    categoryParamsChecked = true;
+                    PrecomputedTextCompat.Params name = RowText.paramsOf(holder.nameTextView);
+                    PrecomputedTextCompat.Params description = RowText.paramsOf(holder.descriptionTextView);
+                    if (!name.equals(categoryNameParams) || !description.equals(categoryDescriptionParams)) {
+                        categoryNameParams = name;
+                        categoryDescriptionParams = description;
+                        sharedCategoryNameParams = name;
+                        sharedCategoryDescriptionParams = description;
+                        rowModels.invalidate();
+                    }
+                }
+            }
+            return holder;
+        } finally {
+            TraceSections.end();
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position) {
         if (position >= 0 && position < categories.size()) {
+            TraceSections.begin("CategoryAdapter.onBindViewHolder");
+            long start = System.nanoTime();
+            Category category = categories.get(position);
+            holder.bind(category, category != null ? rowModels.get(position, category) : null);
+            MetricsRegistry.getInstance().recordSince(
+                    holder.viewType == R.layout.item_product ? "bind.product_row" : "bind.category_row", start);
+            TraceSections.end();
+        }
+    }
+
+    /**
+     * Создаёт модель строки: название, обрезанное описание категории и их раскладку.
+     *
+     * @param item категория или товар
+     * @return модель строки
+     */
+    private RowModels.Row createRow(Category item) {
+        return createRow(item, categoryNameParams, categoryDescriptionParams, productNameParams);
+    }
+
+    private static RowModels.Row createRow(Category item, PrecomputedTextCompat.Params categoryName,
+                                           PrecomputedTextCompat.Params categoryDescription,
+                                           PrecomputedTextCompat.Params productName) {
+        String name = item.getName() != null ? item.getName() : "";
+        if (item.isProduct()) {
+            return new RowModels.Row(item, RowText.prepare(name, productName), null);
+        }
+        return new RowModels.Row(item, RowText.prepare(name, categoryName),
+                RowText.prepare(shortDescription(item), categoryDescription));
+    }
+
+    /**
+     * Заранее готовит модели строк экрана, который ещё не открыт, с параметрами раскладки уже
+     * показанных строк. Адаптер, созданный для этих элементов, забирает готовые модели.
+     *
+     * @param items категории или товары будущего экрана
+     */
+    @WorkerThread
+    public static void prepareRows(List<Category> items) {
+        if (sharedCategoryNameParams == null && sharedProductNameParams == null) {
+            return;
+        }
+        for (Category item : items) {
+            if (item != null) {
+                RowModels.offer(createRow(item, sharedCategoryNameParams, sharedCategoryDescriptionParams,
+                        sharedProductNameParams));
+            }
+        }
+    }
+
+    /**
+     * Возвращает описание категории, обрезанное до {@link #MAX_DESCRIPTION_LENGTH} символов.
+     * <p>
+     * Описание декодируется из компактного представления, поэтому метод вызывается только при создании
+     * модели строки, а результат хранится в ней.
+     * </p>
+     *
+     * @param category категория
+     * @return описание для строки, или пустая строка, если описания нет
+     */
+    private static String shortDescription(Category category) {
+        String description = category.getDescription();
+        if (description == null) {
+            return "";
+        }
+        return description.length() > MAX_DESCRIPTION_LENGTH
+                ? description.substring(0, MAX_DESCRIPTION_LENGTH) + "..." : description;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && isPartial(payloads) && position >= 0 && position < categories.size()) {
             Category category = categories.get(position);
-            holder.bind(category);
+            if (payloads.contains(PAYLOAD_PRICE)) {
+                holder.bindPrice(category);
+            }
+            if (payloads.contains(PAYLOAD_AGGREGATES)) {
+                holder.bindAggregates(category);
+            }
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull CategoryViewHolder holder) {
+        super.onViewAttachedToWindow(holder);
+        if (holder.viewType == R.layout.item_category) {
+            NavigationPrefetcher.getInstance().onRowShown(context, holder.boundCategory);
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull CategoryViewHolder holder) {
+        super.onViewDetachedFromWindow(holder);
+        if (holder.viewType == R.layout.item_category) {
+            // Позиция строки к отсоединению могла измениться, поэтому отменяется отсчёт привязанной категории
+            NavigationPrefetcher.getInstance().onRowHidden(holder.boundCategory);
         }
     }
 
@@ -97,6 +304,110 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
         return categories != null ? categories.size() : 0;
     }
 
+    /**
+     * Заменяет отображаемый список, например при публикации новой версии каталога.
+     * <p>
+     * Сам адаптер не уведомляется: вызывающий код сразу после замены сообщает об изменённых позициях
+     * или вызывает {@link #notifyDataSetChanged()}.
+     * </p>
+     *
+     * @param categories новый список категорий или товаров
+     */
+    public void setItems(List<Category> categories) {
+        this.categories = categories != null ? categories : new ArrayList<>();
+        rowModels.setItems(this.categories);
+    }
+
+    /**
+     * Готовит модели строк загруженной страницы постраничного списка и перепривязывает её строки.
+     *
+     * @param start позиция первого элемента страницы
+     * @param count количество элементов страницы
+     */
+    public void notifyPageLoaded(int start, int count) {
+        rowModels.prepare(start, count);
+        notifyItemRangeChanged(start, count);
+    }
+
+    /**
+     * Уведомляет адаптер об изменении цен и наличия товаров.
+     * <p>
+     * Для каждой позиции с товаром из {@code ids} вызывается {@link #notifyItemChanged(int, Object)}
+     * с {@link #PAYLOAD_PRICE}, поэтому перепривязывается только текст цены.
+     * </p>
+     *
+     * @param ids идентификаторы изменённых товаров
+     */
+    public void notifyPricesChanged(Set<Integer> ids) {
+        notifyItemsChanged(ids, PAYLOAD_PRICE);
+    }
+
+    /**
+     * Уведомляет адаптер о том, что у узлов появились описание и изображение.
+     *
+     * @param ids идентификаторы узлов, получивших описание и изображение
+     */
+    public void notifyDetailsChanged(Set<Integer> ids) {
+        notifyItemsChanged(ids, null);
+    }
+
+    /**
+     * Возвращает элемент по позиции.
+     *
+     * @param position позиция
+     * @return элемент, или null, если позиция вне списка или элемент ещё не загружен
+     */
+    public Category getItem(int position) {
+        return position >= 0 && position < categories.size() ? categories.get(position) : null;
+    }
+
+    private void notifyItemsChanged(Set<Integer> ids, Object payload) {
+        if (categories instanceof PagedCategoryList) {
+            // Обходим только загруженные страницы, чтобы не запускать загрузку остальных
+            PagedCategoryList paged = (PagedCategoryList) categories;
+            for (Integer id : ids) {
+                int position = paged.indexOfLoaded(id);
+                if (position >= 0) {
+                    changed(position, payload);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < categories.size(); i++) {
+            Category item = categories.get(i);
+            if (item != null && ids.contains(item.getId())) {
+                changed(i, payload);
+            }
+        }
+    }
+
+    private void changed(int position, Object payload) {
+        if (payload == null) {
+            // Узел страницы мог получить описание на месте: модель строки с прежним текстом не подходит
+            rowModels.remove(position);
+        }
+        notifyItemChanged(position, payload);
+    }
+
+    /**
+     * Устанавливает агрегаты категорий и перепривязывает только плашки строк.
+     *
+     * @param aggregates агрегаты категорий
+     */
+    public void setAggregates(CategoryAggregates aggregates) {
+        this.aggregates = aggregates != null ? aggregates : CategoryAggregates.EMPTY;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_AGGREGATES);
+    }
+
+    private static boolean isPartial(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_PRICE && payload != PAYLOAD_AGGREGATES) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * ViewHolder для отображения элемента категории или товара.
      * <p>
@@ -108,8 +419,12 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
         private final TextView nameTextView;
         private final TextView descriptionTextView;
         private final TextView priceTextView;
+        private final TextView badgeTextView;
         private final int viewType;
 
+        /** Привязанная категория или товар, или null для строки-заглушки. */
+        private Category boundCategory;
+
         /**
          * Создаёт новый ViewHolder для заданного макета.
          *
@@ -125,22 +440,27 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
                 nameTextView = itemView.findViewById(R.id.product_name);
                 descriptionTextView = itemView.findViewById(R.id.product_description);
                 priceTextView = itemView.findViewById(R.id.product_price);
+                badgeTextView = null;
             } else {
                 imageView = itemView.findViewById(R.id.category_image);
                 nameTextView = itemView.findViewById(R.id.category_name);
                 descriptionTextView = itemView.findViewById(R.id.category_description);
                 priceTextView = null;
+                badgeTextView = itemView.findViewById(R.id.category_badge);
             }
 
             if (imageView == null || nameTextView == null) {
-                Log.e("CategoryAdapter", "Ошибка инициализации ViewHolder: imageView=" + imageView + ", nameTextView=" + nameTextView);
+                AppLog.e("CategoryAdapter", "Ошибка инициализации ViewHolder: imageView=" + imageView + ", nameTextView=" + nameTextView);
                 return;
             }
 
+            ImageResources.trackRowImage(imageView, viewType == R.layout.item_product);
             itemView.setOnClickListener(v -> {
-                int position = getAdapterPosition();
+                int position = getBindingAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onCategoryClick(categories.get(position));
+                    Category category = categories.get(position);
+                    NavigationPrefetcher.getInstance().onOpened(category);
+                    listener.onCategoryClick(category, imageView);
                 }
             });
         }
@@ -148,65 +468,94 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
         /**
          * Привязывает данные категории или товара к элементам интерфейса.
          *
-         * @param category категория или товар для отображения
+         * @param category категория или товар для отображения, или null для незагруженного элемента
+         * @param row      модель строки элемента
          */
-        public void bind(Category category) {
-            if (category == null || nameTextView == null) {
-                Log.w("CategoryAdapter", "bind: Категория или nameTextView равны null");
+        void bind(Category category, RowModels.Row row) {
+            if (nameTextView == null) {
+                AppLog.w("CategoryAdapter", "bind: nameTextView равен null");
+                return;
+            }
+            if (viewType == R.layout.item_category && category != boundCategory
+                    && itemView.isAttachedToWindow()) {
+                // Строка перепривязана на экране (например, загрузилась страница на месте заглушки)
+                NavigationPrefetcher.getInstance().onRowHidden(boundCategory);
+                NavigationPrefetcher.getInstance().onRowShown(context, category);
+            }
+            boundCategory = category;
+            if (category == null) {
+                bindPlaceholder();
                 return;
             }
 
-            nameTextView.setText(category.getName() != null ? category.getName() : "");
+            RowText.setText(nameTextView, row.name);
 
             if (viewType == R.layout.item_product) {
                 descriptionTextView.setVisibility(View.GONE);
-                if (priceTextView != null) {
-                    priceTextView.setText(category.getPrice() != null ? String.format("%.2f ₽", category.getPrice()) : "N/A");
-                }
+                bindPrice(category);
             } else {
                 descriptionTextView.setVisibility(View.VISIBLE);
-                String description = category.getDescription();
-                descriptionTextView.setText(description != null ?
-                        (description.length() > MAX_DESCRIPTION_LENGTH ? description.substring(0, MAX_DESCRIPTION_LENGTH) + "..." : description) :
-                        "");
+                if (category.needsDetails()) {
+                    NodeDetailsLoader.getInstance().load(Collections.singletonList(category));
+                }
+                RowText.setText(descriptionTextView, row.description);
+                bindAggregates(category);
             }
 
-            int imageResource = getImageResourceForId(category.getId());
+            ViewCompat.setTransitionName(imageView, viewType == R.layout.item_product
+                    ? ProductDetailActivity.transitionName(category.getId()) : null);
+            int imageResource = ImageResources.forId(category.getId());
             Glide.with(context)
                     .load(imageResource)
                     .placeholder(R.drawable.placeholder_image)
                     .error(R.drawable.error_image)
+                    .addListener(ImageLoadMetrics.start("row"))
                     .into(imageView);
         }
 
         /**
-         * Возвращает ресурс изображения на основе ID категории или товара.
+         * Показывает заглушку на месте элемента, страница которого ещё загружается.
+         */
+        private void bindPlaceholder() {
+            nameTextView.setText("Загрузка…");
+            if (descriptionTextView != null) {
+                descriptionTextView.setText("");
+            }
+            if (badgeTextView != null) {
+                badgeTextView.setVisibility(View.GONE);
+            }
+            Glide.with(context).clear(imageView);
+            imageView.setImageResource(R.drawable.placeholder_image);
+        }
+
+        /**
+         * Привязывает только цену и наличие товара, не трогая остальные элементы строки.
+         *
+         * @param category товар для отображения
+         */
+        public void bindPrice(Category category) {
+            if (category != null && priceTextView != null) {
+                priceTextView.setText(PriceText.format(category));
+            }
+        }
+
+        /**
+         * Привязывает плашку категории с количеством товаров и диапазоном цен.
          *
-         * @param id ID категории или товара
-         * @return ID ресурса изображения
+         * @param category категория для отображения
          */
-        private int getImageResourceForId(int id) {
-            Map<Integer, Integer> imageMap = new HashMap<>();
-            imageMap.put(1, R.drawable.instruments);
-            imageMap.put(101, R.drawable.examination);
-            imageMap.put(102, R.drawable.burs);
-            imageMap.put(1001, R.drawable.mirror);
-            imageMap.put(1002, R.drawable.probe);
-            imageMap.put(1003, R.drawable.round_bur);
-            imageMap.put(2, R.drawable.materials);
-            imageMap.put(201, R.drawable.filling);
-            imageMap.put(2001, R.drawable.composite);
-            imageMap.put(202, R.drawable.cement);
-            imageMap.put(2002, R.drawable.glass_ionomer);
-            imageMap.put(3, R.drawable.equipment);
-            imageMap.put(301, R.drawable.unit);
-            imageMap.put(3001, R.drawable.dental_unit);
-            imageMap.put(302, R.drawable.xray);
-            imageMap.put(3002, R.drawable.visiograph);
-            imageMap.put(4001, R.drawable.handpiece);
-            imageMap.put(4002, R.drawable.scaler);
-
-            return imageMap.getOrDefault(id, R.drawable.error_image);
+        public void bindAggregates(Category category) {
+            if (category == null || badgeTextView == null) {
+                return;
+            }
+            int count = aggregates.getProductCount(category.getId());
+            if (count == 0) {
+                badgeTextView.setVisibility(View.GONE);
+                return;
+            }
+            badgeTextView.setVisibility(View.VISIBLE);
+            badgeTextView.setText(PriceText.formatAggregates(count,
+                    aggregates.getMinPrice(category.getId()), aggregates.getMaxPrice(category.getId())));
         }
     }
 }
\ No newline at end of file
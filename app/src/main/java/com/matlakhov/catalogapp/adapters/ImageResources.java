@@ -0,0 +1,105 @@
+package com.matlakhov.catalogapp.adapters;
+
+import android.util.Size;
+import android.widget.ImageView;
+
+import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.metrics.TraceSections;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.IntIndexMap;
+
+/**
+ * Утилитный класс для сопоставления идентификаторов категорий и товаров с ресурсами изображений.
+ * <p>
+ * Таблица создаётся один раз при загрузке класса и используется адаптерами и фоновой
+ * предзагрузкой изображений. Поиск вызывается при каждой привязке строки, поэтому таблица хранит
+ * идентификаторы без упаковки ({@link IntIndexMap}) и поиск не выделяет память.
+ * </p>
+ * <p>
+ * Класс также запоминает размеры изображений строк категорий и товаров после их разметки
+ * ({@link #rowImageSize(Category)}), чтобы предзагрузка декодировала изображения в том же размере,
+ * что и строки, и попадала в их записи кэша Glide.
+ * </p>
+ */
+public final class ImageResources {
+
+    /** Маппинг ID категорий и товаров на ресурсы изображений. */
+    private static final IntIndexMap IMAGE_MAP;
+
+    static {
+        IMAGE_MAP = new IntIndexMap(18);
+        IMAGE_MAP.put(1, R.drawable.instruments);
+        IMAGE_MAP.put(101, R.drawable.examination);
+        IMAGE_MAP.put(102, R.drawable.burs);
+        IMAGE_MAP.put(1001, R.drawable.mirror);
+        IMAGE_MAP.put(1002, R.drawable.probe);
+        IMAGE_MAP.put(1003, R.drawable.round_bur);
+        IMAGE_MAP.put(2, R.drawable.materials);
+        IMAGE_MAP.put(201, R.drawable.filling);
+        IMAGE_MAP.put(2001, R.drawable.composite);
+        IMAGE_MAP.put(202, R.drawable.cement);
+        IMAGE_MAP.put(2002, R.drawable.glass_ionomer);
+        IMAGE_MAP.put(3, R.drawable.equipment);
+        IMAGE_MAP.put(301, R.drawable.unit);
+        IMAGE_MAP.put(3001, R.drawable.dental_unit);
+        IMAGE_MAP.put(302, R.drawable.xray);
+        IMAGE_MAP.put(3002, R.drawable.visiograph);
+        IMAGE_MAP.put(4001, R.drawable.handpiece);
+        IMAGE_MAP.put(4002, R.drawable.scaler);
+    }
+
+    /** Размеры изображений строк категорий и товаров (px), или null, пока строка этого типа не размечена. */
+    private static volatile Size categoryImageSize;
+    private static volatile Size productImageSize;
+
+    private ImageResources() {
+    }
+
+    /**
+     * Запоминает размер изображения строки при каждой его разметке.
+     *
+     * @param view    изображение строки
+     * @param product true — строка товара, false — строка категории
+     */
+    static void trackRowImage(ImageView view, boolean product) {
+        view.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            int width = v.getWidth() - v.getPaddingLeft() - v.getPaddingRight();
+            int height = v.getHeight() - v.getPaddingTop() - v.getPaddingBottom();
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            Size known = product ? productImageSize : categoryImageSize;
+            if (known == null || known.getWidth() != width || known.getHeight() != height) {
+                if (product) {
+                    productImageSize = new Size(width, height);
+                } else {
+                    categoryImageSize = new Size(width, height);
+                }
+            }
+        });
+    }
+
+    /**
+     * Возвращает размер, в котором строка показывает изображение элемента. Метод можно вызывать
+     * из любого потока.
+     *
+     * @param item категория или товар
+     * @return размер изображения (px), или null, если строки этого типа ещё не размечались
+     */
+    public static Size rowImageSize(Category item) {
+        return item.isProduct() ? productImageSize : categoryImageSize;
+    }
+
+    /**
+     * Возвращает ресурс изображения на основе ID категории или товара.
+     *
+     * @param id ID категории или товара
+     * @return ID ресурса изображения, или {@code R.drawable.error_image}, если изображения нет
+     */
+    public static int forId(int id) {
+        TraceSections.begin("ImageResources.forId");
+        int resource = IMAGE_MAP.get(id, R.drawable.error_image);
+        TraceSections.end();
+        return resource;
+    }
+}
@@ -0,0 +1,50 @@
+package com.matlakhov.catalogapp.adapters;
+
+import com.matlakhov.catalogapp.models.Category;
+
+/**
+ * Утилитный класс для форматирования цены и наличия товара в строках списков.
+ */
+final class PriceText {
+
+    private PriceText() {
+    }
+
+    /**
+     * Возвращает текст цены товара с учётом наличия.
+     *
+     * @param product товар
+     * @return цена в рублях, "N/A", если цены нет, с пометкой об отсутствии товара в наличии
+     */
+    static String format(Category product) {
+        String price = product.getPrice() != null ? String.format("%.2f ₽", product.getPrice()) : "N/A";
+        return product.isAvailable() ? price : price + " · нет в наличии";
+    }
+
+    /**
+     * Возвращает текст плашки категории: количество товаров и диапазон цен.
+     *
+     * @param count    количество товаров
+     * @param minPrice минимальная цена
+     * @param maxPrice максимальная цена
+     * @return например, "12 товаров · 250–900 ₽"
+     */
+    static String formatAggregates(int count, double minPrice, double maxPrice) {
+        String range = minPrice == maxPrice
+                ? String.format("%.0f ₽", minPrice)
+                : String.format("%.0f–%.0f ₽", minPrice, maxPrice);
+        return count + " " + productsWord(count) + " · " + range;
+    }
+
+    private static String productsWord(int count) {
+        int lastTwo = count % 100;
+        int last = count % 10;
+        if (lastTwo >= 11 && lastTwo <= 14) {
+            return "товаров";
+        }
+        if (last == 1) {
+            return "товар";
+        }
+        return last >= 2 && last <= 4 ? "товара" : "товаров";
+    }
+}
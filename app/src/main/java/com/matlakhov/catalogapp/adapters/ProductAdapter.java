@@ -1,24 +1,27 @@
 package com.matlakhov.catalogapp.adapters;
 
 import android.content.Context;
-import android.content.Intent;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.matlakhov.catalogapp.R;
 import com.matlakhov.catalogapp.activity.ProductDetailActivity;
+import com.matlakhov.catalogapp.metrics.ImageLoadMetrics;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.TraceSections;
 import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.AppLog;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * Адаптер для RecyclerView, отображающий список рекомендуемых товаров.
@@ -26,6 +29,7 @@ import java.util.Map;
  * Этот адаптер используется для отображения товаров в горизонтальном списке.
  * Каждый элемент отображается с использованием макета {@code item_product}.
  * При клике на товар пользователь перенаправляется в {@link ProductDetailActivity}.
+ * Названия товаров и их раскладка готовятся в фоне при установке списка ({@link RowModels}).
  * </p>
  */
 public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductViewHolder> {
@@ -33,31 +37,21 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
     /** Тег для целей логирования. */
     private static final String TAG = "ProductAdapter";
 
-    /** Значение по умолчанию для недействительной цены. */
-    private static final double INVALID_PRICE = -1.0;
-
-    /** Маппинг ID товаров на ресурсы изображений. */
-    private static final Map<Integer, Integer> IMAGE_MAP;
-
-    static {
-        IMAGE_MAP = new HashMap<>();
-        IMAGE_MAP.put(1001, R.drawable.mirror);
-        IMAGE_MAP.put(1002, R.drawable.probe);
-        IMAGE_MAP.put(1003, R.drawable.round_bur);
-        IMAGE_MAP.put(2001, R.drawable.composite);
-        IMAGE_MAP.put(2002, R.drawable.glass_ionomer);
-        IMAGE_MAP.put(3001, R.drawable.dental_unit);
-        IMAGE_MAP.put(3002, R.drawable.visiograph);
-        IMAGE_MAP.put(4001, R.drawable.handpiece);
-        IMAGE_MAP.put(4002, R.drawable.scaler);
-    }
+    /** Payload для {@link #notifyItemChanged(int, Object)}: изменились только цена или наличие товара. */
+    public static final Object PAYLOAD_PRICE = "PAYLOAD_PRICE";
 
     /** Список товаров для отображения. */
-    private final List<Category> products;
+    private List<Category> products;
 
     /** Контекст приложения для доступа к ресурсам. */
     private final Context context;
 
+    /** Параметры раскладки названия, или null до создания первой строки. */
+    private PrecomputedTextCompat.Params nameParams;
+
+    /** Модели строк текущего списка. */
+    private final RowModels rowModels = new RowModels(this::createRow);
+
     /**
      * Создаёт новый адаптер с заданным контекстом и списком товаров.
      *
@@ -67,20 +61,61 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
     public ProductAdapter(Context context, List<Category> products) {
         this.context = context;
         this.products = products != null ? products : new ArrayList<>();
+        rowModels.setItems(this.products);
     }
 
     @NonNull
     @Override
     public ProductViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(context).inflate(R.layout.item_product, parent, false);
-        return new ProductViewHolder(view);
+        TraceSections.begin("ProductAdapter.onCreateViewHolder");
+        try {
+            View view = LayoutInflater.from(context).inflate(R.layout.item_product, parent, false);
+            ProductViewHolder holder = new ProductViewHolder(view);
+            if (nameParams == null && holder.nameTextView != null) {
+                nameParams = RowText.paramsOf(holder.nameTextView);
+                rowModels.invalidate();
+            }
+            return holder;
+        } finally {
+            TraceSections.end();
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull ProductViewHolder holder, int position) {
         if (position >= 0 && position < products.size()) {
+            TraceSections.begin("ProductAdapter.onBindViewHolder");
+            long start = System.nanoTime();
             Category product = products.get(position);
-            holder.bind(product);
+            holder.bind(product, product != null ? rowModels.get(position, product) : null);
+            MetricsRegistry.getInstance().recordSince("bind.recommended_row", start);
+            TraceSections.end();
+        }
+    }
+
+    /**
+     * Создаёт модель строки товара.
+     * <p>
+     * Описание декодируется из компактного представления один раз, здесь, а не при каждой привязке.
+     * Оно в строке скрыто, поэтому его раскладка не считается.
+     * </p>
+     *
+     * @param product товар
+     * @return модель строки
+     */
+    private RowModels.Row createRow(Category product) {
+        String description = product.getDescription();
+        return new RowModels.Row(product,
+                RowText.prepare(product.getName() != null ? product.getName() : "", nameParams),
+                RowText.prepare(description != null ? description : "", null));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ProductViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && isPriceOnly(payloads) && position >= 0 && position < products.size()) {
+            holder.bindPrice(products.get(position));
+        } else {
+            onBindViewHolder(holder, position);
         }
     }
 
@@ -94,6 +129,44 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
         return products != null ? products.size() : 0;
     }
 
+    /**
+     * Заменяет отображаемый список товаров без уведомления адаптера.
+     * Вызывающий код сразу после замены сообщает об изменённых позициях.
+     *
+     * @param products новый список товаров
+     */
+    public void setItems(List<Category> products) {
+        this.products = products != null ? products : new ArrayList<>();
+        rowModels.setItems(this.products);
+    }
+
+    /**
+     * Уведомляет адаптер об изменении цен и наличия товаров.
+     * <p>
+     * Для каждой позиции с товаром из {@code ids} вызывается {@link #notifyItemChanged(int, Object)}
+     * с {@link #PAYLOAD_PRICE}, поэтому перепривязывается только текст цены.
+     * </p>
+     *
+     * @param ids идентификаторы изменённых товаров
+     */
+    public void notifyPricesChanged(Set<Integer> ids) {
+        for (int i = 0; i < products.size(); i++) {
+            Category item = products.get(i);
+            if (item != null && ids.contains(item.getId())) {
+                notifyItemChanged(i, PAYLOAD_PRICE);
+            }
+        }
+    }
+
+    private static boolean isPriceOnly(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_PRICE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * ViewHolder для отображения элемента товара.
      * <p>
@@ -120,21 +193,16 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
             priceTextView = itemView.findViewById(R.id.product_price);
 
             if (imageView == null || nameTextView == null || priceTextView == null) {
-                Log.e(TAG, "Ошибка инициализации ViewHolder: imageView=" + imageView +
+                AppLog.e(TAG, "Ошибка инициализации ViewHolder: imageView=" + imageView +
                         ", nameTextView=" + nameTextView + ", priceTextView=" + priceTextView);
                 return;
             }
 
+            ImageResources.trackRowImage(imageView, true);
             itemView.setOnClickListener(v -> {
-                int position = getAdapterPosition();
+                int position = getBindingAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    Category product = products.get(position);
-                    Intent intent = new Intent(context, ProductDetailActivity.class);
-                    intent.putExtra("PRODUCT_ID", product.getId());
-                    intent.putExtra("PRODUCT_NAME", product.getName());
-                    intent.putExtra("PRODUCT_DESCRIPTION", product.getDescription());
-                    intent.putExtra("PRODUCT_PRICE", product.getPrice() != null ? product.getPrice() : INVALID_PRICE);
-                    context.startActivity(intent);
+                    ProductDetailActivity.start(context, products.get(position), imageView);
                 }
             });
         }
@@ -143,24 +211,38 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
          * Привязывает данные товара к элементам интерфейса.
          *
          * @param product товар для отображения
+         * @param row     модель строки товара
          */
-        public void bind(Category product) {
+        void bind(Category product, RowModels.Row row) {
             if (product == null || nameTextView == null || priceTextView == null) {
-                Log.w(TAG, "bind: Товар или элементы интерфейса равны null");
+                AppLog.w(TAG, "bind: Товар или элементы интерфейса равны null");
                 return;
             }
 
-            nameTextView.setText(product.getName() != null ? product.getName() : "");
-            descriptionTextView.setText(product.getDescription() != null ? product.getDescription() : "");
-            priceTextView.setText(product.getPrice() != null ? String.format("%.2f ₽", product.getPrice()) : "N/A");
+            RowText.setText(nameTextView, row.name);
+            RowText.setText(descriptionTextView, row.description);
+            bindPrice(product);
 
-            int imageResource = IMAGE_MAP.getOrDefault(product.getId(), R.drawable.error_image);
+            ViewCompat.setTransitionName(imageView, ProductDetailActivity.transitionName(product.getId()));
+            int imageResource = ImageResources.forId(product.getId());
             Glide.with(context)
                     .load(imageResource)
                     .placeholder(R.drawable.placeholder_image)
                     .error(R.drawable.error_image)
                     .diskCacheStrategy(DiskCacheStrategy.ALL)
+                    .addListener(ImageLoadMetrics.start("row"))
                     .into(imageView);
         }
+
+        /**
+         * Привязывает только цену и наличие товара, не трогая остальные элементы строки.
+         *
+         * @param product товар для отображения
+         */
+        public void bindPrice(Category product) {
+            if (product != null && priceTextView != null) {
+                priceTextView.setText(PriceText.format(product));
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.matlakhov.catalogapp.adapters;
+
+import androidx.annotation.MainThread;
+
+import com.matlakhov.catalogapp.data.PagedCategoryList;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Модели отображения строк адаптера, подготовленные в фоне при установке данных.
+ * <p>
+ * Для каждой строки в потоке раскладки текста ({@link AppExecutors#text()}) один раз вычисляются её тексты (например, обрезанное описание)
+ * и запускается их раскладка ({@link RowText}), поэтому привязка строки только применяет готовую модель.
+ * Модели хранятся по позициям списка, для которого они подготовлены. Строка без модели (подготовка до неё
+ * ещё не дошла, её страница загружена позже или модели освобождены при нехватке памяти) получает модель
+ * при привязке. Списки снимка каталога неизменяемы и читаются в фоне, а у {@link PagedCategoryList}
+ * загруженные элементы собираются в главном потоке.
+ * </p>
+ * <p>
+ * Модели строк экрана, который ещё не открыт (например, прогреваемого {@code NavigationPrefetcher}),
+ * можно подготовить заранее ({@link #offer(Row)}): набор моделей забирает такую модель вместо создания
+ * новой, если она подготовлена для того же элемента.
+ * </p>
+ */
+final class RowModels {
+
+    /**
+     * Создаёт модель строки. Вызывается в фоновом потоке, а для строк без модели — в главном.
+     */
+    interface Factory {
+        /**
+         * @param item элемент списка
+         * @return модель строки
+         */
+        Row create(Category item);
+    }
+
+    /**
+     * Модель одной строки.
+     */
+    static final class Row {
+        /** Элемент, для которого подготовлена модель. */
+        final Category item;
+
+        /** Название. */
+        final RowText.Prepared name;
+
+        /** Описание, или null, если строка его не показывает. */
+        final RowText.Prepared description;
+
+        Row(Category item, RowText.Prepared name, RowText.Prepared description) {
+            this.item = item;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    /** Максимальное количество моделей, подготовленных для ещё не открытых экранов. */
+    static final int MAX_OFFERED = 64;
+
+    /** Модели, подготовленные для ещё не открытых экранов, по идентификатору элемента. */
+    private static final Map<Integer, Row> OFFERED = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+            return size() > MAX_OFFERED;
+        }
+    };
+
+    /** Все созданные наборы моделей, чтобы освобождать их при нехватке памяти. */
+    private static final Set<RowModels> ALL = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /** Фабрика моделей строк адаптера. */
+    private final Factory factory;
+
+    /** Отображаемый список. */
+    private List<Category> items = Collections.emptyList();
+
+    /** Модели по позиции в {@link #items}; заменяется целиком вместе со списком. */
+    private volatile AtomicReferenceArray<Row> rows = new AtomicReferenceArray<>(0);
+
+    /**
+     * @param factory фабрика моделей строк
+     */
+    RowModels(Factory factory) {
+        this.factory = factory;
+        synchronized (ALL) {
+            ALL.add(this);
+        }
+    }
+
+    /**
+     * Заменяет список и запускает подготовку моделей его строк в фоне.
+     * <p>
+     * Модели элементов, стоящих на тех же позициях, что и в прежнем списке, переносятся без пересчёта.
+     * Список не должен меняться после передачи. У постраничного списка готовятся только строки первой
+     * страницы; остальные страницы готовятся при загрузке ({@link #prepare(int, int)}).
+     * </p>
+     *
+     * @param items новый список
+     */
+    @MainThread
+    void setItems(List<Category> items) {
+        AtomicReferenceArray<Row> previous = rows;
+        this.items = items;
+        rows = new AtomicReferenceArray<>(items.size());
+        prepare(0, items instanceof PagedCategoryList ? PagedCategoryList.PAGE_SIZE : items.size(), previous);
+    }
+
+    /**
+     * Запускает подготовку моделей строк диапазона в фоне.
+     *
+     * @param start позиция первой строки
+     * @param count количество строк
+     */
+    @MainThread
+    void prepare(int start, int count) {
+        prepare(start, count, new AtomicReferenceArray<>(0));
+    }
+
+    private void prepare(int start, int count, AtomicReferenceArray<Row> previous) {
+        AtomicReferenceArray<Row> target = rows;
+        int end = Math.min(start + count, target.length());
+        if (start >= end) {
+            return;
+        }
+        List<Category> source = items;
+        int base = 0;
+        if (source instanceof PagedCategoryList) {
+            // Постраничный список используется только из главного потока: забираем загруженные элементы
+            PagedCategoryList paged = (PagedCategoryList) source;
+            List<Category> loaded = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                loaded.add(paged.peek(i));
+            }
+            source = loaded;
+            base = start;
+        }
+        List<Category> list = source;
+        int shift = base;
+        int from = start;
+        int to = end;
+        AppExecutors.text().execute(() -> {
+            for (int i = from; i < to && rows == target; i++) {
+                Category item = list.get(i - shift);
+                if (item == null || target.get(i) != null) {
+                    continue;
+                }
+                Row old = i < previous.length() ? previous.get(i) : null;
+                target.compareAndSet(i, null, old != null && old.item == item ? old : create(item));
+            }
+        });
+    }
+
+    /**
+     * Забирает модель, подготовленную заранее для этого элемента, или создаёт новую.
+     */
+    private Row create(Category item) {
+        synchronized (OFFERED) {
+            Row offered = OFFERED.get(item.getId());
+            if (offered != null && offered.item == item) {
+                OFFERED.remove(item.getId());
+                return offered;
+            }
+        }
+        return factory.create(item);
+    }
+
+    /**
+     * Сохраняет модель строки экрана, который ещё не открыт. Метод можно вызывать из любого потока.
+     *
+     * @param row модель строки
+     */
+    static void offer(Row row) {
+        synchronized (OFFERED) {
+            OFFERED.put(row.item.getId(), row);
+        }
+    }
+
+    /**
+     * Заново готовит модели всего списка, например когда стали известны параметры раскладки строк.
+     */
+    @MainThread
+    void invalidate() {
+        rows = new AtomicReferenceArray<>(0);
+        setItems(items);
+    }
+
+    /**
+     * Возвращает модель строки, создавая её, если подготовленной модели нет.
+     *
+     * @param position позиция строки
+     * @param item     элемент на этой позиции
+     * @return модель строки
+     */
+    @MainThread
+    Row get(int position, Category item) {
+        AtomicReferenceArray<Row> current = rows;
+        Row row = position < current.length() ? current.get(position) : null;
+        if (row == null || row.item != item) {
+            row = create(item);
+            if (position < current.length()) {
+                current.set(position, row);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Отбрасывает модель строки, тексты которой изменились; она создаётся заново при привязке.
+     *
+     * @param position позиция строки
+     */
+    @MainThread
+    void remove(int position) {
+        AtomicReferenceArray<Row> current = rows;
+        if (position < current.length()) {
+            current.set(position, null);
+        }
+    }
+
+    /**
+     * Освобождает модели строк; они создаются заново при привязке.
+     */
+    private void clear() {
+        rows = new AtomicReferenceArray<>(items.size());
+    }
+
+    /**
+     * Освобождает модели строк всех адаптеров.
+     */
+    static void trimAll() {
+        synchronized (OFFERED) {
+            OFFERED.clear();
+        }
+        synchronized (ALL) {
+            for (RowModels models : ALL) {
+                models.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.matlakhov.catalogapp.adapters;
+
+import android.widget.TextView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Утилитный класс для предварительного расчёта раскладки текста строк списков.
+ * <p>
+ * Названия и описания строк измеряются и раскладываются ({@link PrecomputedTextCompat}) в отдельном
+ * потоке ({@link AppExecutors#text()}): модели строк ({@link RowModels}) при установке данных адаптера
+ * вызывают {@link #prepare(CharSequence, PrecomputedTextCompat.Params)}, а при привязке
+ * {@link #setText(TextView, Prepared)} применяет уже готовую раскладку. Если раскладка к привязке ещё
+ * не готова, текст устанавливается обычным способом: ожидание очереди фоновых задач при измерении строки
+ * обходится дороже, чем раскладка одной строки в главном потоке.
+ * Параметры раскладки ({@link #paramsOf(TextView)}) адаптеры получают один раз для каждого типа строки.
+ * </p>
+ */
+public final class RowText {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "RowText";
+
+    /** Включён ли предварительный расчёт; выключается для сравнения в бенчмарке. */
+    private static volatile boolean enabled = true;
+
+    /**
+     * Текст строки и его раскладка, запущенная заранее.
+     */
+    public static final class Prepared {
+        /** Текст строки. */
+        final CharSequence text;
+
+        /** Раскладка текста, или null, если она не считается заранее. */
+        final Future<PrecomputedTextCompat> layout;
+
+        Prepared(CharSequence text, Future<PrecomputedTextCompat> layout) {
+            this.text = text;
+            this.layout = layout;
+        }
+    }
+
+    private RowText() {
+    }
+
+    /**
+     * Возвращает параметры раскладки текста для TextView строки.
+     * <p>
+     * Каждый вызов создаёт новый объект, поэтому адаптеры запоминают результат для типа строки.
+     * </p>
+     *
+     * @param view TextView строки
+     * @return параметры раскладки
+     */
+    @MainThread
+    public static PrecomputedTextCompat.Params paramsOf(TextView view) {
+        return TextViewCompat.getTextMetricsParams(view);
+    }
+
+    /**
+     * Запускает расчёт раскладки текста в фоновом потоке. Метод можно вызывать из любого потока.
+     *
+     * @param text   текст строки
+     * @param params параметры раскладки TextView, в который будет установлен текст, или null, если они
+     *               ещё неизвестны (тогда текст устанавливается без готовой раскладки)
+     * @return текст с запущенной раскладкой
+     */
+    public static Prepared prepare(CharSequence text, PrecomputedTextCompat.Params params) {
+        if (!enabled || params == null || text == null || text.length() == 0) {
+            return new Prepared(text, null);
+        }
+        return new Prepared(text, PrecomputedTextCompat.getTextFuture(text, params, AppExecutors.text()));
+    }
+
+    /**
+     * Устанавливает текст в TextView строки, используя заранее запущенную раскладку.
+     *
+     * @param view     TextView строки
+     * @param prepared текст с раскладкой из {@link #prepare(CharSequence, PrecomputedTextCompat.Params)}
+     */
+    @MainThread
+    public static void setText(TextView view, Prepared prepared) {
+        Future<PrecomputedTextCompat> future = prepared.layout;
+        if (future == null) {
+            view.setText(prepared.text);
+            return;
+        }
+        if (future.isDone()) {
+            try {
+                TextViewCompat.setPrecomputedText(view, future.get());
+                return;
+            } catch (ExecutionException | InterruptedException | IllegalArgumentException e) {
+                AppLog.w(TAG, "Раскладка текста недоступна: " + e.getMessage());
+            }
+        }
+        view.setText(prepared.text);
+    }
+
+    /**
+     * Включает или выключает предварительный расчёт раскладки и сбрасывает подготовленные модели строк.
+     *
+     * @param value true, чтобы раскладка считалась в фоне
+     */
+    @VisibleForTesting
+    public static void setEnabled(boolean value) {
+        enabled = value;
+        RowModels.trimAll();
+    }
+
+    /**
+     * Освобождает подготовленные модели строк и их раскладки при нехватке памяти; строки без модели
+     * получают её при привязке.
+     */
+    public static void trimMemory() {
+        RowModels.trimAll();
+    }
+}
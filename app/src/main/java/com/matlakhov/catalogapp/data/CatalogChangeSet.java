@@ -0,0 +1,140 @@
+package com.matlakhov.catalogapp.data;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Результат применения изменений к каталогу в {@link CatalogRepository}.
+ * <p>
+ * Хранит последовательность операций над корневым списком категорий и списком рекомендуемых товаров
+ * в том порядке, в котором они были выполнены, чтобы адаптеры можно было уведомить только
+ * о затронутых позициях через {@link ListUpdateCallback}. Также хранит идентификаторы всех
+ * изменённых, добавленных и удалённых узлов на любом уровне вложенности.
+ * </p>
+ */
+public final class CatalogChangeSet {
+
+    /** Тип операции: вставка элементов. */
+    private static final int OP_INSERT = 0;
+
+    /** Тип операции: удаление элементов. */
+    private static final int OP_REMOVE = 1;
+
+    /** Тип операции: изменение элементов. */
+    private static final int OP_CHANGE = 2;
+
+    /**
+     * Операция над списком, записанная в момент выполнения.
+     */
+    private static final class Op {
+        final int type;
+        final int position;
+        final int count;
+
+        Op(int type, int position, int count) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+        }
+    }
+
+    /** Операции над корневым списком категорий. */
+    private final List<Op> catalogOps = new ArrayList<>();
+
+    /** Операции над списком рекомендуемых товаров. */
+    private final List<Op> recommendedOps = new ArrayList<>();
+
+    /** Идентификаторы затронутых узлов. */
+    private final Set<Integer> changedIds = new HashSet<>();
+
+    /**
+     * Создаёт пустой набор изменений.
+     */
+    CatalogChangeSet() {
+    }
+
+    void catalogInserted(int position, int count) {
+        catalogOps.add(new Op(OP_INSERT, position, count));
+    }
+
+    void catalogRemoved(int position, int count) {
+        catalogOps.add(new Op(OP_REMOVE, position, count));
+    }
+
+    void catalogChanged(int position) {
+        catalogOps.add(new Op(OP_CHANGE, position, 1));
+    }
+
+    void recommendedInserted(int position, int count) {
+        recommendedOps.add(new Op(OP_INSERT, position, count));
+    }
+
+    void recommendedRemoved(int position, int count) {
+        recommendedOps.add(new Op(OP_REMOVE, position, count));
+    }
+
+    void recommendedChanged(int position) {
+        recommendedOps.add(new Op(OP_CHANGE, position, 1));
+    }
+
+    void nodeChanged(int id) {
+        changedIds.add(id);
+    }
+
+    /**
+     * Проверяет, есть ли в наборе хотя бы одно изменение.
+     *
+     * @return true, если изменений нет
+     */
+    public boolean isEmpty() {
+        return catalogOps.isEmpty() && recommendedOps.isEmpty() && changedIds.isEmpty();
+    }
+
+    /**
+     * Возвращает идентификаторы узлов, затронутых изменениями на любом уровне вложенности.
+     *
+     * @return неизменяемое множество идентификаторов
+     */
+    public Set<Integer> getChangedIds() {
+        return Collections.unmodifiableSet(changedIds);
+    }
+
+    /**
+     * Передаёт операции над корневым списком категорий в указанный callback.
+     *
+     * @param callback получатель операций, например {@code AdapterListUpdateCallback}
+     */
+    public void dispatchCatalogUpdatesTo(ListUpdateCallback callback) {
+        dispatch(catalogOps, callback);
+    }
+
+    /**
+     * Передаёт операции над списком рекомендуемых товаров в указанный callback.
+     *
+     * @param callback получатель операций, например {@code AdapterListUpdateCallback}
+     */
+    public void dispatchRecommendedUpdatesTo(ListUpdateCallback callback) {
+        dispatch(recommendedOps, callback);
+    }
+
+    private static void dispatch(List<Op> ops, ListUpdateCallback callback) {
+        for (Op op : ops) {
+            switch (op.type) {
+                case OP_INSERT:
+                    callback.onInserted(op.position, op.count);
+                    break;
+                case OP_REMOVE:
+                    callback.onRemoved(op.position, op.count);
+                    break;
+                default:
+                    callback.onChanged(op.position, op.count, null);
+                    break;
+            }
+        }
+    }
+}
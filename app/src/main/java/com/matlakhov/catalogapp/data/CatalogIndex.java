@@ -0,0 +1,286 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.snapshot.SnapshotFormat;
+import com.matlakhov.catalogapp.snapshot.SnapshotReader;
+import com.matlakhov.catalogapp.util.IntIndexMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Неизменяемый индекс узлов одной версии каталога и их родителей по идентификатору.
+ * <p>
+ * Индекс строится писателем вместе с новой версией дерева и публикуется в {@link CatalogSnapshot},
+ * поэтому читатели обращаются к нему из любого потока без блокировок и без перестроения.
+ * Узлы, уже существующие как объекты (разобранное дерево, копии изменённых узлов), хранятся в таблицах
+ * по идентификатору. Поддеревья, присоединённые лениво декодируемыми списками снимка ({@link LazyCatalogList}),
+ * в таблицы не разворачиваются: для них хранится только отображение идентификатора в номер узла снимка
+ * (без создания объектов), а сам узел находится спуском от ближайшего известного предка, при котором
+ * декодируются только узлы этого пути. Поэтому индекс не отменяет ленивое декодирование снимка
+ * и не удерживает узлы поддеревьев, освобождённых при нехватке памяти.
+ * </p>
+ */
+final class CatalogIndex {
+
+    /** Индекс пустого каталога. */
+    static final CatalogIndex EMPTY = new CatalogIndex(new HashMap<>(), new HashMap<>(),
+            Collections.emptyList());
+
+    /** Номера узлов по идентификатору для каждого открытого снимка; строятся один раз на снимок. */
+    private static final Map<SnapshotReader, IntIndexMap> READER_IDS = new WeakHashMap<>();
+
+    /** Узлы по идентификатору. */
+    private final Map<Integer, Category> nodes;
+
+    /** Родители по идентификатору дочернего узла (для корневых узлов записи нет). */
+    private final Map<Integer, Category> parents;
+
+    /** Снимки, ленивые списки которых присоединены к дереву. */
+    private final List<SnapshotReader> readers;
+
+    private CatalogIndex(Map<Integer, Category> nodes, Map<Integer, Category> parents,
+                         List<SnapshotReader> readers) {
+        this.nodes = nodes;
+        this.parents = parents;
+        this.readers = readers;
+    }
+
+    /**
+     * Строит индекс нового дерева. Ленивые списки снимка при этом не декодируются.
+     *
+     * @param roots корневые узлы
+     * @return индекс дерева
+     */
+    static CatalogIndex build(List<Category> roots) {
+        Editor editor = new Editor(EMPTY);
+        for (Category root : roots) {
+            if (root != null) {
+                editor.add(root, null);
+            }
+        }
+        return editor.publish();
+    }
+
+    /**
+     * Находит узел по идентификатору.
+     *
+     * @param id идентификатор узла
+     * @return узел, или null, если его нет в дереве
+     */
+    Category find(int id) {
+        return find(nodes, readers, id);
+    }
+
+    /**
+     * Находит родителя узла.
+     *
+     * @param id идентификатор узла
+     * @return родитель, или null, если узел корневой или его нет в дереве
+     */
+    Category findParent(int id) {
+        return findParent(nodes, parents, readers, id);
+    }
+
+    private static Category find(Map<Integer, Category> nodes, List<SnapshotReader> readers, int id) {
+        Category node = nodes.get(id);
+        for (int i = readers.size() - 1; i >= 0 && node == null; i--) {
+            node = resolve(nodes, readers.get(i), id, false);
+        }
+        return node;
+    }
+
+    private static Category findParent(Map<Integer, Category> nodes, Map<Integer, Category> parents,
+                                       List<SnapshotReader> readers, int id) {
+        Category parent = parents.get(id);
+        if (parent != null || nodes.containsKey(id)) {
+            return parent;
+        }
+        for (int i = readers.size() - 1; i >= 0 && parent == null; i--) {
+            parent = resolve(nodes, readers.get(i), id, true);
+        }
+        return parent;
+    }
+
+    /**
+     * Находит узел из ленивого поддерева спуском от ближайшего предка, который есть в таблице узлов.
+     * Позиция каждого узла на пути берётся из снимка и проверяется по идентификатору; если список
+     * к этому времени изменён (например, дельтой), узел ищется в списке родителя.
+     *
+     * @param parent true — вернуть родителя найденного узла
+     */
+    private static Category resolve(Map<Integer, Category> nodes, SnapshotReader reader, int id,
+                                    boolean parent) {
+        int node = readerIds(reader).get(id, SnapshotFormat.NONE);
+        if (node == SnapshotFormat.NONE) {
+            return null;
+        }
+        Deque<Integer> path = new ArrayDeque<>();
+        Category current = null;
+        for (int n = node; n != SnapshotFormat.NONE; n = reader.getParent(n)) {
+            current = nodes.get(reader.getId(n));
+            if (current != null) {
+                break;
+            }
+            path.push(n);
+        }
+        Category previous = null;
+        while (current != null && !path.isEmpty()) {
+            int child = path.pop();
+            int childId = reader.getId(child);
+            List<Category> items = current.getItems();
+            int owner = reader.getParent(child);
+            int position = owner == SnapshotFormat.NONE ? -1 : child - reader.getFirstChild(owner);
+            Category next = position >= 0 && position < items.size() ? items.get(position) : null;
+            if (next == null || next.getId() != childId) {
+                int found = current.indexOfItem(childId);
+                next = found >= 0 ? items.get(found) : null;
+            }
+            previous = current;
+            current = next;
+        }
+        if (current == null) {
+            return null;
+        }
+        return parent ? previous : current;
+    }
+
+    private static IntIndexMap readerIds(SnapshotReader reader) {
+        synchronized (READER_IDS) {
+            IntIndexMap ids = READER_IDS.get(reader);
+            if (ids == null) {
+                int count = reader.getTreeNodeCount();
+                ids = new IntIndexMap(count);
+                for (int node = 0; node < count; node++) {
+                    ids.put(reader.getId(node), node);
+                }
+                READER_IDS.put(reader, ids);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Изменяемая копия индекса для версии дерева, которая строится до публикации.
+     * <p>
+     * Таблицы копируются при создании, поэтому опубликованный индекс не меняется.
+     * </p>
+     */
+    static final class Editor {
+        private final Map<Integer, Category> nodes;
+        private final Map<Integer, Category> parents;
+        private final List<SnapshotReader> readers;
+
+        /**
+         * @param base индекс версии, от которой строится новая
+         */
+        Editor(CatalogIndex base) {
+            this.nodes = new HashMap<>(base.nodes);
+            this.parents = new HashMap<>(base.parents);
+            this.readers = new ArrayList<>(base.readers);
+        }
+
+        /**
+         * Находит узел по идентификатору с учётом изменений этой версии.
+         */
+        Category find(int id) {
+            return CatalogIndex.find(nodes, readers, id);
+        }
+
+        /**
+         * Находит родителя узла с учётом изменений этой версии.
+         */
+        Category findParent(int id) {
+            return CatalogIndex.findParent(nodes, parents, readers, id);
+        }
+
+        /**
+         * Заменяет узел его копией и переводит на копию записи родителя дочерних узлов.
+         *
+         * @param copy   копия узла
+         * @param parent родитель копии, или null для корневого узла
+         */
+        void replace(Category copy, Category parent) {
+            nodes.put(copy.getId(), copy);
+            if (parent != null) {
+                parents.put(copy.getId(), parent);
+            }
+            for (Category child : copy.getItems()) {
+                if (child != null) {
+                    parents.put(child.getId(), copy);
+                }
+            }
+        }
+
+        /**
+         * Добавляет узел и его поддерево. Обход выполняется с явным стеком; ленивые списки снимка
+         * не обходятся, а только регистрируются.
+         *
+         * @param node   узел
+         * @param parent родитель узла, или null для корневого узла
+         */
+        void add(Category node, Category parent) {
+            Deque<Category> stack = new ArrayDeque<>();
+            nodes.put(node.getId(), node);
+            if (parent != null) {
+                parents.put(node.getId(), parent);
+            }
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Category current = stack.pop();
+                List<Category> items = current.getAttachedItems();
+                if (items instanceof LazyCatalogList) {
+                    SnapshotReader reader = ((LazyCatalogList) items).getReader();
+                    readers.remove(reader);
+                    readers.add(reader);
+                    continue;
+                }
+                for (Category child : items) {
+                    if (child != null) {
+                        nodes.put(child.getId(), child);
+                        parents.put(child.getId(), current);
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Удаляет записи узла и его поддерева. Ленивые списки снимка не декодируются: их узлы
+         * после удаления предка не находятся спуском по дереву.
+         *
+         * @param node удаляемый узел
+         */
+        void remove(Category node) {
+            Deque<Category> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Category current = stack.pop();
+                nodes.remove(current.getId());
+                parents.remove(current.getId());
+                List<Category> items = current.getAttachedItems();
+                if (items instanceof LazyCatalogList) {
+                    continue;
+                }
+                for (Category child : items) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return неизменяемый индекс новой версии
+         */
+        CatalogIndex publish() {
+            return new CatalogIndex(nodes, parents, readers);
+        }
+    }
+}
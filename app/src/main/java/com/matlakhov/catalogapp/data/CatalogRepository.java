@@ -0,0 +1,891 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogNodeChange;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.models.PricePatch;
+import com.matlakhov.catalogapp.models.Product;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Хранилище загруженного каталога в памяти, общее для всех экранов приложения.
+ * <p>
+ * Каталог публикуется неизменяемыми версиями ({@link CatalogSnapshot}): дерево категорий, список
+ * рекомендуемых товаров и версия каталога на сервере. Текущая версия хранится в {@link AtomicReference}
+ * и заменяется целиком, поэтому {@link #getSnapshot()} можно вызывать из любого потока без блокировок,
+ * а однажды полученный снимок не меняется структурно, пока его читают адаптеры или фоновые задачи.
+ * Полная загрузка публикует новое дерево ({@link #replace(CatalogResponse)}), а дельта-обновление
+ * ({@link #applyDelta(CatalogDelta)}) копирует только узлы на пути от корня до изменённых узлов,
+ * оставляя остальные поддеревья общими с предыдущей версией, и возвращает {@link CatalogChangeSet}
+ * с затронутыми позициями.
+ * </p>
+ * <p>
+ * Индекс узлов и их родителей по идентификатору ({@link CatalogIndex}) строится писателем вместе с каждой
+ * версией и публикуется в её снимке, поэтому {@link #findById(int)} не берёт блокировку и не перестраивает
+ * индекс; лениво декодируемое дерево (например, из снимка каталога) индексом не разворачивается.
+ * Изменения выполняются под блокировкой хранилища, так что писатели из разных потоков не мешают
+ * друг другу. Изменения полей узлов (цены и наличие из потока обновлений, поля из дельты, описания
+ * облегчённого каталога) тоже не трогают опубликованные узлы:
+ * изменённый узел копируется вместе с путём от корня, и публикуется новая версия. Поэтому экраны,
+ * держащие узлы или списки, после уведомления {@link OnPricesChangedListener} (в потоке писателя;
+ * изменения из потока обновлений применяются в фоне, а уведомляют в главном потоке раз в кадр)
+ * перечитывают их из текущей версии.
+ * </p>
+ */
+public class CatalogRepository {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "CatalogRepository";
+
+    /**
+     * Интерфейс для получения уведомлений об изменении цен и наличия товаров.
+     */
+    public interface OnPricesChangedListener {
+        /**
+         * Вызывается в потоке, применившем пакет изменений (обычно главном).
+         *
+         * @param ids идентификаторы товаров, цена или наличие которых действительно изменились
+         */
+        void onPricesChanged(Set<Integer> ids);
+    }
+
+    /**
+     * Интерфейс для получения уведомлений о замене поддеревьев при нехватке памяти.
+     */
+    public interface OnSubtreesReleasedListener {
+        /**
+         * Вызывается в главном потоке после публикации версии с освобождёнными поддеревьями.
+         * Содержимое каталога не меняется, но прежние списки нужно перечитать, чтобы их узлы освободились.
+         */
+        void onSubtreesReleased();
+    }
+
+    /** Единый экземпляр хранилища. */
+    private static CatalogRepository instance;
+
+    /** Текущая опубликованная версия каталога. */
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.EMPTY);
+
+    /** Время синхронизации текущих данных с сервером (мс), 0 — если неизвестно. */
+    private volatile long syncedAt;
+
+    /** Номер состояния, совпадающего с содержимым локального хранилища, или -1. */
+    private volatile int persistedGeneration = -1;
+
+    /** Слушатели изменений цен и наличия. */
+    private final CopyOnWriteArrayList<OnPricesChangedListener> priceListeners = new CopyOnWriteArrayList<>();
+
+    /** Слушатели замены поддеревьев ленивыми списками. */
+    private final CopyOnWriteArrayList<OnSubtreesReleasedListener> releaseListeners = new CopyOnWriteArrayList<>();
+
+    /** Количество открытых экранов по идентификатору корневой категории, поддерево которой они показывают. */
+    private final Map<Integer, Integer> pinnedRoots = new ConcurrentHashMap<>();
+
+    /**
+     * Создаёт пустое хранилище. Используйте {@link #getInstance()}.
+     */
+    CatalogRepository() {
+    }
+
+    /**
+     * Возвращает единый экземпляр хранилища.
+     *
+     * @return экземпляр {@link CatalogRepository}
+     */
+    public static synchronized CatalogRepository getInstance() {
+        if (instance == null) {
+            instance = new CatalogRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * Возвращает текущую версию каталога. Метод можно вызывать из любого потока.
+     *
+     * @return неизменяемый снимок каталога
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Возвращает корневой список категорий текущей версии.
+     *
+     * @return неизменяемый список; последующие изменения каталога в нём не отражаются
+     */
+    public List<Category> getCatalog() {
+        return snapshot.get().getCatalog();
+    }
+
+    /**
+     * Возвращает список рекомендуемых товаров текущей версии.
+     *
+     * @return неизменяемый список; последующие изменения каталога в нём не отражаются
+     */
+    public List<Category> getRecommended() {
+        return snapshot.get().getRecommended();
+    }
+
+    /**
+     * Возвращает версию каталога.
+     *
+     * @return версия, или 0, если каталог не загружен или сервер не поддерживает версионирование
+     */
+    public long getVersion() {
+        return snapshot.get().getVersion();
+    }
+
+    /**
+     * Возвращает время синхронизации текущих данных с сервером.
+     *
+     * @return время в миллисекундах, или 0, если неизвестно
+     */
+    public long getSyncedAt() {
+        return syncedAt;
+    }
+
+    /**
+     * Устанавливает время синхронизации текущих данных, например при восстановлении из локального хранилища.
+     *
+     * @param syncedAt время в миллисекундах
+     */
+    public void setSyncedAt(long syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+
+    /**
+     * Проверяет, загружен ли каталог.
+     *
+     * @return true, если каталог и список рекомендуемых товаров пусты
+     */
+    public boolean isEmpty() {
+        return snapshot.get().isEmpty();
+    }
+
+    /**
+     * Находит узел текущей версии каталога по идентификатору. Метод можно вызывать из любого потока.
+     *
+     * @param id идентификатор категории или товара
+     * @return найденный узел, или null, если узла нет
+     */
+    public Category findById(int id) {
+        return snapshot.get().getIndex().find(id);
+    }
+
+    /**
+     * Полностью заменяет каталог данными ответа сервера.
+     *
+     * @param response ответ сервера с полным каталогом
+     */
+    public synchronized void replace(CatalogResponse response) {
+        List<Category> products = new ArrayList<>();
+        for (Product product : response.getProducts()) {
+            if (product != null) {
+                products.add(toCategory(product));
+            }
+        }
+        restore(response.getCatalog(), products, response.getVersion());
+        syncedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Заменяет каталог ранее сохранёнными списками, например при восстановлении состояния активности.
+     *
+     * @param catalogItems     корневой список категорий
+     * @param recommendedItems список рекомендуемых товаров
+     * @param catalogVersion   версия каталога
+     */
+    public synchronized void restore(List<Category> catalogItems, List<Category> recommendedItems,
+                                     long catalogVersion) {
+        List<Category> roots = new ArrayList<>();
+        if (catalogItems != null) {
+            for (Category item : catalogItems) {
+                if (item != null) {
+                    roots.add(item);
+                }
+            }
+        }
+        List<Category> products = recommendedItems != null ? new ArrayList<>(recommendedItems) : new ArrayList<>();
+        publish(new CatalogSnapshot(catalogVersion, snapshot.get().getGeneration() + 1, roots, products));
+    }
+
+    /**
+     * Публикует новую версию каталога и, если индекс цен не перенесён из предыдущей версии, запускает
+     * его построение в фоне, чтобы выборки по цене не строили индекс в главном потоке.
+     *
+     * @param next новая версия
+     */
+    private void publish(CatalogSnapshot next) {
+        snapshot.set(next);
+        if (next.getPriceIndex() == null) {
+            AppExecutors.io().execute(() -> {
+                // Более новая версия запускает построение своего индекса сама
+                if (snapshot.get() == next) {
+                    next.computePriceIndex();
+                }
+            });
+        }
+    }
+
+    /**
+     * Применяет дельта-обновление и публикует новую версию каталога.
+     * <p>
+     * Перед применением дельта проверяется целиком: базовая версия должна совпадать с текущей,
+     * а все родители добавляемых узлов — существовать в дереве. Если проверка не пройдена,
+     * каталог не изменяется и возвращается null; в этом случае нужно загрузить каталог полностью.
+     * Новая версия копирует только корневой список и узлы на пути к изменённым узлам,
+     * поэтому снимки, полученные раньше, остаются прежними.
+     * </p>
+     *
+     * @param delta дельта-обновление от сервера
+     * @return набор выполненных изменений, или null, если дельту нельзя применить
+     */
+    public synchronized CatalogChangeSet applyDelta(CatalogDelta delta) {
+        CatalogChangeSet changes = new CatalogChangeSet();
+        CatalogSnapshot base = snapshot.get();
+
+        if (delta.isFull()) {
+            CatalogResponse response = new CatalogResponse();
+            response.setCatalog(delta.getCatalog());
+            response.setProducts(delta.getProducts());
+            response.setVersion(delta.getVersion());
+            replace(response);
+            changes.catalogRemoved(0, base.getCatalog().size());
+            changes.catalogInserted(0, getCatalog().size());
+            changes.recommendedRemoved(0, base.getRecommended().size());
+            changes.recommendedInserted(0, getRecommended().size());
+            return changes;
+        }
+
+        CatalogIndex.Editor index = new CatalogIndex.Editor(base.getIndex());
+        if (delta.getBaseVersion() != base.getVersion() || !canApply(delta, index)) {
+            AppLog.w(TAG, "Дельта не может быть применена: base=" + delta.getBaseVersion()
+                    + ", текущая=" + base.getVersion());
+            return null;
+        }
+
+        TreeEdit edit = new TreeEdit(base.getCatalog(), index);
+        List<Category> products = new ArrayList<>(base.getRecommended());
+        for (Integer id : delta.getRemoved()) {
+            removeNode(id, edit, changes);
+        }
+        for (CatalogNodeChange change : delta.getAdded()) {
+            addNode(change, edit, changes);
+        }
+        for (Category fields : delta.getModified()) {
+            modifyNode(fields, edit, products, changes);
+        }
+        if (delta.getProducts() != null) {
+            products = new ArrayList<>();
+            for (Product product : delta.getProducts()) {
+                if (product != null) {
+                    products.add(toCategory(product));
+                }
+            }
+            changes.recommendedRemoved(0, base.getRecommended().size());
+            changes.recommendedInserted(0, products.size());
+        }
+
+        syncedAt = System.currentTimeMillis();
+        publish(new CatalogSnapshot(delta.getVersion(), base.getGeneration() + 1, edit.roots, products,
+                index.publish(), null, null));
+        AppLog.d(TAG, () -> "Применена дельта " + delta.getBaseVersion() + " -> " + delta.getVersion() + ": удалено="
+                + delta.getRemoved().size() + ", добавлено=" + delta.getAdded().size()
+                + ", изменено=" + delta.getModified().size());
+        return changes;
+    }
+
+    /**
+     * Применяет изменения цен и наличия к узлам каталога и рекомендуемым товарам по индексу идентификаторов.
+     * <p>
+     * Изменённые узлы копируются, и весь пакет публикуется одной новой версией каталога. Слушатели
+     * уведомляются один раз на весь пакет и только об идентификаторах, значения которых
+     * действительно изменились.
+     * </p>
+     *
+     * @param patches изменения цен и наличия
+     * @return идентификаторы изменённых товаров
+     */
+    public Set<Integer> applyPricePatches(Collection<PricePatch> patches) {
+        Set<Integer> changed = updatePrices(patches);
+        if (!changed.isEmpty()) {
+            notifyPricesChanged(changed);
+        }
+        return changed;
+    }
+
+    /**
+     * Уведомляет слушателей об изменении цен, уже опубликованном {@link #updatePrices(Collection)}.
+     *
+     * @param ids идентификаторы изменённых товаров
+     */
+    void notifyPricesChanged(Set<Integer> ids) {
+        for (OnPricesChangedListener listener : priceListeners) {
+            listener.onPricesChanged(ids);
+        }
+    }
+
+    /**
+     * Применяет изменения цен и наличия и публикует новую версию, не уведомляя слушателей.
+     * Вызывается в фоновом потоке ({@link PricePatchBatcher}), который затем уведомляет слушателей в кадре.
+     *
+     * @param patches изменения цен и наличия
+     * @return идентификаторы изменённых товаров
+     */
+    synchronized Set<Integer> updatePrices(Collection<PricePatch> patches) {
+        CatalogSnapshot base = snapshot.get();
+        CatalogIndex.Editor index = new CatalogIndex.Editor(base.getIndex());
+        TreeEdit edit = new TreeEdit(base.getCatalog(), index);
+        PriceIndex prices = base.getPriceIndex() != null ? base.getPriceIndex().copy() : null;
+        List<Category> recommended = new ArrayList<>(base.getRecommended());
+        Set<Integer> changed = new HashSet<>();
+        boolean treeChanged = false;
+        for (PricePatch patch : patches) {
+            if (changes(index.find(patch.getId()), patch)) {
+                Category copy = edit.editable(patch.getId());
+                applyPatch(copy, patch);
+                prices = updatePriceIndex(prices, copy);
+                changed.add(patch.getId());
+                treeChanged = true;
+            }
+            int position = indexOf(recommended, patch.getId());
+            if (position >= 0 && changes(recommended.get(position), patch)) {
+                Category copy = new Category(recommended.get(position));
+                applyPatch(copy, patch);
+                recommended.set(position, copy);
+                changed.add(patch.getId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            // Если изменились цены в дереве, агрегаты новой версии вычисляются заново
+            publish(new CatalogSnapshot(base.getVersion(), base.getGeneration() + 1, edit.roots, recommended,
+                    index.publish(), treeChanged ? null : base.getAggregates(), prices));
+        }
+        return changed;
+    }
+
+    /**
+     * Публикует описания и изображения узлов, полученные отдельным запросом.
+     * <p>
+     * Узлы каталога и рекомендуемые товары с этими идентификаторами копируются, и все изменения
+     * публикуются одной новой версией каталога.
+     * </p>
+     *
+     * @param details описания и изображения по идентификатору узла
+     * @return идентификаторы, найденные в каталоге или среди рекомендуемых товаров
+     */
+    public synchronized Set<Integer> applyDetails(Map<Integer, NodeDetails> details) {
+        CatalogSnapshot base = snapshot.get();
+        CatalogIndex.Editor index = new CatalogIndex.Editor(base.getIndex());
+        TreeEdit edit = new TreeEdit(base.getCatalog(), index);
+        PriceIndex prices = base.getPriceIndex() != null ? base.getPriceIndex().copy() : null;
+        List<Category> recommended = new ArrayList<>(base.getRecommended());
+        Set<Integer> applied = new HashSet<>();
+        for (Map.Entry<Integer, NodeDetails> entry : details.entrySet()) {
+            int id = entry.getKey();
+            if (index.find(id) != null) {
+                Category copy = edit.editable(id);
+                copy.applyDetails(entry.getValue());
+                prices = updatePriceIndex(prices, copy);
+                applied.add(id);
+            }
+            int position = indexOf(recommended, id);
+            if (position >= 0) {
+                Category copy = new Category(recommended.get(position));
+                copy.applyDetails(entry.getValue());
+                recommended.set(position, copy);
+                applied.add(id);
+            }
+        }
+        if (!applied.isEmpty()) {
+            publish(new CatalogSnapshot(base.getVersion(), base.getGeneration() + 1, edit.roots, recommended,
+                    index.publish(), base.getAggregates(), prices));
+        }
+        return applied;
+    }
+
+    /**
+     * Переводит копию индекса цен на копию товара, чтобы выборки из индекса возвращали узлы новой версии.
+     *
+     * @return индекс цен новой версии, или null, если его нужно построить заново
+     */
+    private static PriceIndex updatePriceIndex(PriceIndex prices, Category product) {
+        if (prices != null && !prices.updateProduct(product) && product.isProduct()) {
+            // Товар получил цену впервые — индекс новой версии строится заново
+            return null;
+        }
+        return prices;
+    }
+
+    /**
+     * Возвращает индекс товаров текущей версии каталога по цене, если он уже построен.
+     * <p>
+     * Индекс публикуется в снимке: изменения цен и описаний переносятся в копию индекса новой версии
+     * без перестроения, а после замены каталога или применения дельты индекс строится в фоне сразу
+     * после публикации. Метод не берёт блокировку хранилища и не строит индекс.
+     * </p>
+     *
+     * @return индекс товаров по цене, или null, пока он строится ({@link #refreshPriceIndex(Runnable)})
+     */
+    public PriceIndex getPriceIndex() {
+        return snapshot.get().getPriceIndex();
+    }
+
+    /**
+     * Строит в фоновом потоке индекс цен текущего снимка, если он ещё не построен (например, освобождён
+     * при нехватке памяти или ещё строится после публикации).
+     * <p>
+     * Если за время построения опубликован новый снимок без индекса, строится и его индекс, и {@code onReady}
+     * вызывается только с индексом текущего каталога. Если индекс уже построен, {@code onReady} вызывается сразу.
+     * </p>
+     *
+     * @param onReady действие в главном потоке, после которого {@link #getPriceIndex()} возвращает индекс
+     */
+    public void refreshPriceIndex(Runnable onReady) {
+        CatalogSnapshot target = snapshot.get();
+        if (target.getPriceIndex() != null) {
+            onReady.run();
+            return;
+        }
+        AppExecutors.io().execute(() -> {
+            target.computePriceIndex();
+            AppExecutors.main().execute(() -> {
+                if (snapshot.get() != target) {
+                    refreshPriceIndex(onReady);
+                    return;
+                }
+                onReady.run();
+            });
+        });
+    }
+
+    /**
+     * Возвращает агрегаты категорий (количество товаров и диапазон цен), вычисленные для текущего каталога.
+     *
+     * @return агрегаты текущего снимка, или {@link CategoryAggregates#EMPTY}, если они ещё не вычислены
+     *         ({@link #refreshAggregates(Runnable)})
+     */
+    public CategoryAggregates getAggregates() {
+        CategoryAggregates aggregates = snapshot.get().getAggregates();
+        return aggregates != null ? aggregates : CategoryAggregates.EMPTY;
+    }
+
+    /**
+     * Вычисляет в фоновом потоке агрегаты категорий текущего снимка, если они ещё не вычислены.
+     * <p>
+     * Агрегаты запоминаются в самом снимке, поэтому его последующая замена не мешает обходу. Если за время
+     * вычисления опубликован новый снимок (например, после изменения цен), вычисляются и его агрегаты,
+     * и {@code onReady} вызывается только с агрегатами текущего каталога. Если агрегаты уже вычислены,
+     * {@code onReady} вызывается сразу.
+     * </p>
+     *
+     * @param onReady действие в главном потоке, после которого {@link #getAggregates()} возвращает
+     *                агрегаты текущего снимка
+     */
+    public void refreshAggregates(Runnable onReady) {
+        CatalogSnapshot target = snapshot.get();
+        if (target.getAggregates() != null) {
+            onReady.run();
+            return;
+        }
+        AppExecutors.io().execute(() -> {
+            long start = System.nanoTime();
+            CategoryAggregates computed = target.computeAggregates();
+            long elapsedMs = MetricsRegistry.getInstance().recordSince("index.aggregates", start);
+            AppLog.d(TAG, () -> "Агрегаты категорий: " + computed.size() + " категорий за " + elapsedMs + " мс");
+            AppExecutors.main().execute(() -> {
+                if (snapshot.get() != target) {
+                    refreshAggregates(onReady);
+                    return;
+                }
+                onReady.run();
+            });
+        });
+    }
+
+    /**
+     * Возвращает номер текущего состояния дерева каталога.
+     *
+     * @return номер, меняющийся при каждом изменении каталога, цен или наличия
+     */
+    public int getGeneration() {
+        return snapshot.get().getGeneration();
+    }
+
+    /**
+     * Отмечает, что состояние с указанным номером записано в локальное хранилище.
+     * <p>
+     * Если с тех пор каталог изменился (например, применена дельта или изменения цен),
+     * отметка не ставится: такие изменения есть только в памяти.
+     * </p>
+     *
+     * @param savedGeneration номер состояния на момент сохранения ({@link #getGeneration()})
+     */
+    public void markPersisted(int savedGeneration) {
+        if (savedGeneration == getGeneration()) {
+            persistedGeneration = savedGeneration;
+        }
+    }
+
+    /**
+     * Проверяет, совпадает ли каталог в памяти с содержимым локального хранилища.
+     *
+     * @return true, если узлы можно освободить и при необходимости прочитать из хранилища заново
+     */
+    public boolean isPersisted() {
+        return persistedGeneration == getGeneration();
+    }
+
+    /**
+     * Освобождает индекс цен текущей версии; он строится заново при следующем обращении. Индекс узлов
+     * по идентификатору не освобождается: он нужен для каждого поиска, а узлы и так удерживает дерево.
+     */
+    public void trimIndexes() {
+        snapshot.get().trimPriceIndex();
+    }
+
+    /**
+     * Заменяет поддеревья корневых категорий ленивыми списками снимка из локального хранилища.
+     * <p>
+     * Корневые категории копируются с поддеревьями из снимка, и публикуется новая версия каталога
+     * с тем же содержимым, поэтому опубликованные узлы не меняются. Декодированные узлы прежних поддеревьев
+     * освобождаются, как только экраны перечитают каталог ({@link OnSubtreesReleasedListener}), и при
+     * следующем обращении декодируются из снимка заново. Не заменяются поддеревья, которые показывает
+     * открытый экран ({@link #pinSubtree(int)}), и поддеревья, описания которых в снимке нет (например,
+     * в снимке облегчённого каталога). Вызывается только для каталога, совпадающего с хранилищем
+     * ({@link #isPersisted()}).
+     * </p>
+     *
+     * @param storedRoots корневые категории снимка той же версии
+     * @return количество корневых категорий, поддеревья которых заменены
+     */
+    public int releaseSubtrees(List<Category> storedRoots) {
+        int released = replaceSubtrees(storedRoots);
+        if (released > 0) {
+            for (OnSubtreesReleasedListener listener : releaseListeners) {
+                listener.onSubtreesReleased();
+            }
+        }
+        return released;
+    }
+
+    private synchronized int replaceSubtrees(List<Category> storedRoots) {
+        if (!isPersisted()) {
+            return 0;
+        }
+        Map<Integer, Category> storedById = new HashMap<>();
+        for (Category root : storedRoots) {
+            storedById.put(root.getId(), root);
+        }
+        CatalogSnapshot base = snapshot.get();
+        CatalogIndex.Editor index = new CatalogIndex.Editor(base.getIndex());
+        List<Category> roots = new ArrayList<>(base.getCatalog());
+        int released = 0;
+        for (int i = 0; i < roots.size(); i++) {
+            Category root = roots.get(i);
+            Category stored = storedById.get(root.getId());
+            if (stored == null || root.getItems().isEmpty() || pinnedRoots.containsKey(root.getId())
+                    || stored.needsDetails() && !root.needsDetails()) {
+                continue;
+            }
+            Category copy = new Category(root);
+            copy.attachItems(stored.getAttachedItems());
+            roots.set(i, copy);
+            // Записи декодированных узлов прежнего поддерева удаляются, новое поддерево не разворачивается
+            index.remove(root);
+            index.add(copy, null);
+            released++;
+        }
+        if (released == 0) {
+            return 0;
+        }
+        CatalogSnapshot next = new CatalogSnapshot(base.getVersion(), base.getGeneration() + 1,
+                roots, base.getRecommended(), index.publish(), base.getAggregates(), null);
+        snapshot.set(next);
+        persistedGeneration = next.getGeneration();
+        return released;
+    }
+
+    /**
+     * Отмечает, что открытый экран показывает узел, чтобы {@link #releaseSubtrees(List)} не заменял
+     * поддерево его корневой категории, пока экран не закрыт.
+     *
+     * @param id идентификатор показываемого узла
+     * @return идентификатор корневой категории для {@link #unpinSubtree(int)}, или -1, если узла нет в дереве
+     */
+    public int pinSubtree(int id) {
+        CatalogIndex index = snapshot.get().getIndex();
+        Category node = index.find(id);
+        if (node == null) {
+            return -1;
+        }
+        for (Category parent = index.findParent(node.getId()); parent != null; parent = index.findParent(parent.getId())) {
+            node = parent;
+        }
+        pinnedRoots.merge(node.getId(), 1, Integer::sum);
+        return node.getId();
+    }
+
+    /**
+     * Снимает отметку {@link #pinSubtree(int)} при закрытии экрана.
+     *
+     * @param rootId идентификатор, возвращённый {@link #pinSubtree(int)}; -1 игнорируется
+     */
+    public void unpinSubtree(int rootId) {
+        pinnedRoots.computeIfPresent(rootId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Регистрирует слушателя изменений цен и наличия.
+     *
+     * @param listener слушатель
+     */
+    public void addOnPricesChangedListener(OnPricesChangedListener listener) {
+        priceListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Удаляет слушателя изменений цен и наличия.
+     *
+     * @param listener слушатель
+     */
+    public void removeOnPricesChangedListener(OnPricesChangedListener listener) {
+        priceListeners.remove(listener);
+    }
+
+    /**
+     * Регистрирует слушателя замены поддеревьев.
+     *
+     * @param listener слушатель
+     */
+    public void addOnSubtreesReleasedListener(OnSubtreesReleasedListener listener) {
+        releaseListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Удаляет слушателя замены поддеревьев.
+     *
+     * @param listener слушатель
+     */
+    public void removeOnSubtreesReleasedListener(OnSubtreesReleasedListener listener) {
+        releaseListeners.remove(listener);
+    }
+
+    /**
+     * Проверяет, меняет ли изменение цену или наличие узла.
+     */
+    private static boolean changes(Category node, PricePatch patch) {
+        return node != null
+                && (patch.getPrice() != null && !Objects.equals(node.getPrice(), patch.getPrice())
+                || patch.getAvailable() != null && !Objects.equals(node.getAvailable(), patch.getAvailable()));
+    }
+
+    /**
+     * Переносит цену и наличие в неопубликованную копию узла.
+     */
+    private static void applyPatch(Category copy, PricePatch patch) {
+        if (patch.getPrice() != null) {
+            copy.setPrice(patch.getPrice());
+        }
+        if (patch.getAvailable() != null) {
+            copy.setAvailable(patch.getAvailable());
+        }
+    }
+
+    /**
+     * Проверяет, что все родители добавляемых узлов существуют и не удаляются этой же дельтой,
+     * а идентификаторы добавляемых поддеревьев не встречаются дважды и не заняты узлами каталога,
+     * которые остаются после удаления (иначе индекс указал бы только на один из узлов).
+     */
+    private static boolean canApply(CatalogDelta delta, CatalogIndex.Editor index) {
+        Set<Integer> addedIds = new HashSet<>();
+        Deque<Category> stack = new ArrayDeque<>();
+        for (CatalogNodeChange change : delta.getAdded()) {
+            if (change.getNode() == null) {
+                return false;
+            }
+            Integer parentId = change.getParentId();
+            if (parentId != null
+                    && (index.find(parentId) == null || isRemovedBy(parentId, delta.getRemoved(), index))) {
+                return false;
+            }
+            stack.push(change.getNode());
+            while (!stack.isEmpty()) {
+                Category node = stack.pop();
+                int id = node.getId();
+                if (!addedIds.add(id)
+                        || (index.find(id) != null && !isRemovedBy(id, delta.getRemoved(), index))) {
+                    AppLog.w(TAG, "Дельта добавляет уже существующий узел id=" + id);
+                    return false;
+                }
+                for (Category child : node.getItems()) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, попадает ли узел в одно из удаляемых поддеревьев.
+     */
+    private static boolean isRemovedBy(int id, List<Integer> removed, CatalogIndex.Editor index) {
+        Integer current = id;
+        while (current != null) {
+            if (removed.contains(current)) {
+                return true;
+            }
+            Category parent = index.findParent(current);
+            current = parent != null ? parent.getId() : null;
+        }
+        return false;
+    }
+
+    private static void removeNode(int id, TreeEdit edit, CatalogChangeSet changes) {
+        Category node = edit.index.find(id);
+        if (node == null) {
+            return;
+        }
+        Category parent = edit.index.findParent(id);
+        if (parent != null) {
+            Category editable = edit.editable(parent.getId());
+            editable.removeItemAt(editable.indexOfItem(id));
+            changes.nodeChanged(parent.getId());
+        } else {
+            int position = indexOf(edit.roots, id);
+            edit.roots.remove(position);
+            changes.catalogRemoved(position, 1);
+        }
+        edit.index.remove(node);
+        changes.nodeChanged(id);
+    }
+
+    private static void addNode(CatalogNodeChange change, TreeEdit edit, CatalogChangeSet changes) {
+        Category node = change.getNode();
+        Integer parentId = change.getParentId();
+        if (parentId != null) {
+            Category parent = edit.editable(parentId);
+            parent.addItem(change.getPosition(), node);
+            edit.index.add(node, parent);
+            changes.nodeChanged(parentId);
+        } else {
+            int position = Math.max(0, Math.min(change.getPosition(), edit.roots.size()));
+            edit.roots.add(position, node);
+            edit.index.add(node, null);
+            changes.catalogInserted(position, 1);
+        }
+        changes.nodeChanged(node.getId());
+    }
+
+    private static void modifyNode(Category fields, TreeEdit edit, List<Category> recommended,
+                                   CatalogChangeSet changes) {
+        if (edit.index.find(fields.getId()) != null) {
+            Category node = edit.editable(fields.getId());
+            node.copyFieldsFrom(fields);
+            changes.nodeChanged(node.getId());
+            if (edit.index.findParent(node.getId()) == null) {
+                changes.catalogChanged(indexOf(edit.roots, node.getId()));
+            }
+        }
+        int position = indexOf(recommended, fields.getId());
+        if (position >= 0) {
+            Category copy = new Category(recommended.get(position));
+            copy.copyFieldsFrom(fields);
+            recommended.set(position, copy);
+            changes.recommendedChanged(position);
+        }
+    }
+
+    /**
+     * Новая версия дерева, которая строится до публикации (дельта-обновлением, изменениями цен или описаний).
+     * <p>
+     * Изменяемые узлы заменяются копиями вместе со всеми предками до корня; копии ещё не опубликованы,
+     * поэтому их списки можно менять на месте. Индекс новой версии сразу переводится на копии.
+     * </p>
+     */
+    private static final class TreeEdit {
+        /** Копия корневого списка. */
+        final List<Category> roots;
+
+        /** Индекс новой версии. */
+        final CatalogIndex.Editor index;
+
+        /** Скопированные в этой версии узлы по идентификатору. */
+        final Map<Integer, Category> copies = new HashMap<>();
+
+        TreeEdit(List<Category> roots, CatalogIndex.Editor index) {
+            this.roots = new ArrayList<>(roots);
+            this.index = index;
+        }
+
+        /**
+         * Возвращает неопубликованную копию узла, копируя при необходимости путь от корня до него.
+         *
+         * @param id идентификатор узла из индекса
+         * @return копия узла, которую можно изменять
+         */
+        Category editable(int id) {
+            Category copy = copies.get(id);
+            if (copy != null) {
+                return copy;
+            }
+            copy = new Category(index.find(id));
+            copies.put(id, copy);
+            Category parent = index.findParent(id);
+            Category parentCopy = null;
+            if (parent == null) {
+                roots.set(indexOf(roots, id), copy);
+            } else {
+                parentCopy = editable(parent.getId());
+                parentCopy.setItemAt(parentCopy.indexOfItem(id), copy);
+            }
+            index.replace(copy, parentCopy);
+            return copy;
+        }
+    }
+
+    private static int indexOf(List<Category> list, int id) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Преобразует рекомендуемый товар в {@link Category}, которую используют адаптеры.
+     *
+     * @param product товар из ответа сервера
+     * @return объект {@link Category} с полями товара
+     */
+    public static Category toCategory(Product product) {
+        Category productCategory = new Category();
+        productCategory.setId(product.getId());
+        productCategory.setName(product.getName());
+        productCategory.setImageUrl(product.getImageUrl());
+        productCategory.setDescription(product.getDescription());
+        productCategory.setPrice(product.getPrice());
+        return productCategory;
+    }
+}
@@ -0,0 +1,315 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.snapshot.SnapshotFormat;
+import com.matlakhov.catalogapp.snapshot.SnapshotReader;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Неизменяемая версия каталога, опубликованная {@link CatalogRepository}.
+ * <p>
+ * Снимок хранит корневой список категорий, список рекомендуемых товаров, версию каталога на сервере
+ * и номер состояния. Списки и структура дерева снимка после публикации не меняются: изменения дерева
+ * строят новую версию, копируя только узлы на пути от корня до изменённого узла, а остальные
+ * поддеревья остаются общими со старой версией. Поэтому снимок можно читать из любого потока
+ * без блокировок. Поля узлов (цена, наличие, описание) тоже меняются только в копиях узлов новой версии.
+ * </p>
+ * <p>
+ * Вместе с деревом публикуется индекс узлов и их родителей по идентификатору ({@link CatalogIndex}),
+ * построенный писателем, поэтому поиск узла не требует блокировок и перестроения индекса.
+ * Агрегаты категорий ({@link CategoryAggregates}) и индекс цен ({@link PriceIndex}) относятся к дереву
+ * конкретного снимка: они вычисляются в фоне один раз и запоминаются в снимке. Версия, в которой цены
+ * не менялись (загружены описания или освобождены поддеревья), получает агрегаты предыдущей; после
+ * изменения цен агрегаты считаются заново, а индекс цен переносится в копию.
+ * </p>
+ */
+public final class CatalogSnapshot {
+
+    /**
+     * Посетитель текстовых полей узлов ({@link #visitNodes(NodeVisitor)}).
+     */
+    public interface NodeVisitor {
+        /**
+         * @param id          идентификатор узла
+         * @param name        название
+         * @param description описание, или null
+         */
+        void visit(int id, String name, String description);
+    }
+
+    /** Снимок пустого каталога. */
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, 0, Collections.emptyList(),
+            Collections.emptyList(), CatalogIndex.EMPTY, CategoryAggregates.EMPTY, null);
+
+    /** Версия каталога на сервере, 0 — если неизвестна. */
+    private final long version;
+
+    /** Номер состояния; увеличивается при каждом изменении каталога, цен или наличия. */
+    private final int generation;
+
+    /** Корневой список категорий. */
+    private final List<Category> catalog;
+
+    /** Список рекомендуемых товаров. */
+    private final List<Category> recommended;
+
+    /** Индекс узлов дерева по идентификатору. */
+    private final CatalogIndex index;
+
+    /** Агрегаты категорий этого дерева, или null, пока они не вычислены. */
+    private volatile CategoryAggregates aggregates;
+
+    /** Индекс товаров этого дерева по цене, или null, пока он не построен. */
+    private volatile PriceIndex priceIndex;
+
+    /**
+     * Создаёт снимок нового дерева и строит его индекс. Переданные списки не копируются и после вызова
+     * не должны изменяться.
+     *
+     * @param version     версия каталога
+     * @param generation  номер состояния
+     * @param catalog     корневой список категорий
+     * @param recommended список рекомендуемых товаров
+     */
+    CatalogSnapshot(long version, int generation, List<Category> catalog, List<Category> recommended) {
+        this(version, generation, catalog, recommended, CatalogIndex.build(catalog), null, null);
+    }
+
+    /**
+     * Создаёт снимок версии, построенной из предыдущей. Агрегаты и индекс цен переносятся из предыдущей
+     * версии, если они для нового дерева не изменились.
+     *
+     * @param version     версия каталога
+     * @param generation  номер состояния
+     * @param catalog     корневой список категорий
+     * @param recommended список рекомендуемых товаров
+     * @param index       индекс узлов нового дерева
+     * @param aggregates  агрегаты категорий этого дерева, или null, если их нужно вычислить
+     * @param priceIndex  индекс цен этого дерева, или null, если его нужно построить
+     */
+    CatalogSnapshot(long version, int generation, List<Category> catalog, List<Category> recommended,
+                    CatalogIndex index, CategoryAggregates aggregates, PriceIndex priceIndex) {
+        this.version = version;
+        this.generation = generation;
+        this.catalog = Collections.unmodifiableList(catalog);
+        this.recommended = Collections.unmodifiableList(recommended);
+        this.index = index;
+        this.aggregates = aggregates;
+        this.priceIndex = priceIndex;
+    }
+
+    /**
+     * Возвращает версию каталога.
+     *
+     * @return версия, или 0, если каталог не загружен или сервер не поддерживает версионирование
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает номер состояния каталога.
+     *
+     * @return номер, различный для разных версий дерева, цен и наличия
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Возвращает корневой список категорий.
+     *
+     * @return неизменяемый список
+     */
+    public List<Category> getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Возвращает список рекомендуемых товаров.
+     *
+     * @return неизменяемый список
+     */
+    public List<Category> getRecommended() {
+        return recommended;
+    }
+
+    /**
+     * Находит узел этого снимка по идентификатору среди узлов дерева и рекомендуемых товаров.
+     * Метод можно вызывать из любого потока.
+     *
+     * @param id идентификатор категории или товара
+     * @return узел, или null, если его нет в этой версии
+     */
+    public Category findNode(int id) {
+        Category node = index.find(id);
+        if (node == null) {
+            for (Category product : recommended) {
+                if (product != null && product.getId() == id) {
+                    return product;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Обходит узлы дерева в глубину, а затем рекомендуемые товары, передавая посетителю их текстовые поля.
+     * <p>
+     * Поддеревья, присоединённые лениво декодируемыми списками снимка ({@link LazyCatalogList}), читаются
+     * прямо из снимка, без создания узлов: такие списки не содержат изменённых узлов, потому что при
+     * изменении узла его родитель копируется вместе со списком. Поэтому обход не разворачивает ленивое
+     * дерево и не возвращает в память поддеревья, освобождённые при нехватке памяти.
+     * </p>
+     *
+     * @param visitor посетитель
+     */
+    public void visitNodes(NodeVisitor visitor) {
+        Deque<Pending> stack = new ArrayDeque<>();
+        pushAll(stack, catalog);
+        while (!stack.isEmpty()) {
+            Pending pending = stack.pop();
+            if (pending.node != null) {
+                Category node = pending.node;
+                visitor.visit(node.getId(), node.getName(), node.getDescription());
+                pushAll(stack, node.getAttachedItems());
+            } else {
+                SnapshotReader reader = pending.reader;
+                int node = pending.readerNode;
+                visitor.visit(reader.getId(node), reader.getName(node), reader.getDescription(node));
+                int first = reader.getFirstChild(node);
+                for (int i = reader.getChildCount(node) - 1; i >= 0; i--) {
+                    stack.push(new Pending(null, reader, first + i));
+                }
+            }
+        }
+        for (Category product : recommended) {
+            if (product != null) {
+                visitor.visit(product.getId(), product.getName(), product.getDescription());
+            }
+        }
+    }
+
+    /**
+     * Добавляет элементы списка в стек обхода в обратном порядке, чтобы первый оказался сверху.
+     */
+    private static void pushAll(Deque<Pending> stack, List<Category> items) {
+        if (items instanceof LazyCatalogList) {
+            LazyCatalogList lazy = (LazyCatalogList) items;
+            for (int i = lazy.size() - 1; i >= 0; i--) {
+                stack.push(new Pending(null, lazy.getReader(), lazy.getFirstNode() + i));
+            }
+            return;
+        }
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (items.get(i) != null) {
+                stack.push(new Pending(items.get(i), null, SnapshotFormat.NONE));
+            }
+        }
+    }
+
+    /**
+     * Узел, ожидающий обхода: узел дерева или номер узла снимка.
+     */
+    private static final class Pending {
+        final Category node;
+        final SnapshotReader reader;
+        final int readerNode;
+
+        Pending(Category node, SnapshotReader reader, int readerNode) {
+            this.node = node;
+            this.reader = reader;
+            this.readerNode = readerNode;
+        }
+    }
+
+    /**
+     * Проверяет, пуст ли каталог.
+     *
+     * @return true, если каталог и список рекомендуемых товаров пусты
+     */
+    public boolean isEmpty() {
+        return catalog.isEmpty() && recommended.isEmpty();
+    }
+
+    /**
+     * Возвращает агрегаты категорий этого снимка.
+     *
+     * @return агрегаты, или null, если они ещё не вычислены ({@link #computeAggregates()})
+     */
+    public CategoryAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Вычисляет агрегаты категорий этого снимка и запоминает их. Повторные вызовы, в том числе
+     * одновременные, возвращают уже вычисленные агрегаты. Вызывается в фоновом потоке.
+     *
+     * @return агрегаты категорий
+     */
+    CategoryAggregates computeAggregates() {
+        CategoryAggregates result = aggregates;
+        if (result == null) {
+            synchronized (this) {
+                result = aggregates;
+                if (result == null) {
+                    result = CategoryAggregates.compute(catalog);
+                    aggregates = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает индекс узлов дерева по идентификатору.
+     *
+     * @return индекс этого снимка
+     */
+    CatalogIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Возвращает индекс товаров по цене, если он уже построен.
+     *
+     * @return индекс, или null, если он ещё не построен ({@link #computePriceIndex()})
+     */
+    PriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+
+    /**
+     * Строит индекс товаров по цене и запоминает его. Повторные вызовы, в том числе одновременные,
+     * возвращают уже построенный индекс. Обходит всё дерево, поэтому вызывается в фоновом потоке.
+     *
+     * @return индекс цен
+     */
+    PriceIndex computePriceIndex() {
+        PriceIndex result = priceIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = priceIndex;
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = PriceIndex.build(catalog);
+                    priceIndex = result;
+                    MetricsRegistry.getInstance().recordSince("index.price", start);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Освобождает индекс цен при нехватке памяти; он строится заново при следующем обращении.
+     */
+    void trimPriceIndex() {
+        priceIndex = null;
+    }
+}
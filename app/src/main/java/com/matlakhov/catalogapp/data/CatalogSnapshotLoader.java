@@ -0,0 +1,205 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.AtomicFile;
+
+import androidx.annotation.WorkerThread;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.models.Product;
+import com.matlakhov.catalogapp.snapshot.SnapshotNode;
+import com.matlakhov.catalogapp.snapshot.SnapshotReader;
+import com.matlakhov.catalogapp.snapshot.SnapshotWriter;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Загрузчик бинарных снимков каталога.
+ * <p>
+ * Встроенный снимок собирается при сборке приложения задачей {@code compileCatalogSnapshot} и кладётся
+ * в assets без сжатия, поэтому его можно отобразить в память прямо из APK. Он используется при первом
+ * запуске, когда локальное хранилище ещё пусто, и служит базовой версией для последующей синхронизации.
+ * </p>
+ * <p>
+ * После каждой полной загрузки {@link CatalogStore} записывает такой же снимок в файл, из которого
+ * каталог восстанавливается при холодном старте и после завершения процесса. Снимок читается через
+ * отображённый в память буфер, без разбора JSON, а узлы декодируются лениво ({@link LazyCatalogList}).
+ * </p>
+ */
+public final class CatalogSnapshotLoader {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "CatalogSnapshotLoader";
+
+    /** Имя файла снимка в assets. */
+    public static final String ASSET_NAME = "catalog.snapshot";
+
+    private CatalogSnapshotLoader() {
+    }
+
+    /**
+     * Загружает встроенный снимок каталога.
+     *
+     * @param context контекст приложения
+     * @return каталог из снимка (время синхронизации равно времени сборки снимка),
+     * или null, если снимка нет или он повреждён
+     */
+    @WorkerThread
+    public static CatalogStore.StoredCatalog loadFromAssets(Context context) {
+        long start = System.nanoTime();
+        try {
+            SnapshotReader reader = SnapshotReader.open(mapAsset(context, ASSET_NAME));
+            CatalogStore.StoredCatalog catalog = read(reader);
+            AppLog.d(TAG, () -> "Снимок загружен: узлов=" + reader.getNodeCount() + ", версия="
+                    + reader.getCatalogVersion() + ", "
+                    + MetricsRegistry.getInstance().recordSince("storage.snapshot_load", start) + " мс");
+            return catalog;
+        } catch (FileNotFoundException e) {
+            AppLog.w(TAG, "Снимок каталога не встроен в приложение");
+            return null;
+        } catch (IOException | RuntimeException e) {
+            AppLog.e(TAG, "Ошибка чтения снимка каталога: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Загружает снимок каталога из файла, ранее записанного {@link #writeToFile(File, CatalogResponse)}.
+     *
+     * @param file файл снимка
+     * @return каталог из снимка (время синхронизации равно времени записи снимка),
+     * или null, если файла нет или он повреждён
+     */
+    @WorkerThread
+    public static CatalogStore.StoredCatalog loadFromFile(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            return read(SnapshotReader.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        } catch (IOException | RuntimeException e) {
+            AppLog.e(TAG, "Ошибка чтения снимка " + file + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Атомарно записывает каталог в файл снимка.
+     *
+     * @param file     файл снимка
+     * @param response ответ сервера с полным каталогом
+     */
+    @WorkerThread
+    public static void writeToFile(File file, CatalogResponse response) {
+        writeToFile(file, response, Collections.emptyMap());
+    }
+
+    /**
+     * Атомарно записывает каталог в файл снимка, дополняя узлы без описания и изображения сохранёнными ранее.
+     *
+     * @param file     файл снимка
+     * @param response ответ сервера с каталогом
+     * @param details  описания и изображения по идентификатору узла
+     */
+    @WorkerThread
+    public static void writeToFile(File file, CatalogResponse response, Map<Integer, NodeDetails> details) {
+        List<SnapshotNode> recommended = new ArrayList<>();
+        for (Product product : response.getProducts()) {
+            if (product != null) {
+                recommended.add(toSnapshotNode(CatalogRepository.toCategory(product), details));
+            }
+        }
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream out = null;
+        try {
+            out = atomicFile.startWrite();
+            SnapshotWriter.write(toSnapshotNodes(response.getCatalog(), details), recommended, response.getVersion(),
+                    System.currentTimeMillis(), out);
+            atomicFile.finishWrite(out);
+        } catch (IOException e) {
+            AppLog.e(TAG, "Ошибка записи снимка " + file + ": " + e.getMessage(), e);
+            if (out != null) {
+                atomicFile.failWrite(out);
+            }
+        }
+    }
+
+    /**
+     * Создаёт каталог поверх открытого снимка.
+     * <p>
+     * Списки корневых категорий и рекомендуемых товаров, как и вложенные списки, декодируются лениво
+     * ({@link LazyCatalogList}): узел превращается в {@link Category} только при первом обращении к нему.
+     * </p>
+     *
+     * @param reader открытый снимок
+     * @return каталог из снимка
+     */
+    static CatalogStore.StoredCatalog read(SnapshotReader reader) {
+        List<Category> roots = new LazyCatalogList(reader, 0, reader.getRootCount());
+        List<Category> recommended = new LazyCatalogList(reader, reader.getRecommendedNode(0),
+                reader.getRecommendedCount());
+        return new CatalogStore.StoredCatalog(roots, recommended, reader.getCatalogVersion(),
+                reader.getCreatedAt());
+    }
+
+    private static List<SnapshotNode> toSnapshotNodes(List<Category> items, Map<Integer, NodeDetails> details) {
+        List<SnapshotNode> nodes = new ArrayList<>(items.size());
+        for (Category item : items) {
+            if (item != null) {
+                nodes.add(toSnapshotNode(item, details));
+            }
+        }
+        return nodes;
+    }
+
+    private static SnapshotNode toSnapshotNode(Category category, Map<Integer, NodeDetails> details) {
+        SnapshotNode node = new SnapshotNode();
+        node.id = category.getId();
+        node.name = category.getName();
+        node.description = category.getDescription();
+        node.imageUrl = category.getImageUrl();
+        NodeDetails kept = category.needsDetails() ? details.get(category.getId()) : null;
+        if (kept != null) {
+            node.description = kept.getDescription();
+            node.imageUrl = kept.getImageUrl();
+        }
+        node.price = category.getPrice();
+        node.available = category.getAvailable();
+        node.items = toSnapshotNodes(category.getItems(), details);
+        return node;
+    }
+
+    /**
+     * Отображает несжатый файл из assets в память.
+     *
+     * @param context контекст приложения
+     * @param name    имя файла в assets
+     * @return буфер только для чтения с содержимым файла
+     * @throws IOException если файл отсутствует или сжат в APK
+     */
+    private static ByteBuffer mapAsset(Context context, String name) throws IOException {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(name);
+             FileInputStream input = new FileInputStream(descriptor.getFileDescriptor());
+             FileChannel channel = input.getChannel()) {
+            // Отображение остаётся действительным после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(),
+                    descriptor.getDeclaredLength());
+        }
+    }
+}
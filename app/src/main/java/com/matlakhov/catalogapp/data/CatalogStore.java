@@ -0,0 +1,680 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.WorkerThread;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.models.Product;
+import com.matlakhov.catalogapp.search.TextNormalizer;
+import com.matlakhov.catalogapp.util.AppLog;
+import com.matlakhov.catalogapp.util.StringPool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Локальное хранилище каталога в базе SQLite.
+ * <p>
+ * Хранит последний полностью загруженный каталог (дерево категорий и список рекомендуемых товаров)
+ * вместе с версией, заголовками для условных запросов ({@code ETag}, {@code Last-Modified})
+ * и временем последней успешной синхронизации. Дельта-обновления в хранилище не записываются:
+ * версия в хранилище всегда соответствует его содержимому, поэтому после запуска из хранилища
+ * клиент запрашивает изменения относительно неё.
+ * </p>
+ * <p>
+ * Названия и описания узлов индексируются в полнотекстовой таблице FTS4 ({@link #search(String, int, int)}).
+ * Сохранение обновляет таблицу узлов и индекс инкрементально: добавляются новые узлы, перезаписываются
+ * изменённые, удаляются отсутствующие в новом каталоге, а индекс пересчитывается только для узлов,
+ * у которых изменились название или описание.
+ * </p>
+ * <p>
+ * Все методы чтения и записи выполняют дисковые операции и вызываются из фонового потока.
+ * </p>
+ */
+public class CatalogStore {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "CatalogStore";
+
+    /** Имя файла базы данных. */
+    private static final String DATABASE_NAME = "catalog.db";
+
+    /** Версия схемы базы данных. */
+    private static final int DATABASE_VERSION = 2;
+
+    /** Значение столбца {@code list} для узлов дерева каталога. */
+    private static final int LIST_CATALOG = 0;
+
+    /** Значение столбца {@code list} для рекомендуемых товаров. */
+    private static final int LIST_RECOMMENDED = 1;
+
+    /** Ключ метаданных: версия каталога. */
+    private static final String META_VERSION = "version";
+
+    /** Ключ метаданных: заголовок ETag последнего ответа. */
+    private static final String META_ETAG = "etag";
+
+    /** Ключ метаданных: заголовок Last-Modified последнего ответа. */
+    private static final String META_LAST_MODIFIED = "last_modified";
+
+    /** Ключ метаданных: время последней успешной синхронизации (мс). */
+    private static final String META_SYNCED_AT = "synced_at";
+
+    /** Ключ метаданных: номер последнего сохранения (отмечает узлы, присутствующие в каталоге). */
+    private static final String META_STAMP = "stamp";
+
+    /** Единый экземпляр хранилища. */
+    private static CatalogStore instance;
+
+    /**
+     * Каталог, прочитанный из хранилища.
+     */
+    public static final class StoredCatalog {
+        /** Корневой список категорий. */
+        public final List<Category> catalog;
+
+        /** Список рекомендуемых товаров. */
+        public final List<Category> recommended;
+
+        /** Версия каталога. */
+        public final long version;
+
+        /** Время последней успешной синхронизации (мс). */
+        public final long syncedAt;
+
+        StoredCatalog(List<Category> catalog, List<Category> recommended, long version, long syncedAt) {
+            this.catalog = Collections.unmodifiableList(catalog);
+            this.recommended = Collections.unmodifiableList(recommended);
+            this.version = version;
+            this.syncedAt = syncedAt;
+        }
+    }
+
+    /**
+     * Помощник открытия базы данных.
+     */
+    private static final class DbHelper extends SQLiteOpenHelper {
+
+        DbHelper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE nodes ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "list INTEGER NOT NULL, "
+                    + "id INTEGER NOT NULL, "
+                    + "parent_id INTEGER, "
+                    + "position INTEGER NOT NULL, "
+                    + "name TEXT, "
+                    + "description TEXT, "
+                    + "image_url TEXT, "
+                    + "price REAL, "
+                    + "available INTEGER, "
+                    + "stamp INTEGER NOT NULL, "
+                    + "UNIQUE (list, id))");
+            db.execSQL("CREATE INDEX nodes_parent ON nodes (list, parent_id, position)");
+            // Нормализованный текст узлов; docid совпадает с nodes._id
+            db.execSQL("CREATE VIRTUAL TABLE nodes_fts USING fts4(name, description)");
+            db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            db.execSQL("DROP TABLE IF EXISTS nodes");
+            db.execSQL("DROP TABLE IF EXISTS nodes_fts");
+            db.execSQL("DROP TABLE IF EXISTS meta");
+            onCreate(db);
+        }
+    }
+
+    /** Имя файла бинарного снимка каталога во внутреннем хранилище. */
+    private static final String SNAPSHOT_FILE_NAME = "catalog.snapshot";
+
+    /** Помощник базы данных. */
+    private final DbHelper helper;
+
+    /** Файл бинарного снимка последнего полностью загруженного каталога. */
+    private final File snapshotFile;
+
+    private CatalogStore(Context context) {
+        this(context, DATABASE_NAME, new File(context.getApplicationContext().getFilesDir(), SNAPSHOT_FILE_NAME));
+    }
+
+    /**
+     * Создаёт хранилище с заданными файлами. Используйте {@link #getInstance(Context)}.
+     *
+     * @param context      контекст приложения
+     * @param databaseName имя файла базы данных
+     * @param snapshotFile файл бинарного снимка
+     */
+    CatalogStore(Context context, String databaseName, File snapshotFile) {
+        this.helper = new DbHelper(context.getApplicationContext(), databaseName);
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Возвращает единый экземпляр хранилища.
+     *
+     * @param context контекст приложения
+     * @return экземпляр {@link CatalogStore}
+     */
+    public static synchronized CatalogStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new CatalogStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Читает сохранённый каталог.
+     * <p>
+     * Строки всех узлов проходят через общий {@link StringPool}, как и при разборе ответа сервера.
+     * </p>
+     *
+     * @return сохранённый каталог, или null, если хранилище пусто
+     */
+    @WorkerThread
+    public StoredCatalog load() {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        Map<Integer, Category> nodes = new HashMap<>();
+        List<Category> roots = new ArrayList<>();
+        List<Category> recommended = new ArrayList<>();
+        List<Category> children = new ArrayList<>();
+        List<Integer> childParents = new ArrayList<>();
+        StringPool strings = new StringPool();
+
+        try (Cursor cursor = db.rawQuery("SELECT list, id, parent_id, name, description, image_url, price, available "
+                + "FROM nodes ORDER BY list, parent_id, position", null)) {
+            while (cursor.moveToNext()) {
+                Category node = new Category();
+                node.setId(cursor.getInt(1));
+                node.setName(cursor.getString(3));
+                node.setDescription(cursor.getString(4));
+                node.setImageUrl(cursor.getString(5));
+                node.setPrice(cursor.isNull(6) ? null : cursor.getDouble(6));
+                node.setAvailable(cursor.isNull(7) ? null : cursor.getInt(7) != 0);
+                node.compact(strings);
+
+                if (cursor.getInt(0) == LIST_RECOMMENDED) {
+                    recommended.add(node);
+                } else if (cursor.isNull(2)) {
+                    roots.add(node);
+                    nodes.put(node.getId(), node);
+                } else {
+                    children.add(node);
+                    childParents.add(cursor.getInt(2));
+                    nodes.put(node.getId(), node);
+                }
+            }
+        }
+
+        if (nodes.isEmpty() && recommended.isEmpty()) {
+            return null;
+        }
+        // Дети прочитаны по возрастанию позиции внутри родителя, поэтому добавляются в конец
+        for (int i = 0; i < children.size(); i++) {
+            Category parent = nodes.get(childParents.get(i));
+            if (parent != null) {
+                parent.addItem(Integer.MAX_VALUE, children.get(i));
+            }
+        }
+        return new StoredCatalog(roots, recommended, parseLong(getMeta(db, META_VERSION)),
+                parseLong(getMeta(db, META_SYNCED_AT)));
+    }
+
+    /**
+     * Читает сохранённый каталог из бинарного снимка.
+     * <p>
+     * В отличие от {@link #load()}, не читает базу данных и не создаёт объекты всех узлов:
+     * снимок отображается в память, а узлы декодируются при первом обращении к ним.
+     * </p>
+     *
+     * @return сохранённый каталог, или null, если снимка нет
+     */
+    @WorkerThread
+    public StoredCatalog loadSnapshot() {
+        return CatalogSnapshotLoader.loadFromFile(snapshotFile);
+    }
+
+    /**
+     * Заменяет содержимое хранилища полностью загруженным каталогом.
+     * <p>
+     * Вместе с базой данных перезаписывается бинарный снимок каталога ({@link #loadSnapshot()}).
+     * </p>
+     *
+     * @param response     ответ сервера с полным каталогом
+     * @param etag         заголовок {@code ETag} ответа, или null
+     * @param lastModified заголовок {@code Last-Modified} ответа, или null
+     */
+    @WorkerThread
+    public void save(CatalogResponse response, String etag, String lastModified) {
+        save(response, etag, lastModified, false);
+    }
+
+    /**
+     * Заменяет содержимое хранилища загруженным каталогом.
+     * <p>
+     * Облегчённый каталог не содержит описаний и изображений, поэтому для его узлов без них сохраняются
+     * описание и изображение, уже записанные в хранилище для того же узла: иначе после перезапуска
+     * или освобождения памяти их пришлось бы снова загружать по сети, а полнотекстовый индекс
+     * потерял бы описания.
+     * </p>
+     *
+     * @param response     ответ сервера с каталогом
+     * @param etag         заголовок {@code ETag} ответа, или null
+     * @param lastModified заголовок {@code Last-Modified} ответа, или null
+     * @param skeleton     true, если это облегчённый каталог без описаний и изображений
+     */
+    @WorkerThread
+    public void save(CatalogResponse response, String etag, String lastModified, boolean skeleton) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        NodeWriter writer;
+        db.beginTransaction();
+        try {
+            long stamp = parseLong(getMeta(db, META_STAMP)) + 1;
+            writer = new NodeWriter(db, stamp, skeleton);
+            writer.writeTree(response.getCatalog(), null);
+
+            List<Product> products = response.getProducts();
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                if (product != null) {
+                    writer.write(LIST_RECOMMENDED, CatalogRepository.toCategory(product), null, i);
+                }
+            }
+            writer.deleteStale();
+
+            putMeta(db, META_STAMP, String.valueOf(stamp));
+            putMeta(db, META_VERSION, String.valueOf(response.getVersion()));
+            putMeta(db, META_ETAG, etag);
+            putMeta(db, META_LAST_MODIFIED, lastModified);
+            putMeta(db, META_SYNCED_AT, String.valueOf(System.currentTimeMillis()));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        CatalogSnapshotLoader.writeToFile(snapshotFile, response, writer.keptDetails);
+        AppLog.d(TAG, () -> "Каталог сохранён: версия=" + response.getVersion() + ", добавлено=" + writer.inserted
+                + ", изменено=" + writer.updated + ", переиндексировано=" + writer.reindexed
+                + ", удалено=" + writer.deleted + ", сохранено описаний=" + writer.keptDetails.size() + ", "
+                + MetricsRegistry.getInstance().recordSince("storage.save", start) + " мс");
+    }
+
+    /**
+     * Ищет узлы по полнотекстовому индексу названий и описаний.
+     * <p>
+     * Каждое слово запроса ищется как префикс, узел должен содержать все слова. Сначала идут узлы,
+     * у которых все слова найдены в названии, затем остальные; внутри групп — более короткие названия.
+     * Рекомендуемые товары, которые есть в дереве каталога, возвращаются один раз.
+     * </p>
+     *
+     * @param query  текст запроса
+     * @param offset количество пропускаемых результатов (для постраничной загрузки)
+     * @param limit  максимальное количество результатов
+     * @return найденные узлы без вложенных элементов
+     */
+    @WorkerThread
+    public List<Category> search(String query, int offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        List<Category> results = new ArrayList<>();
+        if (tokens.isEmpty() || limit <= 0) {
+            return results;
+        }
+        StringBuilder anyColumn = new StringBuilder();
+        StringBuilder nameColumn = new StringBuilder();
+        for (String token : tokens) {
+            anyColumn.append(token).append("* ");
+            nameColumn.append("name:").append(token).append("* ");
+        }
+
+        SQLiteDatabase db = helper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT n.id, n.name, n.description, n.image_url, n.price, n.available "
+                + "FROM nodes_fts JOIN nodes n ON n._id = nodes_fts.docid "
+                + "WHERE nodes_fts MATCH ? "
+                + "AND NOT (n.list = " + LIST_RECOMMENDED + " AND EXISTS "
+                + "(SELECT 1 FROM nodes t WHERE t.list = " + LIST_CATALOG + " AND t.id = n.id)) "
+                + "ORDER BY nodes_fts.docid NOT IN (SELECT docid FROM nodes_fts WHERE nodes_fts MATCH ?), "
+                + "length(n.name), n.name "
+                + "LIMIT ? OFFSET ?", new String[]{anyColumn.toString().trim(), nameColumn.toString().trim(),
+                String.valueOf(limit), String.valueOf(Math.max(0, offset))})) {
+            while (cursor.moveToNext()) {
+                Category node = new Category();
+                node.setId(cursor.getInt(0));
+                node.setName(cursor.getString(1));
+                node.setDescription(cursor.getString(2));
+                node.setImageUrl(cursor.getString(3));
+                node.setPrice(cursor.isNull(4) ? null : cursor.getDouble(4));
+                node.setAvailable(cursor.isNull(5) ? null : cursor.getInt(5) != 0);
+                results.add(node);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Читает страницу дочерних элементов категории каталога.
+     * <p>
+     * Позиции детей внутри родителя непрерывны, поэтому страница выбирается диапазоном по индексу
+     * {@code (list, parent_id, position)} без пропуска предыдущих строк.
+     * </p>
+     *
+     * @param parentId идентификатор категории
+     * @param offset   позиция первого элемента страницы
+     * @param limit    максимальное количество элементов
+     * @return страница без вложенных элементов; {@link CategoryPage#getTotal()} равен 0, если категории нет
+     */
+    @WorkerThread
+    public CategoryPage loadChildren(int parentId, int offset, int limit) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        String[] parent = {String.valueOf(parentId)};
+        int total = (int) DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM nodes WHERE list = "
+                + LIST_CATALOG + " AND parent_id = ?", parent);
+        List<Category> items = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT id, name, description, image_url, price, available FROM nodes "
+                + "WHERE list = " + LIST_CATALOG + " AND parent_id = ? AND position >= ? AND position < ? "
+                + "ORDER BY position", new String[]{parent[0], String.valueOf(offset),
+                String.valueOf((long) offset + limit)})) {
+            while (cursor.moveToNext()) {
+                items.add(readNode(cursor));
+            }
+        }
+        return new CategoryPage(parentId, total, offset, items);
+    }
+
+    /**
+     * Читает первые категории верхнего уровня и первые рекомендуемые товары — элементы,
+     * которые главный экран показывает сразу после открытия.
+     * <p>
+     * В отличие от {@link #load()}, не читает остальное дерево: оба списка выбираются
+     * по индексу {@code (list, parent_id, position)} с ограничением количества строк.
+     * </p>
+     *
+     * @param limit максимальное количество элементов каждого списка
+     * @return категории верхнего уровня, затем рекомендуемые товары, без вложенных элементов
+     */
+    @WorkerThread
+    public List<Category> loadTopLevel(int limit) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        List<Category> items = new ArrayList<>();
+        String[] args = {String.valueOf(limit)};
+        try (Cursor cursor = db.rawQuery("SELECT id, name, description, image_url, price, available FROM nodes "
+                + "WHERE list = " + LIST_CATALOG + " AND parent_id IS NULL ORDER BY position LIMIT ?", args)) {
+            while (cursor.moveToNext()) {
+                items.add(readNode(cursor));
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT id, name, description, image_url, price, available FROM nodes "
+                + "WHERE list = " + LIST_RECOMMENDED + " ORDER BY parent_id, position LIMIT ?", args)) {
+            while (cursor.moveToNext()) {
+                items.add(readNode(cursor));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Создаёт узел без вложенных элементов из строки со столбцами
+     * {@code id, name, description, image_url, price, available}.
+     */
+    private static Category readNode(Cursor cursor) {
+        Category node = new Category();
+        node.setId(cursor.getInt(0));
+        node.setName(cursor.getString(1));
+        node.setDescription(cursor.getString(2));
+        node.setImageUrl(cursor.getString(3));
+        node.setPrice(cursor.isNull(4) ? null : cursor.getDouble(4));
+        node.setAvailable(cursor.isNull(5) ? null : cursor.getInt(5) != 0);
+        return node;
+    }
+
+    /**
+     * Отмечает успешную синхронизацию без изменения данных (ответ 304 Not Modified).
+     */
+    @WorkerThread
+    public void markSynced() {
+        putMeta(helper.getWritableDatabase(), META_SYNCED_AT, String.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Возвращает заголовок {@code ETag} последнего сохранённого ответа.
+     *
+     * @return значение ETag, или null
+     */
+    @WorkerThread
+    public String getEtag() {
+        return getMeta(helper.getReadableDatabase(), META_ETAG);
+    }
+
+    /**
+     * Возвращает заголовок {@code Last-Modified} последнего сохранённого ответа.
+     *
+     * @return значение Last-Modified, или null
+     */
+    @WorkerThread
+    public String getLastModified() {
+        return getMeta(helper.getReadableDatabase(), META_LAST_MODIFIED);
+    }
+
+    /**
+     * Возвращает время последней успешной синхронизации.
+     *
+     * @return время в миллисекундах, или 0, если синхронизации не было
+     */
+    @WorkerThread
+    public long getSyncedAt() {
+        return parseLong(getMeta(helper.getReadableDatabase(), META_SYNCED_AT));
+    }
+
+    /**
+     * Инкрементальная запись узлов в рамках одного сохранения.
+     * <p>
+     * Существующие узлы сопоставляются по паре (список, идентификатор). Каждый записанный узел
+     * отмечается номером сохранения, поэтому после записи всех узлов неотмеченные удаляются
+     * одним запросом. При записи облегчённого каталога узлы без описания и изображения получают
+     * записанные ранее ({@link #keptDetails}).
+     * </p>
+     */
+    private static final class NodeWriter {
+        private final SQLiteDatabase db;
+        private final long stamp;
+        private final boolean skeleton;
+        private final Map<Long, ExistingNode> existing = new HashMap<>();
+
+        /** Описания и изображения, перенесённые из прежних строк в узлы облегчённого каталога. */
+        final Map<Integer, NodeDetails> keptDetails = new HashMap<>();
+        private final SQLiteStatement insert;
+        private final SQLiteStatement update;
+        private final SQLiteStatement insertText;
+        private final SQLiteStatement updateText;
+
+        int inserted;
+        int updated;
+        int reindexed;
+        int deleted;
+
+        NodeWriter(SQLiteDatabase db, long stamp, boolean skeleton) {
+            this.db = db;
+            this.stamp = stamp;
+            this.skeleton = skeleton;
+            try (Cursor cursor = db.rawQuery("SELECT _id, list, id, name, description, image_url FROM nodes", null)) {
+                while (cursor.moveToNext()) {
+                    existing.put(key(cursor.getInt(1), cursor.getInt(2)), new ExistingNode(cursor.getLong(0),
+                            cursor.getString(3), cursor.getString(4), cursor.getString(5)));
+                }
+            }
+            insert = db.compileStatement("INSERT INTO nodes "
+                    + "(list, id, parent_id, position, name, description, image_url, price, available, stamp) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            update = db.compileStatement("UPDATE nodes SET list = ?, id = ?, parent_id = ?, position = ?, "
+                    + "name = ?, description = ?, image_url = ?, price = ?, available = ?, stamp = ? WHERE _id = ?");
+            insertText = db.compileStatement("INSERT INTO nodes_fts (docid, name, description) VALUES (?, ?, ?)");
+            updateText = db.compileStatement("UPDATE nodes_fts SET name = ?, description = ? WHERE docid = ?");
+        }
+
+        void writeTree(List<Category> items, Integer parentId) {
+            for (int i = 0; i < items.size(); i++) {
+                Category item = items.get(i);
+                if (item == null) {
+                    continue;
+                }
+                write(LIST_CATALOG, item, parentId, i);
+                writeTree(item.getItems(), item.getId());
+            }
+        }
+
+        void write(int list, Category node, Integer parentId, int position) {
+            ExistingNode old = existing.get(key(list, node.getId()));
+            if (old == null) {
+                bindNode(insert, list, node, node.getDescription(), node.getImageUrl(), parentId, position);
+                insert.bindLong(10, stamp);
+                long rowId = insert.executeInsert();
+                bindText(insertText, 2, node.getName(), node.getDescription());
+                insertText.bindLong(1, rowId);
+                insertText.executeInsert();
+                inserted++;
+                // Повторная запись узла с тем же идентификатором обновит только что добавленную строку
+                existing.put(key(list, node.getId()),
+                        new ExistingNode(rowId, node.getName(), node.getDescription(), node.getImageUrl()));
+                return;
+            }
+            String description = node.getDescription();
+            String imageUrl = node.getImageUrl();
+            if (skeleton && node.needsDetails() && (old.description != null || old.imageUrl != null)) {
+                description = old.description;
+                imageUrl = old.imageUrl;
+                keptDetails.put(node.getId(), new NodeDetails(node.getId(), description, imageUrl));
+            }
+            bindNode(update, list, node, description, imageUrl, parentId, position);
+            update.bindLong(10, stamp);
+            update.bindLong(11, old.rowId);
+            update.executeUpdateDelete();
+            updated++;
+            if (!Objects.equals(old.name, node.getName()) || !Objects.equals(old.description, description)) {
+                bindText(updateText, 1, node.getName(), description);
+                updateText.bindLong(3, old.rowId);
+                updateText.executeUpdateDelete();
+                reindexed++;
+            }
+        }
+
+        void deleteStale() {
+            String[] args = {String.valueOf(stamp)};
+            db.execSQL("DELETE FROM nodes_fts WHERE docid IN (SELECT _id FROM nodes WHERE stamp != ?)", args);
+            deleted = db.delete("nodes", "stamp != ?", args);
+        }
+
+        private static void bindText(SQLiteStatement statement, int firstIndex, String name, String description) {
+            statement.clearBindings();
+            statement.bindString(firstIndex, normalizedText(name));
+            statement.bindString(firstIndex + 1, normalizedText(description));
+        }
+
+        private static long key(int list, int id) {
+            return ((long) list << 32) | (id & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Узел, уже записанный в базу данных.
+     */
+    private static final class ExistingNode {
+        final long rowId;
+        final String name;
+        final String description;
+        final String imageUrl;
+
+        ExistingNode(long rowId, String name, String description, String imageUrl) {
+            this.rowId = rowId;
+            this.name = name;
+            this.description = description;
+            this.imageUrl = imageUrl;
+        }
+    }
+
+    /**
+     * Приводит текст к виду, в котором он хранится в полнотекстовом индексе: нормализованные слова через пробел.
+     */
+    private static String normalizedText(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (String token : TextNormalizer.tokenize(text)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(token);
+        }
+        return builder.toString();
+    }
+
+    private static void bindNode(SQLiteStatement insert, int list, Category node, String description, String imageUrl,
+                                 Integer parentId, int position) {
+        insert.clearBindings();
+        insert.bindLong(1, list);
+        insert.bindLong(2, node.getId());
+        if (parentId != null) {
+            insert.bindLong(3, parentId);
+        }
+        insert.bindLong(4, position);
+        bindString(insert, 5, node.getName());
+        bindString(insert, 6, description);
+        bindString(insert, 7, imageUrl);
+        if (node.getPrice() != null) {
+            insert.bindDouble(8, node.getPrice());
+        }
+        if (node.getAvailable() != null) {
+            insert.bindLong(9, node.getAvailable() ? 1 : 0);
+        }
+    }
+
+    private static void bindString(SQLiteStatement insert, int index, String value) {
+        if (value != null) {
+            insert.bindString(index, value);
+        }
+    }
+
+    private static String getMeta(SQLiteDatabase db, String key) {
+        try (Cursor cursor = db.rawQuery("SELECT value FROM meta WHERE key = ?", new String[]{key})) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    private static void putMeta(SQLiteDatabase db, String key, String value) {
+        if (value == null) {
+            db.delete("meta", "key = ?", new String[]{key});
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("key", key);
+        values.put("value", value);
+        db.insertWithOnConflict("meta", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
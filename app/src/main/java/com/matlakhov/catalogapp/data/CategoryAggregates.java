@@ -0,0 +1,246 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.IntIndexMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Агрегаты категорий каталога: количество товаров в поддереве и диапазон их цен.
+ * <p>
+ * Вычисляются одним обходом дерева в обратном порядке (сначала дочерние узлы, затем категория) без рекурсии,
+ * поддеревья корневых категорий обходятся параллельно в {@link ForkJoinPool#commonPool()}.
+ * Результат неизменяем и запоминается в снимке каталога ({@link CatalogSnapshot#getAggregates()}),
+ * поэтому при отрисовке строки списка агрегаты берутся поиском по идентификатору без обхода дерева.
+ * </p>
+ */
+public final class CategoryAggregates {
+
+    /** Агрегаты пустого каталога. */
+    public static final CategoryAggregates EMPTY = new CategoryAggregates(new Accumulator[0]);
+
+    /** Номер записи по идентификатору категории. */
+    private final IntIndexMap slots;
+
+    /** Количество товаров в поддереве категории. */
+    private final int[] productCounts;
+
+    /** Минимальная цена товаров поддерева. */
+    private final double[] minPrices;
+
+    /** Максимальная цена товаров поддерева. */
+    private final double[] maxPrices;
+
+    private CategoryAggregates(Accumulator[] parts) {
+        int total = 0;
+        for (Accumulator part : parts) {
+            total += part.size;
+        }
+        slots = new IntIndexMap(total);
+        productCounts = new int[total];
+        minPrices = new double[total];
+        maxPrices = new double[total];
+        int offset = 0;
+        for (Accumulator part : parts) {
+            System.arraycopy(part.counts, 0, productCounts, offset, part.size);
+            System.arraycopy(part.mins, 0, minPrices, offset, part.size);
+            System.arraycopy(part.maxs, 0, maxPrices, offset, part.size);
+            for (int i = 0; i < part.size; i++) {
+                slots.put(part.ids[i], offset + i);
+            }
+            offset += part.size;
+        }
+    }
+
+    /**
+     * Вычисляет агрегаты всех категорий каталога.
+     *
+     * @param catalog корневые категории
+     * @return вычисленные агрегаты
+     */
+    public static CategoryAggregates compute(List<Category> catalog) {
+        List<SubtreeTask> tasks = new ArrayList<>(catalog.size());
+        for (Category root : catalog) {
+            if (root != null) {
+                tasks.add(new SubtreeTask(root));
+            }
+        }
+        Accumulator[] parts = ForkJoinPool.commonPool().invoke(new RecursiveTask<Accumulator[]>() {
+            @Override
+            protected Accumulator[] compute() {
+                ForkJoinTask.invokeAll(tasks);
+                Accumulator[] results = new Accumulator[tasks.size()];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = tasks.get(i).getRawResult();
+                }
+                return results;
+            }
+        });
+        return new CategoryAggregates(parts);
+    }
+
+    /**
+     * @return количество категорий с вычисленными агрегатами
+     */
+    public int size() {
+        return productCounts.length;
+    }
+
+    /**
+     * Возвращает количество товаров в поддереве категории.
+     *
+     * @param categoryId идентификатор категории
+     * @return количество товаров, или 0, если категории нет в агрегатах
+     */
+    public int getProductCount(int categoryId) {
+        int slot = slots.get(categoryId, -1);
+        return slot >= 0 ? productCounts[slot] : 0;
+    }
+
+    /**
+     * Возвращает минимальную цену товаров поддерева категории.
+     *
+     * @param categoryId идентификатор категории
+     * @return минимальная цена, или {@link Double#NaN}, если товаров с ценой нет
+     */
+    public double getMinPrice(int categoryId) {
+        int slot = slots.get(categoryId, -1);
+        return slot >= 0 ? minPrices[slot] : Double.NaN;
+    }
+
+    /**
+     * Возвращает максимальную цену товаров поддерева категории.
+     *
+     * @param categoryId идентификатор категории
+     * @return максимальная цена, или {@link Double#NaN}, если товаров с ценой нет
+     */
+    public double getMaxPrice(int categoryId) {
+        int slot = slots.get(categoryId, -1);
+        return slot >= 0 ? maxPrices[slot] : Double.NaN;
+    }
+
+    /**
+     * Обход поддерева одной корневой категории.
+     */
+    private static final class SubtreeTask extends RecursiveTask<Accumulator> {
+        private final Category root;
+
+        SubtreeTask(Category root) {
+            this.root = root;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            Accumulator accumulator = new Accumulator();
+            accumulator.visit(root, new Stats());
+            return accumulator;
+        }
+    }
+
+    /**
+     * Промежуточные значения агрегатов поддерева.
+     */
+    private static final class Stats {
+        int count;
+        double min = Double.NaN;
+        double max = Double.NaN;
+
+        void add(double price) {
+            count++;
+            min = Double.isNaN(min) ? price : Math.min(min, price);
+            max = Double.isNaN(max) ? price : Math.max(max, price);
+        }
+
+        void merge(Stats other) {
+            if (other.count == 0) {
+                return;
+            }
+            count += other.count;
+            min = Double.isNaN(min) ? other.min : Math.min(min, other.min);
+            max = Double.isNaN(max) ? other.max : Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Категория на стеке обхода: её промежуточные агрегаты и номер следующего дочернего узла.
+     */
+    private static final class Frame {
+        final Category node;
+        final Stats stats = new Stats();
+        int next;
+
+        Frame(Category node) {
+            this.node = node;
+            if (node.getPrice() != null) {
+                stats.add(node.getPrice());
+            }
+        }
+    }
+
+    /**
+     * Записи агрегатов категорий одного поддерева в порядке завершения обхода.
+     */
+    private static final class Accumulator {
+        int[] ids = new int[16];
+        int[] counts = new int[16];
+        double[] mins = new double[16];
+        double[] maxs = new double[16];
+        int size;
+
+        /**
+         * Добавляет цену узла и агрегаты его поддерева в {@code into}; для категорий сохраняет записи.
+         * Поддерево обходится с явным стеком, поэтому глубина дерева не ограничена стеком потока.
+         */
+        void visit(Category node, Stats into) {
+            if (!node.isCategory()) {
+                if (node.getPrice() != null) {
+                    into.add(node.getPrice());
+                }
+                return;
+            }
+            Deque<Frame> stack = new ArrayDeque<>();
+            stack.push(new Frame(node));
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                List<Category> items = frame.node.getItems();
+                if (frame.next < items.size()) {
+                    Category child = items.get(frame.next++);
+                    if (child == null) {
+                        continue;
+                    }
+                    if (child.isCategory()) {
+                        stack.push(new Frame(child));
+                    } else if (child.getPrice() != null) {
+                        frame.stats.add(child.getPrice());
+                    }
+                    continue;
+                }
+                stack.pop();
+                record(frame.node.getId(), frame.stats);
+                (stack.isEmpty() ? into : stack.peek().stats).merge(frame.stats);
+            }
+        }
+
+        private void record(int id, Stats stats) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxs = Arrays.copyOf(maxs, capacity);
+            }
+            ids[size] = id;
+            counts[size] = stats.count;
+            mins[size] = stats.min;
+            maxs[size] = stats.max;
+            size++;
+        }
+    }
+}
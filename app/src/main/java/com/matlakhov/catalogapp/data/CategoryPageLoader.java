@@ -0,0 +1,60 @@
+package com.matlakhov.catalogapp.data;
+
+import androidx.annotation.WorkerThread;
+
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.network.ApiService;
+
+import java.io.IOException;
+
+import retrofit2.Response;
+
+/**
+ * Загрузчик страниц дочерних элементов категории.
+ * <p>
+ * Сначала читает страницу из локального хранилища ({@link CatalogStore#loadChildren(int, int, int)});
+ * если категории там нет (например, каталог ещё ни разу не сохранялся), запрашивает страницу у сервера.
+ * Хранилище не получает изменений цен и загруженных описаний, поэтому загрузчик используется только для
+ * категорий, элементов которых нет в {@link CatalogRepository}; остальные страницы строятся над памятью
+ * ({@link PagedCategoryList#PagedCategoryList(int, java.util.List)}).
+ * </p>
+ */
+public class CategoryPageLoader {
+
+    /** Локальное хранилище каталога. */
+    private final CatalogStore store;
+
+    /** Сервис API для загрузки страниц с сервера. */
+    private final ApiService apiService;
+
+    /**
+     * @param store      локальное хранилище каталога
+     * @param apiService сервис API
+     */
+    public CategoryPageLoader(CatalogStore store, ApiService apiService) {
+        this.store = store;
+        this.apiService = apiService;
+    }
+
+    /**
+     * Загружает страницу дочерних элементов категории.
+     *
+     * @param parentId идентификатор категории
+     * @param offset   позиция первого элемента страницы
+     * @param limit    максимальное количество элементов
+     * @return загруженная страница
+     * @throws IOException если категории нет в хранилище, а запрос к серверу не удался
+     */
+    @WorkerThread
+    public CategoryPage load(int parentId, int offset, int limit) throws IOException {
+        CategoryPage page = store.loadChildren(parentId, offset, limit);
+        if (page.getTotal() > 0) {
+            return page;
+        }
+        Response<CategoryPage> response = apiService.getCategoryChildren(parentId, offset, limit).execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("Страница категории " + parentId + " недоступна: код " + response.code());
+        }
+        return response.body();
+    }
+}
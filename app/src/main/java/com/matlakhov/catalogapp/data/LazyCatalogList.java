@@ -0,0 +1,85 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.snapshot.SnapshotReader;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Неизменяемый список узлов снимка каталога с ленивым декодированием.
+ * <p>
+ * Список покрывает непрерывный диапазон узлов {@link SnapshotReader}. Объект {@link Category}
+ * создаётся при первом обращении к позиции (например, когда адаптер привязывает строку)
+ * и затем переиспользуется. Вложенные элементы декодированного узла — такой же ленивый список
+ * над диапазоном его детей, поэтому нераскрытые ветви дерева не декодируются вовсе.
+ * Декодирование синхронизировано: список можно обходить и из фонового потока
+ * (например, при построении поискового индекса), каждый узел декодируется ровно один раз.
+ * </p>
+ */
+final class LazyCatalogList extends AbstractList<Category> implements RandomAccess {
+
+    /** Снимок каталога. */
+    private final SnapshotReader reader;
+
+    /** Индекс первого узла диапазона. */
+    private final int firstNode;
+
+    /** Уже декодированные узлы (null — ещё не декодирован). */
+    private final Category[] decoded;
+
+    /**
+     * @param reader    снимок каталога
+     * @param firstNode индекс первого узла диапазона
+     * @param size      количество узлов
+     */
+    LazyCatalogList(SnapshotReader reader, int firstNode, int size) {
+        this.reader = reader;
+        this.firstNode = firstNode;
+        this.decoded = new Category[size];
+    }
+
+    @Override
+    public synchronized Category get(int index) {
+        Category category = decoded[index];
+        if (category == null) {
+            category = decode(firstNode + index);
+            decoded[index] = category;
+        }
+        return category;
+    }
+
+    /**
+     * @return снимок, узлы которого декодирует список
+     */
+    SnapshotReader getReader() {
+        return reader;
+    }
+
+    /**
+     * @return индекс первого узла диапазона в снимке
+     */
+    int getFirstNode() {
+        return firstNode;
+    }
+
+    @Override
+    public int size() {
+        return decoded.length;
+    }
+
+    private Category decode(int node) {
+        Category category = new Category();
+        category.setId(reader.getId(node));
+        category.setName(reader.getName(node));
+        category.setDescription(reader.getDescription(node));
+        category.setImageUrl(reader.getImageUrl(node));
+        category.setPrice(reader.getPrice(node));
+        category.setAvailable(reader.getAvailable(node));
+        int childCount = reader.getChildCount(node);
+        if (childCount > 0) {
+            category.attachItems(new LazyCatalogList(reader, reader.getFirstChild(node), childCount));
+        }
+        return category;
+    }
+}
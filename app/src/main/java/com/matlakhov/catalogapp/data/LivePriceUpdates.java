@@ -0,0 +1,111 @@
+package com.matlakhov.catalogapp.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.matlakhov.catalogapp.network.ApiClient;
+import com.matlakhov.catalogapp.network.PriceStreamClient;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.Objects;
+
+/**
+ * Управляет подпиской на поток обновлений цен и наличия, пока открыт хотя бы один экран каталога.
+ * <p>
+ * Экраны вызывают {@link #acquire()} в {@code onStart} и {@link #release()} в {@code onStop}.
+ * На процесс создаётся один клиент потока, и он продолжает поток с последнего полученного события.
+ * Когда последний экран снимает регистрацию, соединение закрывается не сразу, а через
+ * {@link #STOP_DELAY_MS}: при возврате в приложение или смене экранов в любом порядке соединение
+ * не переоткрывается. Изменения из потока проходят через {@link PricePatchBatcher}: применяются
+ * к {@link CatalogRepository} в фоне, а экраны уведомляются раз в кадр.
+ * </p>
+ */
+public final class LivePriceUpdates {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "LivePriceUpdates";
+
+    /** Задержка закрытия соединения после снятия регистрации последним экраном (мс). */
+    static final long STOP_DELAY_MS = 30_000;
+
+    /** Единый экземпляр. */
+    private static LivePriceUpdates instance;
+
+    /** Накопитель изменений. */
+    private final PricePatchBatcher batcher;
+
+    /** Клиент потока, или null, пока подписка не открывалась. */
+    private PriceStreamClient streamClient;
+
+    /** Базовый URL, для которого создан клиент. */
+    private String streamBaseUrl;
+
+    /** Количество экранов, которым нужны обновления. */
+    private int subscribers;
+
+    /** Обработчик главного потока для отложенного закрытия соединения. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Отложенное закрытие соединения. */
+    private final Runnable stop = this::stopIfUnused;
+
+    private LivePriceUpdates(CatalogRepository repository) {
+        this.batcher = new PricePatchBatcher(repository);
+    }
+
+    /**
+     * Возвращает единый экземпляр.
+     *
+     * @return экземпляр {@link LivePriceUpdates}
+     */
+    public static synchronized LivePriceUpdates getInstance() {
+        if (instance == null) {
+            instance = new LivePriceUpdates(CatalogRepository.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Регистрирует экран, которому нужны обновления, и открывает поток при первой регистрации.
+     */
+    public synchronized void acquire() {
+        if (subscribers++ > 0) {
+            return;
+        }
+        handler.removeCallbacks(stop);
+        String baseUrl = ApiClient.getBaseUrl();
+        if (streamClient == null || !Objects.equals(baseUrl, streamBaseUrl)) {
+            if (streamClient != null) {
+                streamClient.stop();
+            }
+            streamClient = new PriceStreamClient(ApiClient.getHttpClient(), baseUrl, batcher::enqueue);
+            streamBaseUrl = baseUrl;
+        }
+        if (!streamClient.isRunning()) {
+            streamClient.start();
+            AppLog.d(TAG, () -> "Подписка на обновления цен открыта");
+        }
+    }
+
+    /**
+     * Снимает регистрацию экрана и, если обновления больше никому не нужны, закрывает поток
+     * через {@link #STOP_DELAY_MS}.
+     */
+    public synchronized void release() {
+        if (subscribers == 0) {
+            return;
+        }
+        if (--subscribers == 0) {
+            handler.postDelayed(stop, STOP_DELAY_MS);
+        }
+    }
+
+    private synchronized void stopIfUnused() {
+        if (subscribers > 0 || streamClient == null || !streamClient.isRunning()) {
+            return;
+        }
+        streamClient.stop();
+        batcher.clear();
+        AppLog.d(TAG, () -> "Подписка на обновления цен закрыта");
+    }
+}
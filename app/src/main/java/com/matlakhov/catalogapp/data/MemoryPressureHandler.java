@@ -0,0 +1,159 @@
+package com.matlakhov.catalogapp.data;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.matlakhov.catalogapp.adapters.RowText;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.search.CatalogSearch;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+/**
+ * Освобождение памяти по уровням при сигналах системы ({@link #onTrimMemory(int)}, {@link #onLowMemory()}).
+ * <p>
+ * Уровни применяются по нарастающей, каждый включает предыдущие:
+ * </p>
+ * <ol>
+ *     <li>{@link #TIER_IMAGES} — кэш изображений Glide в памяти (дисковый кэш остаётся);</li>
+ *     <li>{@link #TIER_DISPLAY} — готовые раскладки текста строк, прогретые страницы навигации,
+ *     индексы каталога по идентификаторам и ценам, поисковый индекс в памяти (поиск переключается
+ *     на полнотекстовый индекс хранилища);</li>
+ *     <li>{@link #TIER_SUBTREES} — декодированные поддеревья корневых категорий, которые не показывает
+ *     открытый экран, заменяются ленивыми списками снимка из {@link CatalogStore}.</li>
+ * </ol>
+ * <p>
+ * Всё освобождённое восстанавливается лениво при следующем обращении и без запросов к сети.
+ * Данные, которых нет в хранилище (дельты, изменения цен и загруженные описания после последнего
+ * сохранения), не освобождаются: в этом случае уровень {@link #TIER_SUBTREES} пропускается, а поддеревья,
+ * для которых в снимке нет описаний, остаются в памяти.
+ * Регистрируется в {@link com.matlakhov.catalogapp.CatalogApp}; вызовы приходят в главном потоке.
+ * </p>
+ */
+public class MemoryPressureHandler implements ComponentCallbacks2 {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "MemoryPressureHandler";
+
+    /** Уровень: кэш изображений в памяти. */
+    static final int TIER_IMAGES = 1;
+
+    /** Уровень: модели отображения и индексы. */
+    static final int TIER_DISPLAY = 2;
+
+    /** Уровень: поддеревья каталога. */
+    static final int TIER_SUBTREES = 3;
+
+    /** Контекст приложения. */
+    private final Context context;
+
+    /** Устройство с малым объёмом памяти: освобождать больше уже при уходе в фон. */
+    private final boolean lowRamDevice;
+
+    /**
+     * @param context контекст приложения
+     */
+    public MemoryPressureHandler(Context context) {
+        this.context = context.getApplicationContext();
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        this.lowRamDevice = activityManager != null && activityManager.isLowRamDevice();
+    }
+
+    /**
+     * Возвращает уровень освобождения для сигнала системы.
+     *
+     * @param level        уровень из {@link ComponentCallbacks2}
+     * @param lowRamDevice true для устройства с малым объёмом памяти
+     * @return уровень от 0 (ничего не освобождать) до {@link #TIER_SUBTREES}
+     */
+    static int tierFor(int level, boolean lowRamDevice) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            return TIER_SUBTREES;
+        }
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // На таких устройствах процесс в фоне завершается первым: чем он меньше, тем дольше живёт
+            return lowRamDevice ? TIER_SUBTREES : TIER_DISPLAY;
+        }
+        if (level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return TIER_DISPLAY;
+        }
+        if (level == TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+            return TIER_IMAGES;
+        }
+        return 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(tierFor(level, lowRamDevice));
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TIER_SUBTREES);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * Освобождает данные всех уровней до указанного включительно.
+     *
+     * @param tier уровень освобождения
+     */
+    void trim(int tier) {
+        if (tier <= 0) {
+            return;
+        }
+        MetricsRegistry.getInstance().counter("memory.trim.tier" + tier).increment();
+        AppLog.i(TAG, () -> "Освобождение памяти, уровень " + tier);
+
+        Glide.get(context).clearMemory();
+        if (tier >= TIER_DISPLAY) {
+            CatalogRepository repository = CatalogRepository.getInstance();
+            RowText.trimMemory();
+            NavigationPrefetcher.getInstance().trimMemory();
+            repository.trimIndexes();
+            if (repository.isPersisted()) {
+                CatalogSearch.getInstance().release(context);
+            }
+        }
+        if (tier >= TIER_SUBTREES) {
+            releaseSubtrees();
+        }
+    }
+
+    /**
+     * Читает снимок каталога из хранилища в фоне и подменяет им поддеревья корневых категорий,
+     * если за это время каталог в памяти не изменился.
+     */
+    private void releaseSubtrees() {
+        CatalogRepository repository = CatalogRepository.getInstance();
+        if (repository.isEmpty() || !repository.isPersisted()) {
+            return;
+        }
+        int generation = repository.getGeneration();
+        long version = repository.getVersion();
+        CatalogStore store = CatalogStore.getInstance(context);
+        AppExecutors.io().execute(() -> {
+            CatalogStore.StoredCatalog stored = store.loadSnapshot();
+            if (stored == null || stored.version != version) {
+                return;
+            }
+            AppExecutors.main().execute(() -> {
+                if (repository.getGeneration() != generation) {
+                    return;
+                }
+                int released = repository.releaseSubtrees(stored.catalog);
+                MetricsRegistry.getInstance().counter("memory.released_subtrees").add(released);
+                AppLog.i(TAG, () -> "Поддеревья освобождены: " + released + " корневых категорий");
+            });
+        });
+    }
+}
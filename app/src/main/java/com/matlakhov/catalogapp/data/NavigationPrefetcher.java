@@ -0,0 +1,386 @@
+package com.matlakhov.catalogapp.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+
+import com.matlakhov.catalogapp.adapters.CategoryAdapter;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.network.ApiClient;
+import com.matlakhov.catalogapp.network.ApiService;
+import com.matlakhov.catalogapp.sync.ImagePrefetcher;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Предсказательная предзагрузка следующего уровня навигации.
+ * <p>
+ * Строка категории, которая остаётся на экране дольше {@link #DWELL_MS}, считается кандидатом
+ * на открытие: для неё в фоне «прогревается» экран дочерних элементов. Для категорий, которые
+ * откроются постранично, загружается первая страница ({@link CategoryPageLoader}); для первых
+ * {@link #SCREEN_ROWS} дочерних строк запрашиваются описания ({@link NodeDetailsLoader}),
+ * готовятся модели строк с раскладкой текста ({@link CategoryAdapter#prepareRows(List)})
+ * и загружаются изображения в кэши Glide ({@link ImagePrefetcher}). Открытый экран забирает
+ * готовую страницу через {@link #takeFirstPage(int)}. Категория каталога без дочерних элементов
+ * не прогревается: загружать для неё нечего.
+ * </p>
+ * <p>
+ * Загрузчик ведёт статистику: доля открытий, пришедшихся на уже прогретую категорию
+ * ({@link #getHitRatio()}), и доля прогревов, вытесненных или устаревших без открытия
+ * ({@link #getWasteRatio()}). Все методы вызываются из главного потока.
+ * </p>
+ */
+public class NavigationPrefetcher {
+
+    /**
+     * Тег для целей логирования.
+     */
+    private static final String TAG = "NavigationPrefetcher";
+
+    /**
+     * Время, которое строка должна провести на экране, чтобы её категория была прогрета (мс).
+     */
+    public static final long DWELL_MS = 400;
+
+    /**
+     * Количество дочерних строк, для которых загружаются описания и изображения (примерно один экран).
+     */
+    public static final int SCREEN_ROWS = 10;
+
+    /**
+     * Максимальное количество прогретых категорий; при превышении вытесняется самая старая.
+     */
+    static final int MAX_WARM = 6;
+
+    /**
+     * Время жизни прогретой категории (мс); после него прогрев считается напрасным.
+     */
+    static final long WARM_TTL_MS = 120_000;
+
+    /** Единый экземпляр загрузчика. */
+    private static NavigationPrefetcher instance;
+
+    /**
+     * Прогретая или прогреваемая категория.
+     */
+    private static final class Entry {
+        /** Время завершения прогрева, или 0, пока он идёт. */
+        long warmedAt;
+        /** Первая страница дочерних элементов, если категория откроется постранично. */
+        CategoryPage firstPage;
+        /** Была ли категория открыта. */
+        boolean opened;
+    }
+
+    /** Прогретые и прогреваемые категории в порядке добавления. */
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>();
+
+    /** Отложенные проверки времени показа строк по идентификатору категории. */
+    private final Map<Integer, Runnable> pendingDwell = new HashMap<>();
+
+    /** Категории, ожидающие прогрева; последние добавленные прогреваются первыми. */
+    private final Deque<Category> queue = new ArrayDeque<>();
+
+    /** Handler главного потока для отсчёта времени показа. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Контекст приложения, или null до первой строки. */
+    private Context context;
+
+    /** Загрузчик страниц, или null до первой постраничной категории. */
+    private CategoryPageLoader pageLoader;
+
+    /** Идёт ли сейчас прогрев. */
+    private boolean warming;
+
+    /** Завершённые прогревы. */
+    private int prefetched;
+
+    /** Открытия прогретых категорий. */
+    private int hits;
+
+    /** Открытия категорий, прогрев которых ещё не завершился. */
+    private int late;
+
+    /** Открытия непрогретых категорий. */
+    private int misses;
+
+    /** Прогревы, вытесненные или устаревшие без открытия. */
+    private int wasted;
+
+    NavigationPrefetcher() {
+    }
+
+    /**
+     * Возвращает единый экземпляр загрузчика.
+     *
+     * @return экземпляр {@link NavigationPrefetcher}
+     */
+    public static synchronized NavigationPrefetcher getInstance() {
+        if (instance == null) {
+            instance = new NavigationPrefetcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Начинает отсчёт времени показа строки категории.
+     *
+     * @param context  контекст экрана
+     * @param category категория, строка которой появилась на экране
+     */
+    @MainThread
+    public void onRowShown(Context context, Category category) {
+        if (category == null || category.isProduct() || pendingDwell.containsKey(category.getId())
+                || entries.containsKey(category.getId())) {
+            return;
+        }
+        if (this.context == null) {
+            this.context = context.getApplicationContext();
+        }
+        Runnable dwell = () -> {
+            pendingDwell.remove(category.getId());
+            enqueue(category);
+        };
+        pendingDwell.put(category.getId(), dwell);
+        handler.postDelayed(dwell, DWELL_MS);
+    }
+
+    /**
+     * Отменяет отсчёт времени показа строки, ушедшей с экрана.
+     *
+     * @param category категория, строка которой скрылась
+     */
+    @MainThread
+    public void onRowHidden(Category category) {
+        if (category == null) {
+            return;
+        }
+        Runnable dwell = pendingDwell.remove(category.getId());
+        if (dwell != null) {
+            handler.removeCallbacks(dwell);
+        }
+    }
+
+    /**
+     * Учитывает открытие категории в статистике. Вызывается при нажатии на строку.
+     *
+     * @param category открываемая категория или товар
+     */
+    @MainThread
+    public void onOpened(Category category) {
+        if (category == null || category.isProduct()) {
+            return;
+        }
+        onRowHidden(category);
+        expire();
+        Entry entry = entries.get(category.getId());
+        if (entry == null) {
+            misses++;
+        } else if (entry.warmedAt == 0) {
+            late++;
+        } else {
+            hits++;
+        }
+        if (entry != null) {
+            entry.opened = true;
+        }
+        // Открытая категория больше не нужна в кэше, кроме первой страницы, которую заберёт экран
+        if (entry != null && entry.firstPage == null) {
+            entries.remove(category.getId());
+        }
+        AppLog.i(TAG, this::report);
+    }
+
+    /**
+     * Забирает прогретую первую страницу категории.
+     *
+     * @param categoryId идентификатор категории
+     * @return первая страница, или null, если категория не прогрета
+     */
+    @MainThread
+    public CategoryPage takeFirstPage(int categoryId) {
+        Entry entry = entries.get(categoryId);
+        if (entry == null || entry.firstPage == null) {
+            return null;
+        }
+        entries.remove(categoryId);
+        return entry.firstPage;
+    }
+
+    /**
+     * Возвращает долю открытий категорий, пришедшихся на уже прогретый экран.
+     *
+     * @return доля попаданий от 0 до 1, или 0, если открытий не было
+     */
+    @MainThread
+    public double getHitRatio() {
+        int opened = hits + late + misses;
+        return opened == 0 ? 0 : (double) hits / opened;
+    }
+
+    /**
+     * Возвращает долю прогревов, вытесненных или устаревших без открытия категории.
+     *
+     * @return доля напрасных прогревов от 0 до 1, или 0, если прогревов не было
+     */
+    @MainThread
+    public double getWasteRatio() {
+        expire();
+        return prefetched == 0 ? 0 : (double) wasted / prefetched;
+    }
+
+    /**
+     * Возвращает статистику предзагрузки в виде строки для журнала.
+     *
+     * @return строка со счётчиками и долями попаданий и напрасных прогревов
+     */
+    @MainThread
+    public String report() {
+        return String.format(Locale.US, "Предзагрузка: прогрето %d, попаданий %d, поздних %d, промахов %d, напрасных %d"
+                        + " (попадания %.0f%%, напрасные %.0f%%)",
+                prefetched, hits, late, misses, wasted, getHitRatio() * 100, getWasteRatio() * 100);
+    }
+
+    /**
+     * Освобождает прогретые страницы и очередь прогрева при нехватке памяти.
+     * Прогревы, не дождавшиеся открытия, учитываются как напрасные.
+     */
+    @MainThread
+    public void trimMemory() {
+        queue.clear();
+        for (Entry entry : entries.values()) {
+            if (entry.warmedAt != 0 && !entry.opened) {
+                wasted++;
+            }
+        }
+        // Результат ещё идущего прогрева будет отброшен в onWarmed
+        entries.clear();
+    }
+
+    private void enqueue(Category category) {
+        queue.remove(category);
+        queue.addFirst(category);
+        while (queue.size() > MAX_WARM) {
+            queue.removeLast();
+        }
+        warmNext();
+    }
+
+    private void warmNext() {
+        if (warming || queue.isEmpty()) {
+            return;
+        }
+        Category category = queue.pollFirst();
+        List<Category> children = category.getItems();
+        // Пустой список означает незагруженные элементы только у узлов, которых нет в памяти
+        if (entries.containsKey(category.getId())
+                || (children.isEmpty() && CatalogRepository.getInstance().findById(category.getId()) != null)) {
+            warmNext();
+            return;
+        }
+        warming = true;
+        Entry entry = new Entry();
+        entries.put(category.getId(), entry);
+        evict();
+
+        boolean paged = children.isEmpty() || children.size() > PagedCategoryList.PAGING_THRESHOLD;
+        List<Category> rows = paged ? null : new ArrayList<>(children.subList(0, Math.min(SCREEN_ROWS, children.size())));
+        if (rows != null) {
+            NodeDetailsLoader.getInstance().load(rows);
+        }
+        if (paged && pageLoader == null) {
+            pageLoader = new CategoryPageLoader(CatalogStore.getInstance(context),
+                    ApiClient.getClient().create(ApiService.class));
+        }
+        CategoryPageLoader loader = pageLoader;
+        Context appContext = context;
+        AppExecutors.io().execute(() -> {
+            CategoryPage page = null;
+            List<Category> thumbnails = rows;
+            if (paged) {
+                try {
+                    page = loader.load(category.getId(), 0, PagedCategoryList.PAGE_SIZE);
+                    List<Category> items = page.getItems();
+                    thumbnails = items.subList(0, Math.min(SCREEN_ROWS, items.size()));
+                } catch (IOException | RuntimeException e) {
+                    AppLog.w(TAG, "Не удалось прогреть категорию " + category.getId() + ": " + e.getMessage());
+                }
+            }
+            if (thumbnails != null) {
+                CategoryAdapter.prepareRows(thumbnails);
+                ImagePrefetcher.prefetch(appContext, thumbnails);
+            }
+            CategoryPage result = page;
+            AppExecutors.main().execute(() -> onWarmed(category.getId(), entry, paged, result));
+        });
+    }
+
+    private void onWarmed(int categoryId, Entry entry, boolean paged, CategoryPage page) {
+        warming = false;
+        if (entries.get(categoryId) == entry) {
+            if (paged && page == null) {
+                entries.remove(categoryId);
+            } else {
+                if (page != null) {
+                    NodeDetailsLoader.getInstance().load(page.getItems().subList(0,
+                            Math.min(SCREEN_ROWS, page.getItems().size())));
+                }
+                entry.firstPage = page;
+                entry.warmedAt = SystemClock.elapsedRealtime();
+                prefetched++;
+            }
+        }
+        warmNext();
+    }
+
+    /**
+     * Вытесняет самые старые категории сверх {@link #MAX_WARM}.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > MAX_WARM && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            // Результат ещё идущего прогрева будет отброшен в onWarmed
+            iterator.remove();
+            if (entry.warmedAt == 0) {
+                continue;
+            }
+            if (!entry.opened) {
+                wasted++;
+            }
+        }
+    }
+
+    /**
+     * Удаляет прогретые категории, которые не были открыты за {@link #WARM_TTL_MS}.
+     */
+    private void expire() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.warmedAt != 0 && now - entry.warmedAt > WARM_TTL_MS) {
+                iterator.remove();
+                if (!entry.opened) {
+                    wasted++;
+                }
+            }
+        }
+    }
+}
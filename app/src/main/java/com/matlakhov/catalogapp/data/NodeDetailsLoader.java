@@ -0,0 +1,154 @@
+package com.matlakhov.catalogapp.data;
+
+import androidx.annotation.MainThread;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.network.DetailBatcher;
+import com.matlakhov.catalogapp.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Загрузчик описаний и изображений узлов облегчённого каталога.
+ * <p>
+ * Принимает узлы, которым нужны «тяжёлые» поля ({@link Category#needsDetails()}), и запрашивает их
+ * через {@link DetailBatcher}: запросы строк, привязанных в течение одного кадра, уходят на сервер
+ * одним пакетом, а узел, описание которого уже запрошено, повторно не запрашивается.
+ * Полученные значения для узлов каталога публикуются новой версией {@link CatalogRepository}
+ * ({@link CatalogRepository#applyDetails(Map)}) одним изменением на пакет, а узлы вне каталога
+ * (страницы категорий, временные узлы экранов) получают их на месте. После этого слушатели
+ * {@link OnDetailsLoadedListener} уведомляются один раз на каждый полученный пакет.
+ * Все методы вызываются из главного потока.
+ * </p>
+ */
+public class NodeDetailsLoader {
+
+    /**
+     * Слушатель загрузки описаний и изображений.
+     */
+    public interface OnDetailsLoadedListener {
+        /**
+         * Вызывается в главном потоке после переноса полученных полей в узлы; узлы каталога нужно
+         * перечитать из {@link CatalogRepository}.
+         *
+         * @param ids идентификаторы узлов, получивших описание и изображение
+         */
+        void onDetailsLoaded(Set<Integer> ids);
+    }
+
+    /** Единый экземпляр загрузчика. */
+    private static NodeDetailsLoader instance;
+
+    /** Узлы, ожидающие ответа, по идентификатору. */
+    private final Map<Integer, List<Category>> waiting = new HashMap<>();
+
+    /** Поля, полученные после последнего уведомления слушателей, по идентификатору узла. */
+    private final Map<Integer, NodeDetails> loaded = new HashMap<>();
+
+    /** Слушатели загрузки. */
+    private final List<OnDetailsLoadedListener> listeners = new ArrayList<>();
+
+    /** Пакетирующий слой, или null до первого запроса. */
+    private DetailBatcher batcher;
+
+    NodeDetailsLoader() {
+    }
+
+    /**
+     * Возвращает единый экземпляр загрузчика.
+     *
+     * @return экземпляр {@link NodeDetailsLoader}
+     */
+    public static synchronized NodeDetailsLoader getInstance() {
+        if (instance == null) {
+            instance = new NodeDetailsLoader();
+        }
+        return instance;
+    }
+
+    /**
+     * Запрашивает описания и изображения узлов, у которых их ещё нет.
+     *
+     * @param nodes узлы, например только что привязанные строки списка
+     */
+    @MainThread
+    public void load(Collection<Category> nodes) {
+        for (Category node : nodes) {
+            if (node == null || !node.needsDetails()) {
+                continue;
+            }
+            List<Category> sameId = waiting.get(node.getId());
+            if (sameId != null) {
+                if (!sameId.contains(node)) {
+                    sameId.add(node);
+                }
+                continue;
+            }
+            sameId = new ArrayList<>(1);
+            sameId.add(node);
+            waiting.put(node.getId(), sameId);
+            if (batcher == null) {
+                batcher = DetailBatcher.getInstance();
+            }
+            batcher.request(node.getId(), this::onDetails);
+        }
+    }
+
+    /**
+     * Регистрирует слушателя загрузки.
+     *
+     * @param listener слушатель
+     */
+    @MainThread
+    public void addOnDetailsLoadedListener(OnDetailsLoadedListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Удаляет слушателя загрузки.
+     *
+     * @param listener слушатель
+     */
+    @MainThread
+    public void removeOnDetailsLoadedListener(OnDetailsLoadedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void onDetails(int id, NodeDetails details) {
+        List<Category> nodes = waiting.remove(id);
+        if (nodes == null || details == null) {
+            // Узел не найден или запрос не удался: он будет запрошен снова при следующей привязке
+            return;
+        }
+        // Узел текущей версии каталога не меняется на месте: его заменит копия при публикации пакета
+        Category published = CatalogRepository.getInstance().findById(id);
+        for (Category node : nodes) {
+            if (node != published) {
+                node.applyDetails(details);
+            }
+        }
+        if (loaded.isEmpty()) {
+            // Ответы одного пакета раздаются одной задачей главного потока, уведомляем после неё
+            AppExecutors.main().execute(this::notifyListeners);
+        }
+        loaded.put(id, details);
+    }
+
+    private void notifyListeners() {
+        Set<Integer> ids = new HashSet<>(loaded.keySet());
+        CatalogRepository.getInstance().applyDetails(loaded);
+        loaded.clear();
+        for (OnDetailsLoadedListener listener : new ArrayList<>(listeners)) {
+            listener.onDetailsLoaded(ids);
+        }
+    }
+}
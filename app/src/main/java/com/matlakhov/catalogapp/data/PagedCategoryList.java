@@ -0,0 +1,257 @@
+package com.matlakhov.catalogapp.data;
+
+import androidx.annotation.MainThread;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Список дочерних элементов категории, загружаемый страницами.
+ * <p>
+ * Размер списка равен общему количеству элементов категории, но в памяти хранится не больше
+ * {@link #MAX_PAGES} последних использованных страниц. Для незагруженной позиции {@link #get(int)}
+ * возвращает null (адаптер показывает заглушку) и запускает загрузку её страницы в фоновом потоке;
+ * когда позиция приближается к границе страницы ближе чем на {@link #PREFETCH_DISTANCE},
+ * заранее загружается и соседняя страница. О загруженных страницах сообщает {@link Listener}.
+ * Используется из главного потока.
+ * </p>
+ * <p>
+ * Если элементы категории уже есть в {@link CatalogRepository}, список строится над ними
+ * ({@link #PagedCategoryList(int, List)}): страницы — это окна над списком текущей версии каталога,
+ * которые заполняются сразу при обращении, без хранилища и сети. Элементы снимка декодируются только
+ * при обращении к ним, а изменения цен, описаний и дельты подхватываются через {@link #setSource(List)}.
+ * </p>
+ */
+public final class PagedCategoryList extends AbstractList<Category> implements RandomAccess {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "PagedCategoryList";
+
+    /** Количество элементов категории, начиная с которого список показывается постранично. */
+    public static final int PAGING_THRESHOLD = 200;
+
+    /** Размер страницы. */
+    public static final int PAGE_SIZE = 50;
+
+    /** Расстояние до границы страницы, на котором загружается соседняя страница. */
+    public static final int PREFETCH_DISTANCE = 15;
+
+    /** Максимальное количество страниц в памяти. */
+    static final int MAX_PAGES = 6;
+
+    /**
+     * Слушатель загрузки страниц.
+     */
+    public interface Listener {
+        /**
+         * Вызывается в главном потоке, когда страница загружена.
+         *
+         * @param start позиция первого элемента страницы
+         * @param count количество элементов страницы
+         */
+        void onPageLoaded(int start, int count);
+    }
+
+    /** Загрузчик страниц, или null, если элементы категории есть в памяти. */
+    private final CategoryPageLoader loader;
+
+    /** Идентификатор категории. */
+    private final int parentId;
+
+    /** Общее количество элементов. */
+    private int total;
+
+    /** Элементы категории из текущей версии каталога, или null, если страницы загружаются. */
+    private List<Category> source;
+
+    /** Слушатель загрузки страниц. */
+    private final Listener listener;
+
+    /** Загруженные страницы по номеру в порядке последнего обращения. */
+    private final LinkedHashMap<Integer, List<Category>> pages =
+            new LinkedHashMap<Integer, List<Category>>(MAX_PAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<Category>> eldest) {
+                    return size() > MAX_PAGES;
+                }
+            };
+
+    /** Номера страниц, загрузка которых уже запущена. */
+    private final Set<Integer> loading = new HashSet<>();
+
+    /**
+     * @param loader    загрузчик страниц
+     * @param firstPage первая страница категории (определяет общее количество элементов)
+     * @param listener  слушатель загрузки страниц
+     */
+    public PagedCategoryList(CategoryPageLoader loader, CategoryPage firstPage, Listener listener) {
+        this.loader = loader;
+        this.parentId = firstPage.getParentId();
+        this.total = firstPage.getTotal();
+        this.listener = listener;
+        pages.put(firstPage.getOffset() / PAGE_SIZE, firstPage.getItems());
+    }
+
+    /**
+     * Создаёт список над элементами категории, уже находящимися в памяти.
+     *
+     * @param parentId идентификатор категории
+     * @param items    элементы категории из текущей версии каталога
+     */
+    public PagedCategoryList(int parentId, List<Category> items) {
+        this.loader = null;
+        this.parentId = parentId;
+        this.listener = null;
+        setSource(items);
+    }
+
+    /**
+     * Проверяет, построен ли список над элементами категории в памяти.
+     *
+     * @return true, если страницы не загружаются из хранилища или с сервера
+     */
+    public boolean isInMemory() {
+        return source != null;
+    }
+
+    /**
+     * Переключает список над элементами в памяти на элементы новой версии категории. Открытые страницы
+     * остаются открытыми, поэтому {@link #indexOfLoaded(int)} находит те же позиции; если количество
+     * элементов изменилось, остаётся только первая страница.
+     *
+     * @param items элементы категории из текущей версии каталога
+     */
+    @MainThread
+    public void setSource(List<Category> items) {
+        boolean resized = items.size() != total;
+        source = items;
+        total = items.size();
+        if (resized) {
+            pages.clear();
+            request(0);
+            return;
+        }
+        for (Map.Entry<Integer, List<Category>> entry : pages.entrySet()) {
+            entry.setValue(window(entry.getKey()));
+        }
+    }
+
+    /**
+     * Возвращает элемент по позиции, запуская загрузку его страницы при необходимости.
+     *
+     * @param index позиция
+     * @return элемент, или null, если его страница ещё не загружена
+     */
+    @Override
+    @MainThread
+    public Category get(int index) {
+        if (index < 0 || index >= total) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + total);
+        }
+        int page = index / PAGE_SIZE;
+        int inPage = index % PAGE_SIZE;
+        if (inPage >= PAGE_SIZE - PREFETCH_DISTANCE) {
+            request(page + 1);
+        } else if (inPage < PREFETCH_DISTANCE) {
+            request(page - 1);
+        }
+        List<Category> items = pages.get(page);
+        if (items == null) {
+            request(page);
+            items = pages.get(page);
+            if (items == null) {
+                return null;
+            }
+        }
+        return inPage < items.size() ? items.get(inPage) : null;
+    }
+
+    @Override
+    public int size() {
+        return total;
+    }
+
+    /**
+     * Ищет элемент среди загруженных страниц без запуска загрузки.
+     *
+     * @param id идентификатор элемента
+     * @return позиция элемента, или -1, если его нет в загруженных страницах
+     */
+    @MainThread
+    public int indexOfLoaded(int id) {
+        for (Map.Entry<Integer, List<Category>> entry : pages.entrySet()) {
+            List<Category> items = entry.getValue();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getId() == id) {
+                    return entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает загруженный элемент без запуска загрузки и без изменения порядка вытеснения страниц.
+     *
+     * @param index позиция
+     * @return элемент, или null, если его страница не загружена
+     */
+    @MainThread
+    public Category peek(int index) {
+        for (Map.Entry<Integer, List<Category>> entry : pages.entrySet()) {
+            if (entry.getKey() == index / PAGE_SIZE) {
+                List<Category> items = entry.getValue();
+                return index % PAGE_SIZE < items.size() ? items.get(index % PAGE_SIZE) : null;
+            }
+        }
+        return null;
+    }
+
+    private void request(int page) {
+        if (page < 0 || page * PAGE_SIZE >= total || pages.containsKey(page)) {
+            return;
+        }
+        if (source != null) {
+            pages.put(page, window(page));
+            return;
+        }
+        if (!loading.add(page)) {
+            return;
+        }
+        int offset = page * PAGE_SIZE;
+        AppExecutors.io().execute(() -> {
+            CategoryPage loaded;
+            try {
+                loaded = loader.load(parentId, offset, PAGE_SIZE);
+            } catch (IOException | RuntimeException e) {
+                AppLog.w(TAG, "Не удалось загрузить страницу " + page + " категории " + parentId + ": " + e.getMessage());
+                AppExecutors.main().execute(() -> loading.remove(page));
+                return;
+            }
+            AppExecutors.main().execute(() -> {
+                loading.remove(page);
+                pages.put(page, loaded.getItems());
+                listener.onPageLoaded(offset, Math.min(PAGE_SIZE, total - offset));
+            });
+        });
+    }
+
+    /**
+     * Возвращает окно страницы над элементами в памяти; элементы снимка при этом не декодируются.
+     */
+    private List<Category> window(int page) {
+        int offset = page * PAGE_SIZE;
+        return source.subList(offset, Math.min(offset + PAGE_SIZE, total));
+    }
+}
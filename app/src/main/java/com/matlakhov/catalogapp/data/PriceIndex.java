@@ -0,0 +1,360 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.IntIndexMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Отсортированные по цене индексы товаров каталога.
+ * <p>
+ * Товары (узлы с ценой) нумеруются в порядке обхода дерева в глубину, поэтому товары поддерева любой
+ * категории занимают непрерывный диапазон номеров. Для всего каталога и для каждой категории хранится
+ * массив номеров её товаров, упорядоченный по цене (при равной цене — по номеру), а цены — в массиве
+ * {@code double[]} по номеру товара. Выборка по диапазону цен выполняется двумя двоичными поисками
+ * и копированием найденных k товаров: O(log n + k), без сортировки и упаковки цен при запросе.
+ * </p>
+ * <p>
+ * Изменение цены одного товара ({@link #updatePrice(int, double)}) переставляет его в массивах
+ * каталога и категорий-предков без перестроения индекса, а новая версия узла товара заменяет прежнюю
+ * через {@link #updateProduct(Category)}. Опубликованный в {@link CatalogSnapshot} индекс не меняется:
+ * хранилище переносит изменения в копию ({@link #copy()}) и публикует её вместе с новой версией.
+ * </p>
+ */
+public final class PriceIndex {
+
+    /** Товары по номеру. */
+    private final Category[] products;
+
+    /** Цены товаров по номеру. */
+    private final double[] prices;
+
+    /** Номер категории, непосредственно содержащей товар, или -1 для товаров верхнего уровня. */
+    private final int[] productParents;
+
+    /** Номер товара по идентификатору. */
+    private final IntIndexMap productOrdinals;
+
+    /** Номер категории по идентификатору. */
+    private final IntIndexMap categorySlots;
+
+    /** Номер родительской категории, или -1 для корневых категорий. */
+    private final int[] categoryParents;
+
+    /** Номера всех товаров каталога, упорядоченные по цене. */
+    private final int[] catalogOrder;
+
+    /** Номера товаров поддерева каждой категории, упорядоченные по цене. */
+    private final int[][] categoryOrders;
+
+    private PriceIndex(Builder builder) {
+        int count = builder.products.size;
+        products = builder.productNodes.toArray(new Category[0]);
+        prices = new double[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = products[i].getPrice();
+        }
+        productParents = builder.products.toArray();
+        productOrdinals = new IntIndexMap(count);
+        for (int i = 0; i < count; i++) {
+            productOrdinals.put(products[i].getId(), i);
+        }
+        categorySlots = builder.categorySlots;
+        categoryParents = builder.categoryParents.toArray();
+        catalogOrder = sortedRange(0, count);
+        categoryOrders = new int[categoryParents.length][];
+        for (int slot = 0; slot < categoryParents.length; slot++) {
+            categoryOrders[slot] = sortedRange(builder.categoryStarts.get(slot), builder.categoryEnds.get(slot));
+        }
+    }
+
+    private PriceIndex(PriceIndex source) {
+        products = source.products.clone();
+        prices = source.prices.clone();
+        productParents = source.productParents;
+        productOrdinals = source.productOrdinals;
+        categorySlots = source.categorySlots;
+        categoryParents = source.categoryParents;
+        catalogOrder = source.catalogOrder.clone();
+        categoryOrders = new int[source.categoryOrders.length][];
+        for (int slot = 0; slot < categoryOrders.length; slot++) {
+            categoryOrders[slot] = source.categoryOrders[slot].clone();
+        }
+    }
+
+    /**
+     * Строит индекс по дереву каталога.
+     *
+     * @param catalog корневые категории
+     * @return построенный индекс
+     */
+    public static PriceIndex build(List<Category> catalog) {
+        Builder builder = new Builder();
+        for (Category root : catalog) {
+            if (root != null) {
+                builder.collect(root, -1);
+            }
+        }
+        return new PriceIndex(builder);
+    }
+
+    /**
+     * Возвращает копию индекса, изменения которой не затрагивают исходный. Неизменяемые после построения
+     * таблицы (номера товаров и категорий) разделяются с исходным индексом.
+     *
+     * @return копия индекса
+     */
+    public PriceIndex copy() {
+        return new PriceIndex(this);
+    }
+
+    /**
+     * @return количество товаров в индексе
+     */
+    public int size() {
+        return products.length;
+    }
+
+    /**
+     * Возвращает товары всего каталога с ценой в заданном диапазоне, упорядоченные по цене.
+     *
+     * @param min        минимальная цена (включительно), или {@link Double#NEGATIVE_INFINITY}
+     * @param max        максимальная цена (включительно), или {@link Double#POSITIVE_INFINITY}
+     * @param descending true — по убыванию цены, false — по возрастанию
+     * @return неизменяемый список товаров
+     */
+    public List<Category> query(double min, double max, boolean descending) {
+        return slice(catalogOrder, min, max, descending);
+    }
+
+    /**
+     * Возвращает товары поддерева категории с ценой в заданном диапазоне, упорядоченные по цене.
+     *
+     * @param categoryId идентификатор категории
+     * @param min        минимальная цена (включительно), или {@link Double#NEGATIVE_INFINITY}
+     * @param max        максимальная цена (включительно), или {@link Double#POSITIVE_INFINITY}
+     * @param descending true — по убыванию цены, false — по возрастанию
+     * @return неизменяемый список товаров, или null, если категории нет в индексе
+     */
+    public List<Category> query(int categoryId, double min, double max, boolean descending) {
+        int slot = categorySlots.get(categoryId, -1);
+        return slot >= 0 ? slice(categoryOrders[slot], min, max, descending) : null;
+    }
+
+    /**
+     * Заменяет узел товара его новой версией и обновляет цену, если она изменилась.
+     *
+     * @param product новая версия товара
+     * @return false, если товара нет в индексе (индекс нужно перестроить)
+     */
+    public boolean updateProduct(Category product) {
+        int ordinal = productOrdinals.get(product.getId(), -1);
+        if (ordinal < 0) {
+            return false;
+        }
+        products[ordinal] = product;
+        return product.getPrice() == null || updatePrice(product.getId(), product.getPrice());
+    }
+
+    /**
+     * Обновляет цену товара, сохраняя упорядоченность всех затронутых массивов.
+     *
+     * @param productId идентификатор товара
+     * @param price     новая цена
+     * @return false, если товара нет в индексе (индекс нужно перестроить)
+     */
+    public boolean updatePrice(int productId, double price) {
+        int ordinal = productOrdinals.get(productId, -1);
+        if (ordinal < 0) {
+            return false;
+        }
+        double oldPrice = prices[ordinal];
+        if (Double.compare(oldPrice, price) == 0) {
+            return true;
+        }
+        move(catalogOrder, ordinal, oldPrice, price);
+        for (int slot = productParents[ordinal]; slot >= 0; slot = categoryParents[slot]) {
+            move(categoryOrders[slot], ordinal, oldPrice, price);
+        }
+        prices[ordinal] = price;
+        return true;
+    }
+
+    private List<Category> slice(int[] order, double min, double max, boolean descending) {
+        int from = lowerBound(order, min);
+        int to = upperBound(order, max);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        Category[] result = new Category[to - from];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = products[order[descending ? to - 1 - i : from + i]];
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    /**
+     * Возвращает позицию первого товара с ценой не меньше заданной.
+     */
+    private int lowerBound(int[] order, double price) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(prices[order[mid]], price) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает позицию первого товара с ценой больше заданной.
+     */
+    private int upperBound(int[] order, double price) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(prices[order[mid]], price) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает позицию первого элемента, не меньшего пары (цена, номер).
+     */
+    private int position(int[] order, double price, int ordinal) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int other = order[mid];
+            int cmp = Double.compare(prices[other], price);
+            if (cmp < 0 || (cmp == 0 && other < ordinal)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Переставляет товар на место, соответствующее новой цене, сдвигая элементы между старой и новой позициями.
+     */
+    private void move(int[] order, int ordinal, double oldPrice, double newPrice) {
+        int from = position(order, oldPrice, ordinal);
+        int to = position(order, newPrice, ordinal);
+        if (to > from) {
+            // Позиция вычислена с учётом самого товара, который стоит левее
+            to--;
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else {
+            System.arraycopy(order, to, order, to + 1, from - to);
+        }
+        order[to] = ordinal;
+    }
+
+    /**
+     * Возвращает номера товаров диапазона {@code [start, end)}, упорядоченные по цене устойчивой сортировкой слиянием.
+     */
+    private int[] sortedRange(int start, int end) {
+        int[] order = new int[end - start];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = start + i;
+        }
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int left = 0; left < order.length - width; left += 2 * width) {
+                merge(order, buffer, left, left + width, Math.min(left + 2 * width, order.length));
+            }
+        }
+        return order;
+    }
+
+    private void merge(int[] order, int[] buffer, int left, int middle, int right) {
+        System.arraycopy(order, left, buffer, left, right - left);
+        int i = left;
+        int j = middle;
+        for (int k = left; k < right; k++) {
+            if (j >= right || (i < middle && Double.compare(prices[buffer[i]], prices[buffer[j]]) <= 0)) {
+                order[k] = buffer[i++];
+            } else {
+                order[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Сбор товаров и категорий при обходе дерева.
+     */
+    private static final class Builder {
+        final List<Category> productNodes = new ArrayList<>();
+        /** Номер родительской категории каждого товара. */
+        final IntBuffer products = new IntBuffer();
+        final IntBuffer categoryParents = new IntBuffer();
+        final IntBuffer categoryStarts = new IntBuffer();
+        final IntBuffer categoryEnds = new IntBuffer();
+        final IntIndexMap categorySlots = new IntIndexMap(64);
+
+        void collect(Category node, int parentSlot) {
+            int slot = parentSlot;
+            if (node.isCategory()) {
+                slot = categoryParents.size;
+                categoryParents.add(parentSlot);
+                categoryStarts.add(products.size);
+                categoryEnds.add(0);
+                categorySlots.put(node.getId(), slot);
+            }
+            if (node.getPrice() != null) {
+                productNodes.add(node);
+                products.add(slot);
+            }
+            for (Category child : node.getItems()) {
+                if (child != null) {
+                    collect(child, slot);
+                }
+            }
+            if (slot != parentSlot) {
+                categoryEnds.set(slot, products.size);
+            }
+        }
+    }
+
+    /**
+     * Растущий массив {@code int}.
+     */
+    private static final class IntBuffer {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
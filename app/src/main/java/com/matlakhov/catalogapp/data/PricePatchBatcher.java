@@ -0,0 +1,119 @@
+package com.matlakhov.catalogapp.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.matlakhov.catalogapp.models.PricePatch;
+import com.matlakhov.catalogapp.util.AppExecutors;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Накопитель изменений цен, применяющий их к каталогу в фоне и уведомляющий экраны не чаще одного раза за кадр.
+ * <p>
+ * Изменения могут поступать из любого потока (например, из потока чтения
+ * {@link com.matlakhov.catalogapp.network.PriceStreamClient}). Они складываются в очередь, которая
+ * разбирается в фоновом потоке: изменения одного товара объединяются, и весь пакет применяется одной
+ * новой версией каталога. Копирование узлов и индекса цен под блокировкой хранилища поэтому не занимает
+ * главный поток. В кадр {@link Choreographer} передаётся только набор изменённых идентификаторов,
+ * и слушатели {@link CatalogRepository.OnPricesChangedListener} уведомляются в главном потоке
+ * один раз за кадр обо всех пакетах, применённых с предыдущего кадра.
+ * </p>
+ */
+public class PricePatchBatcher implements Choreographer.FrameCallback {
+
+    /** Очередь изменений, ожидающих применения. */
+    private final ConcurrentLinkedQueue<PricePatch> pending = new ConcurrentLinkedQueue<>();
+
+    /** Признак того, что применение очереди уже запланировано. */
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+
+    /** Признак того, что обратный вызов кадра уже запланирован. */
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+
+    /** Идентификаторы товаров, изменённых с предыдущего кадра. */
+    private Set<Integer> changed = new HashSet<>();
+
+    /** Обработчик главного потока. */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Хранилище, к которому применяются изменения. */
+    private final CatalogRepository repository;
+
+    /**
+     * Создаёт накопитель для указанного хранилища.
+     *
+     * @param repository хранилище каталога
+     */
+    public PricePatchBatcher(CatalogRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Добавляет изменения в очередь и планирует их применение в фоне.
+     * Может вызываться из любого потока.
+     *
+     * @param patches изменения цен и наличия
+     */
+    public void enqueue(List<PricePatch> patches) {
+        pending.addAll(patches);
+        if (applyScheduled.compareAndSet(false, true)) {
+            AppExecutors.io().execute(this::apply);
+        }
+    }
+
+    /**
+     * Удаляет изменения, ещё не применённые к каталогу.
+     */
+    public void clear() {
+        pending.clear();
+    }
+
+    /**
+     * Применяет накопленные изменения одной новой версией каталога. Разбор очереди и применение выполняются
+     * под блокировкой накопителя, поэтому изменения одного товара применяются в порядке поступления.
+     */
+    private void apply() {
+        applyScheduled.set(false);
+        Set<Integer> applied;
+        synchronized (this) {
+            Map<Integer, PricePatch> merged = new LinkedHashMap<>();
+            PricePatch patch;
+            while ((patch = pending.poll()) != null) {
+                PricePatch previous = merged.get(patch.getId());
+                merged.put(patch.getId(), previous != null ? previous.mergeWith(patch) : patch);
+            }
+            if (merged.isEmpty()) {
+                return;
+            }
+            applied = repository.updatePrices(merged.values());
+            if (applied.isEmpty()) {
+                return;
+            }
+            changed.addAll(applied);
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(this));
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        Set<Integer> ids;
+        synchronized (this) {
+            ids = changed;
+            changed = new HashSet<>();
+        }
+        if (!ids.isEmpty()) {
+            repository.notifyPricesChanged(ids);
+        }
+    }
+}
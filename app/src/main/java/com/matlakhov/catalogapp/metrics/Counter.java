@@ -0,0 +1,47 @@
+package com.matlakhov.catalogapp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Монотонный счётчик событий.
+ * <p>
+ * Увеличивается из любого потока без блокировок ({@link LongAdder}).
+ * </p>
+ */
+public final class Counter {
+
+    /** Значение счётчика. */
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Увеличивает счётчик на единицу.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Увеличивает счётчик на заданную величину.
+     *
+     * @param delta неотрицательное приращение
+     */
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    /**
+     * Возвращает текущее значение счётчика.
+     *
+     * @return сумма всех приращений
+     */
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
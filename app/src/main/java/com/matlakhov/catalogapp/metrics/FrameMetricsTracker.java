@@ -0,0 +1,207 @@
+package com.matlakhov.catalogapp.metrics;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сбор времени кадров окна экрана через {@link Window#addOnFrameMetricsAvailableListener}.
+ * <p>
+ * Длительность каждого кадра записывается в гистограмму {@code frames.<имя класса экрана>}; кадры,
+ * отрисованные во время прокрутки списка, подключённого через {@link #trackList(RecyclerView)}, —
+ * дополнительно в {@code frames.<экран>.<id списка>} (например, {@code frames.MainActivity.recycler_main}).
+ * Для каждой гистограммы ведутся счётчики медленных кадров ({@code .slow}, дольше периода обновления
+ * экрана) и замёрзших ({@code .frozen}, дольше {@link #FROZEN_FRAME_MS} мс), а также счётчик фазы,
+ * занявшей большую часть медленного кадра ({@code .slow.<фаза>}): {@code animation} и {@code layout} —
+ * прокрутка, привязка и создание строк, {@code sync} — загрузка декодированных изображений в GPU,
+ * {@code delay} — главный поток был занят до начала кадра.
+ * </p>
+ * <p>
+ * Слушатель снимается автоматически при уничтожении экрана.
+ * </p>
+ */
+public final class FrameMetricsTracker {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "FrameMetricsTracker";
+
+    /** Порог замёрзшего кадра (мс). */
+    public static final long FROZEN_FRAME_MS = 700;
+
+    /** Фазы кадра, среди которых ищется основная причина медленного кадра. */
+    private static final int[][] PHASES = {
+            {FrameMetrics.UNKNOWN_DELAY_DURATION},
+            {FrameMetrics.INPUT_HANDLING_DURATION},
+            {FrameMetrics.ANIMATION_DURATION},
+            {FrameMetrics.LAYOUT_MEASURE_DURATION},
+            {FrameMetrics.DRAW_DURATION},
+            {FrameMetrics.SYNC_DURATION},
+            {FrameMetrics.COMMAND_ISSUE_DURATION, FrameMetrics.SWAP_BUFFERS_DURATION}
+    };
+
+    /** Имена фаз в метриках, в порядке {@link #PHASES}. */
+    private static final String[] PHASE_NAMES = {
+            "delay", "input", "animation", "layout", "draw", "sync", "gpu"
+    };
+
+    /** Фоновый поток, в котором обрабатываются кадры всех экранов. */
+    private static Handler handler;
+
+    /** Префикс метрик экрана. */
+    private final String screen;
+
+    /** Период обновления экрана (нс). */
+    private final long frameIntervalNanos;
+
+    /** Префикс метрик прокручиваемого списка, или null, если ни один список не прокручивается. */
+    private volatile String scrolling;
+
+    private final Window.OnFrameMetricsAvailableListener listener = this::onFrame;
+
+    private FrameMetricsTracker(Activity activity) {
+        screen = "frames." + activity.getClass().getSimpleName();
+        Display display = activity.getWindowManager().getDefaultDisplay();
+        float refreshRate = display != null && display.getRefreshRate() > 0 ? display.getRefreshRate() : 60f;
+        frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+
+    /**
+     * Начинает сбор времени кадров окна экрана.
+     * <p>
+     * Вызывается в {@code onCreate} после {@code super.onCreate}.
+     * </p>
+     *
+     * @param activity экран
+     * @return объект для подключения списков экрана
+     */
+    @MainThread
+    public static FrameMetricsTracker track(Activity activity) {
+        FrameMetricsTracker tracker = new FrameMetricsTracker(activity);
+        Window window = activity.getWindow();
+        try {
+            window.addOnFrameMetricsAvailableListener(tracker.listener, handler());
+        } catch (IllegalStateException e) {
+            // Окно без аппаратного ускорения не сообщает время кадров
+            AppLog.w(TAG, "Время кадров недоступно: " + e.getMessage());
+            return tracker;
+        }
+        activity.getApplication().registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityDestroyed(@NonNull Activity destroyed) {
+                if (destroyed == activity) {
+                    window.removeOnFrameMetricsAvailableListener(tracker.listener);
+                    activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+                }
+            }
+
+            @Override
+            public void onActivityCreated(@NonNull Activity a, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(@NonNull Activity a) {
+            }
+
+            @Override
+            public void onActivityResumed(@NonNull Activity a) {
+            }
+
+            @Override
+            public void onActivityPaused(@NonNull Activity a) {
+            }
+
+            @Override
+            public void onActivityStopped(@NonNull Activity a) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(@NonNull Activity a, @NonNull Bundle outState) {
+            }
+        });
+        return tracker;
+    }
+
+    /**
+     * Отмечает кадры, отрисованные во время прокрутки списка, отдельной гистограммой.
+     *
+     * @param list список экрана; имя метрики берётся из его идентификатора в разметке
+     */
+    @MainThread
+    public void trackList(RecyclerView list) {
+        String name = screen + "." + list.getResources().getResourceEntryName(list.getId());
+        list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState != RecyclerView.SCROLL_STATE_IDLE) {
+                    scrolling = name;
+                } else if (name.equals(scrolling)) {
+                    scrolling = null;
+                }
+            }
+        });
+    }
+
+    private static synchronized Handler handler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("frame-metrics");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    private void onFrame(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+            // Первый кадр учитывается во времени запуска экрана
+            return;
+        }
+        long total = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        String cause = total > frameIntervalNanos ? slowestPhase(frameMetrics) : null;
+        record(screen, total, cause);
+        String list = scrolling;
+        if (list != null) {
+            record(list, total, cause);
+        }
+    }
+
+    private void record(String name, long totalNanos, String cause) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.histogram(name).recordNanos(totalNanos);
+        if (cause != null) {
+            registry.counter(name + ".slow").increment();
+            registry.counter(name + ".slow." + cause).increment();
+        }
+        if (totalNanos > TimeUnit.MILLISECONDS.toNanos(FROZEN_FRAME_MS)) {
+            registry.counter(name + ".frozen").increment();
+        }
+    }
+
+    private static String slowestPhase(FrameMetrics frameMetrics) {
+        int slowest = 0;
+        long slowestNanos = -1;
+        for (int i = 0; i < PHASES.length; i++) {
+            long nanos = 0;
+            for (int metric : PHASES[i]) {
+                nanos += frameMetrics.getMetric(metric);
+            }
+            if (nanos > slowestNanos) {
+                slowestNanos = nanos;
+                slowest = i;
+            }
+        }
+        return PHASE_NAMES[slowest];
+    }
+}
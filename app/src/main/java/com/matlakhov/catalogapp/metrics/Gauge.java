@@ -0,0 +1,35 @@
+package com.matlakhov.catalogapp.metrics;
+
+/**
+ * Показатель, хранящий последнее установленное значение (например, размер каталога).
+ */
+public final class Gauge {
+
+    /** Последнее значение. */
+    private volatile double value = Double.NaN;
+
+    Gauge() {
+    }
+
+    /**
+     * Устанавливает значение показателя.
+     *
+     * @param value новое значение
+     */
+    public void set(double value) {
+        this.value = value;
+    }
+
+    /**
+     * Возвращает последнее установленное значение.
+     *
+     * @return значение, или {@link Double#NaN}, если оно не устанавливалось
+     */
+    public double get() {
+        return value;
+    }
+
+    void reset() {
+        value = Double.NaN;
+    }
+}
@@ -0,0 +1,68 @@
+package com.matlakhov.catalogapp.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Locale;
+
+/**
+ * Слушатель Glide, записывающий время загрузки изображения и источник данных.
+ * <p>
+ * Создаётся на каждый запрос ({@link #start(String)}) и записывает в {@link MetricsRegistry}
+ * время от создания до готовности изображения в гистограмму {@code image.<экран>},
+ * источник в счётчики {@code image.source.<источник>}, а ошибки — в {@code image.failed}.
+ * Время загрузки также отмечается асинхронной секцией трассировки ({@link TraceSections}).
+ * </p>
+ *
+ * @param <T> тип загружаемого ресурса
+ */
+public final class ImageLoadMetrics<T> implements RequestListener<T> {
+
+    /** Имя гистограммы. */
+    private final String name;
+
+    /** Время начала запроса ({@link System#nanoTime()}). */
+    private final long startNanos = System.nanoTime();
+
+    /** Идентификатор асинхронной секции трассировки запроса. */
+    private final int traceCookie;
+
+    private ImageLoadMetrics(String name) {
+        this.name = name;
+        this.traceCookie = TraceSections.beginAsync(name);
+    }
+
+    /**
+     * Создаёт слушатель для нового запроса изображения.
+     *
+     * @param screen место загрузки, например {@code "row"} или {@code "product"}
+     * @param <T>    тип загружаемого ресурса
+     * @return слушатель, который нужно передать в {@code RequestBuilder#addListener}
+     */
+    public static <T> ImageLoadMetrics<T> start(String screen) {
+        return new ImageLoadMetrics<>("image." + screen);
+    }
+
+    @Override
+    public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<T> target,
+                                boolean isFirstResource) {
+        MetricsRegistry.getInstance().counter("image.failed").increment();
+        TraceSections.endAsync(name, traceCookie);
+        return false;
+    }
+
+    @Override
+    public boolean onResourceReady(@NonNull T resource, @NonNull Object model, Target<T> target,
+                                   @NonNull DataSource dataSource, boolean isFirstResource) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.recordSince(name, startNanos);
+        registry.counter("image.source." + dataSource.name().toLowerCase(Locale.US)).increment();
+        TraceSections.endAsync(name, traceCookie);
+        return false;
+    }
+}
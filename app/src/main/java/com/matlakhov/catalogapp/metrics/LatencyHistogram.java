@@ -0,0 +1,171 @@
+package com.matlakhov.catalogapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек без блокировок.
+ * <p>
+ * Значения хранятся в микросекундах в логарифмических корзинах: каждая степень двойки делится на
+ * {@link #SUB_BUCKETS} равные части, поэтому относительная погрешность перцентилей не превышает 12,5%,
+ * а запись — это несколько атомарных операций без выделения памяти. Диапазон — от 1 мкс
+ * до 2<sup>{@value #MAX_EXPONENT}</sup> мкс (около 19 часов); большие значения попадают в последнюю корзину.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    /** Количество корзин на одну степень двойки. */
+    static final int SUB_BUCKETS = 4;
+
+    /** Показатель степени двойки верхней границы диапазона (в микросекундах). */
+    static final int MAX_EXPONENT = 36;
+
+    /** Общее количество корзин. */
+    static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - 1) + SUB_BUCKETS;
+
+    /** Количество значений в каждой корзине. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /** Количество значений. */
+    private final LongAdder count = new LongAdder();
+
+    /** Сумма значений (мкс). */
+    private final LongAdder sum = new LongAdder();
+
+    /** Максимальное значение (мкс). */
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Записывает значение в наносекундах.
+     *
+     * @param nanos длительность в наносекундах
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    /**
+     * Записывает значение в миллисекундах.
+     *
+     * @param millis длительность в миллисекундах
+     */
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1_000);
+    }
+
+    /**
+     * Записывает значение в микросекундах.
+     *
+     * @param micros длительность в микросекундах; отрицательные значения считаются нулём
+     */
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        buckets.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Возвращает количество записанных значений.
+     *
+     * @return количество значений
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Возвращает среднее значение в миллисекундах.
+     *
+     * @return среднее, или 0, если значений нет
+     */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n / 1_000;
+    }
+
+    /**
+     * Возвращает максимальное значение в миллисекундах.
+     *
+     * @return максимум, или 0, если значений нет
+     */
+    public double getMaxMillis() {
+        return max.get() / 1_000.0;
+    }
+
+    /**
+     * Возвращает перцентиль в миллисекундах.
+     * <p>
+     * Значение — середина корзины, в которую попал перцентиль; оно не превышает максимум.
+     * Записи, идущие параллельно с вызовом, могут быть учтены частично.
+     * </p>
+     *
+     * @param percentile перцентиль от 0 до 100
+     * @return значение перцентиля, или 0, если значений нет
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                double middle = (lowerBound(i) + lowerBound(i + 1)) / 2.0;
+                return Math.min(middle, max.get()) / 1_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Возвращает номер корзины для значения.
+     *
+     * @param micros значение в микросекундах
+     * @return номер корзины
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS * (exponent - 1) + sub);
+    }
+
+    /**
+     * Возвращает нижнюю границу корзины.
+     *
+     * @param index номер корзины
+     * @return наименьшее значение (мкс), попадающее в корзину
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + 1;
+        int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - 2);
+    }
+}
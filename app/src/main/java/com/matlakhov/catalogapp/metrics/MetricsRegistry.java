@@ -0,0 +1,252 @@
+package com.matlakhov.catalogapp.metrics;
+
+import android.os.Build;
+
+import androidx.annotation.WorkerThread;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр показателей производительности приложения.
+ * <p>
+ * Хранит именованные счётчики ({@link Counter}), показатели ({@link Gauge}) и гистограммы задержек
+ * ({@link LatencyHistogram}). Метрики создаются при первом обращении по имени; запись безопасна
+ * из любого потока и не требует блокировок. Имена метрик разделяются точками, первая часть —
+ * подсистема: {@code network}, {@code parse}, {@code index}, {@code bind}, {@code image}, {@code startup}.
+ * </p>
+ * <p>
+ * Отчёт доступен в виде текста для отладочного экрана ({@link #toText()}) и в формате JSON
+ * ({@link #toJson()}, {@link #writeReport(File)}) с версией сборки и устройством, чтобы отчёты
+ * разных сборок можно было сравнивать.
+ * </p>
+ */
+public final class MetricsRegistry {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "MetricsRegistry";
+
+    /** Перцентили, попадающие в отчёт. */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /** Единый экземпляр реестра. */
+    private static MetricsRegistry instance;
+
+    /** Счётчики по имени. */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /** Показатели по имени. */
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /** Гистограммы задержек по имени. */
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /** Версия сборки для отчёта. */
+    private volatile String buildVersion = "";
+
+    MetricsRegistry() {
+    }
+
+    /**
+     * Возвращает единый экземпляр реестра.
+     *
+     * @return экземпляр {@link MetricsRegistry}
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Возвращает счётчик, создавая его при первом обращении.
+     *
+     * @param name имя счётчика
+     * @return счётчик
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Возвращает показатель, создавая его при первом обращении.
+     *
+     * @param name имя показателя
+     * @return показатель
+     */
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new Gauge());
+    }
+
+    /**
+     * Возвращает гистограмму задержек, создавая её при первом обращении.
+     *
+     * @param name имя гистограммы
+     * @return гистограмма
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Записывает длительность операции, начатой в момент {@code startNanos}.
+     *
+     * @param name       имя гистограммы
+     * @param startNanos значение {@link System#nanoTime()} в начале операции
+     * @return длительность в миллисекундах (для журнала)
+     */
+    public long recordSince(String name, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        histogram(name).recordNanos(elapsed);
+        return elapsed / 1_000_000;
+    }
+
+    /**
+     * Устанавливает версию сборки, которая попадёт в отчёт.
+     *
+     * @param version версия, например {@code "1.0 (1) debug"}
+     */
+    public void setBuildVersion(String version) {
+        buildVersion = version != null ? version : "";
+    }
+
+    /**
+     * Обнуляет все метрики. Имена метрик сохраняются.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Возвращает снимок всех метрик в виде вложенных словарей, отсортированных по имени.
+     *
+     * @return словарь с разделами {@code build}, {@code counters}, {@code gauges} и {@code histograms}
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> build = new LinkedHashMap<>();
+        build.put("version", buildVersion);
+        build.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        build.put("sdk", Build.VERSION.SDK_INT);
+
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+        Map<String, Double> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            double value = entry.getValue().get();
+            if (!Double.isNaN(value)) {
+                gaugeValues.put(entry.getKey(), value);
+            }
+        }
+        Map<String, Map<String, Object>> histogramValues = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("meanMs", round(histogram.getMeanMillis()));
+            for (double percentile : PERCENTILES) {
+                values.put("p" + (int) percentile + "Ms", round(histogram.getPercentileMillis(percentile)));
+            }
+            values.put("maxMs", round(histogram.getMaxMillis()));
+            histogramValues.put(entry.getKey(), values);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("createdAt", System.currentTimeMillis());
+        snapshot.put("build", build);
+        snapshot.put("counters", counterValues);
+        snapshot.put("gauges", gaugeValues);
+        snapshot.put("histograms", histogramValues);
+        return snapshot;
+    }
+
+    /**
+     * Возвращает отчёт в формате JSON.
+     *
+     * @return JSON-представление {@link #snapshot()}
+     */
+    public String toJson() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(snapshot());
+    }
+
+    /**
+     * Возвращает отчёт в виде текста для отладочного экрана: одна метрика на строку.
+     *
+     * @return текстовый отчёт
+     */
+    @SuppressWarnings("unchecked")
+    public String toText() {
+        Map<String, Object> snapshot = snapshot();
+        StringBuilder text = new StringBuilder();
+        text.append("Сборка: ").append(((Map<String, Object>) snapshot.get("build")).get("version")).append('\n');
+        text.append("\nГистограммы (мс):\n");
+        for (Map.Entry<String, Map<String, Object>> entry
+                : ((Map<String, Map<String, Object>>) snapshot.get("histograms")).entrySet()) {
+            Map<String, Object> values = entry.getValue();
+            text.append(String.format(Locale.US, "%s\n  n=%d  ср=%.2f  p50=%.2f  p90=%.2f  p99=%.2f  макс=%.2f\n",
+                    entry.getKey(), values.get("count"), values.get("meanMs"), values.get("p50Ms"),
+                    values.get("p90Ms"), values.get("p99Ms"), values.get("maxMs")));
+        }
+        text.append("\nСчётчики:\n");
+        for (Map.Entry<String, Long> entry : ((Map<String, Long>) snapshot.get("counters")).entrySet()) {
+            text.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        }
+        text.append("\nПоказатели:\n");
+        for (Map.Entry<String, Double> entry : ((Map<String, Double>) snapshot.get("gauges")).entrySet()) {
+            text.append(entry.getKey()).append(" = ").append(String.format(Locale.US, "%.2f", entry.getValue()))
+                    .append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Сохраняет отчёт в формате JSON в каталог приложения.
+     *
+     * @param directory каталог для отчётов (например, {@code files/metrics})
+     * @return файл отчёта
+     * @throws IOException если файл не удалось записать
+     */
+    @WorkerThread
+    public File writeReport(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + directory);
+        }
+        File file = new File(directory, "metrics-" + System.currentTimeMillis() + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+        AppLog.i(TAG, () -> "Отчёт метрик сохранён: " + file);
+        return file;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1_000) / 1_000.0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.matlakhov.catalogapp.metrics;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.MainThread;
+
+/**
+ * Утилитный класс для измерения времени запуска экранов.
+ */
+public final class StartupMetrics {
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Начинает измерение времени от вызова до первой отрисовки окна экрана.
+     * <p>
+     * Вызывается в {@code onCreate} сразу после {@code super.onCreate}; результат записывается в гистограмму
+     * {@code startup.<имя класса экрана>}.
+     * </p>
+     *
+     * @param activity запускаемый экран
+     */
+    @MainThread
+    public static void track(Activity activity) {
+        long start = System.nanoTime();
+        String name = "startup." + activity.getClass().getSimpleName();
+        View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                MetricsRegistry.getInstance().recordSince(name, start);
+                return true;
+            }
+        });
+    }
+}
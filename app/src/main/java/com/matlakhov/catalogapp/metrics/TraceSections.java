@@ -0,0 +1,76 @@
+package com.matlakhov.catalogapp.metrics;
+
+import androidx.tracing.Trace;
+
+import com.matlakhov.catalogapp.BuildConfig;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Утилитный класс для именованных секций системной трассировки (Perfetto, systrace).
+ * <p>
+ * Секции включены в отладочной сборке; в релизной — только если она собрана со свойством
+ * {@code -PcatalogTracing=true}. Иначе {@link BuildConfig#TRACING_ENABLED} равен false и вызовы
+ * удаляются компилятором. Синхронные секции ({@link #begin(String)}) должны начинаться и заканчиваться
+ * в одном потоке, асинхронные ({@link #beginAsync(String)}) могут пересекать потоки, например
+ * охватывать сетевой запрос от начала до получения тела.
+ * </p>
+ */
+public final class TraceSections {
+
+    /** Включена ли трассировка в этой сборке. */
+    public static final boolean ENABLED = BuildConfig.TRACING_ENABLED;
+
+    /** Последний выданный идентификатор асинхронной секции. */
+    private static final AtomicInteger COOKIES = new AtomicInteger();
+
+    private TraceSections() {
+    }
+
+    /**
+     * Начинает синхронную секцию в текущем потоке.
+     *
+     * @param name имя секции (не длиннее 127 символов)
+     */
+    public static void begin(String name) {
+        if (ENABLED) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * Заканчивает последнюю начатую в текущем потоке секцию.
+     */
+    public static void end() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Начинает асинхронную секцию.
+     *
+     * @param name имя секции
+     * @return идентификатор, который нужно передать в {@link #endAsync(String, int)}
+     */
+    public static int beginAsync(String name) {
+        if (!ENABLED) {
+            return 0;
+        }
+        int cookie = COOKIES.incrementAndGet();
+        Trace.beginAsyncSection(name, cookie);
+        return cookie;
+    }
+
+    /**
+     * Заканчивает асинхронную секцию.
+     *
+     * @param name   имя секции, переданное в {@link #beginAsync(String)}
+     * @param cookie идентификатор секции
+     */
+    public static void endAsync(String name, int cookie) {
+        if (ENABLED) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.matlakhov.catalogapp.models;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Модель дельта-обновления каталога между двумя версиями.
+ * <p>
+ * Сервер возвращает только изменения относительно версии {@code base_version}, которую прислал клиент:
+ * удалённые узлы, добавленные узлы (с поддеревом и позицией) и узлы с изменёнными полями.
+ * Если сервер не может построить дельту (например, базовая версия слишком старая),
+ * он возвращает {@code full = true} и полный каталог в полях {@code catalog} и {@code products}.
+ * </p>
+ * <p>
+ * Поле {@code products} в обычной дельте передаётся только тогда, когда изменился список
+ * рекомендуемых товаров, и в этом случае заменяет его целиком.
+ * </p>
+ *
+ * @see CatalogNodeChange
+ */
+public class CatalogDelta {
+
+    /** Версия, относительно которой построены изменения. */
+    @SerializedName("base_version")
+    private long baseVersion;
+
+    /** Версия каталога после применения изменений. */
+    @SerializedName("version")
+    private long version;
+
+    /** Признак того, что вместо дельты передан полный каталог. */
+    @SerializedName("full")
+    private boolean full;
+
+    /** Полный каталог (только при {@code full = true}). */
+    @SerializedName("catalog")
+    private List<Category> catalog;
+
+    /** Новый список рекомендуемых товаров, или null, если он не изменился. */
+    @SerializedName("products")
+    private List<Product> products;
+
+    /** Идентификаторы удалённых узлов (удаляются вместе с поддеревом). */
+    @SerializedName("removed")
+    private List<Integer> removed;
+
+    /** Добавленные узлы. */
+    @SerializedName("added")
+    private List<CatalogNodeChange> added;
+
+    /** Узлы с изменёнными собственными полями (вложенные элементы не передаются). */
+    @SerializedName("modified")
+    private List<Category> modified;
+
+    /**
+     * Создаёт новую пустую дельту.
+     */
+    public CatalogDelta() {
+        this.removed = new ArrayList<>();
+        this.added = new ArrayList<>();
+        this.modified = new ArrayList<>();
+    }
+
+    /**
+     * Возвращает версию, относительно которой построены изменения.
+     *
+     * @return базовая версия
+     */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Возвращает версию каталога после применения изменений.
+     *
+     * @return новая версия
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Проверяет, передан ли вместо дельты полный каталог.
+     *
+     * @return true, если дельта содержит полный каталог
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Проверяет, содержит ли дельта какие-либо изменения.
+     *
+     * @return true, если изменений нет и версия не изменилась
+     */
+    public boolean isEmpty() {
+        return !full && products == null && getRemoved().isEmpty() && getAdded().isEmpty()
+                && getModified().isEmpty();
+    }
+
+    /**
+     * Возвращает неизменяемый полный список категорий.
+     *
+     * @return список категорий, или пустой список, если дельта не полная
+     */
+    public List<Category> getCatalog() {
+        return catalog != null ? Collections.unmodifiableList(catalog) : Collections.emptyList();
+    }
+
+    /**
+     * Возвращает новый список рекомендуемых товаров.
+     *
+     * @return список товаров, или null, если список не изменился
+     */
+    public List<Product> getProducts() {
+        return products != null ? Collections.unmodifiableList(products) : null;
+    }
+
+    /**
+     * Возвращает неизменяемый список идентификаторов удалённых узлов.
+     *
+     * @return список идентификаторов
+     */
+    public List<Integer> getRemoved() {
+        return removed != null ? Collections.unmodifiableList(removed) : Collections.emptyList();
+    }
+
+    /**
+     * Возвращает неизменяемый список добавленных узлов.
+     *
+     * @return список добавленных узлов
+     */
+    public List<CatalogNodeChange> getAdded() {
+        return added != null ? Collections.unmodifiableList(added) : Collections.emptyList();
+    }
+
+    /**
+     * Возвращает неизменяемый список узлов с изменёнными полями.
+     *
+     * @return список изменённых узлов
+     */
+    public List<Category> getModified() {
+        return modified != null ? Collections.unmodifiableList(modified) : Collections.emptyList();
+    }
+
+    /**
+     * Устанавливает базовую версию.
+     *
+     * @param baseVersion базовая версия
+     */
+    public void setBaseVersion(long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    /**
+     * Устанавливает новую версию каталога.
+     *
+     * @param version новая версия
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Устанавливает признак полного каталога.
+     *
+     * @param full true, если дельта содержит полный каталог
+     */
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    /**
+     * Устанавливает полный список категорий.
+     *
+     * @param catalog список категорий
+     */
+    public void setCatalog(List<Category> catalog) {
+        this.catalog = catalog != null ? new ArrayList<>(catalog) : null;
+    }
+
+    /**
+     * Устанавливает новый список рекомендуемых товаров.
+     *
+     * @param products список товаров, или null, если список не изменился
+     */
+    public void setProducts(List<Product> products) {
+        this.products = products != null ? new ArrayList<>(products) : null;
+    }
+
+    /**
+     * Устанавливает список идентификаторов удалённых узлов.
+     *
+     * @param removed список идентификаторов
+     */
+    public void setRemoved(List<Integer> removed) {
+        this.removed = removed != null ? new ArrayList<>(removed) : new ArrayList<>();
+    }
+
+    /**
+     * Устанавливает список добавленных узлов.
+     *
+     * @param added список добавленных узлов
+     */
+    public void setAdded(List<CatalogNodeChange> added) {
+        this.added = added != null ? new ArrayList<>(added) : new ArrayList<>();
+    }
+
+    /**
+     * Устанавливает список узлов с изменёнными полями.
+     *
+     * @param modified список изменённых узлов
+     */
+    public void setModified(List<Category> modified) {
+        this.modified = modified != null ? new ArrayList<>(modified) : new ArrayList<>();
+    }
+}
@@ -0,0 +1,73 @@
+package com.matlakhov.catalogapp.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Модель добавленного узла в дельта-обновлении каталога.
+ * <p>
+ * Описывает, куда вставить новый узел: идентификатор родителя ({@code null} для корневого уровня)
+ * и позицию среди его вложенных элементов. Узел передаётся вместе со всем поддеревом.
+ * </p>
+ *
+ * @see CatalogDelta
+ */
+public class CatalogNodeChange {
+
+    /** Идентификатор родительской категории, или null для корневого уровня каталога. */
+    @SerializedName("parent_id")
+    private Integer parentId;
+
+    /** Позиция узла среди элементов родителя после применения изменений. */
+    @SerializedName("position")
+    private int position;
+
+    /** Добавленный узел вместе с поддеревом. */
+    @SerializedName("node")
+    private Category node;
+
+    /**
+     * Создаёт новый пустой объект изменения.
+     */
+    public CatalogNodeChange() {
+    }
+
+    /**
+     * Создаёт объект изменения с заданными значениями.
+     *
+     * @param parentId идентификатор родителя, или null для корневого уровня
+     * @param position позиция узла среди элементов родителя
+     * @param node     добавленный узел
+     */
+    public CatalogNodeChange(Integer parentId, int position, Category node) {
+        this.parentId = parentId;
+        this.position = position;
+        this.node = node;
+    }
+
+    /**
+     * Возвращает идентификатор родительской категории.
+     *
+     * @return идентификатор родителя, или null для корневого уровня
+     */
+    public Integer getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Возвращает позицию узла среди элементов родителя.
+     *
+     * @return позиция узла
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Возвращает добавленный узел.
+     *
+     * @return узел вместе с поддеревом
+     */
+    public Category getNode() {
+        return node;
+    }
+}
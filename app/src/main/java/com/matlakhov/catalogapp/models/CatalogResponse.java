@@ -23,6 +23,10 @@ public class CatalogResponse {
     @SerializedName("products")
     private List<Product> products;
 
+    /** Версия каталога на сервере из JSON-поля "version" (0, если сервер версии не передаёт). */
+    @SerializedName("version")
+    private long version;
+
     /**
      * Создаёт новый объект с пустыми списками категорий и товаров.
      */
@@ -57,6 +61,24 @@ public class CatalogResponse {
         return products != null ? Collections.unmodifiableList(products) : Collections.emptyList();
     }
 
+    /**
+     * Возвращает версию каталога, с которой клиент может запрашивать дельта-обновления.
+     *
+     * @return версия каталога, или 0, если сервер не поддерживает версионирование
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Устанавливает версию каталога.
+     *
+     * @param version версия каталога
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Устанавливает список категорий.
      *
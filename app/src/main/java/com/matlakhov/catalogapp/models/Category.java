@@ -1,14 +1,23 @@
 package com.matlakhov.catalogapp.models;
 
+import android.os.BadParcelableException;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
 
 import com.google.gson.annotations.SerializedName;
+import com.matlakhov.catalogapp.metrics.TraceSections;
+import com.matlakhov.catalogapp.util.AppLog;
+import com.matlakhov.catalogapp.util.CompactText;
+import com.matlakhov.catalogapp.util.StringPool;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 
 /**
@@ -18,12 +27,20 @@ import java.util.List;
  * Категория может содержать вложенные подкатегории или товары (поле {@code items}).
  * Класс реализует интерфейс {@link Parcelable} для передачи данных между активностями.
  * </p>
+ * <p>
+ * Строки узлов, прочитанных из ответа сервера, хранилища или {@link Parcel}, переводятся в общие экземпляры
+ * ({@link #compact(StringPool)}), поэтому часть полей хранится не в сериализуемом виде: такие узлы
+ * записываются в JSON через геттеры ({@code CategoryTypeAdapter}), а не рефлексивным адаптером Gson.
+ * </p>
  */
 public class Category implements Parcelable {
 
     /** Тег для целей логирования. */
     private static final String TAG = "Category";
 
+    /** Выборочный журнал распаковки: дерево из тысяч узлов распаковывается целиком. */
+    private static final AppLog.Sampler PARCEL_LOG = AppLog.sampler(TAG, 1000, 5);
+
     /** Уникальный идентификатор категории или товара. */
     @SerializedName("id")
     private int id;
@@ -32,22 +49,35 @@ public class Category implements Parcelable {
     @SerializedName("name")
     private String name;
 
-    /** URL изображения категории или товара. */
+    /** URL изображения категории или товара, или его окончание после {@link #imageBase}. */
     @SerializedName("image")
     private String imageUrl;
 
-    /** Описание категории или товара. */
+    /** Общий для многих узлов префикс URL изображения, или null, если URL хранится целиком. */
+    private transient String imageBase;
+
+    /** Описание категории или товара, или null, если оно хранится в {@link #packedDescription}. */
     @SerializedName("description")
     private String description;
 
+    /** Длинное описание в виде {@link CompactText} (не сериализуется). */
+    private transient byte[] packedDescription;
+
     /** Цена (для товаров). */
     @SerializedName("price")
     private Double price;
 
+    /** Наличие товара на складе (null, если сервер не передаёт наличие). */
+    @SerializedName("available")
+    private Boolean available;
+
     /** Список вложенных подкатегорий или товаров. */
     @SerializedName("items")
     private List<Category> items;
 
+    /** Признак того, что описание и изображение уже запрошены у сервера (не сериализуется). */
+    private transient boolean detailsLoaded;
+
     /**
      * Создаёт новый пустой объект категории.
      */
@@ -56,15 +86,86 @@ public class Category implements Parcelable {
     }
 
     /**
-     * Создаёт объект категории из данных, прочитанных из {@link Parcel}.
+     * Создаёт копию узла для построения новой версии дерева.
+     * <p>
+     * Поля узла копируются, а вложенные элементы остаются общими с исходным узлом: копируется только
+     * их список, поэтому его можно изменять, не затрагивая исходный узел.
+     * </p>
+     *
+     * @param other копируемый узел
+     */
+    public Category(Category other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.imageUrl = other.imageUrl;
+        this.imageBase = other.imageBase;
+        this.description = other.description;
+        this.packedDescription = other.packedDescription;
+        this.price = other.price;
+        this.available = other.available;
+        this.detailsLoaded = other.detailsLoaded;
+        this.items = other.items != null ? new ArrayList<>(other.items) : new ArrayList<>();
+    }
+
+    /**
+     * Создаёт объект категории вместе со всем поддеревом из данных, прочитанных из {@link Parcel}.
+     * <p>
+     * Поддерево записано {@link #writeToParcel(Parcel, int)} в прямом порядке обхода и читается
+     * с явным стеком, поэтому глубина стека вызовов не зависит от глубины дерева. Строки всех узлов
+     * проходят через общий {@link StringPool}.
+     * </p>
      *
      * @param in объект {@link Parcel} с данными
      */
     protected Category(Parcel in) {
+        Deque<ParcelFrame> stack = new ArrayDeque<>();
+        StringPool pool = new StringPool();
+        int size = readFields(in, pool);
+        if (size > 0) {
+            stack.push(new ParcelFrame(this, size));
+        }
+        while (!stack.isEmpty()) {
+            ParcelFrame frame = stack.peek();
+            if (frame.remaining == 0) {
+                stack.pop();
+                continue;
+            }
+            frame.remaining--;
+            Category child = new Category();
+            int childSize = child.readFields(in, pool);
+            frame.node.items.add(child);
+            if (childSize > 0) {
+                stack.push(new ParcelFrame(child, childSize));
+            }
+        }
+    }
+
+    /**
+     * Узел, вложенные элементы которого ещё читаются из {@link Parcel} или записываются в него.
+     */
+    private static final class ParcelFrame {
+        final Category node;
+        /** Оставшиеся для чтения элементы или позиция следующего записываемого элемента. */
+        int remaining;
+
+        ParcelFrame(Category node, int remaining) {
+            this.node = node;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Читает поля узла и количество его вложенных элементов.
+     *
+     * @param pool пул строк поддерева
+     * @return количество вложенных элементов, которые записаны следом за узлом
+     */
+    private int readFields(Parcel in, StringPool pool) {
         id = in.readInt();
         name = in.readString();
         imageUrl = in.readString();
         description = in.readString();
+        compact(pool);
 
         // Обработка null для price
         if (in.readByte() == 0) {
@@ -73,22 +174,20 @@ public class Category implements Parcelable {
             price = in.readDouble();
         }
 
-        // Создаем пустой список сначала, чтобы избежать проблем с большими структурами
-        items = new ArrayList<>();
+        // Обработка null для available: 0 — null, 1 — false, 2 — true
+        byte availableFlag = in.readByte();
+        available = availableFlag == 0 ? null : availableFlag == 2;
 
-        // Чтение размера списка
         int size = in.readInt();
-
-        // Если размер > 0, инициализируем список элементов
-        if (size > 0) {
-            for (int i = 0; i < size; i++) {
-                Category item = in.readParcelable(Category.class.getClassLoader());
-                if (item != null) {
-                    items.add(item);
-                }
-            }
+        // Каждый узел занимает больше байта, поэтому большее количество означает повреждённые данные
+        if (size < 0 || size > in.dataAvail()) {
+            throw new BadParcelableException("Недопустимое количество элементов категории " + id + ": " + size);
         }
-        Log.d(TAG, "Создан объект Category из Parcel: id=" + id + ", name=" + name);
+        items = new ArrayList<>(size);
+        if (AppLog.DEBUG && PARCEL_LOG.sample()) {
+            PARCEL_LOG.d("Создан объект Category из Parcel: id=" + id + ", name=" + name);
+        }
+        return size;
     }
 
     /**
@@ -97,7 +196,12 @@ public class Category implements Parcelable {
     public static final Creator<Category> CREATOR = new Creator<Category>() {
         @Override
         public Category createFromParcel(Parcel in) {
-            return new Category(in);
+            TraceSections.begin("Category.createFromParcel");
+            try {
+                return new Category(in);
+            } finally {
+                TraceSections.end();
+            }
         }
 
         @Override
@@ -130,16 +234,20 @@ public class Category implements Parcelable {
      * @return URL изображения, или null, если не задано
      */
     public String getImageUrl() {
-        return imageUrl;
+        return imageBase != null && imageUrl != null ? imageBase.concat(imageUrl) : imageUrl;
     }
 
     /**
      * Возвращает описание категории или товара.
+     * <p>
+     * Длинное описание хранится в компактном виде и декодируется при каждом вызове, поэтому часто
+     * используемый текст (например, текст строки списка) получают один раз и сохраняют.
+     * </p>
      *
      * @return описание, или null, если не задано
      */
     public String getDescription() {
-        return description;
+        return packedDescription != null ? CompactText.decode(packedDescription) : description;
     }
 
     /**
@@ -151,6 +259,24 @@ public class Category implements Parcelable {
         return price;
     }
 
+    /**
+     * Проверяет, есть ли товар в наличии.
+     *
+     * @return false, только если сервер явно сообщил об отсутствии товара
+     */
+    public boolean isAvailable() {
+        return available == null || available;
+    }
+
+    /**
+     * Возвращает наличие товара в том виде, в котором его передал сервер.
+     *
+     * @return наличие товара, или null, если оно не передавалось
+     */
+    public Boolean getAvailable() {
+        return available;
+    }
+
     /**
      * Возвращает неизменяемый список вложенных подкатегорий или товаров.
      *
@@ -160,6 +286,19 @@ public class Category implements Parcelable {
         return items != null ? Collections.unmodifiableList(items) : Collections.emptyList();
     }
 
+    /**
+     * Возвращает присоединённый список вложенных элементов без обёртки.
+     * <p>
+     * Нужен хранилищу каталога, чтобы отличать лениво декодируемые списки снимка, не обходя их,
+     * и присоединять их к копиям узлов через {@link #attachItems(List)}. Список нельзя изменять.
+     * </p>
+     *
+     * @return присоединённый список, или пустой список, если элементы отсутствуют
+     */
+    public List<Category> getAttachedItems() {
+        return items != null ? items : Collections.emptyList();
+    }
+
     /**
      * Устанавливает идентификатор категории или товара.
      *
@@ -185,6 +324,7 @@ public class Category implements Parcelable {
      */
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
+        this.imageBase = null;
     }
 
     /**
@@ -194,6 +334,40 @@ public class Category implements Parcelable {
      */
     public void setDescription(String description) {
         this.description = description;
+        this.packedDescription = null;
+    }
+
+    /**
+     * Переводит строки узла в общие экземпляры пула.
+     * <p>
+     * Название и описание заменяются равными строками из пула, URL изображения делится на префикс
+     * до последней косой черты и окончание, которые хранятся отдельно, а описания не короче
+     * {@link StringPool#COMPACT_MIN_LENGTH} по возможности хранятся в виде {@link CompactText}
+     * и восстанавливаются при каждом вызове {@link #getDescription()}.
+     * </p>
+     *
+     * @param pool пул строк разбираемого каталога
+     */
+    public void compact(StringPool pool) {
+        name = pool.intern(name);
+        if (imageBase == null && imageUrl != null) {
+            int split = imageUrl.lastIndexOf('/') + 1;
+            if (split > 0 && split < imageUrl.length()) {
+                imageBase = pool.intern(imageUrl.substring(0, split));
+                imageUrl = pool.intern(imageUrl.substring(split));
+            } else {
+                imageUrl = pool.intern(imageUrl);
+            }
+        }
+        if (description != null) {
+            byte[] packed = description.length() >= StringPool.COMPACT_MIN_LENGTH ? pool.pack(description) : null;
+            if (packed != null) {
+                packedDescription = packed;
+                description = null;
+            } else {
+                description = pool.intern(description);
+            }
+        }
     }
 
     /**
@@ -205,6 +379,15 @@ public class Category implements Parcelable {
         this.price = price;
     }
 
+    /**
+     * Устанавливает наличие товара.
+     *
+     * @param available наличие товара, или null, если оно неизвестно
+     */
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
     /**
      * Устанавливает список вложенных подкатегорий или товаров.
      *
@@ -214,6 +397,157 @@ public class Category implements Parcelable {
         this.items = items != null ? new ArrayList<>(items) : new ArrayList<>();
     }
 
+    /**
+     * Использует переданный список вложенных элементов без копирования.
+     * <p>
+     * Предназначен для списков с ленивой загрузкой элементов (например, из снимка каталога):
+     * список не копируется до первого изменения через {@link #addItem(int, Category)}
+     * или {@link #removeItemAt(int)}.
+     * </p>
+     *
+     * @param items неизменяемый список подкатегорий или товаров
+     */
+    public void attachItems(List<Category> items) {
+        this.items = items;
+    }
+
+    /**
+     * Вставляет вложенный элемент в указанную позицию.
+     * <p>
+     * Позиция ограничивается размером списка, поэтому элемент с позицией за пределами
+     * списка добавляется в конец.
+     * </p>
+     *
+     * @param position позиция вставки
+     * @param item     подкатегория или товар
+     */
+    public void addItem(int position, Category item) {
+        List<Category> mutableItems = mutableItems();
+        mutableItems.add(Math.max(0, Math.min(position, mutableItems.size())), item);
+    }
+
+    /**
+     * Удаляет вложенный элемент по позиции.
+     *
+     * @param position позиция элемента
+     * @return удалённый элемент
+     */
+    public Category removeItemAt(int position) {
+        return mutableItems().remove(position);
+    }
+
+    /**
+     * Заменяет вложенный элемент в указанной позиции.
+     *
+     * @param position позиция элемента
+     * @param item     новый элемент
+     */
+    public void setItemAt(int position, Category item) {
+        mutableItems().set(position, item);
+    }
+
+    /**
+     * Возвращает изменяемый список вложенных элементов, копируя присоединённый список при необходимости.
+     */
+    private List<Category> mutableItems() {
+        if (!(items instanceof ArrayList)) {
+            items = items != null ? new ArrayList<>(items) : new ArrayList<>();
+        }
+        return items;
+    }
+
+    /**
+     * Возвращает позицию вложенного элемента с заданным идентификатором.
+     *
+     * @param id идентификатор элемента
+     * @return позиция элемента, или -1, если элемент не найден
+     */
+    public int indexOfItem(int id) {
+        if (items != null) {
+            for (int i = 0; i < items.size(); i++) {
+                Category item = items.get(i);
+                if (item != null && item.id == id) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Копирует собственные поля (название, изображение, описание, цену, наличие) из другого объекта.
+     * <p>
+     * Идентификатор и вложенные элементы не изменяются: метод используется для применения
+     * изменений узла без пересоздания его поддерева.
+     * </p>
+     *
+     * @param other объект с новыми значениями полей
+     */
+    public void copyFieldsFrom(Category other) {
+        this.name = other.name;
+        this.imageUrl = other.imageUrl;
+        this.imageBase = other.imageBase;
+        this.description = other.description;
+        this.packedDescription = other.packedDescription;
+        this.price = other.price;
+        this.available = other.available;
+    }
+
+    /**
+     * Проверяет, нужно ли запросить описание и изображение узла отдельно.
+     * <p>
+     * Узлы облегчённого каталога приходят без описания и изображения; такие поля
+     * запрашиваются один раз и переносятся в узел через {@link #applyDetails(NodeDetails)}.
+     * </p>
+     *
+     * @return true, если у узла нет ни описания, ни изображения и они ещё не запрашивались
+     */
+    public boolean needsDetails() {
+        return !detailsLoaded && description == null && packedDescription == null && imageUrl == null;
+    }
+
+    /**
+     * Переносит в узел описание и изображение, полученные отдельным запросом.
+     *
+     * @param details описание и изображение узла
+     */
+    public void applyDetails(NodeDetails details) {
+        setDescription(details.getDescription());
+        setImageUrl(details.getImageUrl());
+        this.detailsLoaded = true;
+    }
+
+    /**
+     * Проверяет, совпадают ли собственные поля (без учёта вложенных элементов) с полями другого объекта.
+     *
+     * @param other объект для сравнения
+     * @return true, если название, изображение, описание, цена и наличие совпадают
+     */
+    public boolean hasSameFields(Category other) {
+        return Objects.equals(name, other.name)
+                && hasSameImage(other)
+                && hasSameDescription(other)
+                && Objects.equals(price, other.price)
+                && Objects.equals(available, other.available);
+    }
+
+    private boolean hasSameImage(Category other) {
+        if (imageBase == other.imageBase) {
+            return Objects.equals(imageUrl, other.imageUrl);
+        }
+        return Objects.equals(getImageUrl(), other.getImageUrl());
+    }
+
+    private boolean hasSameDescription(Category other) {
+        if (packedDescription == null && other.packedDescription == null) {
+            return Objects.equals(description, other.description);
+        }
+        if (packedDescription != null && other.packedDescription != null) {
+            return Arrays.equals(packedDescription, other.packedDescription);
+        }
+        return Objects.equals(getDescription(), other.getDescription());
+    }
+
     /**
      * Проверяет, является ли объект категорией (содержит вложенные элементы).
      *
@@ -250,25 +584,32 @@ public class Category implements Parcelable {
     }
 
     /**
-     * Рекурсивно собирает все товары из всех уровней вложенности.
+     * Собирает все товары из всех уровней вложенности.
      * <p>
-     * Этот метод проходит по всем вложенным категориям и собирает товары.
-     * При больших структурах может быть неэффективным из-за рекурсии.
+     * Вложенные категории обходятся в прямом порядке с явным стеком, поэтому порядок товаров
+     * совпадает с порядком в дереве, а глубина дерева не ограничена стеком вызовов.
      * </p>
      *
      * @return список всех товаров из всех уровней вложенности
      */
     public List<Category> getAllProducts() {
         List<Category> allProducts = new ArrayList<>();
-        if (items != null) {
-            for (Category item : items) {
-                if (item != null) {
-                    if (item.isProduct()) {
-                        allProducts.add(item);
-                    } else if (item.isCategory()) {
-                        allProducts.addAll(item.getAllProducts());
-                    }
-                }
+        Deque<Iterator<Category>> stack = new ArrayDeque<>();
+        stack.push(getItems().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Category> iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Category item = iterator.next();
+            if (item == null) {
+                continue;
+            }
+            if (item.isProduct()) {
+                allProducts.add(item);
+            } else if (item.isCategory()) {
+                stack.push(item.getItems().iterator());
             }
         }
         return allProducts;
@@ -279,12 +620,38 @@ public class Category implements Parcelable {
         return 0;
     }
 
+    /**
+     * Записывает узел вместе со всем поддеревом в прямом порядке обхода без рекурсии.
+     * Вложенные элементы записываются без имени класса, пустые ({@code null}) элементы пропускаются.
+     */
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        Deque<ParcelFrame> stack = new ArrayDeque<>();
+        writeFields(dest);
+        stack.push(new ParcelFrame(this, 0));
+        while (!stack.isEmpty()) {
+            ParcelFrame frame = stack.peek();
+            List<Category> children = frame.node.items;
+            if (children == null || frame.remaining >= children.size()) {
+                stack.pop();
+                continue;
+            }
+            Category child = children.get(frame.remaining++);
+            if (child != null) {
+                child.writeFields(dest);
+                stack.push(new ParcelFrame(child, 0));
+            }
+        }
+    }
+
+    /**
+     * Записывает поля узла и количество его непустых вложенных элементов.
+     */
+    private void writeFields(Parcel dest) {
         dest.writeInt(id);
         dest.writeString(name);
-        dest.writeString(imageUrl);
-        dest.writeString(description);
+        dest.writeString(getImageUrl());
+        dest.writeString(getDescription());
 
         if (price == null) {
             dest.writeByte((byte) 0);
@@ -293,15 +660,16 @@ public class Category implements Parcelable {
             dest.writeDouble(price);
         }
 
-        // Запись размера списка
-        if (items == null || items.isEmpty()) {
-            dest.writeInt(0);
-        } else {
-            dest.writeInt(items.size());
-            // Запись каждого элемента отдельно
+        dest.writeByte((byte) (available == null ? 0 : available ? 2 : 1));
+
+        int size = 0;
+        if (items != null) {
             for (Category item : items) {
-                dest.writeParcelable(item, flags);
+                if (item != null) {
+                    size++;
+                }
             }
         }
+        dest.writeInt(size);
     }
-}
\ No newline at end of file
+}
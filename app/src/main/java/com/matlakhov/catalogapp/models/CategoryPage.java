@@ -0,0 +1,90 @@
+package com.matlakhov.catalogapp.models;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Модель страницы дочерних элементов категории.
+ * <p>
+ * Элементы страницы передаются без вложенных элементов: содержимое подкатегории
+ * запрашивается отдельно, когда пользователь её открывает.
+ * </p>
+ */
+public class CategoryPage {
+
+    /** Идентификатор категории. */
+    @SerializedName("parentId")
+    private int parentId;
+
+    /** Общее количество дочерних элементов категории. */
+    @SerializedName("total")
+    private int total;
+
+    /** Позиция первого элемента страницы среди всех дочерних элементов. */
+    @SerializedName("offset")
+    private int offset;
+
+    /** Элементы страницы. */
+    @SerializedName("items")
+    private List<Category> items;
+
+    /**
+     * Создаёт новую пустую страницу.
+     */
+    public CategoryPage() {
+        this.items = new ArrayList<>();
+    }
+
+    /**
+     * Создаёт страницу с заданными значениями.
+     *
+     * @param parentId идентификатор категории
+     * @param total    общее количество дочерних элементов
+     * @param offset   позиция первого элемента страницы
+     * @param items    элементы страницы
+     */
+    public CategoryPage(int parentId, int total, int offset, List<Category> items) {
+        this.parentId = parentId;
+        this.total = total;
+        this.offset = offset;
+        this.items = items;
+    }
+
+    /**
+     * Возвращает идентификатор категории.
+     *
+     * @return идентификатор
+     */
+    public int getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Возвращает общее количество дочерних элементов категории.
+     *
+     * @return количество элементов, 0 — если категория пуста или неизвестна
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Возвращает позицию первого элемента страницы.
+     *
+     * @return позиция
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Возвращает элементы страницы.
+     *
+     * @return список элементов, или пустой список
+     */
+    public List<Category> getItems() {
+        return items != null ? items : new ArrayList<>();
+    }
+}
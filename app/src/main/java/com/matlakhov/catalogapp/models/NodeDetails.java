@@ -0,0 +1,68 @@
+package com.matlakhov.catalogapp.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Модель «тяжёлых» полей узла каталога, которые не передаются в облегчённом каталоге
+ * и запрашиваются отдельно для видимых строк и экрана товара.
+ */
+public class NodeDetails {
+
+    /** Идентификатор узла. */
+    @SerializedName("id")
+    private int id;
+
+    /** Полное описание узла. */
+    @SerializedName("description")
+    private String description;
+
+    /** URL изображения узла. */
+    @SerializedName("image")
+    private String imageUrl;
+
+    /**
+     * Создаёт новый пустой объект.
+     */
+    public NodeDetails() {
+    }
+
+    /**
+     * Создаёт объект с заданными значениями.
+     *
+     * @param id          идентификатор узла
+     * @param description описание, или null
+     * @param imageUrl    URL изображения, или null
+     */
+    public NodeDetails(int id, String description, String imageUrl) {
+        this.id = id;
+        this.description = description;
+        this.imageUrl = imageUrl;
+    }
+
+    /**
+     * Возвращает идентификатор узла.
+     *
+     * @return идентификатор
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Возвращает полное описание узла.
+     *
+     * @return описание, или null
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Возвращает URL изображения узла.
+     *
+     * @return URL, или null
+     */
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
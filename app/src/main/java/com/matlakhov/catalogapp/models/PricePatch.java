@@ -0,0 +1,86 @@
+package com.matlakhov.catalogapp.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Модель небольшого изменения цены и наличия товара, приходящего из потока обновлений.
+ * <p>
+ * Поля {@code price} и {@code available} могут отсутствовать: в этом случае соответствующее
+ * значение товара не изменяется.
+ * </p>
+ */
+public class PricePatch {
+
+    /** Идентификатор товара. */
+    @SerializedName("id")
+    private int id;
+
+    /** Новая цена, или null, если цена не изменилась. */
+    @SerializedName("price")
+    private Double price;
+
+    /** Новое наличие, или null, если наличие не изменилось. */
+    @SerializedName("available")
+    private Boolean available;
+
+    /**
+     * Создаёт новый пустой объект изменения.
+     */
+    public PricePatch() {
+    }
+
+    /**
+     * Создаёт объект изменения с заданными значениями.
+     *
+     * @param id        идентификатор товара
+     * @param price     новая цена, или null
+     * @param available новое наличие, или null
+     */
+    public PricePatch(int id, Double price, Boolean available) {
+        this.id = id;
+        this.price = price;
+        this.available = available;
+    }
+
+    /**
+     * Возвращает идентификатор товара.
+     *
+     * @return идентификатор
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Возвращает новую цену.
+     *
+     * @return цена, или null, если цена не изменилась
+     */
+    public Double getPrice() {
+        return price;
+    }
+
+    /**
+     * Возвращает новое наличие.
+     *
+     * @return наличие, или null, если наличие не изменилось
+     */
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    /**
+     * Объединяет это изменение с более поздним изменением того же товара.
+     * <p>
+     * Значения более позднего изменения имеют приоритет, отсутствующие в нём поля берутся из этого.
+     * </p>
+     *
+     * @param later более позднее изменение того же товара
+     * @return объединённое изменение
+     */
+    public PricePatch mergeWith(PricePatch later) {
+        return new PricePatch(id,
+                later.price != null ? later.price : price,
+                later.available != null ? later.available : available);
+    }
+}
@@ -2,9 +2,9 @@ package com.matlakhov.catalogapp.models;
 
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
 
 import com.google.gson.annotations.SerializedName;
+import com.matlakhov.catalogapp.util.AppLog;
 
 /**
  * Модель данных для товара.
@@ -18,6 +18,9 @@ public class Product implements Parcelable {
     /** Тег для целей логирования. */
     private static final String TAG = "Product";
 
+    /** Выборочный журнал распаковки: дерево из тысяч узлов распаковывается целиком. */
+    private static final AppLog.Sampler PARCEL_LOG = AppLog.sampler(TAG, 1000, 5);
+
     /** Уникальный идентификатор товара. */
     @SerializedName("id")
     private int id;
@@ -55,7 +58,9 @@ public class Product implements Parcelable {
         imageUrl = in.readString();
         description = in.readString();
         price = in.readDouble();
-        Log.d(TAG, "Создан объект Product из Parcel: id=" + id + ", name=" + name);
+        if (AppLog.DEBUG && PARCEL_LOG.sample()) {
+            PARCEL_LOG.d("Создан объект Product из Parcel: id=" + id + ", name=" + name);
+        }
     }
 
     /**
@@ -1,9 +1,9 @@
 package com.matlakhov.catalogapp.network;
 
-import android.util.Log;
+import com.matlakhov.catalogapp.util.AppLog;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Утилитный класс для настройки и получения клиента Retrofit для работы с API.
@@ -13,6 +13,11 @@ import retrofit2.converter.gson.GsonConverterFactory;
  * экземпляров сервисов API.
  * </p>
  * <p>
+ * Время фаз запросов ({@link NetworkTimingListener}), передачи тела и разбора ответов
+ * ({@link TimedConverterFactory}) записывается в реестр метрик. Ответы разбираются в пределах
+ * {@link IngestionLimits} ({@link IngestionGuard}).
+ * </p>
+ * <p>
  * <b>Примечание:</b> Текущий базовый URL ({@code https://drive.google.com/}) может быть
  * не предназначен для API. Убедитесь, что он соответствует вашему серверу.
  * </p>
@@ -25,6 +30,15 @@ public class ApiClient {
     /** Базовый URL для подключения к API. */
     private static final String BASE_URL = "https://drive.google.com/";
 
+    /** Текущий базовый URL; по умолчанию {@link #BASE_URL}. */
+    private static String baseUrl = BASE_URL;
+
+    /** Общий HTTP-клиент для Retrofit и потоковых соединений (общий пул соединений и потоков). */
+    private static OkHttpClient httpClient = null;
+
+    /** Ограничения на размер принимаемого каталога. */
+    private static IngestionLimits ingestionLimits = IngestionLimits.DEFAULT;
+
     /** Единый экземпляр Retrofit для повторного использования. */
     private static Retrofit retrofit = null;
 
@@ -41,18 +55,47 @@ public class ApiClient {
         if (retrofit == null) {
             try {
                 retrofit = new Retrofit.Builder()
-                        .baseUrl(BASE_URL)
-                        .addConverterFactory(GsonConverterFactory.create())
+                        .baseUrl(baseUrl)
+                        .client(getHttpClient())
+                        .addConverterFactory(new TimedConverterFactory(new IngestionGuard(ingestionLimits)))
                         .build();
-                Log.d(TAG, "Retrofit инициализирован с URL: " + BASE_URL);
+                AppLog.d(TAG, () -> "Retrofit инициализирован с URL: " + baseUrl);
             } catch (IllegalArgumentException e) {
-                Log.e(TAG, "Ошибка инициализации Retrofit: " + e.getMessage());
+                AppLog.e(TAG, "Ошибка инициализации Retrofit: " + e.getMessage());
                 throw new RuntimeException("Не удалось инициализировать Retrofit", e);
             }
         }
         return retrofit;
     }
 
+    /**
+     * Возвращает общий HTTP-клиент.
+     * <p>
+     * Используется Retrofit и клиентами, которым нужен прямой доступ к OkHttp
+     * (например, потоку обновлений цен). Производные клиенты следует создавать через
+     * {@link OkHttpClient#newBuilder()}, чтобы разделять пул соединений.
+     * </p>
+     *
+     * @return настроенный объект {@link OkHttpClient}
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = new OkHttpClient.Builder()
+                    .eventListenerFactory(NetworkTimingListener.FACTORY)
+                    .build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Возвращает текущий базовый URL.
+     *
+     * @return базовый URL, оканчивающийся на {@code /}
+     */
+    public static String getBaseUrl() {
+        return baseUrl;
+    }
+
     /**
      * Сбрасывает текущий экземпляр Retrofit, позволяя создать новый.
      * <p>
@@ -61,6 +104,29 @@ public class ApiClient {
      */
     public static void resetClient() {
         retrofit = null;
-        Log.d(TAG, "Retrofit сброшен");
+        AppLog.d(TAG, () -> "Retrofit сброшен");
+    }
+
+    /**
+     * Устанавливает базовый URL и сбрасывает текущий экземпляр Retrofit.
+     * <p>
+     * Используется, например, для работы с тестовым сервером {@code LocalCatalogServer} без доступа к сети.
+     * </p>
+     *
+     * @param url новый базовый URL (должен оканчиваться на {@code /}), или null для URL по умолчанию
+     */
+    public static void setBaseUrl(String url) {
+        baseUrl = url != null ? url : BASE_URL;
+        resetClient();
+    }
+
+    /**
+     * Устанавливает ограничения на размер принимаемого каталога и сбрасывает текущий экземпляр Retrofit.
+     *
+     * @param limits новые ограничения, или null для {@link IngestionLimits#DEFAULT}
+     */
+    public static void setIngestionLimits(IngestionLimits limits) {
+        ingestionLimits = limits != null ? limits : IngestionLimits.DEFAULT;
+        resetClient();
     }
 }
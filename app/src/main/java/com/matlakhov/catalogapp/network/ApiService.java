@@ -1,9 +1,16 @@
 package com.matlakhov.catalogapp.network;
 
+import com.matlakhov.catalogapp.models.CatalogDelta;
 import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.models.NodeDetails;
+
+import java.util.List;
 
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Query;
 
 /**
  * Интерфейс для взаимодействия с API через Retrofit.
@@ -29,4 +36,73 @@ public interface ApiService {
      */
     @GET("uc?export=download&id=1bIgYsUcdnXbPVD-euR5juTck8HHkrZvM")
     Call<CatalogResponse> getCatalog();
+
+    /**
+     * Выполняет условный GET-запрос каталога.
+     * <p>
+     * Если каталог на сервере не изменился с момента, описанного переданными заголовками,
+     * сервер отвечает {@code 304 Not Modified} без тела. Заголовки со значением null не отправляются.
+     * </p>
+     *
+     * @param etag         значение {@code ETag} последнего полученного ответа, или null
+     * @param lastModified значение {@code Last-Modified} последнего полученного ответа, или null
+     * @return объект {@link Call} для выполнения запроса
+     */
+    @GET("uc?export=download&id=1bIgYsUcdnXbPVD-euR5juTck8HHkrZvM")
+    Call<CatalogResponse> getCatalogIfChanged(@Header("If-None-Match") String etag,
+                                              @Header("If-Modified-Since") String lastModified);
+
+    /**
+     * Выполняет GET-запрос облегчённого каталога.
+     * <p>
+     * Структура, названия, цены и наличие совпадают с полным каталогом, но узлы и рекомендуемые
+     * товары передаются без описаний и изображений: они запрашиваются отдельно через
+     * {@link #getNodeDetails(String)}. Хостинг на Google Drive этот эндпоинт не поддерживает —
+     * в этом случае клиент загружает полный каталог через {@link #getCatalog()}.
+     * </p>
+     *
+     * @return объект {@link Call} для асинхронного выполнения запроса
+     */
+    @GET("catalog/skeleton")
+    Call<CatalogResponse> getCatalogSkeleton();
+
+    /**
+     * Выполняет GET-запрос описаний и изображений нескольких узлов каталога.
+     *
+     * @param ids идентификаторы узлов через запятую
+     * @return объект {@link Call} для выполнения запроса; неизвестные идентификаторы в ответ не попадают
+     */
+    @GET("catalog/details")
+    Call<List<NodeDetails>> getNodeDetails(@Query("ids") String ids);
+
+    /**
+     * Выполняет GET-запрос для получения изменений каталога относительно версии клиента.
+     * <p>
+     * Сервер возвращает только удалённые, добавленные и изменённые узлы
+     * (см. {@link CatalogDelta}). Хостинг на Google Drive этот эндпоинт не поддерживает
+     * и отвечает ошибкой — в этом случае клиент загружает каталог полностью через {@link #getCatalog()}.
+     * Эталонная реализация сервера — {@code LocalCatalogServer} в модульных тестах.
+     * </p>
+     *
+     * @param since версия каталога, которая уже есть у клиента
+     * @return объект {@link Call} для асинхронного выполнения запроса
+     */
+    @GET("catalog/delta")
+    Call<CatalogDelta> getCatalogDelta(@Query("since") long since);
+
+    /**
+     * Выполняет GET-запрос страницы дочерних элементов категории.
+     * <p>
+     * Используется для категорий, которых нет в локальном хранилище. Элементы страницы
+     * передаются без вложенных элементов. Эталонная реализация сервера — {@code LocalCatalogServer} в модульных тестах.
+     * </p>
+     *
+     * @param parentId идентификатор категории
+     * @param offset   позиция первого элемента страницы
+     * @param limit    максимальное количество элементов
+     * @return объект {@link Call} для выполнения запроса
+     */
+    @GET("catalog/children")
+    Call<CategoryPage> getCategoryChildren(@Query("parent") int parentId, @Query("offset") int offset,
+                                           @Query("limit") int limit);
 }
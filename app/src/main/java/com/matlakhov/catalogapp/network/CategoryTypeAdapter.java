@@ -0,0 +1,237 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.matlakhov.catalogapp.models.Category;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Потоковый разбор и запись дерева {@link Category} без рекурсии.
+ * <p>
+ * Заменяет рефлексивный адаптер Gson, глубина стека которого растёт вместе с глубиной JSON.
+ * Узлы читаются с явным стеком, поэтому стек вызовов не зависит от входных данных, а ограничения
+ * {@link IngestionLimits} применяются по ходу чтения: поддеревья глубже ограничения и узлы сверх бюджета
+ * пропускаются в потоке без разбора, длинные строки обрезаются, а узел с уже встречавшимся
+ * идентификатором отбрасывается вместе с поддеревом. Идентификатор регистрируется сразу при чтении поля
+ * {@code id}, и оставшиеся поля повторного узла пропускаются, поэтому идентификаторы его дочерних узлов
+ * не занимаются и те же узлы дальше в ответе принимаются. Строки принятых узлов переводятся в общий пул
+ * сессии ({@link Category#compact}). Счётчики отброшенных данных ведёт {@link IngestionSession}.
+ * </p>
+ * <p>
+ * Если бюджет исчерпан или идентификатор корня повторяется, вместо узла возвращается null;
+ * списки каталога пропускают такие элементы.
+ * </p>
+ */
+public class CategoryTypeAdapter extends TypeAdapter<Category> {
+
+    /** Ограничения для разбора вне {@link IngestionGuard}. */
+    private final IngestionLimits limits;
+
+    /**
+     * Читаемый узел и его место в дереве.
+     */
+    private static final class Frame {
+        final Category node;
+        final int depth;
+        final Frame parent;
+        /** Читается ли сейчас массив {@code items} узла. */
+        boolean inItems;
+        /** Зарегистрирован ли уже идентификатор узла в сессии. */
+        boolean registered;
+        /** Повторяется ли идентификатор узла; такой узел отбрасывается вместе с поддеревом. */
+        boolean duplicate;
+
+        Frame(Category node, int depth, Frame parent) {
+            this.node = node;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * @param limits ограничения для разбора вне сессии {@link IngestionGuard}
+     */
+    public CategoryTypeAdapter(IngestionLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public Category read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        IngestionSession session = IngestionSession.current();
+        if (session == null) {
+            session = new IngestionSession(limits);
+        }
+        if (!session.reserveNode()) {
+            session.truncatedSubtrees++;
+            in.skipValue();
+            return null;
+        }
+        try {
+            return readTree(in, session);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static Category readTree(JsonReader in, IngestionSession session) throws IOException {
+        int maxDepth = session.limits.getMaxDepth();
+        Deque<Frame> stack = new ArrayDeque<>();
+        in.beginObject();
+        stack.push(new Frame(new Category(), 1, null));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.inItems) {
+                if (!in.hasNext()) {
+                    in.endArray();
+                    frame.inItems = false;
+                } else if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                    in.skipValue();
+                } else if (frame.depth >= maxDepth || !session.reserveNode()) {
+                    // JsonReader пропускает значение без рекурсии, поддерево не разбирается
+                    session.truncatedSubtrees++;
+                    in.skipValue();
+                } else {
+                    in.beginObject();
+                    stack.push(new Frame(new Category(), frame.depth + 1, frame));
+                }
+                continue;
+            }
+            if (in.hasNext()) {
+                readField(in, frame, session);
+                continue;
+            }
+            in.endObject();
+            stack.pop();
+            if (!frame.registered) {
+                // Узел без поля id регистрируется с идентификатором по умолчанию
+                frame.duplicate = !session.register(frame.node.getId());
+            }
+            boolean unique = !frame.duplicate;
+            if (unique) {
+                frame.node.compact(session.strings);
+            }
+            if (frame.parent == null) {
+                return unique ? frame.node : null;
+            }
+            if (unique) {
+                frame.parent.node.addItem(Integer.MAX_VALUE, frame.node);
+            }
+        }
+    }
+
+    private static void readField(JsonReader in, Frame frame, IngestionSession session) throws IOException {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        Category node = frame.node;
+        switch (name) {
+            case "id":
+                if (frame.registered) {
+                    in.skipValue();
+                    break;
+                }
+                node.setId(in.nextInt());
+                frame.registered = true;
+                if (!session.register(node.getId())) {
+                    // Поддерево повторного узла пропускается, не регистрируя идентификаторы дочерних узлов
+                    frame.duplicate = true;
+                    while (in.hasNext()) {
+                        in.nextName();
+                        in.skipValue();
+                    }
+                }
+                break;
+            case "name":
+                node.setName(session.limit(in.nextString()));
+                break;
+            case "image":
+                node.setImageUrl(session.limit(in.nextString()));
+                break;
+            case "description":
+                node.setDescription(session.limit(in.nextString()));
+                break;
+            case "price":
+                node.setPrice(in.nextDouble());
+                break;
+            case "available":
+                node.setAvailable(in.nextBoolean());
+                break;
+            case "items":
+                if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                    in.beginArray();
+                    frame.inItems = true;
+                } else {
+                    in.skipValue();
+                }
+                break;
+            default:
+                in.skipValue();
+                break;
+        }
+    }
+
+    @Override
+    public void write(JsonWriter out, Category value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        Deque<Iterator<Category>> stack = new ArrayDeque<>();
+        stack.push(writeFields(out, value));
+        while (!stack.isEmpty()) {
+            Iterator<Category> children = stack.peek();
+            if (!children.hasNext()) {
+                out.endArray();
+                out.endObject();
+                stack.pop();
+                continue;
+            }
+            Category child = children.next();
+            if (child == null) {
+                out.nullValue();
+            } else {
+                stack.push(writeFields(out, child));
+            }
+        }
+    }
+
+    /**
+     * Записывает поля узла и открывает массив {@code items}.
+     *
+     * @return итератор по вложенным элементам, которые нужно записать в массив
+     */
+    private static Iterator<Category> writeFields(JsonWriter out, Category node) throws IOException {
+        out.beginObject();
+        out.name("id").value(node.getId());
+        if (node.getName() != null) {
+            out.name("name").value(node.getName());
+        }
+        if (node.getImageUrl() != null) {
+            out.name("image").value(node.getImageUrl());
+        }
+        if (node.getDescription() != null) {
+            out.name("description").value(node.getDescription());
+        }
+        if (node.getPrice() != null) {
+            out.name("price").value(node.getPrice());
+        }
+        if (node.getAvailable() != null) {
+            out.name("available").value(node.getAvailable());
+        }
+        out.name("items").beginArray();
+        return node.getItems().iterator();
+    }
+}
@@ -0,0 +1,232 @@
+package com.matlakhov.catalogapp.network;
+
+import androidx.annotation.NonNull;
+
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Пакетирующий слой перед {@link ApiService#getNodeDetails(String)}.
+ * <p>
+ * Идентификаторы, запрошенные в течение короткого окна (по умолчанию — примерно один кадр,
+ * {@link #DEFAULT_WINDOW_MS}), отправляются одним запросом до {@link #MAX_BATCH_SIZE} идентификаторов.
+ * Идентификатор, по которому запрос уже выполняется или ожидает отправки, повторно не запрашивается:
+ * новый получатель добавляется к ожидающим, и ответ раздаётся всем получателям этого идентификатора.
+ * Методы можно вызывать из любого потока; получатели вызываются через исполнитель, переданный
+ * в конструктор (для {@link #getInstance()} — главный поток).
+ * </p>
+ */
+public class DetailBatcher {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "DetailBatcher";
+
+    /** Окно сбора идентификаторов по умолчанию (мс). */
+    public static final long DEFAULT_WINDOW_MS = 16;
+
+    /** Максимальное количество идентификаторов в одном запросе. */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Получатель описания и изображения узла.
+     */
+    public interface Receiver {
+        /**
+         * Вызывается, когда ответ по идентификатору получен.
+         *
+         * @param id      идентификатор узла
+         * @param details описание и изображение, или null, если узел не найден или запрос не удался
+         */
+        void onDetails(int id, NodeDetails details);
+    }
+
+    /** Единый экземпляр для приложения. */
+    private static DetailBatcher instance;
+
+    /** Сервис API. */
+    private final ApiService apiService;
+
+    /** Окно сбора идентификаторов (мс). */
+    private final long windowMs;
+
+    /** Планировщик отправки накопленных идентификаторов. */
+    private final ScheduledExecutorService scheduler;
+
+    /** Исполнитель, через который вызываются получатели. */
+    private final Executor receiverExecutor;
+
+    /** Получатели по идентификатору — для идентификаторов, ожидающих отправки или ответа. */
+    private final Map<Integer, List<Receiver>> receivers = new HashMap<>();
+
+    /** Идентификаторы, ожидающие отправки. */
+    private final Set<Integer> queued = new LinkedHashSet<>();
+
+    /** Идентификаторы, по которым выполняется запрос. */
+    private final Set<Integer> inFlight = new HashSet<>();
+
+    /** Признак того, что отправка накопленных идентификаторов уже запланирована. */
+    private boolean flushScheduled;
+
+    /** Количество отправленных запросов. */
+    private int requestCount;
+
+    /**
+     * @param apiService       сервис API
+     * @param windowMs         окно сбора идентификаторов (мс)
+     * @param scheduler        планировщик отправки
+     * @param receiverExecutor исполнитель для вызова получателей
+     */
+    public DetailBatcher(ApiService apiService, long windowMs, ScheduledExecutorService scheduler,
+                         Executor receiverExecutor) {
+        this.apiService = apiService;
+        this.windowMs = windowMs;
+        this.scheduler = scheduler;
+        this.receiverExecutor = receiverExecutor;
+    }
+
+    /**
+     * Возвращает единый экземпляр, вызывающий получателей в главном потоке.
+     *
+     * @return экземпляр {@link DetailBatcher}
+     */
+    public static synchronized DetailBatcher getInstance() {
+        if (instance == null) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "detail-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            instance = new DetailBatcher(ApiClient.getClient().create(ApiService.class), DEFAULT_WINDOW_MS,
+                    scheduler, AppExecutors.main());
+        }
+        return instance;
+    }
+
+    /**
+     * Запрашивает описание и изображение узла.
+     *
+     * @param id       идентификатор узла
+     * @param receiver получатель ответа
+     */
+    public synchronized void request(int id, Receiver receiver) {
+        List<Receiver> waiting = receivers.get(id);
+        if (waiting == null) {
+            waiting = new ArrayList<>(1);
+            receivers.put(id, waiting);
+        }
+        waiting.add(receiver);
+        if (inFlight.contains(id) || !queued.add(id)) {
+            return;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Возвращает количество отправленных запросов.
+     *
+     * @return количество запросов с момента создания
+     */
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    private void flush() {
+        List<List<Integer>> batches = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            List<Integer> batch = new ArrayList<>();
+            for (Integer id : queued) {
+                batch.add(id);
+                if (batch.size() == MAX_BATCH_SIZE) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+            inFlight.addAll(queued);
+            queued.clear();
+            requestCount += batches.size();
+        }
+        for (List<Integer> batch : batches) {
+            send(batch);
+        }
+    }
+
+    private void send(List<Integer> batch) {
+        StringBuilder ids = new StringBuilder();
+        for (Integer id : batch) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(id);
+        }
+        apiService.getNodeDetails(ids.toString()).enqueue(new Callback<List<NodeDetails>>() {
+            @Override
+            public void onResponse(@NonNull Call<List<NodeDetails>> call, @NonNull Response<List<NodeDetails>> response) {
+                Map<Integer, NodeDetails> byId = new HashMap<>();
+                if (response.isSuccessful() && response.body() != null) {
+                    for (NodeDetails details : response.body()) {
+                        if (details != null) {
+                            byId.put(details.getId(), details);
+                        }
+                    }
+                } else {
+                    AppLog.w(TAG, "Описания недоступны: код " + response.code());
+                }
+                deliver(batch, byId);
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<List<NodeDetails>> call, @NonNull Throwable t) {
+                AppLog.w(TAG, "Ошибка загрузки описаний: " + t.getMessage());
+                deliver(batch, new HashMap<>());
+            }
+        });
+    }
+
+    /**
+     * Раздаёт ответ всем получателям идентификаторов пакета.
+     */
+    private void deliver(List<Integer> batch, Map<Integer, NodeDetails> byId) {
+        Map<Integer, List<Receiver>> delivered = new HashMap<>();
+        synchronized (this) {
+            for (Integer id : batch) {
+                inFlight.remove(id);
+                List<Receiver> waiting = receivers.remove(id);
+                if (waiting != null) {
+                    delivered.put(id, waiting);
+                }
+            }
+        }
+        receiverExecutor.execute(() -> {
+            for (Map.Entry<Integer, List<Receiver>> entry : delivered.entrySet()) {
+                NodeDetails details = byId.get(entry.getKey());
+                for (Receiver receiver : entry.getValue()) {
+                    receiver.onDetails(entry.getKey(), details);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Фабрика конвертеров Retrofit, разбирающая ответы в пределах {@link IngestionLimits}.
+ * <p>
+ * Узлы {@link Category} читаются потоково и без рекурсии ({@link CategoryTypeAdapter}). На время разбора
+ * каждого ответа в потоке открывается {@link IngestionSession}, поэтому бюджет узлов и проверка
+ * повторяющихся идентификаторов действуют на весь ответ. Лишние поддеревья, повторы и длинные строки
+ * отбрасываются или обрезаются, а ответ больше {@link IngestionLimits#getMaxBytes()} отклоняется целиком
+ * с {@link IngestionLimitException} ещё до того, как будет прочитан полностью.
+ * </p>
+ * <p>
+ * Отброшенные данные учитываются в счётчиках {@code ingest.truncated_subtrees}, {@code ingest.duplicate_ids},
+ * {@code ingest.truncated_strings}, отклонённые ответы — в {@code ingest.rejected}. Количество строк,
+ * заменённых общим экземпляром из пула сессии, учитывается в {@code ingest.shared_strings}.
+ * </p>
+ */
+public class IngestionGuard extends Converter.Factory {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "IngestionGuard";
+
+    /** Ограничения разбора. */
+    private final IngestionLimits limits;
+
+    /** Фабрика Gson с потоковым адаптером узлов каталога. */
+    private final GsonConverterFactory delegate;
+
+    /**
+     * @param limits ограничения разбора
+     */
+    public IngestionGuard(IngestionLimits limits) {
+        this.limits = limits;
+        this.delegate = GsonConverterFactory.create(gson(limits));
+    }
+
+    /**
+     * Создаёт Gson, разбирающий узлы каталога в пределах ограничений.
+     *
+     * @param limits ограничения разбора вне {@link IngestionGuard}
+     * @return настроенный экземпляр {@link Gson}
+     */
+    public static Gson gson(IngestionLimits limits) {
+        return new GsonBuilder()
+                .registerTypeAdapter(Category.class, new CategoryTypeAdapter(limits))
+                .create();
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null) {
+            return null;
+        }
+        return body -> {
+            if (body.contentLength() > limits.getMaxBytes()) {
+                body.close();
+                throw reject("Ответ " + body.contentLength() + " байт превышает " + limits.getMaxBytes());
+            }
+            IngestionSession session = IngestionSession.begin(limits);
+            try {
+                return converter.convert(new LimitedBody(body, limits.getMaxBytes()));
+            } finally {
+                IngestionSession.end();
+                report(session);
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    private static IngestionLimitException reject(String message) {
+        MetricsRegistry.getInstance().counter("ingest.rejected").increment();
+        AppLog.w(TAG, message);
+        return new IngestionLimitException(message);
+    }
+
+    private static void report(IngestionSession session) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.counter("ingest.shared_strings").add(session.strings.getSharedCount());
+        if (!session.isDegraded()) {
+            return;
+        }
+        registry.counter("ingest.truncated_subtrees").add(session.truncatedSubtrees);
+        registry.counter("ingest.duplicate_ids").add(session.duplicateIds);
+        registry.counter("ingest.truncated_strings").add(session.truncatedStrings);
+        AppLog.w(TAG, "Ответ принят не полностью: отброшено поддеревьев " + session.truncatedSubtrees
+                + ", повторов " + session.duplicateIds + ", обрезано строк " + session.truncatedStrings);
+    }
+
+    /**
+     * Тело ответа, чтение которого прерывается после заданного количества байт.
+     */
+    private static final class LimitedBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        LimitedBody(ResponseBody delegate, long maxBytes) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                private long total;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        total += read;
+                        if (total > maxBytes) {
+                            throw reject("Ответ превышает " + maxBytes + " байт");
+                        }
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.matlakhov.catalogapp.network;
+
+import java.io.IOException;
+
+/**
+ * Ответ сервера отклонён, потому что превышает ограничения {@link IngestionLimits}.
+ * <p>
+ * Retrofit передаёт исключение в {@code Callback.onFailure}, как и другие ошибки чтения ответа.
+ * </p>
+ */
+public class IngestionLimitException extends IOException {
+
+    /**
+     * @param message описание нарушенного ограничения
+     */
+    public IngestionLimitException(String message) {
+        super(message);
+    }
+}
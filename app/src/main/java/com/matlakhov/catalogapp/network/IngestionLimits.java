@@ -0,0 +1,72 @@
+package com.matlakhov.catalogapp.network;
+
+/**
+ * Ограничения на размер каталога, принимаемого от сервера.
+ * <p>
+ * Применяются при разборе ответов ({@link IngestionGuard}): глубина дерева и количество узлов
+ * ограничивают рекурсивные обходы каталога в приложении, длина строк — размер отдельных полей,
+ * а объём тела — память, которую может занять один ответ.
+ * </p>
+ */
+public final class IngestionLimits {
+
+    /** Ограничения по умолчанию, с запасом для реального каталога. */
+    public static final IngestionLimits DEFAULT = new IngestionLimits(32, 500_000, 8_192, 64L * 1024 * 1024);
+
+    /** Максимальная глубина дерева (корневой узел — глубина 1). */
+    private final int maxDepth;
+
+    /** Максимальное количество узлов {@code Category} в одном ответе. */
+    private final int maxNodes;
+
+    /** Максимальная длина строковых полей узла (символов). */
+    private final int maxStringLength;
+
+    /** Максимальный объём тела ответа (байт). */
+    private final long maxBytes;
+
+    /**
+     * @param maxDepth        максимальная глубина дерева, не меньше 1
+     * @param maxNodes        максимальное количество узлов в одном ответе
+     * @param maxStringLength максимальная длина строковых полей узла
+     * @param maxBytes        максимальный объём тела ответа в байтах
+     */
+    public IngestionLimits(int maxDepth, int maxNodes, int maxStringLength, long maxBytes) {
+        if (maxDepth < 1 || maxNodes < 0 || maxStringLength < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Недопустимые ограничения: depth=" + maxDepth + ", nodes=" + maxNodes
+                    + ", string=" + maxStringLength + ", bytes=" + maxBytes);
+        }
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxStringLength = maxStringLength;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return максимальная глубина дерева; более глубокие поддеревья отбрасываются
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return максимальное количество узлов; узлы сверх него отбрасываются вместе с поддеревьями
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @return максимальная длина строковых полей; более длинные строки обрезаются
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * @return максимальный объём тела ответа; ответ большего объёма отклоняется целиком
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
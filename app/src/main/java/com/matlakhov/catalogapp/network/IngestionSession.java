@@ -0,0 +1,122 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.util.IntIndexMap;
+import com.matlakhov.catalogapp.util.StringPool;
+
+/**
+ * Состояние разбора одного ответа: бюджет узлов, встреченные идентификаторы и счётчики отброшенных данных.
+ * <p>
+ * {@link IngestionGuard} открывает сессию в потоке разбора на время конвертации тела, поэтому все узлы
+ * ответа (например, корневые категории и узлы дельты) расходуют общий бюджет {@link IngestionLimits#getMaxNodes()}
+ * и общий пул строк.
+ * </p>
+ */
+final class IngestionSession {
+
+    /** Сессия разбора текущего потока, или null вне {@link IngestionGuard}. */
+    private static final ThreadLocal<IngestionSession> CURRENT = new ThreadLocal<>();
+
+    /** Ограничения разбора. */
+    final IngestionLimits limits;
+
+    /** Общие строки узлов ответа. */
+    final StringPool strings = new StringPool();
+
+    /** Идентификаторы принятых узлов. */
+    private final IntIndexMap ids = new IntIndexMap(1024);
+
+    /** Количество узлов, на которые уже израсходован бюджет. */
+    private int nodes;
+
+    /** Отброшенные поддеревья: глубже ограничения или сверх бюджета узлов. */
+    int truncatedSubtrees;
+
+    /** Отброшенные узлы с повторяющимся идентификатором. */
+    int duplicateIds;
+
+    /** Обрезанные строковые поля. */
+    int truncatedStrings;
+
+    IngestionSession(IngestionLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Открывает сессию в текущем потоке.
+     *
+     * @param limits ограничения разбора
+     * @return открытая сессия
+     */
+    static IngestionSession begin(IngestionLimits limits) {
+        IngestionSession session = new IngestionSession(limits);
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * Возвращает сессию текущего потока.
+     *
+     * @return сессия, или null, если разбор идёт вне {@link IngestionGuard}
+     */
+    static IngestionSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Закрывает сессию текущего потока.
+     */
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Расходует бюджет на один узел.
+     *
+     * @return false, если бюджет исчерпан и узел нужно отбросить
+     */
+    boolean reserveNode() {
+        if (nodes >= limits.getMaxNodes()) {
+            return false;
+        }
+        nodes++;
+        return true;
+    }
+
+    /**
+     * Запоминает идентификатор прочитанного узла.
+     *
+     * @param id идентификатор узла
+     * @return false, если узел с таким идентификатором уже встречался в ответе
+     */
+    boolean register(int id) {
+        if (ids.get(id, 0) != 0) {
+            duplicateIds++;
+            return false;
+        }
+        ids.put(id, 1);
+        return true;
+    }
+
+    /**
+     * Обрезает строку до допустимой длины.
+     *
+     * @param value строка из ответа
+     * @return та же строка, или её начало длиной {@link IngestionLimits#getMaxStringLength()}
+     */
+    String limit(String value) {
+        if (value == null || value.length() <= limits.getMaxStringLength()) {
+            return value;
+        }
+        truncatedStrings++;
+        return value.substring(0, limits.getMaxStringLength());
+    }
+
+    /**
+     * Проверяет, были ли отброшены или обрезаны данные.
+     *
+     * @return true, если ответ принят не полностью
+     */
+    boolean isDegraded() {
+        return truncatedSubtrees > 0 || duplicateIds > 0 || truncatedStrings > 0;
+    }
+}
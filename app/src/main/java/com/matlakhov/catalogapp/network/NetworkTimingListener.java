@@ -0,0 +1,249 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.TraceSections;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Слушатель событий OkHttp, записывающий длительность фаз каждого запроса в {@link MetricsRegistry}.
+ * <p>
+ * Для запроса с путём {@code catalog/skeleton} записываются гистограммы {@code network.catalog.skeleton.<фаза>}:
+ * </p>
+ * <ul>
+ *     <li>{@value #PHASE_DNS} — разрешение имени (сумма по всем переходам);</li>
+ *     <li>{@value #PHASE_CONNECT} — установка TCP-соединения вместе с TLS;</li>
+ *     <li>{@value #PHASE_TLS} — рукопожатие TLS;</li>
+ *     <li>{@value #PHASE_REDIRECT} — время до начала последнего перехода, если сервер перенаправил запрос
+ *     (как Google Drive перенаправляет на адрес скачивания);</li>
+ *     <li>{@value #PHASE_TTFB} — от отправки запроса до получения заголовков ответа на последнем переходе;</li>
+ *     <li>{@value #PHASE_HEADERS} — от начала вызова до получения заголовков ответа.</li>
+ * </ul>
+ * <p>
+ * Время передачи тела ({@value #PHASE_BODY}) и разбора ответа записывает {@link TimedConverterFactory},
+ * потому что Gson разбирает тело по мере чтения. Размер тела записывается в показатель
+ * {@code network.<путь>.response_bytes} и счётчик {@code network.bytes}, количество перенаправлений —
+ * в счётчик {@code network.<путь>.redirects}, ошибки — в {@code network.errors}. Весь вызов, от начала
+ * до чтения тела, отмечается асинхронной секцией трассировки {@code network.<путь>}.
+ * </p>
+ */
+public class NetworkTimingListener extends EventListener {
+
+    /** Фаза разрешения имени. */
+    public static final String PHASE_DNS = "dns";
+
+    /** Фаза установки соединения (включая TLS). */
+    public static final String PHASE_CONNECT = "connect";
+
+    /** Фаза рукопожатия TLS. */
+    public static final String PHASE_TLS = "tls";
+
+    /** Время, потраченное на перенаправления. */
+    public static final String PHASE_REDIRECT = "redirect";
+
+    /** Время до первого байта ответа. */
+    public static final String PHASE_TTFB = "ttfb";
+
+    /** Время до получения заголовков ответа. */
+    public static final String PHASE_HEADERS = "headers";
+
+    /** Время ожидания данных тела ответа. */
+    public static final String PHASE_BODY = "body";
+
+    /** Фабрика слушателей для {@code OkHttpClient.Builder#eventListenerFactory}. */
+    public static final EventListener.Factory FACTORY = call -> new NetworkTimingListener(endpoint(call.request()));
+
+    /** Имя запроса в метриках. */
+    private final String endpoint;
+
+    /** Начало вызова. */
+    private long callStart;
+
+    /** Идентификатор асинхронной секции трассировки вызова. */
+    private int traceCookie;
+
+    /** Начало текущей фазы разрешения имени, установки соединения и TLS. */
+    private long dnsStart;
+    private long connectStart;
+    private long tlsStart;
+
+    /** Суммарная длительность фаз по всем переходам (нс). */
+    private long dnsNanos;
+    private long connectNanos;
+    private long tlsNanos;
+
+    /** Момент окончания отправки запроса текущего перехода. */
+    private long requestSent;
+
+    /** Количество перенаправлений. */
+    private int redirects;
+
+    /** Получен ответ-перенаправление, следующий переход ещё не начат. */
+    private boolean redirectPending;
+
+    /** Момент начала последнего перехода. */
+    private long lastHopStart;
+
+    NetworkTimingListener(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Возвращает перцентиль фазы запроса из реестра метрик.
+     *
+     * @param endpoint   путь запроса без параметров, например {@code "catalog/skeleton"}
+     * @param phase      фаза, например {@link #PHASE_TTFB}
+     * @param percentile перцентиль от 0 до 100
+     * @return значение перцентиля в миллисекундах, или 0, если запросов не было
+     */
+    public static double percentileMillis(String endpoint, String phase, double percentile) {
+        return MetricsRegistry.getInstance().histogram(metricName(endpoint.replace('/', '.'), phase))
+                .getPercentileMillis(percentile);
+    }
+
+    /**
+     * Возвращает имя запроса в метриках.
+     *
+     * @param request запрос
+     * @return путь без начальной косой черты, с точками вместо разделителей
+     */
+    static String endpoint(Request request) {
+        String path = request.url().encodedPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.isEmpty() ? "root" : path.replace('/', '.');
+    }
+
+    static String metricName(String endpoint, String phase) {
+        return "network." + endpoint + "." + phase;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        traceCookie = TraceSections.beginAsync(traceName());
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        TraceSections.endAsync(traceName(), traceCookie);
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        hopStarted();
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        dnsNanos += System.nanoTime() - dnsStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        hopStarted();
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        tlsStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        tlsNanos += System.nanoTime() - tlsStart;
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectNanos += System.nanoTime() - connectStart;
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        connectNanos += System.nanoTime() - connectStart;
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        hopStarted();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        // responseHeadersStart приходит до блокирующего чтения, поэтому первый байт отсчитывается по концу заголовков
+        long ttfbNanos = System.nanoTime() - requestSent;
+        if (response.isRedirect()) {
+            redirects++;
+            redirectPending = true;
+            return;
+        }
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.histogram(metricName(endpoint, PHASE_DNS)).recordNanos(dnsNanos);
+        registry.histogram(metricName(endpoint, PHASE_CONNECT)).recordNanos(connectNanos);
+        if (tlsNanos > 0) {
+            registry.histogram(metricName(endpoint, PHASE_TLS)).recordNanos(tlsNanos);
+        }
+        if (redirects > 0) {
+            registry.histogram(metricName(endpoint, PHASE_REDIRECT)).recordNanos(lastHopStart - callStart);
+            registry.counter(metricName(endpoint, "redirects")).add(redirects);
+        }
+        registry.histogram(metricName(endpoint, PHASE_TTFB)).recordNanos(ttfbNanos);
+        registry.recordSince(metricName(endpoint, PHASE_HEADERS), callStart);
+        if (!response.isSuccessful() && response.code() != 304) {
+            registry.counter("network.errors").increment();
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge(metricName(endpoint, "response_bytes")).set(byteCount);
+        registry.counter("network.bytes").add(byteCount);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        MetricsRegistry.getInstance().counter("network.errors").increment();
+        TraceSections.endAsync(traceName(), traceCookie);
+    }
+
+    private String traceName() {
+        return "network." + endpoint;
+    }
+
+    /**
+     * Отмечает начало перехода после ответа-перенаправления.
+     */
+    private void hopStarted() {
+        if (redirectPending) {
+            redirectPending = false;
+            lastHopStart = System.nanoTime();
+        }
+    }
+}
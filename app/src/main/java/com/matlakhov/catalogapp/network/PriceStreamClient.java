@@ -0,0 +1,222 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.matlakhov.catalogapp.models.PricePatch;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Клиент потока обновлений цен и наличия в формате Server-Sent Events.
+ * <p>
+ * Подключается к эндпоинту {@code catalog/stream} и читает события, поле {@code data} которых
+ * содержит JSON-массив {@link PricePatch}. Полученные изменения передаются слушателю в потоке чтения.
+ * При обрыве соединения клиент переподключается с экспоненциальной задержкой и передаёт
+ * идентификатор последнего события в заголовке {@code Last-Event-ID}. Если сервер не поддерживает
+ * поток (ответ не {@code text/event-stream}), клиент останавливается до следующего вызова {@link #start()}.
+ * </p>
+ */
+public class PriceStreamClient {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "PriceStreamClient";
+
+    /** Путь эндпоинта потока относительно базового URL. */
+    public static final String STREAM_PATH = "catalog/stream";
+
+    /** Начальная задержка переподключения (мс). */
+    private static final long INITIAL_BACKOFF_MS = 1_000;
+
+    /** Максимальная задержка переподключения (мс). */
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    /**
+     * Интерфейс для получения изменений из потока.
+     */
+    public interface Listener {
+        /**
+         * Вызывается в потоке чтения для каждого полученного события.
+         *
+         * @param patches изменения цен и наличия
+         */
+        void onPatches(List<PricePatch> patches);
+    }
+
+    /** HTTP-клиент без тайм-аута чтения для долгоживущего соединения. */
+    private final OkHttpClient client;
+
+    /** Полный URL потока. */
+    private final String url;
+
+    /** Слушатель изменений. */
+    private final Listener listener;
+
+    /** Десериализатор JSON. */
+    private final Gson gson = new Gson();
+
+    /** Признак того, что клиент запущен. */
+    private volatile boolean running;
+
+    /** Текущий HTTP-вызов, или null, если соединения нет. */
+    private volatile Call currentCall;
+
+    /** Поток чтения. */
+    private Thread thread;
+
+    /** Идентификатор последнего полученного события. */
+    private String lastEventId;
+
+    /**
+     * Создаёт клиент потока.
+     *
+     * @param httpClient общий HTTP-клиент (см. {@link ApiClient#getHttpClient()})
+     * @param baseUrl    базовый URL сервера, оканчивающийся на {@code /}
+     * @param listener   слушатель изменений
+     */
+    public PriceStreamClient(OkHttpClient httpClient, String baseUrl, Listener listener) {
+        this.client = httpClient.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.url = baseUrl + STREAM_PATH;
+        this.listener = listener;
+    }
+
+    /**
+     * Запускает чтение потока в отдельном потоке. Повторный вызов для запущенного клиента ничего не делает.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "price-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Останавливает чтение потока и закрывает соединение.
+     */
+    public synchronized void stop() {
+        running = false;
+        Call call = currentCall;
+        if (call != null) {
+            call.cancel();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Проверяет, запущен ли клиент.
+     *
+     * @return true, если клиент читает поток или ожидает переподключения
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runLoop() {
+        long backoff = INITIAL_BACKOFF_MS;
+        while (running) {
+            try {
+                if (readStream()) {
+                    backoff = INITIAL_BACKOFF_MS;
+                } else {
+                    AppLog.w(TAG, "Сервер не поддерживает поток обновлений: " + url);
+                    running = false;
+                    return;
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+                AppLog.w(TAG, "Поток обновлений прерван: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Открывает соединение и читает события до его закрытия.
+     *
+     * @return false, если сервер не поддерживает поток
+     * @throws IOException при ошибке соединения
+     */
+    private boolean readStream() throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        Call call = client.newCall(builder.build());
+        currentCall = call;
+        try (Response response = call.execute()) {
+            ResponseBody body = response.body();
+            String contentType = response.header("Content-Type", "");
+            if (!response.isSuccessful() || body == null || !contentType.startsWith("text/event-stream")) {
+                return false;
+            }
+            AppLog.d(TAG, () -> "Подключено к потоку обновлений: " + url);
+
+            BufferedSource source = body.source();
+            StringBuilder data = new StringBuilder();
+            String line;
+            while (running && (line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    dispatch(data);
+                    data.setLength(0);
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(fieldValue(line, 5));
+                } else if (line.startsWith("id:")) {
+                    lastEventId = fieldValue(line, 3);
+                }
+                // Комментарии (":") и неизвестные поля игнорируются
+            }
+            return true;
+        } finally {
+            currentCall = null;
+        }
+    }
+
+    private void dispatch(StringBuilder data) {
+        if (data.length() == 0) {
+            return;
+        }
+        try {
+            PricePatch[] patches = gson.fromJson(data.toString(), PricePatch[].class);
+            if (patches != null && patches.length > 0) {
+                listener.onPatches(Arrays.asList(patches));
+            }
+        } catch (JsonParseException e) {
+            AppLog.w(TAG, "Некорректное событие потока: " + e.getMessage());
+        }
+    }
+
+    private static String fieldValue(String line, int prefixLength) {
+        String value = line.substring(prefixLength);
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+}
@@ -0,0 +1,166 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.metrics.TraceSections;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+/**
+ * Фабрика конвертеров Retrofit, измеряющая время передачи и разбора ответов.
+ * <p>
+ * Оборачивает другую фабрику (обычно Gson). Gson разбирает тело по мере чтения, поэтому время
+ * конвертации разделяется на две части: ожидание данных из сети записывается в гистограмму
+ * {@code network.<путь>.body} (например, {@code network.catalog.skeleton.body}), а остальное время —
+ * в гистограмму {@code parse.<тип ответа>} (например, {@code parse.CatalogResponse}).
+ * </p>
+ */
+public class TimedConverterFactory extends Converter.Factory {
+
+    /** Оборачиваемая фабрика. */
+    private final Converter.Factory delegate;
+
+    /**
+     * @param delegate фабрика, выполняющая разбор
+     */
+    public TimedConverterFactory(Converter.Factory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null) {
+            return null;
+        }
+        String parseName = "parse." + typeName(type);
+        String bodyName = NetworkTimingListener.metricName(endpoint(annotations, type),
+                NetworkTimingListener.PHASE_BODY);
+        return body -> {
+            TraceSections.begin(parseName);
+            long start = System.nanoTime();
+            TimedBody timed = new TimedBody(body);
+            try {
+                return converter.convert(timed);
+            } finally {
+                TraceSections.end();
+                long total = System.nanoTime() - start;
+                MetricsRegistry registry = MetricsRegistry.getInstance();
+                registry.histogram(bodyName).recordNanos(timed.readNanos);
+                registry.histogram(parseName).recordNanos(Math.max(0, total - timed.readNanos));
+            }
+        };
+    }
+
+    /**
+     * Возвращает имя типа ответа для метрики: {@code List.NodeDetails} для {@code List<NodeDetails>}.
+     *
+     * @param type тип ответа
+     * @return простое имя типа с именами параметров через точку
+     */
+    static String typeName(Type type) {
+        String name = getRawType(type).getSimpleName();
+        if (type instanceof ParameterizedType) {
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                name += "." + typeName(argument);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Возвращает имя запроса в метриках по аннотации {@link GET} метода сервиса.
+     *
+     * @param annotations аннотации метода
+     * @param type        тип ответа, если аннотации нет
+     * @return путь без параметров с точками вместо разделителей, как в {@link NetworkTimingListener}
+     */
+    static String endpoint(Annotation[] annotations, Type type) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) {
+                String path = ((GET) annotation).value();
+                int query = path.indexOf('?');
+                if (query >= 0) {
+                    path = path.substring(0, query);
+                }
+                if (path.startsWith("/")) {
+                    path = path.substring(1);
+                }
+                if (!path.isEmpty()) {
+                    return path.replace('/', '.');
+                }
+            }
+        }
+        return typeName(type);
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, String> stringConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        return delegate.stringConverter(type, annotations, retrofit);
+    }
+
+    /**
+     * Тело ответа, считающее время, проведённое в ожидании данных из сети.
+     */
+    private static final class TimedBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final okio.BufferedSource source;
+
+        /** Суммарное время чтения из исходного тела (нс). */
+        long readNanos;
+
+        TimedBody(ResponseBody delegate) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        return super.read(sink, byteCount);
+                    } finally {
+                        readNanos += System.nanoTime() - start;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public okio.BufferedSource source() {
+            return source;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
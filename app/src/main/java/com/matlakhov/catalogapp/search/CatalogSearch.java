@@ -0,0 +1,122 @@
+package com.matlakhov.catalogapp.search;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.annotation.MainThread;
+
+import com.matlakhov.catalogapp.data.CatalogRepository;
+import com.matlakhov.catalogapp.data.CatalogSnapshot;
+import com.matlakhov.catalogapp.data.CatalogStore;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.util.AppExecutors;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поиск по каталогу, общий для всех экранов приложения.
+ * <p>
+ * На обычных устройствах хранит {@link SearchIndex} в памяти и перестраивает его в фоновом потоке
+ * после каждой загрузки каталога. Пока новый индекс строится, запросы обслуживает предыдущий;
+ * результат устаревшей сборки (если за время её работы была запущена новая) отбрасывается.
+ * Индекс хранит идентификаторы узлов и возвращает узлы текущей версии каталога. Запросы выполняются
+ * в отдельном потоке поиска ({@link AppExecutors#search()}), а не в общем фоновом пуле.
+ * </p>
+ * <p>
+ * На устройствах с малым объёмом памяти индекс в памяти не строится: запросы выполняются
+ * по полнотекстовому индексу SQLite ({@link FtsCatalogSearcher}), который {@link CatalogStore}
+ * обновляет при сохранении каталога.
+ * </p>
+ */
+public final class CatalogSearch {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "CatalogSearch";
+
+    /** Единый экземпляр поиска. */
+    private static CatalogSearch instance;
+
+    /** Номер последней запущенной сборки индекса. */
+    private final AtomicInteger buildGeneration = new AtomicInteger();
+
+    /** Текущая реализация поиска. */
+    private volatile CatalogSearcher searcher = SearchIndex.EMPTY;
+
+    private CatalogSearch() {
+    }
+
+    /**
+     * Возвращает единый экземпляр поиска.
+     *
+     * @return экземпляр {@link CatalogSearch}
+     */
+    public static synchronized CatalogSearch getInstance() {
+        if (instance == null) {
+            instance = new CatalogSearch();
+        }
+        return instance;
+    }
+
+    /**
+     * Возвращает текущую реализацию поиска.
+     *
+     * @return индекс последней завершённой сборки, полнотекстовый поиск по хранилищу или пустой индекс
+     */
+    public CatalogSearcher getSearcher() {
+        return searcher;
+    }
+
+    /**
+     * Освобождает индекс в памяти при нехватке памяти.
+     * <p>
+     * Запросы переключаются на полнотекстовый индекс хранилища, а незавершённая сборка отбрасывается.
+     * Индекс в памяти строится снова при следующем {@link #rebuild(Context, CatalogRepository)}.
+     * </p>
+     *
+     * @param context контекст приложения
+     */
+    @MainThread
+    public void release(Context context) {
+        buildGeneration.incrementAndGet();
+        if (!(searcher instanceof FtsCatalogSearcher)) {
+            searcher = new FtsCatalogSearcher(CatalogStore.getInstance(context));
+            AppLog.d(TAG, () -> "Индекс в памяти освобождён: поиск по полнотекстовому индексу хранилища");
+        }
+    }
+
+    /**
+     * Обновляет поиск после загрузки каталога.
+     * <p>
+     * На устройствах с малым объёмом памяти переключается на полнотекстовый индекс хранилища,
+     * иначе запускает перестроение индекса в памяти по текущему снимку каталога ({@link CatalogSnapshot}).
+     * </p>
+     *
+     * @param context    контекст приложения
+     * @param repository хранилище каталога
+     */
+    @MainThread
+    public void rebuild(Context context, CatalogRepository repository) {
+        int generation = buildGeneration.incrementAndGet();
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null && activityManager.isLowRamDevice()) {
+            if (!(searcher instanceof FtsCatalogSearcher)) {
+                searcher = new FtsCatalogSearcher(CatalogStore.getInstance(context));
+                AppLog.d(TAG, () -> "Мало памяти: поиск по полнотекстовому индексу хранилища");
+            }
+            return;
+        }
+
+        CatalogSnapshot snapshot = repository.getSnapshot();
+        AppExecutors.io().execute(() -> {
+            long start = System.nanoTime();
+            // Найденные узлы берутся из версии каталога, текущей на момент запроса
+            SearchIndex built = SearchIndex.build(snapshot, id -> repository.getSnapshot().findNode(id));
+            if (buildGeneration.get() == generation) {
+                searcher = built;
+                AppLog.d(TAG, () -> "Индекс построен: документов=" + built.size() + ", "
+                        + MetricsRegistry.getInstance().recordSince("index.search", start) + " мс");
+            }
+        });
+    }
+}
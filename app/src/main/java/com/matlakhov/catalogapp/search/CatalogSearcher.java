@@ -0,0 +1,29 @@
+package com.matlakhov.catalogapp.search;
+
+import androidx.annotation.WorkerThread;
+
+import com.matlakhov.catalogapp.models.Category;
+
+import java.util.List;
+
+/**
+ * Интерфейс поиска по каталогу.
+ * <p>
+ * Реализации: {@link SearchIndex} — индекс в памяти, {@link FtsCatalogSearcher} — полнотекстовый
+ * индекс SQLite для каталогов, которые не помещаются в память устройства. Слова запроса
+ * нормализуются {@link TextNormalizer} и ищутся как префиксы.
+ * </p>
+ */
+public interface CatalogSearcher {
+
+    /**
+     * Ищет узлы каталога, содержащие все слова запроса.
+     *
+     * @param query  текст запроса
+     * @param offset количество пропускаемых результатов (для постраничной загрузки)
+     * @param limit  максимальное количество результатов
+     * @return найденные категории и товары в порядке ранжирования
+     */
+    @WorkerThread
+    List<Category> search(String query, int offset, int limit);
+}
@@ -0,0 +1,31 @@
+package com.matlakhov.catalogapp.search;
+
+import com.matlakhov.catalogapp.data.CatalogStore;
+import com.matlakhov.catalogapp.models.Category;
+
+import java.util.List;
+
+/**
+ * Поиск по полнотекстовому индексу SQLite в {@link CatalogStore}.
+ * <p>
+ * Индекс хранится на диске и обновляется при каждом сохранении каталога, поэтому не требует памяти
+ * под весь каталог. Результаты — копии узлов из хранилища без вложенных элементов.
+ * </p>
+ */
+public class FtsCatalogSearcher implements CatalogSearcher {
+
+    /** Хранилище каталога с полнотекстовым индексом. */
+    private final CatalogStore store;
+
+    /**
+     * @param store хранилище каталога
+     */
+    public FtsCatalogSearcher(CatalogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Category> search(String query, int offset, int limit) {
+        return store.search(query, offset, limit);
+    }
+}
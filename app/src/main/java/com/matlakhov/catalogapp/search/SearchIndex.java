@@ -0,0 +1,309 @@
+package com.matlakhov.catalogapp.search;
+
+import com.matlakhov.catalogapp.data.CatalogSnapshot;
+import com.matlakhov.catalogapp.models.Category;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Неизменяемый поисковый индекс по названиям и описаниям узлов каталога.
+ * <p>
+ * Индекс хранит отсортированный массив уникальных нормализованных слов ({@link TextNormalizer})
+ * и для каждого слова — возрастающий список документов, в которых оно встречается. Все слова
+ * с общим префиксом занимают непрерывный диапазон массива, поэтому префиксный поиск сводится
+ * к двум двоичным поискам. Для каждого документа дополнительно хранится список номеров его слов:
+ * остальные слова запроса проверяются по нему без пересечения больших списков.
+ * </p>
+ * <p>
+ * Каждое слово запроса ищется как префикс, документ попадает в результат, если содержит все слова запроса.
+ * Индекс не изменяется после построения и может использоваться из любого потока.
+ * </p>
+ * <p>
+ * Документы хранятся идентификаторами, а найденные узлы берутся из текущей версии каталога
+ * (см. {@link #build(CatalogSnapshot, IntFunction)}), поэтому индекс не удерживает узлы прежних версий
+ * и результаты показывают актуальные цены. Узлы, удалённые после построения, в результаты не попадают.
+ * Индекс строится по текстам снимка ({@link CatalogSnapshot#visitNodes(CatalogSnapshot.NodeVisitor)})
+ * без декодирования ленивых поддеревьев.
+ * Индекс занимает память пропорционально размеру каталога; для очень больших каталогов
+ * на устройствах с малым объёмом памяти используется {@link FtsCatalogSearcher}.
+ * </p>
+ */
+public final class SearchIndex implements CatalogSearcher {
+
+    /** Пустой индекс. */
+    public static final SearchIndex EMPTY = new SearchIndex(new int[0], id -> null, new String[0], new int[]{0},
+            new int[0], new int[]{0}, new int[0]);
+
+    /** Идентификаторы документов: узлы каталога в порядке обхода дерева, затем рекомендуемые товары. */
+    private final int[] documents;
+
+    /** Получение узла текущей версии каталога по идентификатору документа. */
+    private final IntFunction<Category> resolver;
+
+    /** Уникальные нормализованные слова в порядке возрастания. */
+    private final String[] terms;
+
+    /** Начало списка документов слова {@code t} в {@link #postings}; длина — {@code terms.length + 1}. */
+    private final int[] termOffsets;
+
+    /** Списки документов всех слов подряд. */
+    private final int[] postings;
+
+    /** Начало списка слов документа {@code d} в {@link #documentTerms}; длина — {@code documents.length + 1}. */
+    private final int[] documentTermOffsets;
+
+    /** Номера слов всех документов подряд. */
+    private final int[] documentTerms;
+
+    private SearchIndex(int[] documents, IntFunction<Category> resolver, String[] terms, int[] termOffsets,
+                        int[] postings, int[] documentTermOffsets, int[] documentTerms) {
+        this.documents = documents;
+        this.resolver = resolver;
+        this.terms = terms;
+        this.termOffsets = termOffsets;
+        this.postings = postings;
+        this.documentTermOffsets = documentTermOffsets;
+        this.documentTerms = documentTerms;
+    }
+
+    /**
+     * Строит индекс по версии каталога. Найденные узлы берутся через {@code resolver}, обычно из текущей
+     * версии каталога, а не из той, по которой построен индекс.
+     *
+     * @param snapshot версия каталога
+     * @param resolver узел по идентификатору, или null, если узла больше нет
+     * @return построенный индекс
+     */
+    public static SearchIndex build(CatalogSnapshot snapshot, IntFunction<Category> resolver) {
+        Documents documents = new Documents();
+        snapshot.visitNodes(documents);
+        return documents.build(resolver);
+    }
+
+    /**
+     * Строит индекс по дереву каталога и списку рекомендуемых товаров, которые не опубликованы
+     * в {@link com.matlakhov.catalogapp.data.CatalogRepository} (например, в тестах и бенчмарках).
+     * Найденные узлы берутся из этих же списков.
+     * <p>
+     * Рекомендуемые товары, которые уже есть в дереве, повторно не индексируются.
+     * </p>
+     *
+     * @param catalog     корневые категории
+     * @param recommended рекомендуемые товары
+     * @return построенный индекс
+     */
+    public static SearchIndex build(List<Category> catalog, List<Category> recommended) {
+        Documents documents = new Documents();
+        Map<Integer, Category> nodes = new HashMap<>();
+        Deque<Category> stack = new ArrayDeque<>();
+        for (int i = catalog.size() - 1; i >= 0; i--) {
+            if (catalog.get(i) != null) {
+                stack.push(catalog.get(i));
+            }
+        }
+        while (!stack.isEmpty()) {
+            Category node = stack.pop();
+            nodes.putIfAbsent(node.getId(), node);
+            documents.visit(node.getId(), node.getName(), node.getDescription());
+            List<Category> items = node.getItems();
+            for (int i = items.size() - 1; i >= 0; i--) {
+                if (items.get(i) != null) {
+                    stack.push(items.get(i));
+                }
+            }
+        }
+        for (Category product : recommended) {
+            if (product != null) {
+                nodes.putIfAbsent(product.getId(), product);
+                documents.visit(product.getId(), product.getName(), product.getDescription());
+            }
+        }
+        return documents.build(nodes::get);
+    }
+
+    /**
+     * Возвращает количество проиндексированных узлов.
+     *
+     * @return количество документов
+     */
+    public int size() {
+        return documents.length;
+    }
+
+    /**
+     * Ищет узлы, содержащие все слова запроса как префиксы слов названия или описания.
+     * <p>
+     * Перебираются документы самого редкого слова запроса; документы, в которых слово
+     * встречается целиком, идут раньше документов, где оно является только префиксом.
+     * </p>
+     *
+     * @param query  текст запроса
+     * @param offset количество пропускаемых результатов
+     * @param limit  максимальное количество результатов
+     * @return найденные узлы, или пустой список, если запрос пуст
+     */
+    @Override
+    public List<Category> search(String query, int offset, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(TextNormalizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int skip = Math.max(0, offset);
+
+        int[] from = new int[tokens.size()];
+        int[] to = new int[tokens.size()];
+        int driver = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            from[i] = lowerBound(tokens.get(i));
+            to[i] = lowerBound(tokens.get(i) + Character.MAX_VALUE);
+            if (from[i] == to[i]) {
+                return Collections.emptyList();
+            }
+            if (postingCount(from[i], to[i]) < postingCount(from[driver], to[driver])) {
+                driver = i;
+            }
+        }
+
+        List<Category> results = new ArrayList<>(Math.min(limit, 64));
+        BitSet seen = new BitSet(documents.length);
+        for (int t = from[driver]; t < to[driver]; t++) {
+            for (int p = termOffsets[t]; p < termOffsets[t + 1]; p++) {
+                int document = postings[p];
+                if (seen.get(document)) {
+                    continue;
+                }
+                seen.set(document);
+                if (matchesAll(document, from, to, driver)) {
+                    Category node = resolver.apply(documents[document]);
+                    if (node == null) {
+                        continue;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    results.add(node);
+                    if (results.size() == limit) {
+                        return results;
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Проверяет, что документ содержит слово из диапазона каждого слова запроса, кроме ведущего.
+     */
+    private boolean matchesAll(int document, int[] from, int[] to, int driver) {
+        for (int i = 0; i < from.length; i++) {
+            if (i == driver) {
+                continue;
+            }
+            boolean found = false;
+            for (int p = documentTermOffsets[document]; p < documentTermOffsets[document + 1]; p++) {
+                int term = documentTerms[p];
+                if (term >= from[i] && term < to[i]) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int postingCount(int fromTerm, int toTerm) {
+        return termOffsets[toTerm] - termOffsets[fromTerm];
+    }
+
+    /**
+     * Возвращает позицию первого слова, не меньшего заданного.
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Сбор документов индекса: слова каждого документа без повторов.
+     */
+    private static final class Documents implements CatalogSnapshot.NodeVisitor {
+        final List<Integer> ids = new ArrayList<>();
+        final Set<Integer> seen = new HashSet<>();
+        final List<String[]> documentWords = new ArrayList<>();
+        final Map<String, Integer> documentFrequency = new HashMap<>();
+
+        @Override
+        public void visit(int id, String name, String description) {
+            if (!seen.add(id)) {
+                return;
+            }
+            Set<String> words = new LinkedHashSet<>(TextNormalizer.tokenize(name));
+            words.addAll(TextNormalizer.tokenize(description));
+            String[] array = words.toArray(new String[0]);
+            ids.add(id);
+            documentWords.add(array);
+            for (String word : array) {
+                Integer count = documentFrequency.get(word);
+                documentFrequency.put(word, count != null ? count + 1 : 1);
+            }
+        }
+
+        SearchIndex build(IntFunction<Category> resolver) {
+            String[] terms = documentFrequency.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            Map<String, Integer> termIds = new HashMap<>(terms.length * 2);
+            int[] termOffsets = new int[terms.length + 1];
+            for (int t = 0; t < terms.length; t++) {
+                termIds.put(terms[t], t);
+                termOffsets[t + 1] = termOffsets[t] + documentFrequency.get(terms[t]);
+            }
+
+            int count = ids.size();
+            int[] postings = new int[termOffsets[terms.length]];
+            int[] fill = Arrays.copyOf(termOffsets, terms.length);
+            int[] documentTermOffsets = new int[count + 1];
+            for (int d = 0; d < count; d++) {
+                documentTermOffsets[d + 1] = documentTermOffsets[d] + documentWords.get(d).length;
+            }
+            int[] documentTerms = new int[documentTermOffsets[count]];
+            int[] documents = new int[count];
+            for (int d = 0; d < count; d++) {
+                documents[d] = ids.get(d);
+                String[] words = documentWords.get(d);
+                for (int w = 0; w < words.length; w++) {
+                    int term = termIds.get(words[w]);
+                    // Документы обходятся по возрастанию, поэтому списки документов остаются отсортированными
+                    postings[fill[term]++] = d;
+                    documentTerms[documentTermOffsets[d] + w] = term;
+                }
+            }
+            return new SearchIndex(documents, resolver, terms, termOffsets, postings,
+                    documentTermOffsets, documentTerms);
+        }
+    }
+}
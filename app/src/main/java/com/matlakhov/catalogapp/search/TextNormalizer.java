@@ -0,0 +1,56 @@
+package com.matlakhov.catalogapp.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Утилитный класс нормализации текста для поиска по каталогу.
+ * <p>
+ * Текст приводится к нижнему регистру, буква «ё» заменяется на «е», а слова разделяются
+ * любыми символами, кроме букв и цифр. Одна и та же нормализация применяется
+ * к индексируемому тексту и к запросу.
+ * </p>
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Нормализует один символ.
+     *
+     * @param c исходный символ
+     * @return символ в нижнем регистре с заменой «ё» на «е»
+     */
+    public static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    /**
+     * Разбивает текст на нормализованные слова.
+     *
+     * @param text исходный текст, может быть null
+     * @return список слов в порядке следования (может содержать повторы)
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(normalize(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+}
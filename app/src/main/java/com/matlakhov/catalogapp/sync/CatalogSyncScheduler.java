@@ -0,0 +1,62 @@
+package com.matlakhov.catalogapp.sync;
+
+import android.content.Context;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Утилитный класс для планирования фоновой синхронизации каталога через WorkManager.
+ * <p>
+ * Ограничения WorkManager объединяются по «И», поэтому условие «устройство заряжается или подключено
+ * к безлимитной сети» реализовано двумя периодическими задачами. Обе используют
+ * {@link CatalogSyncWorker}, который пропускает запуск, если каталог синхронизирован недавно,
+ * а условный запрос делает повторную проверку дешёвой.
+ * </p>
+ */
+public final class CatalogSyncScheduler {
+
+    /** Имя периодической задачи, выполняемой во время зарядки. */
+    private static final String WORK_CHARGING = "catalog_sync_charging";
+
+    /** Имя периодической задачи, выполняемой в безлимитной сети. */
+    private static final String WORK_UNMETERED = "catalog_sync_unmetered";
+
+    /** Интервал периодической синхронизации (ч). */
+    private static final long SYNC_INTERVAL_HOURS = 6;
+
+    private CatalogSyncScheduler() {
+    }
+
+    /**
+     * Планирует периодическую синхронизацию. Уже запланированные задачи не пересоздаются.
+     *
+     * @param context контекст приложения
+     */
+    public static void schedule(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+
+        Constraints charging = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresCharging(true)
+                .build();
+        Constraints unmetered = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        workManager.enqueueUniquePeriodicWork(WORK_CHARGING, ExistingPeriodicWorkPolicy.KEEP,
+                new PeriodicWorkRequest.Builder(CatalogSyncWorker.class, SYNC_INTERVAL_HOURS, TimeUnit.HOURS)
+                        .setConstraints(charging)
+                        .build());
+        workManager.enqueueUniquePeriodicWork(WORK_UNMETERED, ExistingPeriodicWorkPolicy.KEEP,
+                new PeriodicWorkRequest.Builder(CatalogSyncWorker.class, SYNC_INTERVAL_HOURS, TimeUnit.HOURS)
+                        .setConstraints(unmetered)
+                        .build());
+    }
+}
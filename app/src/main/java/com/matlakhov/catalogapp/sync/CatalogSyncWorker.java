@@ -0,0 +1,101 @@
+package com.matlakhov.catalogapp.sync;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.matlakhov.catalogapp.adapters.ImageResources;
+import com.matlakhov.catalogapp.data.CatalogStore;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.network.ApiClient;
+import com.matlakhov.catalogapp.network.ApiService;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+
+import retrofit2.Response;
+
+/**
+ * Фоновая задача синхронизации каталога.
+ * <p>
+ * Выполняет условный запрос каталога с заголовками {@code If-None-Match}/{@code If-Modified-Since},
+ * при изменениях записывает каталог в {@link CatalogStore} и загружает в кэши Glide изображения
+ * категорий верхнего уровня и рекомендуемых товаров, чтобы приложение открывалось с тёплыми данными
+ * и изображениями. Если последняя синхронизация была недавно, задача завершается без запроса.
+ * </p>
+ *
+ * @see CatalogSyncScheduler
+ */
+public class CatalogSyncWorker extends Worker {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "CatalogSyncWorker";
+
+    /** Минимальный интервал между синхронизациями (мс). */
+    private static final long MIN_SYNC_INTERVAL_MS = 60 * 60 * 1000L;
+
+    /** Количество категорий верхнего уровня и рекомендуемых товаров, изображения которых загружаются. */
+    private static final int PREFETCH_LIMIT = 20;
+
+    /**
+     * Создаёт задачу синхронизации.
+     *
+     * @param context      контекст приложения
+     * @param workerParams параметры задачи
+     */
+    public CatalogSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        CatalogStore store = CatalogStore.getInstance(context);
+        if (System.currentTimeMillis() - store.getSyncedAt() < MIN_SYNC_INTERVAL_MS) {
+            AppLog.d(TAG, () -> "Каталог синхронизирован недавно, пропускаем");
+            return Result.success();
+        }
+
+        ApiService apiService = ApiClient.getClient().create(ApiService.class);
+        Response<CatalogResponse> response;
+        try {
+            response = apiService.getCatalogIfChanged(store.getEtag(), store.getLastModified()).execute();
+        } catch (IOException e) {
+            AppLog.w(TAG, "Сетевая ошибка: " + e.getMessage());
+            return Result.retry();
+        }
+
+        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            store.markSynced();
+            AppLog.d(TAG, () -> "Каталог не изменился");
+        } else if (response.isSuccessful() && response.body() != null) {
+            store.save(response.body(), response.headers().get("ETag"), response.headers().get("Last-Modified"));
+        } else {
+            AppLog.e(TAG, "Ошибка ответа: " + response.code());
+            return Result.retry();
+        }
+
+        prefetchImages(store);
+        return Result.success();
+    }
+
+    /**
+     * Загружает изображения первых категорий верхнего уровня и рекомендуемых товаров.
+     * <p>
+     * Из хранилища читаются только эти элементы ({@link CatalogStore#loadTopLevel(int)}), а не весь каталог.
+     * Загрузки запускаются только для типов строк, размер изображений которых уже известен в этом процессе
+     * ({@link ImageResources#rowImageSize(Category)}): иначе предзагрузка не попала бы в записи кэша строк.
+     * </p>
+     */
+    private void prefetchImages(CatalogStore store) {
+        List<Category> items = store.loadTopLevel(PREFETCH_LIMIT);
+        int started = ImagePrefetcher.prefetch(getApplicationContext(), items);
+        AppLog.d(TAG, () -> "Запущена загрузка изображений: " + started + " из " + items.size());
+    }
+}
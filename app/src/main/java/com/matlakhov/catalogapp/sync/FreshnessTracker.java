@@ -0,0 +1,95 @@
+package com.matlakhov.catalogapp.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Утилитный класс для сбора статистики свежести данных каталога при запуске приложения.
+ * <p>
+ * Для каждого запуска записывается источник первых показанных данных (память процесса,
+ * локальное хранилище, встроенный снимок или сеть) и возраст данных относительно последней синхронизации.
+ * Счётчики хранятся в {@link SharedPreferences} и переживают перезапуск процесса.
+ * </p>
+ */
+public final class FreshnessTracker {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "FreshnessTracker";
+
+    /** Имя файла настроек со счётчиками. */
+    private static final String PREFS_NAME = "catalog_freshness";
+
+    /** Источник данных: каталог уже был в памяти процесса. */
+    public static final String SOURCE_MEMORY = "memory";
+
+    /** Источник данных: локальное хранилище. */
+    public static final String SOURCE_STORE = "store";
+
+    /** Источник данных: встроенный в приложение снимок каталога (первый запуск). */
+    public static final String SOURCE_SNAPSHOT = "snapshot";
+
+    /** Источник данных: сеть (холодный запуск без локальных данных). */
+    public static final String SOURCE_NETWORK = "network";
+
+    /** Один час в миллисекундах. */
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private FreshnessTracker() {
+    }
+
+    /**
+     * Записывает свежесть данных, показанных при запуске.
+     *
+     * @param context  контекст приложения
+     * @param source   источник данных ({@link #SOURCE_MEMORY}, {@link #SOURCE_STORE},
+     *                 {@link #SOURCE_SNAPSHOT} или {@link #SOURCE_NETWORK})
+     * @param syncedAt время последней синхронизации показанных данных (мс), или 0, если неизвестно
+     */
+    public static void recordLaunch(Context context, String source, long syncedAt) {
+        long age = syncedAt > 0 ? Math.max(0, System.currentTimeMillis() - syncedAt) : -1;
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit()
+                .putLong("launches", prefs.getLong("launches", 0) + 1)
+                .putLong("source_" + source, prefs.getLong("source_" + source, 0) + 1)
+                .putLong("age_" + ageBucket(age), prefs.getLong("age_" + ageBucket(age), 0) + 1)
+                .putLong("last_age_ms", age)
+                .apply();
+        AppLog.i(TAG, () -> "Данные при запуске: источник=" + source + ", возраст="
+                + (age >= 0 ? age / 60_000 + " мин" : "неизвестен"));
+    }
+
+    /**
+     * Возвращает накопленные счётчики.
+     *
+     * @param context контекст приложения
+     * @return счётчики, упорядоченные по имени
+     */
+    public static Map<String, Long> getReport(Context context) {
+        Map<String, Long> report = new TreeMap<>();
+        for (Map.Entry<String, ?> entry : context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getAll().entrySet()) {
+            if (entry.getValue() instanceof Long) {
+                report.put(entry.getKey(), (Long) entry.getValue());
+            }
+        }
+        return report;
+    }
+
+    private static String ageBucket(long age) {
+        if (age < 0) {
+            return "unknown";
+        } else if (age < HOUR_MS) {
+            return "lt_1h";
+        } else if (age < 6 * HOUR_MS) {
+            return "lt_6h";
+        } else if (age < 24 * HOUR_MS) {
+            return "lt_24h";
+        }
+        return "ge_24h";
+    }
+}
@@ -0,0 +1,56 @@
+package com.matlakhov.catalogapp.sync;
+
+import android.content.Context;
+import android.util.Size;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.matlakhov.catalogapp.adapters.ImageResources;
+import com.matlakhov.catalogapp.models.Category;
+
+import java.util.List;
+
+/**
+ * Утилитный класс для предварительной загрузки изображений каталога в кэши Glide.
+ * <p>
+ * Изображения загружаются в размере изображения строки ({@link ImageResources#rowImageSize(Category)})
+ * и с той же трансформацией: строки показывают их в {@code ImageView} со {@code scaleType="centerCrop"},
+ * для которого Glide применяет {@code optionalCenterCrop()}. Поэтому предзагруженное изображение
+ * попадает в ту же запись кэша, что и запрос строки. Пока строки нужного типа не размечались, размер
+ * неизвестен и изображение не загружается: загрузка в исходном размере не пригодилась бы строке.
+ * </p>
+ */
+public final class ImagePrefetcher {
+
+    private ImagePrefetcher() {
+    }
+
+    /**
+     * Запускает загрузку изображений указанных элементов в кэши Glide и не ждёт её завершения.
+     * Метод можно вызывать из любого потока.
+     *
+     * @param context контекст приложения
+     * @param items   категории или товары, изображения которых нужно загрузить
+     * @return количество запущенных загрузок
+     */
+    public static int prefetch(Context context, List<Category> items) {
+        RequestManager glide = Glide.with(context.getApplicationContext());
+        int started = 0;
+        for (Category item : items) {
+            if (item == null) {
+                continue;
+            }
+            Size size = ImageResources.rowImageSize(item);
+            if (size == null) {
+                continue;
+            }
+            glide.load(ImageResources.forId(item.getId()))
+                    .optionalCenterCrop()
+                    .diskCacheStrategy(DiskCacheStrategy.ALL)
+                    .preload(size.getWidth(), size.getHeight());
+            started++;
+        }
+        return started;
+    }
+}
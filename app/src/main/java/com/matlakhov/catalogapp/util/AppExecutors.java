@@ -0,0 +1,105 @@
+package com.matlakhov.catalogapp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общие исполнители задач приложения.
+ * <p>
+ * {@link #io()} — пул фоновых потоков для работы с диском и подготовки данных,
+ * {@link #text()} — отдельный поток для моделей строк и раскладки их текста, чтобы она не ждала
+ * сетевые и дисковые задачи пула {@link #io()}, {@link #search()} — отдельный поток поисковых запросов,
+ * {@link #main()} — выполнение в главном потоке.
+ * </p>
+ */
+public final class AppExecutors {
+
+    /** Количество потоков в фоновом пуле. */
+    private static final int IO_THREADS = 2;
+
+    /** Пул фоновых потоков. */
+    private static final ExecutorService IO = Executors.newFixedThreadPool(IO_THREADS, new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "catalog-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Количество потоков раскладки текста. */
+    private static final int TEXT_THREADS = 1;
+
+    /** Потоки подготовки моделей строк и раскладки их текста. */
+    private static final ExecutorService TEXT = Executors.newFixedThreadPool(TEXT_THREADS, new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "catalog-text-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Поток поисковых запросов. */
+    private static final ExecutorService SEARCH = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Исполнитель главного потока (создаётся при первом обращении). */
+    private static Executor main;
+
+    private AppExecutors() {
+    }
+
+    /**
+     * Возвращает пул фоновых потоков.
+     *
+     * @return исполнитель для дисковых операций и подготовки данных
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * Возвращает исполнитель подготовки моделей строк и раскладки текста.
+     *
+     * @return исполнитель, не разделяемый с сетью, базой данных и загрузкой изображений
+     */
+    public static ExecutorService text() {
+        return TEXT;
+    }
+
+    /**
+     * Возвращает поток поисковых запросов.
+     *
+     * @return исполнитель, в котором запросы не ждут сетевые и дисковые задачи пула {@link #io()}
+     */
+    public static ExecutorService search() {
+        return SEARCH;
+    }
+
+    /**
+     * Возвращает исполнитель главного потока.
+     *
+     * @return исполнитель, публикующий задачи в главный {@link Looper}
+     */
+    public static synchronized Executor main() {
+        if (main == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            main = handler::post;
+        }
+        return main;
+    }
+}
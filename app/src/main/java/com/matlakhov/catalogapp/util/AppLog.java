@@ -0,0 +1,195 @@
+package com.matlakhov.catalogapp.util;
+
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.matlakhov.catalogapp.BuildConfig;
+
+import java.util.function.Supplier;
+
+/**
+ * Журналирование приложения поверх {@link Log}.
+ * <p>
+ * Минимальный уровень задаётся при сборке ({@code BuildConfig.LOG_LEVEL}): в отладочной сборке это
+ * {@link Log#DEBUG}, в релизной — {@link Log#INFO}. Константы {@link #DEBUG} и {@link #INFO} известны
+ * компилятору, поэтому блок {@code if (AppLog.DEBUG) { ... }} в релизной сборке удаляется целиком.
+ * Отладочные сообщения передаются через {@link Supplier} и строятся только если будут записаны.
+ * </p>
+ * <p>
+ * Для событий, повторяющихся на каждом элементе (распаковка узлов, строки списков), используется
+ * {@link Sampler}: он записывает каждое N-е событие и не больше заданного числа в секунду.
+ * </p>
+ */
+public final class AppLog {
+
+    /** Записываются ли отладочные сообщения в этой сборке. */
+    public static final boolean DEBUG = BuildConfig.LOG_LEVEL <= Log.DEBUG;
+
+    /** Записываются ли информационные сообщения в этой сборке. */
+    public static final boolean INFO = BuildConfig.LOG_LEVEL <= Log.INFO;
+
+    /** Включено ли журналирование; выключается для сравнения в бенчмарке. */
+    private static volatile boolean enabled = true;
+
+    private AppLog() {
+    }
+
+    /**
+     * Записывает отладочное сообщение.
+     *
+     * @param tag     тег
+     * @param message построитель сообщения; вызывается, только если сообщение будет записано
+     */
+    public static void d(String tag, Supplier<String> message) {
+        if (DEBUG && enabled) {
+            Log.d(tag, message.get());
+        }
+    }
+
+    /**
+     * Записывает информационное сообщение.
+     *
+     * @param tag     тег
+     * @param message построитель сообщения; вызывается, только если сообщение будет записано
+     */
+    public static void i(String tag, Supplier<String> message) {
+        if (INFO && enabled) {
+            Log.i(tag, message.get());
+        }
+    }
+
+    /**
+     * Записывает предупреждение.
+     *
+     * @param tag     тег
+     * @param message сообщение
+     */
+    public static void w(String tag, String message) {
+        if (enabled) {
+            Log.w(tag, message);
+        }
+    }
+
+    /**
+     * Записывает ошибку.
+     *
+     * @param tag     тег
+     * @param message сообщение
+     */
+    public static void e(String tag, String message) {
+        if (enabled) {
+            Log.e(tag, message);
+        }
+    }
+
+    /**
+     * Записывает ошибку вместе с исключением.
+     *
+     * @param tag     тег
+     * @param message сообщение
+     * @param error   исключение
+     */
+    public static void e(String tag, String message, Throwable error) {
+        if (enabled) {
+            Log.e(tag, message, error);
+        }
+    }
+
+    /**
+     * Создаёт выборочный журнал для событий, повторяющихся на каждом элементе.
+     *
+     * @param tag          тег
+     * @param sampleEvery  записывается каждое {@code sampleEvery}-е событие
+     * @param maxPerSecond не больше стольких записей в секунду
+     * @return выборочный журнал
+     */
+    public static Sampler sampler(String tag, int sampleEvery, int maxPerSecond) {
+        return new Sampler(tag, sampleEvery, maxPerSecond);
+    }
+
+    /**
+     * Включает или выключает журналирование во время выполнения.
+     *
+     * @param value false, чтобы ничего не записывать
+     */
+    @VisibleForTesting
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Выборочный журнал отладочных событий.
+     * <p>
+     * Использование: {@code if (AppLog.DEBUG && sampler.sample()) sampler.d("...")} — сообщение строится
+     * только для отобранных событий. Количество пропущенных с прошлой записи событий добавляется к сообщению.
+     * </p>
+     */
+    public static final class Sampler {
+
+        /** Длина окна ограничения частоты (нс). */
+        private static final long WINDOW_NANOS = 1_000_000_000L;
+
+        private final String tag;
+        private final int sampleEvery;
+        private final int maxPerSecond;
+
+        /** Все события. */
+        private long events;
+
+        /** События, пропущенные с последней записи. */
+        private long skipped;
+
+        /** Начало текущего окна ({@link System#nanoTime()}). */
+        private long windowStart;
+
+        /** Записи в текущем окне. */
+        private int windowCount;
+
+        private Sampler(String tag, int sampleEvery, int maxPerSecond) {
+            this.tag = tag;
+            this.sampleEvery = Math.max(1, sampleEvery);
+            this.maxPerSecond = maxPerSecond;
+        }
+
+        /**
+         * Учитывает событие и решает, нужно ли его записать.
+         *
+         * @return true, если событие отобрано и его нужно передать в {@link #d(String)}
+         */
+        public synchronized boolean sample() {
+            if (!DEBUG || !enabled) {
+                return false;
+            }
+            if (events++ % sampleEvery != 0) {
+                skipped++;
+                return false;
+            }
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            if (windowCount >= maxPerSecond) {
+                skipped++;
+                return false;
+            }
+            windowCount++;
+            return true;
+        }
+
+        /**
+         * Записывает отобранное событие.
+         *
+         * @param message сообщение
+         */
+        public void d(String message) {
+            long count;
+            synchronized (this) {
+                count = skipped;
+                skipped = 0;
+            }
+            Log.d(tag, count > 0 ? message + " (пропущено " + count + ")" : message);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.matlakhov.catalogapp.util;
+
+/**
+ * Однобайтовое представление русского текста.
+ * <p>
+ * Строки с символами вне Latin-1 среда выполнения хранит по два байта на символ, поэтому длинное описание
+ * на кириллице занимает вдвое больше памяти, чем нужно. Здесь ASCII записывается как есть, буквы
+ * {@code А-я} — байтами {@code 0x80-0xBF}, а {@code Ё}, {@code ё} и частая типографика — байтами
+ * из {@link #EXTRA}. Текст с другими символами не кодируется.
+ * </p>
+ */
+public final class CompactText {
+
+    /** Первый байт букв {@code А-я}. */
+    private static final int CYRILLIC_BASE = 0x80;
+
+    /** Первый байт символов из {@link #EXTRA}. */
+    private static final int EXTRA_BASE = 0xC0;
+
+    /** Символы вне {@code А-я}, кодируемые байтами начиная с {@link #EXTRA_BASE}. */
+    private static final char[] EXTRA = {'Ё', 'ё', '«', '»', '—', '–', '№', '\u00A0', '…'};
+
+    private CompactText() {
+    }
+
+    /**
+     * Кодирует текст по одному байту на символ.
+     *
+     * @param text исходный текст
+     * @return закодированный текст, или null, если в тексте есть символы без однобайтового кода
+     * или он состоит только из Latin-1 и уже хранится средой выполнения по байту на символ
+     */
+    public static byte[] encode(String text) {
+        int length = text.length();
+        byte[] bytes = new byte[length];
+        boolean wide = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int code;
+            if (c < 0x80) {
+                code = c;
+            } else if (c >= 'А' && c <= 'я') {
+                code = CYRILLIC_BASE + (c - 'А');
+                wide = true;
+            } else {
+                int extra = indexOfExtra(c);
+                if (extra < 0) {
+                    return null;
+                }
+                code = EXTRA_BASE + extra;
+                wide |= c > 0xFF;
+            }
+            bytes[i] = (byte) code;
+        }
+        return wide ? bytes : null;
+    }
+
+    /**
+     * Восстанавливает текст, закодированный {@link #encode(String)}.
+     *
+     * @param bytes закодированный текст
+     * @return исходный текст
+     */
+    public static String decode(byte[] bytes) {
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            int code = bytes[i] & 0xFF;
+            if (code < CYRILLIC_BASE) {
+                chars[i] = (char) code;
+            } else if (code < EXTRA_BASE) {
+                chars[i] = (char) ('А' + code - CYRILLIC_BASE);
+            } else {
+                chars[i] = EXTRA[code - EXTRA_BASE];
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int indexOfExtra(char c) {
+        for (int i = 0; i < EXTRA.length; i++) {
+            if (EXTRA[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
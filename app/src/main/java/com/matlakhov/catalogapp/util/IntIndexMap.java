@@ -0,0 +1,106 @@
+package com.matlakhov.catalogapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Отображение {@code int -> int} с открытой адресацией, без упаковки ключей и значений.
+ * <p>
+ * Используется для индексов по идентификаторам узлов каталога, где {@code HashMap<Integer, Integer>}
+ * создавал бы объект на каждую запись. Удаление не поддерживается: индекс строится целиком и заменяется.
+ * </p>
+ */
+public final class IntIndexMap {
+
+    /** Пустая ячейка таблицы ключей. */
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+
+    /**
+     * @param expectedSize ожидаемое количество записей
+     */
+    public IntIndexMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Добавляет или заменяет значение для ключа.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+        int slot = find(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Возвращает значение для ключа.
+     *
+     * @param key     ключ
+     * @param missing значение, возвращаемое при отсутствии ключа
+     * @return значение, или {@code missing}
+     */
+    public int get(int key, int missing) {
+        if (key == EMPTY) {
+            return hasEmptyKey ? emptyKeyValue : missing;
+        }
+        int slot = find(keys, key);
+        return keys[slot] == EMPTY ? missing : values[slot];
+    }
+
+    /**
+     * @return количество записей
+     */
+    public int size() {
+        return size + (hasEmptyKey ? 1 : 0);
+    }
+
+    private static int find(int[] table, int key) {
+        int mask = table.length - 1;
+        int slot = mix(key) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
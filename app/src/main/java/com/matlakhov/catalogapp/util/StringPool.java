@@ -0,0 +1,71 @@
+package com.matlakhov.catalogapp.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Пул строк на время разбора одного каталога.
+ * <p>
+ * Узлы каталога часто повторяют одни и те же описания, названия и префиксы URL изображений. Пул
+ * возвращает для равных значений один и тот же экземпляр, а длинные описания — общий массив
+ * {@link CompactText}, поэтому повторы хранятся в дереве один раз. Пул не потокобезопасен и нужен только
+ * во время построения дерева: после разбора его отбрасывают, а общие экземпляры остаются в узлах.
+ * </p>
+ */
+public final class StringPool {
+
+    /** Минимальная длина описания, которое хранится в виде {@link CompactText}. */
+    public static final int COMPACT_MIN_LENGTH = 64;
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, byte[]> packed = new HashMap<>();
+
+    /** Количество значений, заменённых уже хранящимся в пуле экземпляром. */
+    private int sharedCount;
+
+    /**
+     * Возвращает общий экземпляр строки.
+     *
+     * @param value строка
+     * @return ранее сохранённая равная строка, или сама строка, если её ещё не было; null для null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = strings.putIfAbsent(value, value);
+        if (existing == null) {
+            return value;
+        }
+        sharedCount++;
+        return existing;
+    }
+
+    /**
+     * Возвращает общее компактное представление текста.
+     *
+     * @param value текст
+     * @return общий массив {@link CompactText#encode(String)}, или null, если текст не кодируется
+     */
+    public byte[] pack(String value) {
+        byte[] existing = packed.get(value);
+        if (existing != null) {
+            sharedCount++;
+            return existing;
+        }
+        byte[] bytes = CompactText.encode(value);
+        if (bytes != null) {
+            packed.put(value, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Возвращает количество повторов, для которых был использован уже хранящийся экземпляр.
+     *
+     * @return количество общих значений
+     */
+    public int getSharedCount() {
+        return sharedCount;
+    }
+}
@@ -0,0 +1,170 @@
+package com.matlakhov.catalogapp.adapters;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.matlakhov.catalogapp.R;
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Проверяет, что привязка строк {@link CategoryAdapter} и {@link ProductAdapter} при прокрутке
+ * сгенерированного каталога укладывается в бюджет из {@code adapter_bind_budget.properties}:
+ * по выделенной памяти и времени на привязку и по количеству созданных строк.
+ * <p>
+ * С системным свойством {@link #RECORD_PROPERTY} (Gradle: {@code -PrecordBindBudget}) тест ничего
+ * не проверяет, а записывает измеренные значения с запасом {@link #HEADROOM} в файл бюджета исходников
+ * тестов; файл коммитится вместе с изменением, осознанно поменявшим стоимость строки.
+ * </p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AdapterBindBudgetTest {
+
+    private static final String BUDGET_FILE = "adapter_bind_budget.properties";
+
+    /** Системное свойство режима записи бюджета. */
+    private static final String RECORD_PROPERTY = "adapterBindBudget.record";
+
+    /** Путь к файлу бюджета от каталога модуля, в котором Gradle запускает тесты. */
+    private static final String BUDGET_SOURCE = "src/test/resources/" + BUDGET_FILE;
+
+    /** Запас над измеренными памятью и временем при записи бюджета. */
+    private static final double HEADROOM = 1.25;
+
+    /** Значения, измеренные в режиме записи. */
+    private static final Properties recorded = new Properties();
+
+    /** Строк в вертикальном списке. */
+    private static final int CATALOG_ROWS = 2000;
+
+    /** Каждая такая по счёту строка списка категорий — товар. */
+    private static final int PRODUCT_EVERY = 4;
+
+    /** Строк вертикального списка на экране. */
+    private static final int CATALOG_VISIBLE = 12;
+
+    /** Товаров в горизонтальном списке и на экране. */
+    private static final int RECOMMENDED = 500;
+    private static final int RECOMMENDED_VISIBLE = 4;
+
+    private Context context;
+    private Properties budget;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("JVM не считает выделенную память", AdapterBindHarness.isAllocationCountingSupported());
+        context = new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.Theme_CatalogApp);
+        budget = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(BUDGET_FILE)) {
+            assertNotNull("Нет файла бюджета " + BUDGET_FILE, in);
+            budget.load(in);
+        }
+    }
+
+    @Test
+    public void categoryAdapterStaysWithinBudget() {
+        List<Category> rows = new ArrayList<>();
+        for (int i = 0; i < CATALOG_ROWS; i++) {
+            rows.add(i % PRODUCT_EVERY == PRODUCT_EVERY - 1 ? product(i) : category(i));
+        }
+        CategoryAdapter adapter = new CategoryAdapter(context, rows, (category, image) -> { });
+        RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+
+        AdapterBindHarness.Result result = AdapterBindHarness.scroll(adapter, parent, CATALOG_VISIBLE);
+        assertWithinBudget("category", result);
+    }
+
+    @Test
+    public void productAdapterStaysWithinBudget() {
+        List<Category> products = new ArrayList<>();
+        for (int i = 0; i < RECOMMENDED; i++) {
+            products.add(product(i));
+        }
+        ProductAdapter adapter = new ProductAdapter(context, products);
+        RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false));
+
+        AdapterBindHarness.Result result = AdapterBindHarness.scroll(adapter, parent, RECOMMENDED_VISIBLE);
+        assertWithinBudget("product", result);
+    }
+
+    /**
+     * Записывает измеренный бюджет в исходники тестов, если тесты запущены в режиме записи.
+     */
+    @AfterClass
+    public static void writeRecordedBudget() throws IOException {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(Paths.get(BUDGET_SOURCE), StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int separator = line.indexOf('=');
+            if (!line.startsWith("#") && separator > 0 && recorded.containsKey(line.substring(0, separator))) {
+                String key = line.substring(0, separator);
+                lines.set(i, key + "=" + recorded.getProperty(key));
+            }
+        }
+        Files.write(Paths.get(BUDGET_SOURCE), lines, StandardCharsets.ISO_8859_1);
+    }
+
+    private void assertWithinBudget(String prefix, AdapterBindHarness.Result result) {
+        if (Boolean.getBoolean(RECORD_PROPERTY)) {
+            recorded.setProperty(prefix + ".bytesPerBind", String.valueOf((long) (result.bytesPerBind * HEADROOM)));
+            recorded.setProperty(prefix + ".microsPerBind", String.valueOf((long) Math.ceil(result.microsPerBind * HEADROOM)));
+            return;
+        }
+        long maxBytes = Long.parseLong(budget.getProperty(prefix + ".bytesPerBind"));
+        double maxMicros = Double.parseDouble(budget.getProperty(prefix + ".microsPerBind"));
+        int maxCreated = Integer.parseInt(budget.getProperty(prefix + ".maxCreatedHolders"));
+        assertTrue(prefix + ": выделено " + result.bytesPerBind + " байт на привязку, бюджет " + maxBytes,
+                result.bytesPerBind <= maxBytes);
+        assertTrue(prefix + ": " + result.microsPerBind + " мкс на привязку, бюджет " + maxMicros,
+                result.microsPerBind <= maxMicros);
+        assertTrue(prefix + ": создано " + result.createdHolders + " строк, бюджет " + maxCreated,
+                result.createdHolders <= maxCreated);
+    }
+
+    private static Category category(int index) {
+        Category category = new Category();
+        category.setId(10_000 + index);
+        category.setName("Категория " + index);
+        category.setDescription("Описание категории " + index + " для строки списка каталога");
+        category.setImageUrl("https://example.com/category/" + index + ".jpg");
+        return category;
+    }
+
+    private static Category product(int index) {
+        Category product = new Category();
+        product.setId(50_000 + index);
+        product.setName("Товар " + index);
+        product.setDescription("Описание товара " + index);
+        product.setImageUrl("https://example.com/product/" + index + ".jpg");
+        product.setPrice(100.0 + index);
+        return product;
+    }
+}
@@ -0,0 +1,140 @@
+package com.matlakhov.catalogapp.adapters;
+
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Имитация прокрутки списка для измерения стоимости привязки строк адаптера.
+ * <p>
+ * Строки проходят через окно из {@code visibleRows} позиций так же, как в {@link RecyclerView}:
+ * строка, покинувшая окно, возвращается в пул своего типа ({@code onViewRecycled}), а для новой позиции
+ * берётся строка из пула или создаётся {@code onCreateViewHolder}. Объём памяти, выделенной текущим
+ * потоком, считается через {@code com.sun.management.ThreadMXBean}; работа фоновых потоков (расчёт
+ * раскладки текста, загрузка изображений) в него не входит.
+ * </p>
+ */
+final class AdapterBindHarness {
+
+    /**
+     * Результат прокрутки.
+     */
+    static final class Result {
+        /** Количество измеренных привязок. */
+        int binds;
+        /** Количество созданных строк за всю прокрутку. */
+        int createdHolders;
+        /** Средний объём памяти, выделенной на одну привязку (байт). */
+        long bytesPerBind;
+        /** Среднее время одной привязки (мкс). */
+        double microsPerBind;
+
+        @Override
+        public String toString() {
+            return "binds=" + binds + ", createdHolders=" + createdHolders + ", bytesPerBind=" + bytesPerBind
+                    + ", microsPerBind=" + String.format(java.util.Locale.US, "%.1f", microsPerBind);
+        }
+    }
+
+    private AdapterBindHarness() {
+    }
+
+    /**
+     * Проверяет, умеет ли JVM считать выделенную потоком память.
+     *
+     * @return true, если измерение памяти доступно
+     */
+    static boolean isAllocationCountingSupported() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * Считает память, выделенную текущим потоком при выполнении действия.
+     *
+     * @param action измеряемое действие
+     * @return количество выделенных байт
+     */
+    static long allocatedBytes(Runnable action) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        action.run();
+        return bean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * Прокручивает адаптер от начала до конца дважды: первый проход прогревает пулы строк и кэши,
+     * второй измеряется.
+     *
+     * @param adapter     адаптер со всеми элементами
+     * @param parent      родитель строк
+     * @param visibleRows количество строк, одновременно находящихся на экране
+     * @param <VH>        тип строки
+     * @return результат измеренного прохода
+     */
+    static <VH extends RecyclerView.ViewHolder> Result scroll(RecyclerView.Adapter<VH> adapter, ViewGroup parent,
+                                                             int visibleRows) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        Map<Integer, ArrayDeque<VH>> pool = new HashMap<>();
+        int[] created = new int[1];
+        pass(adapter, parent, visibleRows, pool, created);
+
+        long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int binds = pass(adapter, parent, visibleRows, pool, created);
+        long elapsed = System.nanoTime() - start;
+        long bytes = bean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        Result result = new Result();
+        result.binds = binds;
+        result.createdHolders = created[0];
+        result.bytesPerBind = binds == 0 ? 0 : bytes / binds;
+        result.microsPerBind = binds == 0 ? 0 : elapsed / 1000.0 / binds;
+        return result;
+    }
+
+    private static <VH extends RecyclerView.ViewHolder> int pass(RecyclerView.Adapter<VH> adapter, ViewGroup parent,
+                                                                int visibleRows, Map<Integer, ArrayDeque<VH>> pool,
+                                                                int[] created) {
+        int count = adapter.getItemCount();
+        ArrayDeque<VH> window = new ArrayDeque<>(visibleRows + 1);
+        ArrayDeque<Integer> windowTypes = new ArrayDeque<>(visibleRows + 1);
+        for (int position = 0; position < count; position++) {
+            if (window.size() == visibleRows) {
+                VH recycled = window.pollFirst();
+                int recycledType = windowTypes.pollFirst();
+                adapter.onViewRecycled(recycled);
+                pool.computeIfAbsent(recycledType, type -> new ArrayDeque<>()).addLast(recycled);
+            }
+            int type = adapter.getItemViewType(position);
+            ArrayDeque<VH> scrap = pool.get(type);
+            VH holder = scrap != null ? scrap.pollFirst() : null;
+            if (holder == null) {
+                holder = adapter.onCreateViewHolder(parent, type);
+                created[0]++;
+            }
+            adapter.onBindViewHolder(holder, position);
+            window.addLast(holder);
+            windowTypes.addLast(type);
+        }
+        // Экран очищается, как при уходе со списка
+        while (!window.isEmpty()) {
+            VH recycled = window.pollFirst();
+            adapter.onViewRecycled(recycled);
+            pool.computeIfAbsent(windowTypes.pollFirst(), type -> new ArrayDeque<>()).addLast(recycled);
+        }
+        return count;
+    }
+}
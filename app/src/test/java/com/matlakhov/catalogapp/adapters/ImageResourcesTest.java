@@ -0,0 +1,41 @@
+package com.matlakhov.catalogapp.adapters;
+
+import com.matlakhov.catalogapp.R;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Проверяет, что выбор изображения строки не выделяет память: {@link ImageResources#forId(int)}
+ * вызывается при каждой привязке строки, а такие выделения теряются в среднем бюджете привязки
+ * {@link AdapterBindBudgetTest}.
+ */
+public class ImageResourcesTest {
+
+    private static final int CALLS = 100_000;
+
+    @Test
+    public void forIdDoesNotAllocate() {
+        assumeTrue("JVM не считает выделенную память", AdapterBindHarness.isAllocationCountingSupported());
+        int[] sink = new int[1];
+        Runnable lookups = () -> {
+            for (int i = 0; i < CALLS; i++) {
+                // Идентификаторы больше 127 не попадают в кэш упакованных Integer
+                sink[0] += ImageResources.forId(1000 + i % 3000);
+            }
+        };
+        // Прогрев, чтобы измерять скомпилированный код
+        lookups.run();
+        lookups.run();
+
+        assertEquals("выделено байт за " + CALLS + " вызовов", 0, AdapterBindHarness.allocatedBytes(lookups));
+    }
+
+    @Test
+    public void forIdFallsBackToErrorImage() {
+        assertEquals(R.drawable.mirror, ImageResources.forId(1001));
+        assertEquals(R.drawable.error_image, ImageResources.forId(-1));
+    }
+}
@@ -0,0 +1,210 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogNodeChange;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Утилитный класс для построения дельты между двумя версиями каталога.
+ * <p>
+ * Используется серверной стороной протокола синхронизации (см. {@link com.matlakhov.catalogapp.network.LocalCatalogServer}).
+ * Дельта содержит:
+ * <ul>
+ *     <li>удалённые узлы — только верхние узлы удалённых поддеревьев;</li>
+ *     <li>добавленные узлы — с поддеревом и позицией, в порядке обхода дерева в глубину,
+ *     поэтому позиции внутри одного родителя идут по возрастанию;</li>
+ *     <li>изменённые узлы — только собственные поля, без вложенных элементов.</li>
+ * </ul>
+ * Перемещение узла к другому родителю или изменение порядка элементов родителя передаётся
+ * как удаление и повторное добавление.
+ * </p>
+ */
+public final class CatalogDiff {
+
+    /**
+     * Информация о положении узла в дереве.
+     */
+    private static final class NodeInfo {
+        final Category node;
+        final Integer parentId;
+
+        NodeInfo(Category node, Integer parentId) {
+            this.node = node;
+            this.parentId = parentId;
+        }
+    }
+
+    private CatalogDiff() {
+    }
+
+    /**
+     * Строит дельту, переводящую каталог {@code from} в каталог {@code to}.
+     *
+     * @param from исходная версия каталога
+     * @param to   новая версия каталога
+     * @return дельта с версиями {@code from.getVersion()} и {@code to.getVersion()}
+     */
+    public static CatalogDelta compute(CatalogResponse from, CatalogResponse to) {
+        Map<Integer, NodeInfo> oldNodes = new HashMap<>();
+        Map<Integer, NodeInfo> newNodes = new HashMap<>();
+        Map<Integer, List<Category>> oldChildren = new HashMap<>();
+        Map<Integer, List<Category>> newChildren = new HashMap<>();
+        index(from.getCatalog(), null, oldNodes, oldChildren);
+        index(to.getCatalog(), null, newNodes, newChildren);
+
+        Set<Integer> moved = findMoved(oldNodes, newNodes, oldChildren, newChildren);
+
+        List<Integer> removed = new ArrayList<>();
+        collectRemoved(from.getCatalog(), newNodes, moved, removed);
+
+        List<CatalogNodeChange> added = new ArrayList<>();
+        List<Category> modified = new ArrayList<>();
+        collectAddedAndModified(to.getCatalog(), null, oldNodes, moved, added, modified);
+
+        CatalogDelta delta = new CatalogDelta();
+        delta.setBaseVersion(from.getVersion());
+        delta.setVersion(to.getVersion());
+        delta.setRemoved(removed);
+        delta.setAdded(added);
+        delta.setModified(modified);
+        if (!sameProducts(from.getProducts(), to.getProducts())) {
+            delta.setProducts(to.getProducts());
+        }
+        return delta;
+    }
+
+    /**
+     * Индексирует дерево: узлы по идентификатору и списки детей по идентификатору родителя.
+     */
+    private static void index(List<Category> items, Integer parentId, Map<Integer, NodeInfo> nodes,
+                              Map<Integer, List<Category>> children) {
+        children.put(parentId, items);
+        for (Category item : items) {
+            if (item == null) {
+                continue;
+            }
+            nodes.put(item.getId(), new NodeInfo(item, parentId));
+            index(item.getItems(), item.getId(), nodes, children);
+        }
+    }
+
+    /**
+     * Находит узлы, которые сменили родителя или относительный порядок среди сохранившихся соседей.
+     */
+    private static Set<Integer> findMoved(Map<Integer, NodeInfo> oldNodes, Map<Integer, NodeInfo> newNodes,
+                                          Map<Integer, List<Category>> oldChildren,
+                                          Map<Integer, List<Category>> newChildren) {
+        Set<Integer> moved = new HashSet<>();
+        for (Map.Entry<Integer, NodeInfo> entry : newNodes.entrySet()) {
+            NodeInfo old = oldNodes.get(entry.getKey());
+            if (old != null && !Objects.equals(old.parentId, entry.getValue().parentId)) {
+                moved.add(entry.getKey());
+            }
+        }
+
+        for (Map.Entry<Integer, List<Category>> entry : newChildren.entrySet()) {
+            List<Category> oldList = oldChildren.get(entry.getKey());
+            if (oldList == null) {
+                continue;
+            }
+            List<Integer> oldOrder = survivingOrder(oldList, newNodes, entry.getKey(), moved);
+            List<Integer> newOrder = survivingOrder(entry.getValue(), oldNodes, entry.getKey(), moved);
+            if (!oldOrder.equals(newOrder)) {
+                moved.addAll(newOrder);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Возвращает порядок детей, которые присутствуют в обеих версиях под тем же родителем.
+     */
+    private static List<Integer> survivingOrder(List<Category> items, Map<Integer, NodeInfo> otherNodes,
+                                                Integer parentId, Set<Integer> moved) {
+        List<Integer> order = new ArrayList<>();
+        for (Category item : items) {
+            if (item == null) {
+                continue;
+            }
+            NodeInfo other = otherNodes.get(item.getId());
+            if (other != null && Objects.equals(other.parentId, parentId) && !moved.contains(item.getId())) {
+                order.add(item.getId());
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Собирает верхние узлы удалённых или перемещённых поддеревьев старой версии.
+     */
+    private static void collectRemoved(List<Category> items, Map<Integer, NodeInfo> newNodes, Set<Integer> moved,
+                                       List<Integer> removed) {
+        for (Category item : items) {
+            if (item == null) {
+                continue;
+            }
+            if (!newNodes.containsKey(item.getId()) || moved.contains(item.getId())) {
+                removed.add(item.getId());
+            } else {
+                collectRemoved(item.getItems(), newNodes, moved, removed);
+            }
+        }
+    }
+
+    /**
+     * Собирает добавленные поддеревья и изменённые узлы новой версии в порядке обхода в глубину.
+     */
+    private static void collectAddedAndModified(List<Category> items, Integer parentId,
+                                                Map<Integer, NodeInfo> oldNodes, Set<Integer> moved,
+                                                List<CatalogNodeChange> added, List<Category> modified) {
+        for (int position = 0; position < items.size(); position++) {
+            Category item = items.get(position);
+            if (item == null) {
+                continue;
+            }
+            NodeInfo old = oldNodes.get(item.getId());
+            if (old == null || moved.contains(item.getId())) {
+                added.add(new CatalogNodeChange(parentId, position, item));
+                continue;
+            }
+            if (!old.node.hasSameFields(item)) {
+                Category fields = new Category();
+                fields.setId(item.getId());
+                fields.copyFieldsFrom(item);
+                modified.add(fields);
+            }
+            collectAddedAndModified(item.getItems(), item.getId(), oldNodes, moved, added, modified);
+        }
+    }
+
+    /**
+     * Сравнивает списки рекомендуемых товаров по всем полям.
+     */
+    private static boolean sameProducts(List<Product> a, List<Product> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            Product x = a.get(i);
+            Product y = b.get(i);
+            if (x.getId() != y.getId()
+                    || Double.compare(x.getPrice(), y.getPrice()) != 0
+                    || !Objects.equals(x.getName(), y.getName())
+                    || !Objects.equals(x.getImageUrl(), y.getImageUrl())
+                    || !Objects.equals(x.getDescription(), y.getDescription())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,366 @@
+package com.matlakhov.catalogapp.data;
+
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogNodeChange;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.PricePatch;
+import com.matlakhov.catalogapp.search.SearchIndex;
+import com.matlakhov.catalogapp.snapshot.SnapshotNode;
+import com.matlakhov.catalogapp.snapshot.SnapshotReader;
+import com.matlakhov.catalogapp.snapshot.SnapshotWriter;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет публикацию версий каталога ({@link CatalogSnapshot}) при одновременных писателях и читателях.
+ */
+public class CatalogSnapshotConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 3;
+    private static final int DELTAS_PER_WRITER = 300;
+    private static final int CATEGORIES_PER_ROOT = 4;
+    private static final int PRODUCTS_PER_CATEGORY = 3;
+
+    /** Первый идентификатор товаров, добавляемых писателями. */
+    private static final int ADDED_ID_BASE = 1_000_000;
+
+    /** Категория, поля товаров которой меняют дельты; цены остальных товаров меняет поток обновлений. */
+    private static final int MODIFIED_CATEGORY = CATEGORIES_PER_ROOT - 1;
+
+    private static Category node(int id, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName("Узел " + id);
+        category.setPrice(price);
+        for (Category item : items) {
+            category.addItem(Integer.MAX_VALUE, item);
+        }
+        return category;
+    }
+
+    /** Корень писателя {@code root}: идентификаторы категорий — root*100+i, товаров — root*10000+i*100+j. */
+    private static Category root(int root) {
+        Category node = node(root, null);
+        for (int i = 0; i < CATEGORIES_PER_ROOT; i++) {
+            Category category = node(categoryId(root, i), null);
+            for (int j = 0; j < PRODUCTS_PER_CATEGORY; j++) {
+                category.addItem(Integer.MAX_VALUE, node(productId(root, i, j), 100.0));
+            }
+            node.addItem(Integer.MAX_VALUE, category);
+        }
+        return node;
+    }
+
+    private static int categoryId(int root, int category) {
+        return root * 100 + category;
+    }
+
+    private static int productId(int root, int category, int product) {
+        return root * 10_000 + category * 100 + product;
+    }
+
+    private static CatalogRepository repository() {
+        List<Category> roots = new ArrayList<>();
+        for (int w = 1; w <= WRITERS; w++) {
+            roots.add(root(w));
+        }
+        CatalogRepository repository = new CatalogRepository();
+        repository.restore(roots, Collections.singletonList(node(productId(1, 0, 0), 100.0)), 1);
+        return repository;
+    }
+
+    private static int countNodes(List<Category> nodes) {
+        int count = 0;
+        for (Category node : nodes) {
+            count += 1 + countNodes(node.getItems());
+        }
+        return count;
+    }
+
+    private static CatalogDelta addProduct(long baseVersion, int parentId, int id) {
+        CatalogDelta delta = new CatalogDelta();
+        delta.setBaseVersion(baseVersion);
+        delta.setVersion(baseVersion + 1);
+        delta.setAdded(Collections.singletonList(new CatalogNodeChange(parentId, 0, node(id, 1.0))));
+        return delta;
+    }
+
+    /**
+     * Поля товара версии {@code k}: название, описание и цена должны всегда читаться вместе.
+     */
+    private static Category fieldsOf(int id, long k) {
+        Category fields = node(id, 100.0 + k);
+        fields.setName("Товар " + k);
+        fields.setDescription("Описание " + k);
+        return fields;
+    }
+
+    /**
+     * Проверяет согласованность полей каждого узла: поля из дельты относятся к одной версии,
+     * а наличие соответствует цене из того же изменения.
+     */
+    private static void assertFieldsConsistent(List<Category> nodes) {
+        for (Category node : nodes) {
+            String name = node.getName();
+            String description = node.getDescription();
+            Double price = node.getPrice();
+            Boolean available = node.getAvailable();
+            if (name.startsWith("Товар ")) {
+                long k = Long.parseLong(name.substring("Товар ".length()));
+                assertEquals(name, "Описание " + k, description);
+                assertEquals(name, 100.0 + k, price, 0.0);
+            } else if (available != null) {
+                assertEquals("Узел " + node.getId(), ((long) (price - 100.0)) % 2 == 0, available);
+            }
+            assertFieldsConsistent(node.getItems());
+        }
+    }
+
+    /** Строковое представление всех полей дерева для проверки неизменности снимка. */
+    private static void describe(List<Category> nodes, StringBuilder out) {
+        for (Category node : nodes) {
+            out.append(node.getId()).append('|').append(node.getName()).append('|').append(node.getDescription())
+                    .append('|').append(node.getPrice()).append('|').append(node.getAvailable()).append('[');
+            describe(node.getItems(), out);
+            out.append(']');
+        }
+    }
+
+    private static String describe(CatalogSnapshot snapshot) {
+        StringBuilder out = new StringBuilder();
+        describe(snapshot.getCatalog(), out);
+        describe(snapshot.getRecommended(), out);
+        return out.toString();
+    }
+
+    @Test(timeout = 60_000)
+    public void readersSeeConsistentVersionsWhileWritersPublish() throws Exception {
+        CatalogRepository repository = repository();
+        int initialNodes = countNodes(repository.getCatalog());
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int w = 1; w <= WRITERS; w++) {
+            int root = w;
+            writers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < DELTAS_PER_WRITER; i++) {
+                        int parentId = categoryId(root, i % CATEGORIES_PER_ROOT);
+                        int id = ADDED_ID_BASE + root * DELTAS_PER_WRITER + i;
+                        int modifiedId = productId(root, MODIFIED_CATEGORY, i % PRODUCTS_PER_CATEGORY);
+                        // Другой писатель мог опубликовать версию между чтением и применением: повторяем
+                        while (true) {
+                            long version = repository.getVersion();
+                            CatalogDelta delta = addProduct(version, parentId, id);
+                            delta.setModified(Collections.singletonList(fieldsOf(modifiedId, version)));
+                            if (repository.applyDelta(delta) != null) {
+                                break;
+                            }
+                            Thread.yield();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }, "writer-" + w));
+        }
+        // Цены и наличие меняются параллельно со структурными изменениями
+        writers.add(new Thread(() -> {
+            Random random = new Random(7);
+            try {
+                start.await();
+                for (int i = 0; i < DELTAS_PER_WRITER; i++) {
+                    int id = productId(1 + random.nextInt(WRITERS), random.nextInt(MODIFIED_CATEGORY),
+                            random.nextInt(PRODUCTS_PER_CATEGORY));
+                    repository.applyPricePatches(Collections.singletonList(
+                            new PricePatch(id, 100.0 + i, i % 2 == 0)));
+                }
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        }, "prices"));
+
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    int lastGeneration = 0;
+                    do {
+                        CatalogSnapshot snapshot = repository.getSnapshot();
+                        assertTrue("Номер состояния уменьшился", snapshot.getGeneration() >= lastGeneration);
+                        lastGeneration = snapshot.getGeneration();
+                        int expected = initialNodes + (int) (snapshot.getVersion() - 1);
+                        assertEquals(expected, countNodes(snapshot.getCatalog()));
+                        assertFieldsConsistent(snapshot.getCatalog());
+                        assertFieldsConsistent(snapshot.getRecommended());
+                        String fields = describe(snapshot);
+                        Thread.yield();
+                        // Снимок не меняется, пока писатели публикуют следующие версии
+                        assertEquals(expected, countNodes(snapshot.getCatalog()));
+                        assertTrue("Поля снимка изменились после публикации", fields.equals(describe(snapshot)));
+                    } while (writing.get());
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }, "reader-" + r));
+        }
+
+        readers.forEach(Thread::start);
+        writers.forEach(Thread::start);
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(50));
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Ошибки в потоках: " + failures.size(), failures.peek());
+        }
+        CatalogSnapshot last = repository.getSnapshot();
+        assertEquals(1 + WRITERS * DELTAS_PER_WRITER, last.getVersion());
+        assertEquals(initialNodes + WRITERS * DELTAS_PER_WRITER, countNodes(last.getCatalog()));
+        for (int w = 1; w <= WRITERS; w++) {
+            for (int i = 0; i < DELTAS_PER_WRITER; i++) {
+                int id = ADDED_ID_BASE + w * DELTAS_PER_WRITER + i;
+                assertNotNull("Не найден узел " + id, repository.findById(id));
+                assertTrue(repository.findById(categoryId(w, i % CATEGORIES_PER_ROOT)).indexOfItem(id) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void deltaSharesUnchangedSubtrees() {
+        CatalogRepository repository = repository();
+        CatalogSnapshot before = repository.getSnapshot();
+        Category oldRoot = before.getCatalog().get(0);
+        Category oldCategory = oldRoot.getItems().get(0);
+        Category untouchedCategory = oldRoot.getItems().get(1);
+        int oldSize = oldCategory.getItems().size();
+
+        assertNotNull(repository.applyDelta(addProduct(1, categoryId(1, 0), ADDED_ID_BASE)));
+        CatalogSnapshot after = repository.getSnapshot();
+
+        assertEquals(2, after.getVersion());
+        assertTrue(after.getGeneration() > before.getGeneration());
+        // Путь от корня до изменённой категории скопирован, прежняя версия не изменилась
+        assertNotSame(oldRoot, after.getCatalog().get(0));
+        assertNotSame(oldCategory, after.getCatalog().get(0).getItems().get(0));
+        assertEquals(oldSize, oldCategory.getItems().size());
+        assertEquals(oldSize + 1, after.getCatalog().get(0).getItems().get(0).getItems().size());
+        // Остальные поддеревья и корни общие для обеих версий
+        assertSame(untouchedCategory, after.getCatalog().get(0).getItems().get(1));
+        assertSame(oldCategory.getItems().get(0), after.getCatalog().get(0).getItems().get(0).getItems().get(1));
+        for (int i = 1; i < WRITERS; i++) {
+            assertSame(before.getCatalog().get(i), after.getCatalog().get(i));
+        }
+        assertSame(after.getCatalog().get(0).getItems().get(0), repository.findById(categoryId(1, 0)));
+    }
+
+    @Test
+    public void pricePatchesCopyChangedNodes() {
+        CatalogRepository repository = repository();
+        CatalogSnapshot before = repository.getSnapshot();
+        Category oldProduct = before.getCatalog().get(0).getItems().get(0).getItems().get(0);
+
+        repository.applyPricePatches(Collections.singletonList(new PricePatch(productId(1, 0, 0), 55.0, false)));
+        CatalogSnapshot after = repository.getSnapshot();
+
+        assertEquals(before.getGeneration() + 1, after.getGeneration());
+        // Прежняя версия сохраняет старые цену и наличие
+        assertEquals(100.0, oldProduct.getPrice(), 0.0);
+        assertNull(oldProduct.getAvailable());
+        assertEquals(100.0, before.getRecommended().get(0).getPrice(), 0.0);
+        // Новая версия копирует товар и путь до него, остальные корни общие
+        Category newProduct = after.getCatalog().get(0).getItems().get(0).getItems().get(0);
+        assertNotSame(oldProduct, newProduct);
+        assertSame(newProduct, repository.findById(productId(1, 0, 0)));
+        assertEquals(55.0, newProduct.getPrice(), 0.0);
+        assertEquals(Boolean.FALSE, newProduct.getAvailable());
+        assertSame(before.getCatalog().get(1), after.getCatalog().get(1));
+        assertEquals(55.0, after.getRecommended().get(0).getPrice(), 0.0);
+    }
+
+    private static SnapshotNode snapshotNode(int id, Double price, SnapshotNode... items) {
+        SnapshotNode node = new SnapshotNode();
+        node.id = id;
+        node.name = "Узел " + id;
+        node.price = price;
+        node.items.addAll(Arrays.asList(items));
+        return node;
+    }
+
+    @Test
+    public void indexResolvesLazySnapshotNodesAcrossVersions() {
+        List<SnapshotNode> catalog = new ArrayList<>();
+        catalog.add(snapshotNode(1, null, snapshotNode(10, null, snapshotNode(100, 50.0), snapshotNode(101, 70.0)),
+                snapshotNode(11, 20.0)));
+        catalog.add(snapshotNode(2, null, snapshotNode(20, null, snapshotNode(200, 30.0))));
+        SnapshotReader reader = SnapshotReader.open(ByteBuffer.wrap(
+                SnapshotWriter.toByteArray(catalog, Collections.emptyList(), 5, 0)));
+        CatalogStore.StoredCatalog stored = CatalogSnapshotLoader.read(reader);
+        CatalogRepository repository = new CatalogRepository();
+        repository.restore(stored.catalog, stored.recommended, stored.version);
+
+        // Узел ленивого поддерева находится спуском от корня и совпадает с узлом дерева
+        Category product = repository.findById(200);
+        assertEquals("Узел 200", product.getName());
+        assertSame(repository.getCatalog().get(1).getItems().get(0).getItems().get(0), product);
+        assertSame(product, repository.findById(200));
+        assertNull(repository.findById(999));
+        assertEquals(2, repository.pinSubtree(200));
+        repository.unpinSubtree(2);
+
+        CatalogSnapshot before = repository.getSnapshot();
+        repository.applyPricePatches(Collections.singletonList(new PricePatch(101, 75.0, null)));
+        // Новая версия находит копию, опубликованная — прежний узел
+        assertEquals(75.0, repository.findById(101).getPrice(), 0.0);
+        assertEquals(70.0, before.getIndex().find(101).getPrice(), 0.0);
+        assertSame(repository.getCatalog().get(0).getItems().get(0), repository.findById(10));
+        assertEquals(50.0, repository.findById(100).getPrice(), 0.0);
+        assertSame(product, repository.findById(200));
+    }
+
+    @Test
+    public void searchIndexResolvesIdsThroughCurrentSnapshot() {
+        List<SnapshotNode> catalog = new ArrayList<>();
+        catalog.add(snapshotNode(1, null, snapshotNode(10, null, snapshotNode(100, 50.0), snapshotNode(101, 70.0))));
+        SnapshotReader reader = SnapshotReader.open(ByteBuffer.wrap(SnapshotWriter.toByteArray(
+                catalog, Collections.singletonList(snapshotNode(100, 50.0)), 5, 0)));
+        CatalogStore.StoredCatalog stored = CatalogSnapshotLoader.read(reader);
+        CatalogRepository repository = new CatalogRepository();
+        repository.restore(stored.catalog, stored.recommended, stored.version);
+        SearchIndex index = SearchIndex.build(repository.getSnapshot(), id -> repository.getSnapshot().findNode(id));
+        assertEquals(4, index.size());
+
+        repository.applyPricePatches(Collections.singletonList(new PricePatch(101, 75.0, null)));
+        // Индекс хранит идентификаторы: результат — узел текущей версии с новой ценой
+        Category found = index.search("узел 101", 0, 10).get(0);
+        assertSame(repository.findById(101), found);
+        assertEquals(75.0, found.getPrice(), 0.0);
+
+        repository.restore(Collections.emptyList(), Collections.emptyList(), 6);
+        assertTrue(index.search("узел", 0, 10).isEmpty());
+    }
+}
@@ -0,0 +1,269 @@
+package com.matlakhov.catalogapp.data;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogNodeChange;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.models.Product;
+import com.matlakhov.catalogapp.network.ApiClient;
+import com.matlakhov.catalogapp.network.ApiService;
+import com.matlakhov.catalogapp.network.LocalCatalogServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет протокол дельта-синхронизации каталога против {@link LocalCatalogServer}.
+ */
+public class CatalogSyncTest {
+
+    private LocalCatalogServer server;
+    private ApiService api;
+    private CatalogRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCatalogServer();
+        server.start();
+        ApiClient.setBaseUrl(server.getBaseUrl());
+        api = ApiClient.getClient().create(ApiService.class);
+        repository = new CatalogRepository();
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown();
+        ApiClient.setBaseUrl(null);
+    }
+
+    @Test
+    public void deltaContainsOnlyChangedNodes() throws Exception {
+        server.publish(catalog(100.0, false));
+        repository.replace(api.getCatalog().execute().body());
+
+        server.publish(catalog(120.0, false));
+        CatalogDelta delta = api.getCatalogDelta(repository.getVersion()).execute().body();
+
+        assertNotNull(delta);
+        assertFalse(delta.isFull());
+        assertTrue(delta.getAdded().isEmpty());
+        assertTrue(delta.getRemoved().isEmpty());
+        assertEquals(1, delta.getModified().size());
+        assertEquals(1001, delta.getModified().get(0).getId());
+
+        CatalogChangeSet changes = repository.applyDelta(delta);
+        assertNotNull(changes);
+        assertEquals(Double.valueOf(120.0), repository.findById(1001).getPrice());
+        assertEquals(2, repository.getVersion());
+
+        RecordingCallback callback = new RecordingCallback(ids(repository.getCatalog()));
+        changes.dispatchCatalogUpdatesTo(callback);
+        assertTrue(callback.ops.isEmpty());
+    }
+
+    @Test
+    public void deltaAppliesStructuralChangesInPlace() throws Exception {
+        server.publish(catalog(100.0, false));
+        repository.replace(api.getCatalog().execute().body());
+        List<Integer> rootsBefore = ids(repository.getCatalog());
+
+        CatalogResponse next = catalog(100.0, true);
+        server.publish(next);
+        CatalogDelta delta = api.getCatalogDelta(repository.getVersion()).execute().body();
+        CatalogChangeSet changes = repository.applyDelta(delta);
+
+        assertNotNull(changes);
+        assertNull(repository.findById(2));
+        assertNull(repository.findById(201));
+        assertNotNull(repository.findById(3001));
+        assertEquals(Arrays.asList(1, 3), ids(repository.getCatalog()));
+        assertEquals(Arrays.asList(101, 102), ids(repository.findById(1).getItems()));
+
+        // Операции над корневым списком переводят старый порядок в новый
+        RecordingCallback callback = new RecordingCallback(rootsBefore);
+        changes.dispatchCatalogUpdatesTo(callback);
+        assertEquals(Arrays.asList(1, 3), callback.ids);
+        assertEquals(Arrays.asList("remove 1"), callback.ops);
+    }
+
+    @Test
+    public void unknownBaseVersionReturnsFullCatalog() throws Exception {
+        server.publish(catalog(100.0, false));
+        CatalogDelta delta = api.getCatalogDelta(42).execute().body();
+
+        assertNotNull(delta);
+        assertTrue(delta.isFull());
+        assertNotNull(repository.applyDelta(delta));
+        assertEquals(3, repository.getCatalog().size());
+    }
+
+    @Test
+    public void mismatchedDeltaIsRejectedWithoutChanges() throws Exception {
+        server.publish(catalog(100.0, false));
+        repository.replace(api.getCatalog().execute().body());
+        server.publish(catalog(100.0, true));
+        server.publish(catalog(150.0, true));
+
+        CatalogDelta delta = api.getCatalogDelta(2).execute().body();
+
+        assertNull(repository.applyDelta(delta));
+        assertEquals(1, repository.getVersion());
+        assertNotNull(repository.findById(2));
+    }
+
+    @Test
+    public void skeletonOmitsHeavyFieldsThatDetailsReturn() throws Exception {
+        server.publish(catalog(100.0, false));
+
+        repository.replace(api.getCatalogSkeleton().execute().body());
+        Category mirror = repository.findById(1001);
+        assertEquals("Зеркало", mirror.getName());
+        assertEquals(Double.valueOf(100.0), mirror.getPrice());
+        assertNull(mirror.getDescription());
+        assertTrue(mirror.needsDetails());
+        assertEquals(2, repository.findById(101).getItems().size());
+
+        List<NodeDetails> details = api.getNodeDetails("1001,101,4001,999").execute().body();
+        assertNotNull(details);
+        assertEquals(Arrays.asList(1001, 101, 4001), detailIds(details));
+        assertNotNull(repository.applyDetails(Collections.singletonMap(1001, details.get(0))));
+
+        // Опубликованный узел не меняется: описание есть только в новой версии
+        assertNull(mirror.getDescription());
+        Category detailed = repository.findById(1001);
+        assertNotSame(mirror, detailed);
+        assertEquals("Зеркало", detailed.getDescription());
+        assertFalse(detailed.needsDetails());
+    }
+
+    @Test
+    public void deltaAddingExistingIdsIsRejected() throws Exception {
+        server.publish(catalog(100.0, false));
+        repository.replace(api.getCatalog().execute().body());
+        CatalogSnapshot before = repository.getSnapshot();
+
+        // Новая категория содержит товар, который уже есть в другой категории
+        CatalogDelta delta = new CatalogDelta();
+        delta.setBaseVersion(repository.getVersion());
+        delta.setVersion(repository.getVersion() + 1);
+        delta.setAdded(Collections.singletonList(new CatalogNodeChange(2, 0,
+                node(203, "Новая категория", null, node(1002, "Зонд", 80.0)))));
+
+        assertNull(repository.applyDelta(delta));
+        assertSame(before, repository.getSnapshot());
+        assertNull(repository.findById(203));
+        assertEquals(101, repository.getSnapshot().getIndex().findParent(1002).getId());
+
+        // Перенос узла (удаление и повторное добавление в одной дельте) допустим
+        delta.setRemoved(Collections.singletonList(1002));
+        assertNotNull(repository.applyDelta(delta));
+        assertEquals(203, repository.getSnapshot().getIndex().findParent(1002).getId());
+        assertEquals(Arrays.asList(1001), ids(repository.findById(101).getItems()));
+    }
+
+    private static List<Integer> detailIds(List<NodeDetails> details) {
+        List<Integer> ids = new ArrayList<>();
+        for (NodeDetails item : details) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static CatalogResponse catalog(double mirrorPrice, boolean restructured) {
+        Category instruments = node(1, "Инструменты", null,
+                node(101, "Инструменты для осмотра", null,
+                        node(1001, "Зеркало", mirrorPrice),
+                        node(1002, "Зонд", 80.0)),
+                node(102, "Боры", null,
+                        node(1003, "Бор шаровидный", 30.0)));
+        Category materials = node(2, "Материалы", null,
+                node(201, "Пломбировочные материалы", null,
+                        node(2001, "Композит", 900.0)));
+        Category equipment = node(3, "Оборудование", null,
+                node(301, "Установки", null));
+        if (restructured) {
+            // Удаляем «Материалы», добавляем товар в «Установки»
+            equipment = node(3, "Оборудование", null,
+                    node(301, "Установки", null,
+                            node(3001, "Стоматологическая установка", 350000.0)));
+        }
+
+        CatalogResponse response = new CatalogResponse();
+        response.setCatalog(restructured ? Arrays.asList(instruments, equipment)
+                : Arrays.asList(instruments, materials, equipment));
+        Product handpiece = new Product();
+        handpiece.setId(4001);
+        handpiece.setName("Наконечник");
+        handpiece.setPrice(12000.0);
+        response.setProducts(Arrays.asList(handpiece));
+        return response;
+    }
+
+    private static Category node(int id, String name, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setDescription(name);
+        category.setPrice(price);
+        category.setItems(Arrays.asList(items));
+        return category;
+    }
+
+    private static List<Integer> ids(List<Category> items) {
+        List<Integer> ids = new ArrayList<>();
+        for (Category item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Применяет операции к копии списка идентификаторов; вставленные элементы обозначаются -1.
+     */
+    private static final class RecordingCallback implements ListUpdateCallback {
+        final List<Integer> ids;
+        final List<String> ops = new ArrayList<>();
+
+        RecordingCallback(List<Integer> initial) {
+            ids = new ArrayList<>(initial);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            ops.add("insert " + position);
+            for (int i = 0; i < count; i++) {
+                ids.add(position, -1);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            ops.add("remove " + position);
+            for (int i = 0; i < count; i++) {
+                ids.remove(position);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            ops.add("move " + fromPosition);
+            ids.add(toPosition, ids.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            ops.add("change " + position);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.matlakhov.catalogapp.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.PricePatch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Проверяет вычисление количества товаров и диапазона цен категорий.
+ */
+public class CategoryAggregatesTest {
+
+    private static Category node(int id, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName("Узел " + id);
+        category.setPrice(price);
+        for (Category item : items) {
+            category.addItem(Integer.MAX_VALUE, item);
+        }
+        return category;
+    }
+
+    @Test
+    public void compute_aggregatesWholeSubtree() {
+        List<Category> catalog = Arrays.asList(
+                node(1, null,
+                        node(101, null, node(1001, 250.0), node(1002, 320.0)),
+                        node(102, null, node(1003, 90.0)),
+                        node(103, null, node(1004, null))),
+                node(2, null, node(2001, 900.0)));
+
+        CategoryAggregates aggregates = CategoryAggregates.compute(catalog);
+
+        assertEquals(5, aggregates.size());
+        assertEquals(3, aggregates.getProductCount(1));
+        assertEquals(90.0, aggregates.getMinPrice(1), 0.0);
+        assertEquals(320.0, aggregates.getMaxPrice(1), 0.0);
+        assertEquals(2, aggregates.getProductCount(101));
+        assertEquals(1, aggregates.getProductCount(2));
+        assertEquals(900.0, aggregates.getMinPrice(2), 0.0);
+        assertEquals(0, aggregates.getProductCount(103));
+        assertTrue(Double.isNaN(aggregates.getMinPrice(103)));
+        assertEquals(0, aggregates.getProductCount(42));
+    }
+
+    @Test
+    public void compute_matchesSequentialCountOnLargeCatalog() {
+        List<Category> catalog = new ArrayList<>();
+        int id = 1_000_000;
+        for (int root = 1; root <= 8; root++) {
+            Category category = node(root, null);
+            for (int sub = 0; sub < 50; sub++) {
+                Category subcategory = node(id++, null);
+                for (int p = 0; p < 250; p++) {
+                    subcategory.addItem(Integer.MAX_VALUE, node(id++, (double) (p + root)));
+                }
+                category.addItem(Integer.MAX_VALUE, subcategory);
+            }
+            catalog.add(category);
+        }
+
+        CategoryAggregates aggregates = CategoryAggregates.compute(catalog);
+
+        for (Category root : catalog) {
+            assertEquals(root.getAllProducts().size(), aggregates.getProductCount(root.getId()));
+            assertEquals(root.getId(), aggregates.getMinPrice(root.getId()), 0.0);
+            assertEquals(249 + root.getId(), aggregates.getMaxPrice(root.getId()), 0.0);
+        }
+    }
+
+    @Test
+    public void compute_handlesDeepTreeWithoutRecursion() {
+        Category root = node(1, null);
+        Category parent = root;
+        for (int id = 2; id <= 100_000; id++) {
+            Category child = node(id, null);
+            parent.addItem(Integer.MAX_VALUE, child);
+            parent = child;
+        }
+        parent.addItem(Integer.MAX_VALUE, node(0, 42.0));
+
+        CategoryAggregates aggregates = CategoryAggregates.compute(Collections.singletonList(root));
+
+        assertEquals(100_000, aggregates.size());
+        assertEquals(1, aggregates.getProductCount(1));
+        assertEquals(42.0, aggregates.getMaxPrice(1), 0.0);
+    }
+
+    @Test
+    public void pricePatchesInvalidateSnapshotAggregates() {
+        CatalogRepository repository = new CatalogRepository();
+        repository.restore(Collections.singletonList(node(1, null, node(101, 250.0), node(102, 320.0))),
+                Collections.emptyList(), 1);
+        CatalogSnapshot before = repository.getSnapshot();
+        assertEquals(250.0, before.computeAggregates().getMinPrice(1), 0.0);
+        assertSame(before.getAggregates(), repository.getAggregates());
+
+        repository.applyPricePatches(Collections.singletonList(new PricePatch(101, 90.0, null)));
+        CatalogSnapshot after = repository.getSnapshot();
+
+        // Новая версия не наследует устаревший диапазон цен, а прежняя сохраняет свой
+        assertNull(after.getAggregates());
+        assertEquals(250.0, before.getAggregates().getMinPrice(1), 0.0);
+        assertEquals(90.0, after.computeAggregates().getMinPrice(1), 0.0);
+        assertSame(after.getAggregates(), repository.getAggregates());
+    }
+}
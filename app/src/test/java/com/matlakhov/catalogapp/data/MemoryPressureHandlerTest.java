@@ -0,0 +1,119 @@
+package com.matlakhov.catalogapp.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.PricePatch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Проверяет выбор уровня освобождения памяти и замену поддеревьев каталога данными хранилища.
+ */
+public class MemoryPressureHandlerTest {
+
+    private static Category node(int id, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName("Узел " + id);
+        category.setPrice(price);
+        for (Category item : items) {
+            category.addItem(Integer.MAX_VALUE, item);
+        }
+        return category;
+    }
+
+    private static Category tree() {
+        return node(1, null, node(10, null, node(100, 50.0), node(101, 70.0)), node(11, 20.0));
+    }
+
+    @Test
+    public void tiersGrowWithPressure() {
+        assertEquals(0, MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, false));
+        assertEquals(MemoryPressureHandler.TIER_IMAGES,
+                MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, false));
+        assertEquals(MemoryPressureHandler.TIER_DISPLAY,
+                MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, false));
+        assertEquals(MemoryPressureHandler.TIER_DISPLAY,
+                MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, false));
+        assertEquals(MemoryPressureHandler.TIER_SUBTREES,
+                MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, true));
+        assertEquals(MemoryPressureHandler.TIER_SUBTREES,
+                MemoryPressureHandler.tierFor(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, false));
+    }
+
+    @Test
+    public void releaseSubtreesPublishesCopiedRoots() {
+        CatalogRepository repository = new CatalogRepository();
+        Category root = tree();
+        repository.restore(Collections.singletonList(root), Collections.emptyList(), 3);
+        repository.markPersisted(repository.getGeneration());
+        CatalogSnapshot before = repository.getSnapshot();
+        Category oldChild = repository.findById(10);
+
+        Category stored = tree();
+        assertEquals(1, repository.releaseSubtrees(Collections.singletonList(stored)));
+
+        // Опубликованная версия не меняется: заменённые поддеревья есть только в новой
+        assertSame(root, before.getCatalog().get(0));
+        assertSame(oldChild, root.getItems().get(0));
+        assertNotSame(root, repository.getCatalog().get(0));
+        assertTrue(repository.isPersisted());
+        Category child = repository.findById(10);
+        assertNotSame(oldChild, child);
+        assertSame(stored.getItems().get(0), child);
+        assertEquals(50.0, repository.findById(100).getPrice(), 0.0);
+        assertEquals(2, repository.getCatalog().get(0).getItems().size());
+    }
+
+    @Test
+    public void releaseSubtreesSkipsShownAndSkeletonRoots() {
+        CatalogRepository repository = new CatalogRepository();
+        Category detailed = node(2, null, node(20, 10.0));
+        detailed.setDescription("Загруженное описание");
+        repository.restore(Arrays.asList(tree(), detailed), Collections.emptyList(), 3);
+        repository.markPersisted(repository.getGeneration());
+        int pinned = repository.pinSubtree(100);
+        assertEquals(1, pinned);
+        Category shown = repository.findById(10);
+
+        // В снимке облегчённого каталога описания нет: поддерево с описанием остаётся в памяти
+        Category skeleton = node(2, null, node(20, 10.0));
+        assertEquals(0, repository.releaseSubtrees(Arrays.asList(tree(), skeleton)));
+        assertSame(shown, repository.findById(10));
+
+        repository.unpinSubtree(pinned);
+        assertEquals(1, repository.releaseSubtrees(Arrays.asList(tree(), skeleton)));
+        assertNotSame(shown, repository.findById(10));
+        assertEquals("Загруженное описание", repository.findById(2).getDescription());
+    }
+
+    @Test
+    public void changesNotInStoreKeepSubtreesInMemory() {
+        CatalogRepository repository = new CatalogRepository();
+        repository.restore(Collections.singletonList(tree()), Collections.emptyList(), 3);
+        int saved = repository.getGeneration();
+        repository.markPersisted(saved);
+        assertTrue(repository.isPersisted());
+
+        repository.applyPricePatches(Collections.singletonList(new PricePatch(100, 55.0, true)));
+        assertFalse(repository.isPersisted());
+        // Сохранение, начатое до изменения цен, не делает каталог сохранённым
+        repository.markPersisted(saved);
+        assertFalse(repository.isPersisted());
+
+        Category child = repository.findById(10);
+        assertEquals(0, repository.releaseSubtrees(Arrays.asList(tree())));
+        assertSame(child, repository.findById(10));
+        assertEquals(55.0, repository.findById(100).getPrice(), 0.0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.matlakhov.catalogapp.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Проверяет выборки по диапазону цен и обновление индекса цен на месте.
+ */
+public class PriceIndexTest {
+
+    private static Category node(int id, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName("Узел " + id);
+        category.setPrice(price);
+        for (Category item : items) {
+            category.addItem(Integer.MAX_VALUE, item);
+        }
+        return category;
+    }
+
+    private static List<Integer> ids(List<Category> categories) {
+        List<Integer> ids = new ArrayList<>();
+        for (Category category : categories) {
+            ids.add(category.getId());
+        }
+        return ids;
+    }
+
+    private static List<Category> sampleCatalog() {
+        return Arrays.asList(
+                node(1, null,
+                        node(101, null, node(1001, 250.0), node(1002, 320.0)),
+                        node(102, null, node(1003, 250.0))),
+                node(2, null, node(2001, 900.0), node(2002, 120.0)));
+    }
+
+    @Test
+    public void query_returnsRangeSortedByPrice() {
+        PriceIndex index = PriceIndex.build(sampleCatalog());
+
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList(2002, 1001, 1003, 1002, 2001),
+                ids(index.query(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false)));
+        // Равные цены идут в порядке дерева, границы включаются
+        assertEquals(Arrays.asList(1001, 1003, 1002), ids(index.query(250.0, 320.0, false)));
+        assertEquals(Arrays.asList(1002, 1003, 1001), ids(index.query(1, 0.0, 1000.0, true)));
+        assertEquals(Collections.singletonList(1003), ids(index.query(102, 0.0, 1000.0, false)));
+        assertTrue(index.query(2, 200.0, 800.0, false).isEmpty());
+        assertNull(index.query(42, 0.0, 1000.0, false));
+    }
+
+    @Test
+    public void updatePrice_movesProductInCatalogAndAncestors() {
+        PriceIndex index = PriceIndex.build(sampleCatalog());
+
+        assertTrue(index.updatePrice(1002, 100.0));
+        assertEquals(Arrays.asList(1002, 2002, 1001, 1003, 2001),
+                ids(index.query(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false)));
+        assertEquals(Arrays.asList(1002, 1001, 1003), ids(index.query(1, 0.0, 1000.0, false)));
+        assertEquals(Arrays.asList(1002, 1001), ids(index.query(101, 0.0, 1000.0, false)));
+
+        assertTrue(index.updatePrice(1002, 5000.0));
+        assertEquals(Arrays.asList(1001, 1003, 1002), ids(index.query(1, 0.0, 10000.0, false)));
+        assertEquals(Collections.singletonList(1002), ids(index.query(1000.0, 10000.0, false)));
+        assertTrue(index.updatePrice(1002, 5000.0));
+        assertFalse(index.updatePrice(42, 1.0));
+    }
+
+    @Test
+    public void updatePrice_keepsOrderConsistentWithRebuild() {
+        Random random = new Random(7);
+        List<Category> categories = new ArrayList<>();
+        List<Category> products = new ArrayList<>();
+        for (int c = 0; c < 20; c++) {
+            Category category = node(c + 1, null);
+            for (int p = 0; p < 50; p++) {
+                Category product = node(1000 + c * 50 + p, (double) random.nextInt(100));
+                category.addItem(Integer.MAX_VALUE, product);
+                products.add(product);
+            }
+            categories.add(category);
+        }
+        PriceIndex index = PriceIndex.build(categories);
+
+        for (int i = 0; i < 2000; i++) {
+            Category product = products.get(random.nextInt(products.size()));
+            double price = random.nextInt(100);
+            product.setPrice(price);
+            assertTrue(index.updatePrice(product.getId(), price));
+        }
+
+        PriceIndex rebuilt = PriceIndex.build(categories);
+        assertEquals(ids(rebuilt.query(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true)),
+                ids(index.query(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true)));
+        for (int c = 1; c <= 20; c++) {
+            assertEquals(ids(rebuilt.query(c, 10.0, 60.0, false)), ids(index.query(c, 10.0, 60.0, false)));
+        }
+    }
+}
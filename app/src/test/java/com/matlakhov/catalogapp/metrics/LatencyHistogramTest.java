@@ -0,0 +1,69 @@
+package com.matlakhov.catalogapp.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет корзины и перцентили {@link LatencyHistogram} и запись из нескольких потоков.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndContainTheirValues() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = LatencyHistogram.lowerBound(i + 1);
+            assertTrue(upper > lower);
+            assertEquals(i, LatencyHistogram.indexOf(lower));
+            assertEquals(i, LatencyHistogram.indexOf(upper - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMillis(ms);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMillis(), 0.001);
+        assertEquals(1000.0, histogram.getMaxMillis(), 0.001);
+        assertEquals(500, histogram.getPercentileMillis(50), 500 * 0.125);
+        assertEquals(900, histogram.getPercentileMillis(90), 900 * 0.125);
+        assertEquals(990, histogram.getPercentileMillis(99), 990 * 0.125);
+        assertTrue(histogram.getPercentileMillis(100) <= histogram.getMaxMillis());
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    registry.histogram("bind.category_row").recordMicros(i);
+                    registry.counter("image.failed").increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, registry.histogram("bind.category_row").getCount());
+        assertEquals(40_000, registry.counter("image.failed").get());
+        assertEquals(9.999, registry.histogram("bind.category_row").getMaxMillis(), 0.0001);
+
+        registry.reset();
+        assertEquals(0, registry.histogram("bind.category_row").getCount());
+        assertEquals(0, registry.histogram("bind.category_row").getPercentileMillis(50), 0);
+    }
+}
@@ -0,0 +1,212 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.Gson;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.util.CompactText;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Сравнивает память дерева каталога, разобранного с общим пулом строк, и дерева рефлексивного адаптера Gson.
+ * <p>
+ * Удерживаемый размер оценивается по раскладке 64-битной JVM со сжатыми указателями и компактными
+ * строками: заголовок объекта 12 байт, ссылка 4 байта, выравнивание по 8 байт. Для рефлексивного дерева
+ * узел считается без полей {@link #POOL_FIELDS}, поэтому их стоимость входит в сравнение.
+ * </p>
+ */
+public class CatalogFootprintTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    /** Поля узла, которые нужны только для хранения строк из пула. */
+    private static final Set<String> POOL_FIELDS = new HashSet<>(Arrays.asList("imageBase", "packedDescription"));
+
+    private static final String[] BOILERPLATE = {
+            "Товар сертифицирован для медицинского применения. Гарантия производителя — 12 месяцев.",
+            "Поставляется в индивидуальной упаковке. Перед использованием ознакомьтесь с инструкцией.",
+            "Материал совместим с автоклавированием при температуре до 134 °C, допускается многократная стерилизация.",
+    };
+
+    private static CatalogResponse pooled(String json) throws IOException {
+        @SuppressWarnings("unchecked")
+        Converter<ResponseBody, CatalogResponse> converter = (Converter<ResponseBody, CatalogResponse>)
+                new IngestionGuard(IngestionLimits.DEFAULT)
+                        .responseBodyConverter(CatalogResponse.class, new Annotation[0], null);
+        return converter.convert(ResponseBody.create(JSON, json));
+    }
+
+    /** 20 категорий по 10 подкатегорий по 50 товаров с общими описаниями и префиксом изображений. */
+    private static String generated() {
+        List<Category> roots = new ArrayList<>();
+        int id = 0;
+        for (int c = 0; c < 20; c++) {
+            Category category = node(++id, "Категория " + c, "Раздел каталога № " + c, null);
+            for (int s = 0; s < 10; s++) {
+                Category sub = node(++id, "Подкатегория " + c + "." + s, "Товары группы " + s, null);
+                for (int p = 0; p < 50; p++) {
+                    Category product = node(++id, "Товар " + id, BOILERPLATE[id % BOILERPLATE.length],
+                            "https://cdn.example.com/catalog/images/products/" + id + ".jpg");
+                    product.setPrice(100.0 + p);
+                    sub.addItem(Integer.MAX_VALUE, product);
+                }
+                category.addItem(Integer.MAX_VALUE, sub);
+            }
+            roots.add(category);
+        }
+        CatalogResponse response = new CatalogResponse();
+        response.setCatalog(roots);
+        response.setProducts(Collections.emptyList());
+        return IngestionGuard.gson(IngestionLimits.DEFAULT).toJson(response);
+    }
+
+    private static Category node(int id, String name, String description, String imageUrl) {
+        Category node = new Category();
+        node.setId(id);
+        node.setName(name);
+        node.setDescription(description);
+        node.setImageUrl(imageUrl);
+        return node;
+    }
+
+    @Test
+    public void generatedCatalogSharesStrings() throws Exception {
+        long[] sizes = compare("сгенерированный", generated());
+        // Общие описания и префиксы URL должны экономить больше трети памяти дерева
+        assertTrue(sizes[1] * 3 < sizes[0] * 2);
+    }
+
+    @Test
+    public void bundledCatalogCostsAtMostTwoFieldsPerNode() throws Exception {
+        String json = new String(Files.readAllBytes(Paths.get("catalog", "catalog.json")), StandardCharsets.UTF_8);
+        long[] sizes = compare("catalog.json", json);
+        // В небольшом каталоге без изображений повторов почти нет: остаётся только цена двух полей узла
+        assertTrue(sizes[1] <= sizes[0] + 8L * sizes[2]);
+    }
+
+    @Test
+    public void compactTextRoundTrip() {
+        String text = "Ёлочная «игрушка» — № 5… ёмкость 10 мл";
+        assertEquals(text, CompactText.decode(CompactText.encode(text)));
+        assertEquals(text.length(), CompactText.encode(text).length);
+        // Latin-1 уже хранится по байту на символ, прочие символы не кодируются
+        assertNull(CompactText.encode("plain ascii text"));
+        assertNull(CompactText.encode("Цена 10 €"));
+    }
+
+    /**
+     * Разбирает каталог обоими способами, проверяет совпадение значений и возвращает размеры деревьев.
+     *
+     * @return оценка удерживаемого размера при рефлексивном разборе и разборе с пулом строк, количество узлов
+     */
+    private static long[] compare(String label, String json) throws Exception {
+        List<Category> plain = new Gson().fromJson(json, CatalogResponse.class).getCatalog();
+        List<Category> shared = pooled(json).getCatalog();
+        assertSameValues(plain, shared);
+
+        long[] before = retainedSize(plain, false);
+        long[] after = retainedSize(shared, true);
+        System.out.println("Каталог " + label + ", узлов " + before[1] + ": " + before[0] + " -> " + after[0]
+                + " байт (" + (100 - after[0] * 100 / before[0]) + "% экономии)");
+        return new long[]{before[0], after[0], before[1]};
+    }
+
+    private static void assertSameValues(List<Category> expected, List<Category> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Category x = expected.get(i);
+            Category y = actual.get(i);
+            assertEquals(x.getId(), y.getId());
+            assertEquals(x.getName(), y.getName());
+            assertEquals(x.getDescription(), y.getDescription());
+            assertEquals(x.getImageUrl(), y.getImageUrl());
+            assertEquals(x.getPrice(), y.getPrice());
+            assertTrue(x.hasSameFields(y));
+            assertSameValues(x.getItems(), y.getItems());
+        }
+    }
+
+    /**
+     * Оценивает память, удерживаемую деревом: узлы, списки, упакованные цены, строки и массивы.
+     *
+     * @param withPoolFields учитывать ли поля {@link #POOL_FIELDS} в размере узла
+     * @return размер в байтах и количество узлов
+     */
+    private static long[] retainedSize(List<Category> roots, boolean withPoolFields) throws IllegalAccessException {
+        List<Field> fields = new ArrayList<>();
+        long nodeSize = 12;
+        for (Field field : Category.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())
+                    || (!withPoolFields && POOL_FIELDS.contains(field.getName()))) {
+                continue;
+            }
+            field.setAccessible(true);
+            fields.add(field);
+            nodeSize += field.getType() == boolean.class ? 1 : 4;
+        }
+        nodeSize = align(nodeSize);
+
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Category> stack = new ArrayDeque<>(roots);
+        long total = listSize(roots.size());
+        long nodes = 0;
+        while (!stack.isEmpty()) {
+            Category node = stack.pop();
+            nodes++;
+            total += nodeSize;
+            for (Field field : fields) {
+                Object value = field.get(node);
+                if (value == null || !seen.add(value)) {
+                    continue;
+                }
+                if (value instanceof String) {
+                    total += stringSize((String) value);
+                } else if (value instanceof byte[]) {
+                    total += align(16 + ((byte[]) value).length);
+                } else if (value instanceof Double) {
+                    total += 16;
+                } else if (value instanceof List) {
+                    total += listSize(((List<?>) value).size());
+                }
+            }
+            stack.addAll(node.getItems());
+        }
+        return new long[]{total, nodes};
+    }
+
+    private static long stringSize(String value) {
+        boolean latin1 = value.chars().allMatch(c -> c <= 0xFF);
+        return 24 + align(16 + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    private static long listSize(int size) {
+        return 24 + align(16 + 4L * size);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
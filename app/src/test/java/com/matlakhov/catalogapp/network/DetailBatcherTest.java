@@ -0,0 +1,133 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.NodeDetails;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет пакетирование запросов описаний против {@link LocalCatalogServer} с задержкой ответа.
+ */
+public class DetailBatcherTest {
+
+    private static final long LATENCY_MS = 150;
+
+    private static final long WINDOW_MS = 30;
+
+    private LocalCatalogServer server;
+    private ScheduledExecutorService scheduler;
+    private DetailBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCatalogServer();
+        server.start();
+        server.setLatency(LATENCY_MS);
+
+        Category root = new Category();
+        root.setId(1);
+        root.setName("Категория");
+        root.setDescription("Описание категории");
+        for (int id = 1000; id < 1250; id++) {
+            Category product = new Category();
+            product.setId(id);
+            product.setName("Товар " + id);
+            product.setDescription("Описание " + id);
+            product.setImageUrl("https://example.com/" + id + ".jpg");
+            product.setPrice(100.0);
+            root.addItem(Integer.MAX_VALUE, product);
+        }
+        CatalogResponse catalog = new CatalogResponse();
+        catalog.setCatalog(Collections.singletonList(root));
+        catalog.setProducts(new ArrayList<>());
+        server.publish(catalog);
+
+        ApiClient.setBaseUrl(server.getBaseUrl());
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        batcher = new DetailBatcher(ApiClient.getClient().create(ApiService.class), WINDOW_MS, scheduler, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        server.shutdown();
+        ApiClient.setBaseUrl(null);
+    }
+
+    @Test
+    public void idsRequestedWithinWindowShareOneRequest() throws Exception {
+        Map<Integer, NodeDetails> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(40);
+        for (int id = 1000; id < 1040; id++) {
+            batcher.request(id, (nodeId, details) -> {
+                received.put(nodeId, details);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, batcher.getRequestCount());
+        assertEquals(1, server.getRequestCount());
+        assertEquals("Описание 1017", received.get(1017).getDescription());
+        assertEquals("https://example.com/1039.jpg", received.get(1039).getImageUrl());
+    }
+
+    @Test
+    public void idInFlightIsNotRequestedAgainAndFansOut() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        DetailBatcher.Receiver receiver = (nodeId, details) -> {
+            assertEquals("Описание 1001", details.getDescription());
+            calls.incrementAndGet();
+            done.countDown();
+        };
+
+        batcher.request(1001, receiver);
+        // Первый пакет уже отправлен, ответ ещё не пришёл
+        Thread.sleep(WINDOW_MS + LATENCY_MS / 2);
+        batcher.request(1001, receiver);
+        batcher.request(1001, receiver);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, calls.get());
+        assertEquals(1, batcher.getRequestCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void largeBatchIsSplitAndUnknownIdsReceiveNull() throws Exception {
+        Map<Integer, Boolean> found = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(DetailBatcher.MAX_BATCH_SIZE + 21);
+        for (int id = 1000; id < 1000 + DetailBatcher.MAX_BATCH_SIZE + 20; id++) {
+            batcher.request(id, (nodeId, details) -> {
+                found.put(nodeId, details != null);
+                done.countDown();
+            });
+        }
+        batcher.request(42, (nodeId, details) -> {
+            found.put(nodeId, details != null);
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, batcher.getRequestCount());
+        assertEquals(2, server.getRequestCount());
+        assertTrue(found.get(1000 + DetailBatcher.MAX_BATCH_SIZE + 19));
+        assertFalse(found.get(42));
+    }
+}
@@ -0,0 +1,180 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.Gson;
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Converter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет потоковый разбор каталога в пределах {@link IngestionLimits}.
+ */
+public class IngestionGuardTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    @Before
+    public void setUp() {
+        MetricsRegistry.getInstance().reset();
+    }
+
+    private static CatalogResponse convert(IngestionLimits limits, String json) throws IOException {
+        return convert(limits, ResponseBody.create(JSON, json));
+    }
+
+    private static CatalogResponse convert(IngestionLimits limits, ResponseBody body) throws IOException {
+        @SuppressWarnings("unchecked")
+        Converter<ResponseBody, CatalogResponse> converter = (Converter<ResponseBody, CatalogResponse>)
+                new IngestionGuard(limits).responseBodyConverter(CatalogResponse.class, new Annotation[0], null);
+        return converter.convert(body);
+    }
+
+    /** Цепочка вложенных категорий заданной глубины в одном корне. */
+    private static String chain(int depth) {
+        StringBuilder json = new StringBuilder("{\"catalog\":[");
+        for (int i = 1; i <= depth; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"Узел ").append(i).append("\",\"items\":[");
+        }
+        for (int i = 1; i <= depth; i++) {
+            json.append("]}");
+        }
+        return json.append("],\"products\":[]}").toString();
+    }
+
+    private static int depthOf(Category node) {
+        int depth = 1;
+        while (!node.getItems().isEmpty()) {
+            node = node.getItems().get(0);
+            depth++;
+        }
+        return depth;
+    }
+
+    private static long counter(String name) {
+        return MetricsRegistry.getInstance().counter(name).get();
+    }
+
+    @Test
+    public void deepTreeIsTruncatedWithoutStackOverflow() throws Exception {
+        CatalogResponse response = convert(new IngestionLimits(16, 1_000, 100, 10_000_000), chain(200_000));
+
+        assertEquals(1, response.getCatalog().size());
+        assertEquals(16, depthOf(response.getCatalog().get(0)));
+        assertEquals(1, counter("ingest.truncated_subtrees"));
+    }
+
+    @Test
+    public void nodeBudgetIsSharedByWholeResponse() throws Exception {
+        StringBuilder json = new StringBuilder("{\"catalog\":[");
+        for (int root = 0; root < 5; root++) {
+            json.append(root == 0 ? "" : ",").append("{\"id\":").append(root).append(",\"items\":[");
+            for (int child = 0; child < 3; child++) {
+                json.append(child == 0 ? "" : ",").append("{\"id\":").append(100 + root * 10 + child)
+                        .append(",\"price\":1.5}");
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+
+        CatalogResponse response = convert(new IngestionLimits(8, 6, 100, 10_000_000), json.toString());
+
+        // Первый корень и три товара, второй корень и один товар; остальные корни — null
+        assertEquals(5, response.getCatalog().size());
+        assertEquals(3, response.getCatalog().get(0).getItems().size());
+        assertEquals(1, response.getCatalog().get(1).getItems().size());
+        assertNull(response.getCatalog().get(2));
+        assertEquals(2 + 3, counter("ingest.truncated_subtrees"));
+    }
+
+    @Test
+    public void duplicateIdsAndLongStringsAreDropped() throws Exception {
+        String longName = String.join("", Collections.nCopies(500, "а"));
+        String json = "{\"catalog\":[{\"id\":1,\"name\":\"" + longName + "\",\"items\":["
+                + "{\"id\":2,\"price\":10,\"available\":false,\"unknown\":{\"a\":[1,2]}},"
+                + "{\"id\":2,\"price\":20},"
+                + "{\"id\":4,\"items\":[{\"id\":3},{\"id\":3}]}]}],\"products\":[]}";
+
+        CatalogResponse response = convert(new IngestionLimits(8, 100, 64, 10_000_000), json);
+
+        Category root = response.getCatalog().get(0);
+        assertEquals(64, root.getName().length());
+        assertEquals(2, root.getItems().size());
+        assertEquals(1, root.getItems().get(1).getItems().size());
+        Category product = root.getItems().get(0);
+        assertEquals(10.0, product.getPrice(), 0.0);
+        assertEquals(Boolean.FALSE, product.getAvailable());
+        assertEquals(2, counter("ingest.duplicate_ids"));
+        assertEquals(1, counter("ingest.truncated_strings"));
+    }
+
+    @Test
+    public void duplicateSubtreeDoesNotClaimChildIds() throws Exception {
+        String json = "{\"catalog\":[{\"id\":1,\"items\":[{\"id\":5,\"items\":[{\"id\":6}]},"
+                + "{\"id\":5,\"items\":[{\"id\":7}]},"
+                + "{\"id\":7}]}],\"products\":[]}";
+
+        CatalogResponse response = convert(new IngestionLimits(8, 100, 64, 10_000_000), json);
+
+        // Дочерний узел отброшенного повтора не занимает идентификатор следующего узла
+        List<Category> items = response.getCatalog().get(0).getItems();
+        assertEquals(2, items.size());
+        assertEquals(5, items.get(0).getId());
+        assertEquals(7, items.get(1).getId());
+        assertEquals(1, counter("ingest.duplicate_ids"));
+    }
+
+    @Test
+    public void oversizedBodyIsRejected() {
+        IngestionLimits limits = new IngestionLimits(8, 1_000_000, 100, 4_096);
+        try {
+            convert(limits, chain(2_000));
+            fail("Ответ с известной длиной больше ограничения должен быть отклонён");
+        } catch (IOException e) {
+            assertTrue(e instanceof IngestionLimitException);
+        }
+        try {
+            // Длина неизвестна (chunked): ответ отклоняется по ходу чтения
+            convert(limits, ResponseBody.create(JSON, -1, new Buffer().writeUtf8(chain(2_000))));
+            fail("Ответ без длины больше ограничения должен быть отклонён");
+        } catch (IOException e) {
+            assertTrue(e instanceof IngestionLimitException);
+        }
+        assertEquals(2, counter("ingest.rejected"));
+    }
+
+    @Test
+    public void writeAndReadDeepTreeRoundTrip() {
+        Category root = new Category();
+        root.setId(0);
+        Category node = root;
+        for (int i = 1; i < 50_000; i++) {
+            Category child = new Category();
+            child.setId(i);
+            child.setName("Узел " + i);
+            node.addItem(Integer.MAX_VALUE, child);
+            node = child;
+        }
+        node.setPrice(99.0);
+
+        Gson gson = IngestionGuard.gson(new IngestionLimits(100_000, 100_000, 100, Long.MAX_VALUE));
+        Category copy = gson.fromJson(gson.toJson(root), Category.class);
+
+        assertEquals(50_000, depthOf(copy));
+        assertEquals(1, copy.getAllProducts().size());
+        assertEquals(99.0, copy.getAllProducts().get(0).getPrice(), 0.0);
+    }
+}
@@ -0,0 +1,516 @@
+package com.matlakhov.catalogapp.network;
+
+import com.google.gson.Gson;
+import com.matlakhov.catalogapp.data.CatalogDiff;
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.CategoryPage;
+import com.matlakhov.catalogapp.models.NodeDetails;
+import com.matlakhov.catalogapp.models.PricePatch;
+import com.matlakhov.catalogapp.models.Product;
+import com.matlakhov.catalogapp.util.AppLog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Локальная эталонная реализация сервера каталога с поддержкой версий и дельта-обновлений.
+ * <p>
+ * Сервер слушает {@code 127.0.0.1} на свободном порту и обслуживает те же эндпоинты, что описаны
+ * в {@link ApiService}, поэтому клиент можно направить на него через {@link ApiClient#setBaseUrl(String)}
+ * и проверять синхронизацию без доступа к сети:
+ * <ul>
+ *     <li>{@code GET /uc}, {@code GET /catalog} — последняя версия каталога целиком;</li>
+ *     <li>{@code GET /catalog/delta?since=N} — изменения относительно версии {@code N}, построенные
+ *     {@link CatalogDiff}; если версии {@code N} нет в истории, возвращается полный каталог
+ *     с {@code full = true};</li>
+ *     <li>{@code GET /catalog/skeleton} — последняя версия каталога без описаний и изображений;</li>
+ *     <li>{@code GET /catalog/details?ids=1,2,3} — описания и изображения перечисленных узлов;</li>
+ *     <li>{@code GET /catalog/children?parent=ID&offset=N&limit=M} — страница дочерних элементов
+ *     категории без вложенных элементов;</li>
+ *     <li>{@code GET /catalog/stream} — поток Server-Sent Events с изменениями цен и наличия
+ *     (см. {@link PriceStreamClient}).</li>
+ * </ul>
+ * Каждый вызов {@link #publish(CatalogResponse)} или {@link #publishPricePatches(List)} создаёт новую
+ * версию каталога.
+ * </p>
+ */
+public class LocalCatalogServer {
+
+    /** Тег для целей логирования. */
+    private static final String TAG = "LocalCatalogServer";
+
+    /** Максимальное количество хранимых версий каталога. */
+    private static final int MAX_HISTORY = 32;
+
+    /** Интервал отправки пустых комментариев в поток для обнаружения разрыва соединения (с). */
+    private static final int HEARTBEAT_SECONDS = 15;
+
+    /** Сериализатор JSON; узлы каталога записываются через геттеры, так как их строки могут быть в пуле. */
+    private final Gson gson = IngestionGuard.gson(IngestionLimits.DEFAULT);
+
+    /** Опубликованные версии каталога. */
+    private final TreeMap<Long, CatalogResponse> history = new TreeMap<>();
+
+    /** Количество обработанных запросов. */
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /** Очереди событий подключённых клиентов потока обновлений. */
+    private final List<BlockingQueue<String>> streamSubscribers = new CopyOnWriteArrayList<>();
+
+    /** Последняя опубликованная версия. */
+    private long version;
+
+    /** Искусственная задержка ответа на каждый запрос (мс), кроме потока обновлений. */
+    private volatile long latencyMs;
+
+    /** Искусственная задержка между заголовками и телом ответа (мс). */
+    private volatile long bodyDelayMs;
+
+    /** Перенаправлять ли запросы {@code /uc} на {@code /catalog}, как это делает Google Drive. */
+    private volatile boolean redirectDownloads;
+
+    /** Серверный сокет, или null, если сервер не запущен. */
+    private ServerSocket serverSocket;
+
+    /** Пул потоков для обработки соединений. */
+    private ExecutorService executor;
+
+    /**
+     * Публикует новую версию каталога.
+     * <p>
+     * Каталог копируется, поэтому последующие изменения переданного объекта на опубликованную
+     * версию не влияют.
+     * </p>
+     *
+     * @param catalog новое содержимое каталога
+     * @return номер опубликованной версии
+     */
+    public synchronized long publish(CatalogResponse catalog) {
+        CatalogResponse copy = gson.fromJson(gson.toJson(catalog), CatalogResponse.class);
+        copy.setVersion(++version);
+        history.put(version, copy);
+        while (history.size() > MAX_HISTORY) {
+            history.pollFirstEntry();
+        }
+        return version;
+    }
+
+    /**
+     * Применяет изменения цен и наличия к последней версии каталога, публикует результат
+     * как новую версию и рассылает изменения всем подключённым клиентам потока.
+     *
+     * @param patches изменения цен и наличия
+     * @return номер опубликованной версии
+     */
+    public synchronized long publishPricePatches(List<PricePatch> patches) {
+        CatalogResponse next = gson.fromJson(gson.toJson(latest()), CatalogResponse.class);
+        Map<Integer, PricePatch> byId = new HashMap<>();
+        for (PricePatch patch : patches) {
+            byId.put(patch.getId(), patch);
+        }
+        applyPatches(next.getCatalog(), byId);
+        for (Product product : next.getProducts()) {
+            PricePatch patch = byId.get(product.getId());
+            if (patch != null && patch.getPrice() != null) {
+                product.setPrice(patch.getPrice());
+            }
+        }
+        long published = publish(next);
+
+        String event = "id: " + published + "\ndata: " + gson.toJson(patches) + "\n\n";
+        for (BlockingQueue<String> subscriber : streamSubscribers) {
+            subscriber.offer(event);
+        }
+        return published;
+    }
+
+    /**
+     * Задаёт искусственную задержку ответа на каждый запрос, чтобы имитировать сетевую задержку.
+     *
+     * @param latencyMs задержка (мс), 0 — без задержки
+     */
+    public void setLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Задаёт искусственную задержку между отправкой заголовков и тела ответа,
+     * чтобы имитировать медленную передачу данных.
+     *
+     * @param bodyDelayMs задержка (мс), 0 — без задержки
+     */
+    public void setBodyDelay(long bodyDelayMs) {
+        this.bodyDelayMs = bodyDelayMs;
+    }
+
+    /**
+     * Включает перенаправление запросов {@code /uc} на {@code /catalog} (ответ 302),
+     * как при скачивании файла с Google Drive.
+     *
+     * @param redirect true, чтобы перенаправлять запросы
+     */
+    public void setRedirectDownloads(boolean redirect) {
+        this.redirectDownloads = redirect;
+    }
+
+    /**
+     * Возвращает количество клиентов, подключённых к потоку обновлений.
+     *
+     * @return количество подключённых клиентов
+     */
+    public int getStreamSubscriberCount() {
+        return streamSubscribers.size();
+    }
+
+    /**
+     * Запускает сервер на свободном локальном порту.
+     *
+     * @throws IOException если не удалось открыть серверный сокет
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        executor = Executors.newCachedThreadPool();
+        ServerSocket socket = serverSocket;
+        executor.execute(() -> acceptLoop(socket));
+    }
+
+    /**
+     * Возвращает базовый URL запущенного сервера.
+     *
+     * @return URL вида {@code http://127.0.0.1:port/}
+     */
+    public synchronized String getBaseUrl() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("Сервер не запущен");
+        }
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+    }
+
+    /**
+     * Возвращает количество обработанных запросов.
+     *
+     * @return количество запросов с момента запуска
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Останавливает сервер и закрывает все соединения.
+     */
+    public synchronized void shutdown() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            AppLog.w(TAG, "Ошибка закрытия сокета: " + e.getMessage());
+        }
+        executor.shutdownNow();
+        serverSocket = null;
+        executor = null;
+    }
+
+    private void acceptLoop(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                executor.execute(() -> handleConnection(connection));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    AppLog.w(TAG, "Ошибка приёма соединения: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                // Пул потоков остановлен во время приёма соединения
+                return;
+            }
+        }
+    }
+
+    private void handleConnection(Socket connection) {
+        try (Socket socket = connection) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String requestLine = reader.readLine();
+            if (requestLine == null) {
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // Заголовки запроса не используются
+            }
+            requestCount.incrementAndGet();
+
+            String[] parts = requestLine.split(" ");
+            String target = parts.length > 1 ? parts[1] : "/";
+            int queryStart = target.indexOf('?');
+            String path = queryStart >= 0 ? target.substring(0, queryStart) : target;
+            Map<String, String> query = parseQuery(queryStart >= 0 ? target.substring(queryStart + 1) : "");
+            if (latencyMs > 0 && !"/catalog/stream".equals(path)) {
+                Thread.sleep(latencyMs);
+            }
+
+            route(path, query, socket.getOutputStream());
+        } catch (IOException e) {
+            AppLog.w(TAG, "Ошибка обработки запроса: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // Сервер остановлен во время искусственной задержки
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(String path, Map<String, String> query, OutputStream out) throws IOException {
+        switch (path) {
+            case "/uc":
+                if (redirectDownloads) {
+                    writeRedirect(out, "/catalog");
+                    break;
+                }
+                // fall through
+            case "/catalog":
+                writeJson(out, gson.toJson(latest()));
+                break;
+            case "/catalog/delta":
+                writeJson(out, gson.toJson(delta(query.get("since"))));
+                break;
+            case "/catalog/skeleton":
+                writeJson(out, gson.toJson(skeleton()));
+                break;
+            case "/catalog/details":
+                writeJson(out, gson.toJson(details(query.get("ids"))));
+                break;
+            case "/catalog/children":
+                writeJson(out, gson.toJson(children(query)));
+                break;
+            case "/catalog/stream":
+                stream(out);
+                break;
+            default:
+                writeResponse(out, 404, "Not Found", "text/plain", new byte[0]);
+                break;
+        }
+    }
+
+    /**
+     * Держит соединение открытым и пишет в него события, пока клиент не отключится или сервер не остановится.
+     */
+    private void stream(OutputStream out) throws IOException {
+        String headers = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/event-stream\r\n"
+                + "Cache-Control: no-cache\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        streamSubscribers.add(queue);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                String event = queue.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                out.write((event != null ? event : ":\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            streamSubscribers.remove(queue);
+        }
+    }
+
+    private static void applyPatches(List<Category> items, Map<Integer, PricePatch> patches) {
+        for (Category item : items) {
+            PricePatch patch = patches.get(item.getId());
+            if (patch != null) {
+                if (patch.getPrice() != null) {
+                    item.setPrice(patch.getPrice());
+                }
+                if (patch.getAvailable() != null) {
+                    item.setAvailable(patch.getAvailable());
+                }
+            }
+            applyPatches(item.getItems(), patches);
+        }
+    }
+
+    private synchronized CatalogResponse latest() {
+        return history.isEmpty() ? new CatalogResponse() : history.lastEntry().getValue();
+    }
+
+    private synchronized CatalogDelta delta(String since) {
+        CatalogResponse current = latest();
+        CatalogResponse base = null;
+        try {
+            base = since != null ? history.get(Long.parseLong(since)) : null;
+        } catch (NumberFormatException e) {
+            AppLog.w(TAG, "Некорректная версия: " + since);
+        }
+        if (base == null) {
+            CatalogDelta full = new CatalogDelta();
+            full.setFull(true);
+            full.setVersion(current.getVersion());
+            full.setCatalog(current.getCatalog());
+            full.setProducts(current.getProducts());
+            return full;
+        }
+        return CatalogDiff.compute(base, current);
+    }
+
+    private synchronized CatalogResponse skeleton() {
+        CatalogResponse skeleton = gson.fromJson(gson.toJson(latest()), CatalogResponse.class);
+        stripDetails(skeleton.getCatalog());
+        for (Product product : skeleton.getProducts()) {
+            product.setDescription(null);
+            product.setImageUrl(null);
+        }
+        return skeleton;
+    }
+
+    private static void stripDetails(List<Category> items) {
+        for (Category item : items) {
+            item.setDescription(null);
+            item.setImageUrl(null);
+            stripDetails(item.getItems());
+        }
+    }
+
+    private synchronized List<NodeDetails> details(String ids) {
+        List<NodeDetails> result = new ArrayList<>();
+        if (ids == null) {
+            return result;
+        }
+        CatalogResponse current = latest();
+        for (String value : ids.split(",")) {
+            int id;
+            try {
+                id = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                AppLog.w(TAG, "Некорректный идентификатор: " + value);
+                continue;
+            }
+            Category node = findNode(current.getCatalog(), id);
+            if (node != null) {
+                result.add(new NodeDetails(id, node.getDescription(), node.getImageUrl()));
+                continue;
+            }
+            for (Product product : current.getProducts()) {
+                if (product.getId() == id) {
+                    result.add(new NodeDetails(id, product.getDescription(), product.getImageUrl()));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private synchronized CategoryPage children(Map<String, String> query) {
+        int parentId;
+        int offset;
+        int limit;
+        try {
+            parentId = Integer.parseInt(query.get("parent"));
+            offset = Math.max(0, Integer.parseInt(query.get("offset")));
+            limit = Math.max(0, Integer.parseInt(query.get("limit")));
+        } catch (NumberFormatException e) {
+            AppLog.w(TAG, "Некорректный запрос страницы: " + query);
+            return new CategoryPage();
+        }
+        Category parent = findNode(latest().getCatalog(), parentId);
+        List<Category> items = parent != null ? parent.getItems() : Collections.emptyList();
+        List<Category> page = new ArrayList<>();
+        for (int i = offset; i < items.size() && i < offset + limit; i++) {
+            Category item = new Category();
+            item.setId(items.get(i).getId());
+            item.copyFieldsFrom(items.get(i));
+            page.add(item);
+        }
+        return new CategoryPage(parentId, items.size(), offset, page);
+    }
+
+    private static Category findNode(List<Category> items, int id) {
+        for (Category item : items) {
+            if (item.getId() == id) {
+                return item;
+            }
+            Category found = findNode(item.getItems(), id);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, "UTF-8");
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), "UTF-8") : "";
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private void writeJson(OutputStream out, String json) throws IOException {
+        writeResponse(out, 200, "OK", "application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeRedirect(OutputStream out, String location) throws IOException {
+        String headers = "HTTP/1.1 302 Found\r\n"
+                + "Location: " + location + "\r\n"
+                + "Content-Length: 0\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private void writeResponse(OutputStream out, int code, String status, String contentType, byte[] body)
+            throws IOException {
+        String headers = "HTTP/1.1 " + code + " " + status + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        if (bodyDelayMs > 0 && body.length > 0) {
+            try {
+                Thread.sleep(bodyDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Сервер остановлен во время отправки ответа");
+            }
+        }
+        out.write(body);
+        out.flush();
+    }
+}
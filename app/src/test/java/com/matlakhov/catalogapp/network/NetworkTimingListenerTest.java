@@ -0,0 +1,168 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.metrics.MetricsRegistry;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.SocketFactory;
+
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет запись фаз запроса против {@link LocalCatalogServer} с искусственными задержками
+ * разрешения имени, соединения, ответа и передачи тела.
+ */
+public class NetworkTimingListenerTest {
+
+    private static final long DNS_MS = 80;
+    private static final long CONNECT_MS = 60;
+    private static final long LATENCY_MS = 150;
+    private static final long BODY_MS = 100;
+
+    /** Допустимая погрешность гистограммы снизу. */
+    private static final double TOLERANCE = 0.875;
+
+    private LocalCatalogServer server;
+    private ApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCatalogServer();
+        server.start();
+        server.setLatency(LATENCY_MS);
+        server.setBodyDelay(BODY_MS);
+        server.setRedirectDownloads(true);
+
+        Category root = new Category();
+        root.setId(1);
+        root.setName("Категория");
+        CatalogResponse catalog = new CatalogResponse();
+        catalog.setCatalog(Collections.singletonList(root));
+        catalog.setProducts(new ArrayList<>());
+        server.publish(catalog);
+
+        OkHttpClient client = ApiClient.getHttpClient().newBuilder()
+                .dns(new SlowDns())
+                .socketFactory(new SlowSocketFactory())
+                .build();
+        service = new Retrofit.Builder()
+                .baseUrl(server.getBaseUrl())
+                .client(client)
+                .addConverterFactory(new TimedConverterFactory(GsonConverterFactory.create()))
+                .build()
+                .create(ApiService.class);
+        MetricsRegistry.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown();
+        MetricsRegistry.getInstance().reset();
+    }
+
+    @Test
+    public void recordsEveryPhaseOfRedirectedDownload() throws Exception {
+        Response<CatalogResponse> response = service.getCatalog().execute();
+        assertTrue(response.isSuccessful());
+        assertEquals(1, response.body().getCatalog().size());
+
+        // Адрес разрешается один раз, а соединение после «Connection: close» устанавливается на каждом переходе
+        assertAtLeast(DNS_MS, NetworkTimingListener.PHASE_DNS);
+        assertAtLeast(2 * CONNECT_MS, NetworkTimingListener.PHASE_CONNECT);
+        assertAtLeast(DNS_MS + CONNECT_MS + LATENCY_MS, NetworkTimingListener.PHASE_REDIRECT);
+        assertAtLeast(LATENCY_MS, NetworkTimingListener.PHASE_TTFB);
+        assertAtLeast(DNS_MS + 2 * (CONNECT_MS + LATENCY_MS), NetworkTimingListener.PHASE_HEADERS);
+        assertAtLeast(BODY_MS, NetworkTimingListener.PHASE_BODY);
+        // Тело читается после его задержки, разбор маленького ответа её не включает
+        assertTrue(NetworkTimingListener.percentileMillis("uc", NetworkTimingListener.PHASE_TTFB, 50)
+                < LATENCY_MS + BODY_MS);
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        assertEquals(1, registry.counter("network.uc.redirects").get());
+        assertEquals(1, registry.histogram("parse.CatalogResponse").getCount());
+        assertTrue(registry.histogram("parse.CatalogResponse").getMaxMillis() < BODY_MS);
+        assertTrue(registry.counter("network.bytes").get() > 0);
+        assertTrue(registry.gauge("network.uc.response_bytes").get() > 0);
+        assertEquals(0, registry.counter("network.errors").get());
+    }
+
+    private static void assertAtLeast(long expectedMs, String phase) {
+        double actual = NetworkTimingListener.percentileMillis("uc", phase, 50);
+        assertTrue(phase + ": " + actual + " мс, ожидалось не меньше " + expectedMs,
+                actual >= expectedMs * TOLERANCE);
+    }
+
+    /**
+     * Разрешение имени с задержкой.
+     */
+    private static final class SlowDns implements Dns {
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            sleep(DNS_MS);
+            return Dns.SYSTEM.lookup(hostname);
+        }
+    }
+
+    /**
+     * Фабрика сокетов, соединение которых устанавливается с задержкой.
+     */
+    private static final class SlowSocketFactory extends SocketFactory {
+        @Override
+        public Socket createSocket() {
+            return new Socket() {
+                @Override
+                public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                    sleep(CONNECT_MS);
+                    super.connect(endpoint, timeout);
+                }
+            };
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.matlakhov.catalogapp.network;
+
+import com.matlakhov.catalogapp.models.CatalogDelta;
+import com.matlakhov.catalogapp.models.CatalogResponse;
+import com.matlakhov.catalogapp.models.Category;
+import com.matlakhov.catalogapp.models.PricePatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет чтение потока обновлений цен против {@link LocalCatalogServer}.
+ */
+public class PriceStreamClientTest {
+
+    private LocalCatalogServer server;
+    private PriceStreamClient client;
+    private final BlockingQueue<List<PricePatch>> received = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCatalogServer();
+        server.start();
+
+        Category mirror = new Category();
+        mirror.setId(1001);
+        mirror.setName("Зеркало");
+        mirror.setPrice(100.0);
+        CatalogResponse catalog = new CatalogResponse();
+        catalog.setCatalog(Collections.singletonList(mirror));
+        server.publish(catalog);
+
+        client = new PriceStreamClient(ApiClient.getHttpClient(), server.getBaseUrl(), received::add);
+        client.start();
+        awaitSubscriber();
+    }
+
+    @After
+    public void tearDown() {
+        client.stop();
+        server.shutdown();
+    }
+
+    @Test
+    public void receivesPublishedPatches() throws Exception {
+        server.publishPricePatches(Arrays.asList(
+                new PricePatch(1001, 120.0, null),
+                new PricePatch(1002, null, false)));
+
+        List<PricePatch> patches = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(patches);
+        assertEquals(2, patches.size());
+        assertEquals(1001, patches.get(0).getId());
+        assertEquals(Double.valueOf(120.0), patches.get(0).getPrice());
+        assertNull(patches.get(0).getAvailable());
+        assertEquals(Boolean.FALSE, patches.get(1).getAvailable());
+    }
+
+    @Test
+    public void patchesAreVisibleToDeltaSync() throws Exception {
+        server.publishPricePatches(Collections.singletonList(new PricePatch(1001, 150.0, null)));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        ApiClient.setBaseUrl(server.getBaseUrl());
+        try {
+            CatalogDelta delta = ApiClient.getClient().create(ApiService.class).getCatalogDelta(1).execute().body();
+            assertNotNull(delta);
+            assertEquals(1, delta.getModified().size());
+            assertEquals(Double.valueOf(150.0), delta.getModified().get(0).getPrice());
+        } finally {
+            ApiClient.setBaseUrl(null);
+        }
+    }
+
+    @Test
+    public void laterPatchWinsWhenMerged() {
+        PricePatch merged = new PricePatch(1001, 100.0, true).mergeWith(new PricePatch(1001, null, false));
+        assertEquals(Double.valueOf(100.0), merged.getPrice());
+        assertEquals(Boolean.FALSE, merged.getAvailable());
+    }
+
+    private void awaitSubscriber() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (server.getStreamSubscriberCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, server.getStreamSubscriberCount());
+    }
+}
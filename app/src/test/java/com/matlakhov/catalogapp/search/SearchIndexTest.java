@@ -0,0 +1,121 @@
+package com.matlakhov.catalogapp.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.matlakhov.catalogapp.models.Category;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Проверяет поиск по индексу каталога и скорость запросов на 100 000 товаров.
+ */
+public class SearchIndexTest {
+
+    private static Category node(int id, String name, String description, Double price, Category... items) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setDescription(description);
+        category.setPrice(price);
+        for (Category item : items) {
+            category.addItem(Integer.MAX_VALUE, item);
+        }
+        return category;
+    }
+
+    private static List<Integer> ids(List<Category> categories) {
+        List<Integer> ids = new ArrayList<>();
+        for (Category category : categories) {
+            ids.add(category.getId());
+        }
+        return ids;
+    }
+
+    private static SearchIndex sampleIndex() {
+        Category mirror = node(1001, "Зеркало стоматологическое", "Без увеличения", 250.0);
+        Category probe = node(1002, "Зонд стоматологический", "Угловой, двусторонний", 320.0);
+        Category gel = node(2001, "Гель для отбеливания", "Ёмкость 3 мл", 900.0);
+        Category instruments = node(1, "Инструменты", null, null, node(101, "Осмотр", null, null, mirror, probe));
+        Category materials = node(2, "Материалы", null, null, gel);
+        return SearchIndex.build(Arrays.asList(instruments, materials),
+                Arrays.asList(node(1001, "Зеркало стоматологическое", null, 250.0),
+                        node(4001, "Наконечник турбинный", null, 18500.0)));
+    }
+
+    @Test
+    public void search_matchesPrefixesCaseInsensitively() {
+        SearchIndex index = sampleIndex();
+
+        // Результаты упорядочены по найденному слову: «стоматологический» < «стоматологическое»
+        assertEquals(Arrays.asList(1002, 1001), ids(index.search("СТОМАТ", 0, 10)));
+        assertEquals(Collections.singletonList(1002), ids(index.search("стом зонд", 0, 10)));
+        assertEquals(Collections.singletonList(4001), ids(index.search("турб", 0, 10)));
+        assertTrue(index.search("стом турб", 0, 10).isEmpty());
+        assertTrue(index.search("   ", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void search_pagesThroughResults() {
+        SearchIndex index = sampleIndex();
+
+        assertEquals(Collections.singletonList(1002), ids(index.search("стомат", 0, 1)));
+        assertEquals(Collections.singletonList(1001), ids(index.search("стомат", 1, 1)));
+        assertTrue(index.search("стомат", 2, 1).isEmpty());
+    }
+
+    @Test
+    public void search_treatsYoAsYe() {
+        SearchIndex index = sampleIndex();
+
+        assertEquals(Collections.singletonList(2001), ids(index.search("емкость", 0, 10)));
+        assertEquals(Collections.singletonList(2001), ids(index.search("Ёмк", 0, 10)));
+    }
+
+    @Test
+    public void build_skipsRecommendedProductsAlreadyInTree() {
+        assertEquals(7, sampleIndex().size());
+    }
+
+    @Test
+    public void search_onHundredThousandProducts_isFast() {
+        String[] words = {"зеркало", "зонд", "бор", "композит", "цемент", "наконечник", "скалер", "пинцет",
+                "экскаватор", "гладилка", "шпатель", "матрица", "клин", "штифт", "файл", "пульпэкстрактор"};
+        List<Category> roots = new ArrayList<>();
+        int id = 1;
+        for (int r = 0; r < 100; r++) {
+            Category root = node(id++, "Категория " + r, null, null);
+            for (int p = 0; p < 1000; p++) {
+                String name = words[p % words.length] + " " + words[(p / words.length + r) % words.length]
+                        + " модель " + (r * 1000 + p);
+                root.addItem(Integer.MAX_VALUE, node(id++, name, "Артикул А" + id, 100.0));
+            }
+            roots.add(root);
+        }
+        SearchIndex index = SearchIndex.build(roots, Collections.emptyList());
+        String[] queries = {"з", "зерк", "бор ком", "наконечник скал", "модель 5", "модель 99999", "пульп шпат",
+                "клин 4", "а1", "несуществующее"};
+
+        for (int i = 0; i < 200; i++) {
+            index.search(queries[i % queries.length], 0, 50);
+        }
+        long[] times = new long[queries.length * 20];
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            index.search(queries[i % queries.length], 0, 50);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long medianUs = times[times.length / 2] / 1_000;
+        System.out.println("Документов: " + index.size() + ", медиана запроса: " + medianUs + " мкс, максимум: "
+                + times[times.length - 1] / 1_000 + " мкс");
+
+        assertEquals(Collections.singletonList(100_000 - 1 + 101), ids(index.search("модель 99999", 0, 50)));
+        assertTrue("Медиана запроса " + medianUs + " мкс", medianUs < 1_000);
+    }
+}
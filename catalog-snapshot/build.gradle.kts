@@ -0,0 +1,14 @@
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // Gson для чтения исходного JSON каталога при сборке снимка
+    implementation("com.google.code.gson:gson:2.10.1")
+    testImplementation(libs.junit)
+}
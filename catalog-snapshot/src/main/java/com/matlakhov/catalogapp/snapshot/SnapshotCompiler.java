@@ -0,0 +1,79 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Утилита сборки: читает JSON каталога из файла или по URL и записывает бинарный снимок.
+ * <p>
+ * Использование: {@code SnapshotCompiler <файл или http(s)-URL> <выходной файл>}.
+ * Запускается задачей Gradle {@code compileCatalogSnapshot} модуля приложения.
+ * </p>
+ */
+public final class SnapshotCompiler {
+
+    private SnapshotCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: SnapshotCompiler <источник JSON> <выходной файл>");
+            System.exit(2);
+        }
+        String source = args[0];
+        File output = new File(args[1]);
+
+        CatalogJson catalog;
+        try (Reader reader = new InputStreamReader(openSource(source), StandardCharsets.UTF_8)) {
+            catalog = new Gson().fromJson(reader, CatalogJson.class);
+        }
+        if (catalog == null || catalog.catalog == null) {
+            throw new IOException("В источнике нет каталога: " + source);
+        }
+
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + parent);
+        }
+        byte[] snapshot = SnapshotWriter.toByteArray(catalog.catalog, catalog.products, catalog.version,
+                System.currentTimeMillis());
+        try (OutputStream out = new FileOutputStream(output)) {
+            out.write(snapshot);
+        }
+        System.out.println("Снимок каталога: " + output + " (" + snapshot.length + " байт, версия "
+                + catalog.version + ")");
+    }
+
+    private static InputStream openSource(String source) throws IOException {
+        if (source.startsWith("http://") || source.startsWith("https://")) {
+            return new URL(source).openStream();
+        }
+        return new FileInputStream(source);
+    }
+
+    /**
+     * Корневой объект JSON каталога (совпадает с ответом API).
+     */
+    private static final class CatalogJson {
+        @SerializedName("version")
+        long version;
+
+        @SerializedName("catalog")
+        List<SnapshotNode> catalog;
+
+        @SerializedName("products")
+        List<SnapshotNode> products;
+    }
+}
@@ -0,0 +1,95 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import java.nio.ByteOrder;
+
+/**
+ * Константы бинарного формата снимка каталога.
+ * <p>
+ * Снимок состоит из заголовка, таблицы смещений строк, данных строк (UTF-8, одинаковые строки
+ * хранятся один раз) и таблицы узлов фиксированной ширины. Узлы дерева упорядочены обходом в ширину,
+ * поэтому дети любого узла занимают непрерывный диапазон {@code [firstChild, firstChild + childCount)},
+ * а корневые категории — диапазон {@code [0, rootCount)}. За узлами дерева следуют
+ * {@code recommendedCount} узлов рекомендуемых товаров без детей. Все числа записаны в порядке
+ * {@link #BYTE_ORDER}.
+ * </p>
+ * <pre>
+ * Заголовок ({@link #HEADER_SIZE} байт):
+ *   0  int   magic ({@link #MAGIC})
+ *   4  int   версия формата ({@link #FORMAT_VERSION})
+ *   8  long  версия каталога
+ *   16 long  время создания снимка (мс)
+ *   24 int   количество узлов дерева
+ *   28 int   количество корневых категорий
+ *   32 int   количество рекомендуемых товаров
+ *   36 int   количество строк
+ *   40 int   смещение таблицы смещений строк
+ *   44 int   смещение данных строк
+ *   48 int   смещение таблицы узлов
+ *   52 int   зарезервировано
+ *
+ * Узел ({@link #NODE_SIZE} байт):
+ *   0  int    id
+ *   4  int    индекс строки названия (-1, если нет)
+ *   8  int    индекс строки описания (-1, если нет)
+ *   12 int    индекс строки URL изображения (-1, если нет)
+ *   16 double цена
+ *   24 int    флаги ({@link #FLAG_HAS_PRICE}, {@link #FLAG_HAS_AVAILABLE}, {@link #FLAG_AVAILABLE})
+ *   28 int    индекс первого ребёнка
+ *   32 int    количество детей
+ *   36 int    индекс родителя (-1 для корневых узлов и рекомендуемых товаров)
+ * </pre>
+ */
+public final class SnapshotFormat {
+
+    /** Сигнатура файла снимка ("CSNP"). */
+    public static final int MAGIC = 0x43534E50;
+
+    /** Версия формата. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Порядок байтов. */
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Размер заголовка в байтах. */
+    public static final int HEADER_SIZE = 56;
+
+    /** Размер записи узла в байтах. */
+    public static final int NODE_SIZE = 40;
+
+    /** Значение индекса строки или узла, обозначающее его отсутствие. */
+    public static final int NONE = -1;
+
+    /** Флаг узла: цена задана. */
+    public static final int FLAG_HAS_PRICE = 1;
+
+    /** Флаг узла: наличие задано. */
+    public static final int FLAG_HAS_AVAILABLE = 1 << 1;
+
+    /** Флаг узла: товар в наличии (учитывается только вместе с {@link #FLAG_HAS_AVAILABLE}). */
+    public static final int FLAG_AVAILABLE = 1 << 2;
+
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_FORMAT_VERSION = 4;
+    static final int OFFSET_CATALOG_VERSION = 8;
+    static final int OFFSET_CREATED_AT = 16;
+    static final int OFFSET_TREE_NODE_COUNT = 24;
+    static final int OFFSET_ROOT_COUNT = 28;
+    static final int OFFSET_RECOMMENDED_COUNT = 32;
+    static final int OFFSET_STRING_COUNT = 36;
+    static final int OFFSET_STRING_OFFSETS_POS = 40;
+    static final int OFFSET_STRING_DATA_POS = 44;
+    static final int OFFSET_NODES_POS = 48;
+
+    static final int NODE_ID = 0;
+    static final int NODE_NAME = 4;
+    static final int NODE_DESCRIPTION = 8;
+    static final int NODE_IMAGE = 12;
+    static final int NODE_PRICE = 16;
+    static final int NODE_FLAGS = 24;
+    static final int NODE_FIRST_CHILD = 28;
+    static final int NODE_CHILD_COUNT = 32;
+    static final int NODE_PARENT = 36;
+
+    private SnapshotFormat() {
+    }
+}
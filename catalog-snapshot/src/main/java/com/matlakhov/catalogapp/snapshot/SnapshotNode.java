@@ -0,0 +1,44 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Узел каталога для записи в снимок.
+ * <p>
+ * Поля и их JSON-имена совпадают с моделью категории приложения, поэтому исходный JSON каталога
+ * читается в этот класс напрямую.
+ * </p>
+ */
+public class SnapshotNode {
+
+    /** Уникальный идентификатор категории или товара. */
+    @SerializedName("id")
+    public int id;
+
+    /** Название. */
+    @SerializedName("name")
+    public String name;
+
+    /** URL изображения. */
+    @SerializedName("image")
+    public String imageUrl;
+
+    /** Описание. */
+    @SerializedName("description")
+    public String description;
+
+    /** Цена (для товаров), или null. */
+    @SerializedName("price")
+    public Double price;
+
+    /** Наличие, или null, если неизвестно. */
+    @SerializedName("available")
+    public Boolean available;
+
+    /** Вложенные подкатегории или товары. */
+    @SerializedName("items")
+    public List<SnapshotNode> items = new ArrayList<>();
+}
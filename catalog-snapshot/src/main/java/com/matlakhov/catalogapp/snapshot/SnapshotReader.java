@@ -0,0 +1,192 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Читает снимок каталога формата {@link SnapshotFormat} прямо из буфера.
+ * <p>
+ * Буфер может быть отображён в память из файла: поля узлов читаются по смещениям без разбора всего
+ * снимка, строки декодируются только при обращении к ним. Узлы адресуются индексом в таблице узлов.
+ * </p>
+ */
+public final class SnapshotReader {
+
+    private final ByteBuffer buffer;
+    private final long catalogVersion;
+    private final long createdAt;
+    private final int treeNodeCount;
+    private final int rootCount;
+    private final int recommendedCount;
+    private final int stringCount;
+    private final int stringOffsetsPos;
+    private final int stringDataPos;
+    private final int nodesPos;
+
+    private SnapshotReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        catalogVersion = buffer.getLong(SnapshotFormat.OFFSET_CATALOG_VERSION);
+        createdAt = buffer.getLong(SnapshotFormat.OFFSET_CREATED_AT);
+        treeNodeCount = buffer.getInt(SnapshotFormat.OFFSET_TREE_NODE_COUNT);
+        rootCount = buffer.getInt(SnapshotFormat.OFFSET_ROOT_COUNT);
+        recommendedCount = buffer.getInt(SnapshotFormat.OFFSET_RECOMMENDED_COUNT);
+        stringCount = buffer.getInt(SnapshotFormat.OFFSET_STRING_COUNT);
+        stringOffsetsPos = buffer.getInt(SnapshotFormat.OFFSET_STRING_OFFSETS_POS);
+        stringDataPos = buffer.getInt(SnapshotFormat.OFFSET_STRING_DATA_POS);
+        nodesPos = buffer.getInt(SnapshotFormat.OFFSET_NODES_POS);
+    }
+
+    /**
+     * Открывает снимок и проверяет его заголовок.
+     *
+     * @param source буфер со снимком (позиция и порядок байтов исходного буфера не меняются)
+     * @return читатель снимка
+     * @throws IllegalArgumentException если буфер не содержит снимок поддерживаемой версии
+     */
+    public static SnapshotReader open(ByteBuffer source) {
+        ByteBuffer buffer = source.slice().order(SnapshotFormat.BYTE_ORDER);
+        if (buffer.capacity() < SnapshotFormat.HEADER_SIZE
+                || buffer.getInt(SnapshotFormat.OFFSET_MAGIC) != SnapshotFormat.MAGIC) {
+            throw new IllegalArgumentException("Не снимок каталога");
+        }
+        int formatVersion = buffer.getInt(SnapshotFormat.OFFSET_FORMAT_VERSION);
+        if (formatVersion != SnapshotFormat.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Неподдерживаемая версия снимка: " + formatVersion);
+        }
+        SnapshotReader reader = new SnapshotReader(buffer);
+        long expectedSize = (long) reader.nodesPos
+                + (long) reader.getNodeCount() * SnapshotFormat.NODE_SIZE;
+        if (reader.treeNodeCount < 0 || reader.rootCount < 0 || reader.rootCount > reader.treeNodeCount
+                || reader.recommendedCount < 0 || reader.stringCount < 0
+                || expectedSize > buffer.capacity()
+                || reader.stringDataPos > reader.nodesPos) {
+            throw new IllegalArgumentException("Повреждённый снимок каталога");
+        }
+        return reader;
+    }
+
+    /** @return версия каталога, из которого собран снимок */
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /** @return время создания снимка (мс) */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** @return количество узлов дерева каталога */
+    public int getTreeNodeCount() {
+        return treeNodeCount;
+    }
+
+    /** @return количество корневых категорий (узлы {@code [0, rootCount)}) */
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    /** @return количество рекомендуемых товаров */
+    public int getRecommendedCount() {
+        return recommendedCount;
+    }
+
+    /** @return общее количество узлов, включая рекомендуемые товары */
+    public int getNodeCount() {
+        return treeNodeCount + recommendedCount;
+    }
+
+    /**
+     * @param position позиция в списке рекомендуемых товаров
+     * @return индекс узла рекомендуемого товара
+     */
+    public int getRecommendedNode(int position) {
+        return treeNodeCount + position;
+    }
+
+    public int getId(int node) {
+        return buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_ID);
+    }
+
+    public String getName(int node) {
+        return getString(buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_NAME));
+    }
+
+    public String getDescription(int node) {
+        return getString(buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_DESCRIPTION));
+    }
+
+    public String getImageUrl(int node) {
+        return getString(buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_IMAGE));
+    }
+
+    /**
+     * @param node индекс узла
+     * @return цена или null, если она не задана
+     */
+    public Double getPrice(int node) {
+        int base = nodeBase(node);
+        if ((buffer.getInt(base + SnapshotFormat.NODE_FLAGS) & SnapshotFormat.FLAG_HAS_PRICE) == 0) {
+            return null;
+        }
+        return buffer.getDouble(base + SnapshotFormat.NODE_PRICE);
+    }
+
+    /**
+     * @param node индекс узла
+     * @return наличие или null, если оно неизвестно
+     */
+    public Boolean getAvailable(int node) {
+        int flags = buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_FLAGS);
+        if ((flags & SnapshotFormat.FLAG_HAS_AVAILABLE) == 0) {
+            return null;
+        }
+        return (flags & SnapshotFormat.FLAG_AVAILABLE) != 0;
+    }
+
+    /** @return индекс первого ребёнка узла или {@link SnapshotFormat#NONE} */
+    public int getFirstChild(int node) {
+        return buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_FIRST_CHILD);
+    }
+
+    public int getChildCount(int node) {
+        return buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_CHILD_COUNT);
+    }
+
+    /** @return индекс родителя узла или {@link SnapshotFormat#NONE} */
+    public int getParent(int node) {
+        return buffer.getInt(nodeBase(node) + SnapshotFormat.NODE_PARENT);
+    }
+
+    /**
+     * Декодирует строку из таблицы строк.
+     *
+     * @param index индекс строки или {@link SnapshotFormat#NONE}
+     * @return строка или null
+     */
+    public String getString(int index) {
+        if (index == SnapshotFormat.NONE) {
+            return null;
+        }
+        if (index < 0 || index >= stringCount) {
+            throw new IndexOutOfBoundsException("Строка " + index + " вне таблицы из " + stringCount);
+        }
+        int start = buffer.getInt(stringOffsetsPos + index * 4);
+        int end = buffer.getInt(stringOffsetsPos + (index + 1) * 4);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + stringDataPos + start, end - start,
+                    StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringDataPos + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int nodeBase(int node) {
+        if (node < 0 || node >= getNodeCount()) {
+            throw new IndexOutOfBoundsException("Узел " + node + " вне снимка из " + getNodeCount());
+        }
+        return nodesPos + node * SnapshotFormat.NODE_SIZE;
+    }
+}
@@ -0,0 +1,196 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Записывает каталог в бинарный формат {@link SnapshotFormat}.
+ * <p>
+ * Дерево обходится в ширину без рекурсии, поэтому глубина каталога не ограничена размером стека.
+ * Одинаковые строки записываются в таблицу строк один раз.
+ * </p>
+ */
+public final class SnapshotWriter {
+
+    private SnapshotWriter() {
+    }
+
+    /**
+     * Записывает каталог в поток.
+     *
+     * @param catalog        корневые категории
+     * @param recommended    рекомендуемые товары (их вложенные элементы не записываются)
+     * @param catalogVersion версия каталога
+     * @param createdAt      время создания снимка (мс)
+     * @param out            поток для записи
+     * @throws IOException при ошибке записи
+     */
+    public static void write(List<SnapshotNode> catalog, List<SnapshotNode> recommended, long catalogVersion,
+                             long createdAt, OutputStream out) throws IOException {
+        out.write(toByteArray(catalog, recommended, catalogVersion, createdAt));
+    }
+
+    /**
+     * Записывает каталог в массив байтов.
+     *
+     * @param catalog        корневые категории
+     * @param recommended    рекомендуемые товары (их вложенные элементы не записываются)
+     * @param catalogVersion версия каталога
+     * @param createdAt      время создания снимка (мс)
+     * @return содержимое снимка
+     */
+    public static byte[] toByteArray(List<SnapshotNode> catalog, List<SnapshotNode> recommended,
+                                     long catalogVersion, long createdAt) {
+        // Обход в ширину: дети каждого узла оказываются в непрерывном диапазоне
+        List<SnapshotNode> order = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        for (SnapshotNode root : nonNull(catalog)) {
+            order.add(root);
+            parents.add(SnapshotFormat.NONE);
+        }
+        int rootCount = order.size();
+        List<Integer> firstChildren = new ArrayList<>();
+        List<Integer> childCounts = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            List<SnapshotNode> children = nonNull(order.get(i).items);
+            firstChildren.add(children.isEmpty() ? SnapshotFormat.NONE : order.size());
+            childCounts.add(children.size());
+            for (SnapshotNode child : children) {
+                order.add(child);
+                parents.add(i);
+            }
+        }
+        int treeNodeCount = order.size();
+        List<SnapshotNode> recommendedNodes = nonNull(recommended);
+        for (SnapshotNode product : recommendedNodes) {
+            order.add(product);
+            parents.add(SnapshotFormat.NONE);
+            firstChildren.add(SnapshotFormat.NONE);
+            childCounts.add(0);
+        }
+
+        StringTable strings = new StringTable();
+        int[] nameIndex = new int[order.size()];
+        int[] descriptionIndex = new int[order.size()];
+        int[] imageIndex = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            SnapshotNode node = order.get(i);
+            nameIndex[i] = strings.add(node.name);
+            descriptionIndex[i] = strings.add(node.description);
+            imageIndex[i] = strings.add(node.imageUrl);
+        }
+
+        int stringOffsetsPos = SnapshotFormat.HEADER_SIZE;
+        int stringDataPos = stringOffsetsPos + (strings.size() + 1) * 4;
+        int nodesPos = align(stringDataPos + strings.byteLength(), 8);
+        int totalSize = nodesPos + order.size() * SnapshotFormat.NODE_SIZE;
+
+        ByteBuffer buffer = ByteBuffer.allocate(totalSize).order(SnapshotFormat.BYTE_ORDER);
+        buffer.putInt(SnapshotFormat.OFFSET_MAGIC, SnapshotFormat.MAGIC);
+        buffer.putInt(SnapshotFormat.OFFSET_FORMAT_VERSION, SnapshotFormat.FORMAT_VERSION);
+        buffer.putLong(SnapshotFormat.OFFSET_CATALOG_VERSION, catalogVersion);
+        buffer.putLong(SnapshotFormat.OFFSET_CREATED_AT, createdAt);
+        buffer.putInt(SnapshotFormat.OFFSET_TREE_NODE_COUNT, treeNodeCount);
+        buffer.putInt(SnapshotFormat.OFFSET_ROOT_COUNT, rootCount);
+        buffer.putInt(SnapshotFormat.OFFSET_RECOMMENDED_COUNT, recommendedNodes.size());
+        buffer.putInt(SnapshotFormat.OFFSET_STRING_COUNT, strings.size());
+        buffer.putInt(SnapshotFormat.OFFSET_STRING_OFFSETS_POS, stringOffsetsPos);
+        buffer.putInt(SnapshotFormat.OFFSET_STRING_DATA_POS, stringDataPos);
+        buffer.putInt(SnapshotFormat.OFFSET_NODES_POS, nodesPos);
+
+        int offset = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            buffer.putInt(stringOffsetsPos + i * 4, offset);
+            byte[] bytes = strings.get(i);
+            buffer.position(stringDataPos + offset);
+            buffer.put(bytes);
+            offset += bytes.length;
+        }
+        buffer.putInt(stringOffsetsPos + strings.size() * 4, offset);
+
+        for (int i = 0; i < order.size(); i++) {
+            SnapshotNode node = order.get(i);
+            int base = nodesPos + i * SnapshotFormat.NODE_SIZE;
+            int flags = 0;
+            if (node.price != null) {
+                flags |= SnapshotFormat.FLAG_HAS_PRICE;
+            }
+            if (node.available != null) {
+                flags |= SnapshotFormat.FLAG_HAS_AVAILABLE;
+                if (node.available) {
+                    flags |= SnapshotFormat.FLAG_AVAILABLE;
+                }
+            }
+            buffer.putInt(base + SnapshotFormat.NODE_ID, node.id);
+            buffer.putInt(base + SnapshotFormat.NODE_NAME, nameIndex[i]);
+            buffer.putInt(base + SnapshotFormat.NODE_DESCRIPTION, descriptionIndex[i]);
+            buffer.putInt(base + SnapshotFormat.NODE_IMAGE, imageIndex[i]);
+            buffer.putDouble(base + SnapshotFormat.NODE_PRICE, node.price != null ? node.price : 0.0);
+            buffer.putInt(base + SnapshotFormat.NODE_FLAGS, flags);
+            buffer.putInt(base + SnapshotFormat.NODE_FIRST_CHILD, firstChildren.get(i));
+            buffer.putInt(base + SnapshotFormat.NODE_CHILD_COUNT, childCounts.get(i));
+            buffer.putInt(base + SnapshotFormat.NODE_PARENT, parents.get(i));
+        }
+        return buffer.array();
+    }
+
+    private static List<SnapshotNode> nonNull(List<SnapshotNode> nodes) {
+        if (nodes == null) {
+            return Collections.emptyList();
+        }
+        List<SnapshotNode> result = new ArrayList<>(nodes.size());
+        for (SnapshotNode node : nodes) {
+            if (node != null) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * Таблица уникальных строк в кодировке UTF-8.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private int byteLength;
+
+        int add(String value) {
+            if (value == null) {
+                return SnapshotFormat.NONE;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                index = values.size();
+                values.add(bytes);
+                indexes.put(value, index);
+                byteLength += bytes.length;
+            }
+            return index;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        byte[] get(int index) {
+            return values.get(index);
+        }
+
+        int byteLength() {
+            return byteLength;
+        }
+    }
+}
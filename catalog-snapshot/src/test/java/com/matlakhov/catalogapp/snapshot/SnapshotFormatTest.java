@@ -0,0 +1,82 @@
+package com.matlakhov.catalogapp.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Проверяет запись и чтение снимка каталога.
+ */
+public class SnapshotFormatTest {
+
+    private static SnapshotNode node(int id, String name, Double price, SnapshotNode... items) {
+        SnapshotNode node = new SnapshotNode();
+        node.id = id;
+        node.name = name;
+        node.price = price;
+        node.items.addAll(Arrays.asList(items));
+        return node;
+    }
+
+    @Test
+    public void roundTrip_preservesTreeOrderAndFields() {
+        SnapshotNode mirror = node(1001, "Зеркало", 250.0);
+        mirror.available = false;
+        SnapshotNode probe = node(1002, "Зонд", null);
+        SnapshotNode catalog1 = node(1, "Инструменты", null, node(101, "Осмотр", null, mirror, probe));
+        SnapshotNode catalog2 = node(2, "Материалы", null, node(201, "Пломбы", null));
+        SnapshotNode recommended = node(4001, "Зеркало", 18500.0);
+
+        byte[] bytes = SnapshotWriter.toByteArray(Arrays.asList(catalog1, catalog2),
+                Collections.singletonList(recommended), 7, 123);
+        SnapshotReader reader = SnapshotReader.open(ByteBuffer.wrap(bytes));
+
+        assertEquals(7, reader.getCatalogVersion());
+        assertEquals(123, reader.getCreatedAt());
+        assertEquals(2, reader.getRootCount());
+        assertEquals(6, reader.getTreeNodeCount());
+        assertEquals(1, reader.getRecommendedCount());
+
+        assertEquals(1, reader.getId(0));
+        assertEquals(2, reader.getId(1));
+        int examination = reader.getFirstChild(0);
+        assertEquals(101, reader.getId(examination));
+        assertEquals(0, reader.getParent(examination));
+        assertEquals(2, reader.getChildCount(examination));
+        int first = reader.getFirstChild(examination);
+        assertEquals(1001, reader.getId(first));
+        assertEquals(1002, reader.getId(first + 1));
+        assertEquals(Double.valueOf(250.0), reader.getPrice(first));
+        assertEquals(Boolean.FALSE, reader.getAvailable(first));
+        assertNull(reader.getPrice(first + 1));
+        assertNull(reader.getAvailable(first + 1));
+        assertNull(reader.getDescription(first));
+
+        int product = reader.getRecommendedNode(0);
+        assertEquals(4001, reader.getId(product));
+        assertEquals("Зеркало", reader.getName(product));
+        assertEquals(0, reader.getChildCount(product));
+    }
+
+    @Test
+    public void open_readsFromDirectBuffer() {
+        byte[] bytes = SnapshotWriter.toByteArray(Collections.singletonList(node(1, "Инструменты", null)),
+                Collections.emptyList(), 1, 0);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        SnapshotReader reader = SnapshotReader.open(direct);
+
+        assertEquals("Инструменты", reader.getName(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_rejectsForeignData() {
+        SnapshotReader.open(ByteBuffer.wrap(new byte[SnapshotFormat.HEADER_SIZE]));
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "CatalogApp"
 include(":app")
+include(":catalog-snapshot")